@@ -0,0 +1,88 @@
+// Carga de anotadores simultâneos no editor (k6). Cada usuário virtual abre uma imagem, lê a
+// anotação e faz auto-saves com appendStrokes em ritmo de pincel, com varinha mágica de vez em
+// quando. O número de anotadores sobe em degraus até MAX_VUS.
+//
+//   k6 run -e BASE_URL=http://localhost:8080 -e IMAGE_IDS=1,2,3 loadtest/annotators.js
+//
+// Use imagens de uma base de teste: os auto-saves gravam traços de verdade nas anotações.
+import http from 'k6/http';
+import { check, sleep } from 'k6';
+import { Counter } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const IMAGE_IDS = (__ENV.IMAGE_IDS || '1').split(',').map((id) => Number(id.trim()));
+const MAX_VUS = Number(__ENV.MAX_VUS || 400);
+const STEP = __ENV.STEP || '1m';
+const SAVE_INTERVAL_SECONDS = Number(__ENV.SAVE_INTERVAL_SECONDS || 2);
+const REGION_GROW_EVERY = Number(__ENV.REGION_GROW_EVERY || 10);
+
+const conflicts = new Counter('autosave_conflicts');
+
+export const options = {
+  scenarios: {
+    annotators: {
+      executor: 'ramping-vus',
+      startVUs: 0,
+      stages: [
+        { duration: STEP, target: Math.round(MAX_VUS / 4) },
+        { duration: STEP, target: Math.round(MAX_VUS / 2) },
+        { duration: STEP, target: MAX_VUS },
+        { duration: STEP, target: MAX_VUS },
+        { duration: '30s', target: 0 },
+      ],
+      gracefulRampDown: '30s',
+    },
+  },
+  // Capacidade = maior degrau em que os dois limites ainda valem
+  thresholds: {
+    'http_req_duration{name:auto-save}': ['p(95)<500'],
+    'http_req_failed': ['rate<0.01'],
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+};
+
+function stroke(i) {
+  return {
+    x: (i * 7) % 500,
+    y: (i * 13) % 500,
+    size: 8,
+    color: '#ff0000',
+    mode: i % 5 === 0 ? 'background' : 'object',
+  };
+}
+
+export default function () {
+  const imageId = IMAGE_IDS[(__VU - 1) % IMAGE_IDS.length];
+
+  const image = http.get(`${BASE_URL}/image/findImageById?imageId=${imageId}`, { tags: { name: 'open-image' } });
+  check(image, { 'imagem aberta': (r) => r.status === 200 });
+  const annotation = http.get(`${BASE_URL}/annotation/${imageId}`, { tags: { name: 'get-annotation' } });
+  check(annotation, { 'anotação lida': (r) => r.status === 200 });
+
+  // Uma sessão de edição: vários saves incrementais na mesma imagem
+  for (let i = 1; i <= 20; i++) {
+    sleep(SAVE_INTERVAL_SECONDS * (0.5 + Math.random()));
+
+    const strokes = [];
+    for (let s = 0; s < 10; s++) {
+      strokes.push(stroke(__ITER * 1000 + i * 10 + s));
+    }
+    const save = http.post(
+      `${BASE_URL}/annotation/${imageId}/auto-save`,
+      JSON.stringify({ appendStrokes: strokes }),
+      { headers: { 'Content-Type': 'application/json' }, tags: { name: 'auto-save' } },
+    );
+    if (save.status === 409) {
+      conflicts.add(1);
+    }
+    check(save, { 'auto-save aceito': (r) => r.status === 200 });
+
+    if (i % REGION_GROW_EVERY === 0) {
+      const grow = http.get(
+        `${BASE_URL}/image/region-grow?imageId=${imageId}&x=${(i * 17) % 200}&y=${(i * 11) % 200}`,
+        { tags: { name: 'region-grow' } },
+      );
+      check(grow, { 'varinha respondeu': (r) => r.status === 200 || r.status === 400 });
+    }
+  }
+}
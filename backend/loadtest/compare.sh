@@ -0,0 +1,48 @@
+#!/bin/sh
+# Roda o mesmo teste de carga com e sem threads virtuais, com o mesmo heap, e guarda o resumo
+# do k6 e as métricas do JVM (porta de gerenciamento) de cada execução em loadtest/results.
+#
+#   mvn -q package -DskipTests
+#   IMAGE_IDS=1,2,3 sh loadtest/compare.sh
+set -e
+
+JAR=${JAR:-$(ls target/*.jar | grep -v plain | head -1)}
+HEAP=${HEAP:-512m}
+BASE_URL=${BASE_URL:-http://localhost:8080}
+MANAGEMENT_URL=${MANAGEMENT_URL:-http://127.0.0.1:8081}
+OUT=${OUT:-loadtest/results}
+mkdir -p "$OUT"
+
+metric() {
+  curl -s "$MANAGEMENT_URL/actuator/metrics/$1${2:+?tag=$2}" | sed -n 's/.*"statistic":"VALUE","value":\([0-9.E+-]*\).*/\1/p'
+}
+
+for virtual in true false; do
+  echo "== spring.threads.virtual.enabled=$virtual (heap $HEAP)"
+  java -Xms"$HEAP" -Xmx"$HEAP" -jar "$JAR" --spring.threads.virtual.enabled="$virtual" \
+    > "$OUT/app-virtual-$virtual.log" 2>&1 &
+  APP=$!
+  trap 'kill $APP 2>/dev/null' EXIT
+
+  until curl -sf "$MANAGEMENT_URL/actuator/health" > /dev/null; do sleep 2; done
+
+  k6 run -e BASE_URL="$BASE_URL" -e IMAGE_IDS="$IMAGE_IDS" \
+    --summary-export "$OUT/k6-virtual-$virtual.json" loadtest/annotators.js \
+    | tee "$OUT/k6-virtual-$virtual.txt" || true
+
+  # Lidos logo após o pico, antes de derrubar a aplicação
+  {
+    echo "heap_used_bytes $(metric jvm.memory.used area:heap)"
+    echo "heap_max_bytes $(metric jvm.memory.max area:heap)"
+    echo "threads_live $(metric jvm.threads.live)"
+    echo "threads_peak $(metric jvm.threads.peak)"
+    echo "hikari_pending $(metric hikaricp.connections.pending)"
+  } > "$OUT/jvm-virtual-$virtual.txt"
+  cat "$OUT/jvm-virtual-$virtual.txt"
+
+  kill $APP
+  wait $APP 2>/dev/null || true
+  trap - EXIT
+done
+
+echo "Resultados em $OUT"
@@ -1,83 +1,163 @@
 # -*- coding: utf-8 -*-
 import sys
 import os
+import json
+import struct
+import time
 import numpy as np
 import cv2
 from skimage.segmentation import watershed
 from scipy import ndimage as ndi
 
-# Configurar encoding para evitar problemas com caracteres Unicode
-sys.stdout.reconfigure(encoding='utf-8') if hasattr(sys.stdout, 'reconfigure') else None
-
-if len(sys.argv) < 4:
-    print("Uso: python interactive_object_segmentation.py <input_path> <markers_path> <output_path>")
-    sys.exit(1)
-
-input_path = sys.argv[1]
-markers_path = sys.argv[2]
-output_path = sys.argv[3]
-
-if not os.path.exists(input_path):
-    raise FileNotFoundError(f"Imagem nao encontrada: {input_path}")
-if not os.path.exists(markers_path):
-    raise FileNotFoundError(f"Markers nao encontrados: {markers_path}")
-
-# === 1️⃣ Carrega imagens ===
-image = cv2.imread(input_path, cv2.IMREAD_COLOR)
-markers = cv2.imread(markers_path, cv2.IMREAD_UNCHANGED)
-
-print(f"[INFO] Image shape: {image.shape}")
-print(f"[INFO] Markers shape: {markers.shape}")
-
-# Se o markers vier só com 1 canal → duplica para RGB
-if markers.ndim == 2:
-    print("[INFO] Markers sem canais de cor, convertendo GRAY -> BGR")
-    markers = cv2.cvtColor(markers, cv2.COLOR_GRAY2BGR)
-
-# Se vier RGBA → converte para RGB
-if markers.shape[2] == 4:
-    print("[INFO] Markers com alpha encontrado (BGRA), convertendo -> BGR")
-    markers = cv2.cvtColor(markers, cv2.COLOR_BGRA2BGR)
-
-# Logging dos valores únicos
-unique_vals = np.unique(markers.reshape(-1, 3), axis=0)
-print(f"[INFO] Valores unicos nos markers: {unique_vals[:10]}")
-
-# === 2️⃣ Converte a imagem para cinza e suaviza ===
-gray = cv2.cvtColor(image, cv2.COLOR_BGR2GRAY)
-elevation_map = ndi.gaussian_filter(gray, sigma=2)
-
-# === 3️⃣ Extrai foreground (verde) e background (vermelho) ===
-red = markers[:, :, 2].astype(np.int16)
-green = markers[:, :, 1].astype(np.int16)
-
-foreground = green > 150
-background = red > 150
-
-print(f"[INFO] Foreground pixels: {np.sum(foreground)}")
-print(f"[INFO] Background pixels: {np.sum(background)}")
-
-# Verificação mínima para evitar resultado preto
-if np.sum(foreground) == 0:
-    raise ValueError("Nenhuma marca de foreground encontrada! O usuario marcou o objeto em verde?")
-if np.sum(background) == 0:
-    raise ValueError("Nenhuma marca de background encontrada! O usuario marcou o fundo em vermelho?")
-
-# === 4️⃣ Construção dos marcadores para o Watershed ===
-markers_ws = np.zeros_like(gray, dtype=np.int32)
-markers_ws[background] = 1
-markers_ws[foreground] = 2
-
-# === 5️⃣ Segmentação Watershed ===
-labels = watershed(elevation_map, markers_ws)
-
-# === 6️⃣ Gera máscara final ===
-mask = (labels == 2).astype(np.uint8) * 255
-
-# === 7️⃣ Aplica máscara à imagem original ===
-b, g, r = cv2.split(image)
-alpha = mask
-segmented_rgba = cv2.merge([b, g, r, alpha])
-
-cv2.imwrite(output_path, segmented_rgba)
-print(f"[INFO] Segmentacao salva em: {output_path}")
\ No newline at end of file
+# Protocolo de resultado: o stdout carrega apenas frames binarios
+#   [tipo: 1 byte][tamanho: 4 bytes big-endian][payload]
+# Tipos: S = status/estatisticas (JSON UTF-8), M = mascara RGBA (PNG),
+#        L = mascara indexada por rotulo (PNG), E = fim (payload vazio).
+# Todo log vai para o stderr.
+FRAME_STATUS = b"S"
+FRAME_MASK = b"M"
+FRAME_LABELS = b"L"
+FRAME_END = b"E"
+
+# O canal de frames e uma copia privada do fd 1; o fd 1 e o sys.stdout passam a apontar para o
+# stderr, para que um print (nosso, do cv2/skimage/numpy ou de codigo nativo) nao corrompa os frames
+sys.stdout.flush()
+out = os.fdopen(os.dup(1), "wb")
+os.dup2(2, 1)
+sys.stdout = sys.stderr
+
+
+def log(message):
+    print(message, file=sys.stderr, flush=True)
+
+
+def write_frame(frame_type, payload=b""):
+    out.write(frame_type)
+    out.write(struct.pack(">I", len(payload)))
+    out.write(payload)
+    out.flush()
+
+
+def write_status(status, **fields):
+    fields["status"] = status
+    write_frame(FRAME_STATUS, json.dumps(fields).encode("utf-8"))
+
+
+def encode_png(array):
+    ok, buffer = cv2.imencode(".png", array)
+    if not ok:
+        raise RuntimeError("Falha ao codificar PNG")
+    return buffer.tobytes()
+
+
+def read_image(path):
+    """Imagem BGR de 8 bits. Arquivos .raw vem do cache de pixels do backend e sao lidos sem
+    decodificar: cabecalho "RAW1", largura, altura (u32), bandas, bytes por amostra (u16),
+    little endian, seguido das amostras (cinza, B G R ou A B G R)."""
+    if not path.endswith(".raw"):
+        return cv2.imread(path, cv2.IMREAD_COLOR)
+
+    magic, width, height, bands, sample_bytes = struct.unpack("<4sIIHH", open(path, "rb").read(16))
+    if magic != b"RAW1":
+        raise ValueError(f"Arquivo de pixels invalido: {path}")
+    dtype = np.dtype("<u2") if sample_bytes == 2 else np.uint8
+    pixels = np.memmap(path, dtype=dtype, mode="r", offset=16, shape=(height, width, bands))
+    if sample_bytes == 2:
+        # Mesmo resultado do imread em PNG de 16 bits: os 8 bits mais significativos
+        pixels = (pixels >> 8).astype(np.uint8)
+    if bands == 1:
+        return cv2.cvtColor(np.ascontiguousarray(pixels[:, :, 0]), cv2.COLOR_GRAY2BGR)
+    if bands == 4:
+        return np.ascontiguousarray(pixels[:, :, 1:4])
+    return np.ascontiguousarray(pixels)
+
+
+def segment(input_path, markers_path, with_labels):
+    started = time.time()
+
+    if not os.path.exists(input_path):
+        raise FileNotFoundError(f"Imagem nao encontrada: {input_path}")
+    if not os.path.exists(markers_path):
+        raise FileNotFoundError(f"Markers nao encontrados: {markers_path}")
+
+    # === 1️⃣ Carrega imagens ===
+    image = read_image(input_path)
+    markers = cv2.imread(markers_path, cv2.IMREAD_UNCHANGED)
+
+    log(f"[INFO] Image shape: {image.shape}")
+    log(f"[INFO] Markers shape: {markers.shape}")
+
+    # === 2️⃣ Converte a imagem para cinza e suaviza ===
+    gray = cv2.cvtColor(image, cv2.COLOR_BGR2GRAY)
+    elevation_map = ndi.gaussian_filter(gray, sigma=2)
+
+    # === 3️⃣ Construção dos marcadores para o Watershed ===
+    if markers.ndim == 2:
+        # Mapa de rótulos gerado pelo backend: 0 = sem marcação, 1 = fundo, 2..N = objetos
+        log("[INFO] Markers em formato de rotulos (1 canal)")
+        markers_ws = markers.astype(np.int32)
+    else:
+        # Formato antigo: verde = objeto, vermelho = fundo
+        if markers.shape[2] == 4:
+            log("[INFO] Markers com alpha encontrado (BGRA), convertendo -> BGR")
+            markers = cv2.cvtColor(markers, cv2.COLOR_BGRA2BGR)
+
+        red = markers[:, :, 2].astype(np.int16)
+        green = markers[:, :, 1].astype(np.int16)
+
+        markers_ws = np.zeros_like(gray, dtype=np.int32)
+        markers_ws[red > 150] = 1
+        markers_ws[green > 150] = 2
+
+    object_labels = [int(l) for l in np.unique(markers_ws) if l >= 2]
+    background_pixels = int(np.sum(markers_ws == 1))
+    log(f"[INFO] Background pixels: {background_pixels}")
+    log(f"[INFO] Rotulos de objeto: {object_labels}")
+
+    # Verificação mínima para evitar resultado preto
+    if len(object_labels) == 0:
+        raise ValueError("Nenhuma marca de foreground encontrada! O usuario marcou o objeto em verde?")
+    if background_pixels == 0:
+        raise ValueError("Nenhuma marca de background encontrada! O usuario marcou o fundo em vermelho?")
+
+    # === 4️⃣ Segmentação Watershed (todos os rótulos em uma única inundação) ===
+    labels = watershed(elevation_map, markers_ws)
+
+    # === 5️⃣ Gera máscara final e aplica à imagem original ===
+    mask = (labels >= 2).astype(np.uint8) * 255
+    b, g, r = cv2.split(image)
+    segmented_rgba = cv2.merge([b, g, r, mask])
+
+    stats = {
+        "width": int(image.shape[1]),
+        "height": int(image.shape[0]),
+        "object_labels": object_labels,
+        "background_marker_pixels": background_pixels,
+        "foreground_pixels": int(np.count_nonzero(mask)),
+        "elapsed_ms": int((time.time() - started) * 1000),
+    }
+
+    write_status("success", stats=stats)
+    write_frame(FRAME_MASK, encode_png(segmented_rgba))
+
+    # === 6️⃣ Máscara indexada por rótulo: 0 = fundo, k = classe k ===
+    if with_labels:
+        label_mask = (labels - 1).clip(0, 255).astype(np.uint8)
+        write_frame(FRAME_LABELS, encode_png(label_mask))
+
+    log(f"[INFO] Segmentacao concluida em {stats['elapsed_ms']} ms")
+
+
+if __name__ == "__main__":
+    if len(sys.argv) < 3:
+        log("Uso: python interactive_object_segmentation.py <input_path> <markers_path> [--labels]")
+        sys.exit(1)
+
+    try:
+        segment(sys.argv[1], sys.argv[2], "--labels" in sys.argv[3:])
+        write_frame(FRAME_END)
+    except Exception as e:
+        log(f"[ERROR] {e}")
+        write_status("error", message=str(e))
+        write_frame(FRAME_END)
+        sys.exit(2)
@@ -0,0 +1,177 @@
+package com.example.backend.config;
+
+import com.example.backend.services.AnnotationHistoryService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Garante uma anotação por imagem, da qual o upsert do auto-save depende (ON CONFLICT (image_id)).
+ * Bases antigas podem ter linhas duplicadas (o auto-save fazia find-or-create sem trava), o que
+ * impede a criação do índice único. Nada é apagado por conta própria: com duplicadas, a
+ * aplicação não sobe até o operador rodar uma vez com annotations.merge-duplicates=true, que
+ * junta os traços de todas as linhas na mais recente, guarda o documento das outras como
+ * snapshot em annotation_revisions e só então as remove. Roda antes do servidor web aceitar
+ * requisições; com o índice já criado, não faz nada.
+ */
+@Slf4j
+@Component
+@DependsOn("entityManagerFactory")
+public class AnnotationConstraintInitializer implements InitializingBean {
+
+    private static final String INDEX = "uk_annotations_image_id";
+    private static final String BRUSH_STROKES = "brushStrokes";
+    private static final TypeReference<Map<String, Object>> DOCUMENT = new TypeReference<>() {};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AnnotationHistoryService annotationHistoryService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${annotations.merge-duplicates:false}")
+    private boolean mergeDuplicates;
+
+    public AnnotationConstraintInitializer(JdbcTemplate jdbcTemplate,
+                                           PlatformTransactionManager transactionManager,
+                                           AnnotationHistoryService annotationHistoryService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.annotationHistoryService = annotationHistoryService;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        // O ddl-auto cria a restrição com este nome quando não há duplicadas
+        if (jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, INDEX)) {
+            return;
+        }
+
+        List<Long> duplicated = jdbcTemplate.queryForList(
+                "SELECT image_id FROM annotations GROUP BY image_id HAVING COUNT(*) > 1 ORDER BY image_id", Long.class);
+        if (!duplicated.isEmpty()) {
+            if (!mergeDuplicates) {
+                throw new IllegalStateException(duplicated.size() + " imagens têm mais de uma anotação (imageIds "
+                        + preview(duplicated) + "). Resolva as duplicadas ou inicie uma vez com "
+                        + "annotations.merge-duplicates=true para juntar os traços na anotação mais recente "
+                        + "(as demais ficam arquivadas em annotation_revisions).");
+            }
+            transactionTemplate.executeWithoutResult(status -> mergeAll());
+        }
+
+        jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX + " ON annotations (image_id)");
+        log.info("Índice único de anotações por imagem criado");
+    }
+
+    private void mergeAll() {
+        // Por imagem, da mais antiga para a mais recente: a última é a que fica
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("""
+                SELECT id, image_id, version, CAST(annotation AS text) AS data
+                FROM annotations
+                WHERE image_id IN (SELECT image_id FROM annotations GROUP BY image_id HAVING COUNT(*) > 1)
+                ORDER BY image_id, COALESCE(updated_at, '-infinity'::timestamp), id
+                """);
+
+        List<Map<String, Object>> group = new ArrayList<>();
+        int archived = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            group.add(rows.get(i));
+            boolean last = i == rows.size() - 1 || !rows.get(i + 1).get("image_id").equals(rows.get(i).get("image_id"));
+            if (last) {
+                archived += mergeGroup(group);
+                group = new ArrayList<>();
+            }
+        }
+        log.warn("Anotações duplicadas juntadas: {} linhas arquivadas em annotation_revisions e removidas", archived);
+    }
+
+    /**
+     * Junta as linhas de uma imagem na última. Chaves da sobrevivente prevalecem; traços que só
+     * existem nas outras entram antes dos dela, na ordem das linhas.
+     */
+    private int mergeGroup(List<Map<String, Object>> group) {
+        Map<String, Object> survivor = group.get(group.size() - 1);
+        Long survivorId = ((Number) survivor.get("id")).longValue();
+        long survivorVersion = ((Number) survivor.get("version")).longValue();
+        Map<String, Object> current = parse((String) survivor.get("data"));
+
+        Set<Object> known = new HashSet<>(strokesOf(current));
+        List<Object> recovered = new ArrayList<>();
+        Map<String, Object> merged = new LinkedHashMap<>(current);
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        for (Map<String, Object> row : group.subList(0, group.size() - 1)) {
+            Map<String, Object> document = parse((String) row.get("data"));
+            for (Object stroke : strokesOf(document)) {
+                if (known.add(stroke)) {
+                    recovered.add(stroke);
+                }
+            }
+            document.forEach(merged::putIfAbsent);
+
+            jdbcTemplate.update("""
+                    INSERT INTO annotation_revisions (annotation_id, version, snapshot, data, created_at)
+                    VALUES (?, ?, true, CAST(? AS jsonb), ?)
+                    ON CONFLICT (annotation_id, version) DO UPDATE SET snapshot = true, data = EXCLUDED.data
+                    """, row.get("id"), row.get("version"), toJson(document), now);
+            jdbcTemplate.update("DELETE FROM annotations WHERE id = ?", row.get("id"));
+        }
+
+        if (!recovered.isEmpty()) {
+            List<Object> strokes = new ArrayList<>(recovered);
+            strokes.addAll(strokesOf(current));
+            merged.put(BRUSH_STROKES, strokes);
+        }
+        if (!merged.equals(current)) {
+            jdbcTemplate.update("UPDATE annotations SET annotation = CAST(? AS jsonb), version = ?, updated_at = ? WHERE id = ?",
+                    toJson(merged), survivorVersion + 1, now, survivorId);
+            annotationHistoryService.record(survivorId, survivorVersion + 1, current, merged);
+        }
+        log.info("Imagem {}: {} anotações duplicadas juntadas na {} ({} traços recuperados)",
+                survivor.get("image_id"), group.size() - 1, survivorId, recovered.size());
+        return group.size() - 1;
+    }
+
+    private static List<?> strokesOf(Map<String, Object> document) {
+        return document.get(BRUSH_STROKES) instanceof List<?> strokes ? strokes : List.of();
+    }
+
+    private static String preview(List<Long> ids) {
+        return ids.size() <= 20 ? ids.toString() : ids.subList(0, 20) + "...";
+    }
+
+    private Map<String, Object> parse(String json) {
+        if (json == null) {
+            return new LinkedHashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, DOCUMENT);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Documento de anotação ilegível no banco", e);
+        }
+    }
+
+    private String toJson(Map<String, Object> document) {
+        try {
+            return objectMapper.writeValueAsString(document);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.backend.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Caches em memória das leituras do editor (imagem, anotação e segmentação por imageId). As
+ * invalidações ficam nos métodos de escrita dos repositórios; o proxy transacional adia a
+ * remoção até o commit, para que uma leitura concorrente não recoloque o valor antigo.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String IMAGES = "images";
+    public static final String ANNOTATIONS = "annotations";
+    public static final String SEGMENTATIONS = "segmentations";
+
+    @Value("${cache.images.max-size:10000}")
+    private long imagesMaxSize;
+
+    @Value("${cache.annotations.max-size:2000}")
+    private long annotationsMaxSize;
+
+    // Segmentações carregam os contornos em jsonb, bem maiores que as demais entradas
+    @Value("${cache.segmentations.max-size:500}")
+    private long segmentationsMaxSize;
+
+    @Value("${cache.expire-after-write-minutes:10}")
+    private long expireAfterWriteMinutes;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.registerCustomCache(IMAGES, build(imagesMaxSize));
+        cacheManager.registerCustomCache(ANNOTATIONS, build(annotationsMaxSize));
+        cacheManager.registerCustomCache(SEGMENTATIONS, build(segmentationsMaxSize));
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> build(long maxSize) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(expireAfterWriteMinutes))
+                .recordStats()
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.backend.config;
+
+import com.example.backend.services.JobQueueService;
+import com.example.backend.services.PythonScriptRunner;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Gauges de fila e de processos: segmentações aguardando e rodando no pool, scripts Python
+     * vivos e jobs persistidos na fila. Lidos a cada coleta, sem estado próprio.
+     */
+    @Bean
+    public MeterBinder pipelineGauges(@Qualifier("segmentationExecutor") ThreadPoolTaskExecutor segmentationExecutor,
+                                      PythonScriptRunner pythonScriptRunner,
+                                      JobQueueService jobQueueService) {
+        return registry -> {
+            Gauge.builder("segmentation.queue.depth", segmentationExecutor,
+                            executor -> executor.getThreadPoolExecutor().getQueue().size())
+                    .description("Segmentações aguardando uma thread do pool")
+                    .register(registry);
+            Gauge.builder("segmentation.active", segmentationExecutor, ThreadPoolTaskExecutor::getActiveCount)
+                    .description("Segmentações em execução")
+                    .register(registry);
+            Gauge.builder("python.processes.active", pythonScriptRunner, PythonScriptRunner::getActiveCount)
+                    .description("Scripts Python em execução")
+                    .register(registry);
+            // Uma contagem no banco por coleta
+            Gauge.builder("jobs.queue.depth", jobQueueService, JobQueueService::queuedCount)
+                    .description("Jobs persistidos aguardando um worker")
+                    .register(registry);
+        };
+    }
+}
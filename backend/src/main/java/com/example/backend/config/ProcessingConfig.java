@@ -0,0 +1,38 @@
+package com.example.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+@EnableScheduling
+public class ProcessingConfig {
+
+    @Value("${processing.segmentation.threads:0}")
+    private int segmentationThreads;
+
+    @Value("${processing.segmentation.queue-capacity:32}")
+    private int segmentationQueueCapacity;
+
+    /**
+     * Pool limitado para as segmentações: a thread HTTP é liberada enquanto o script roda, e a
+     * fila cheia recusa novos pedidos em vez de acumular processos Python. Fica em threads de
+     * plataforma de propósito: é trabalho pesado (script ou superpixels no próprio processo) e o
+     * tamanho do pool é o limite de concorrência; as requisições em si rodam em threads virtuais.
+     */
+    @Bean(name = "segmentationExecutor")
+    public ThreadPoolTaskExecutor segmentationExecutor() {
+        int threads = segmentationThreads > 0 ? segmentationThreads : Runtime.getRuntime().availableProcessors();
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(segmentationQueueCapacity);
+        executor.setThreadNamePrefix("segmentation-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
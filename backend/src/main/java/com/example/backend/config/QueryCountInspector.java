@@ -0,0 +1,31 @@
+package com.example.backend.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Conta as instruções SQL preparadas pelo Hibernate na thread atual (consultas JPQL, nativas e
+ * os flushes). Instanciado pelo próprio Hibernate, por isso o contador é estático; o
+ * QueryCountFilter zera no início da requisição e publica o total no fim.
+ */
+public class QueryCountInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static int current() {
+        return COUNT.get()[0];
+    }
+
+    public static void clear() {
+        COUNT.remove();
+    }
+}
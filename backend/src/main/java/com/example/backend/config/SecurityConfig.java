@@ -34,7 +34,11 @@ public class SecurityConfig {
                         .requestMatchers("/segmented/**").permitAll()
                         .requestMatchers("/initial_markers/**").permitAll()
                         .requestMatchers("/annotation/**").permitAll()
+                        .requestMatchers("/batch/**").permitAll()
+                        .requestMatchers("/jobs/**").permitAll()
                         .requestMatchers("/api/**").permitAll()
+                        // Só na porta de gerenciamento, que escuta em localhost
+                        .requestMatchers("/actuator/**").permitAll()
 
                         .anyRequest().authenticated()
                 );
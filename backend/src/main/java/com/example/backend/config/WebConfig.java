@@ -1,23 +0,0 @@
-package com.example.backend.config;
-
-import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
-
-@Configuration
-public class WebConfig implements WebMvcConfigurer {
-
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:uploads/");
-
-        registry.addResourceHandler("/segmented/**")
-                .addResourceLocations("file:segmented/")
-                .setCachePeriod(0);
-
-        registry.addResourceHandler("/initial_markers/**")
-                .addResourceLocations("file:initial_markers/")
-                .setCachePeriod(0);
-    }
-}
\ No newline at end of file
@@ -2,14 +2,26 @@ package com.example.backend.controllers;
 
 import com.example.backend.entities.Annotation;
 import com.example.backend.entities.Image;
+import com.example.backend.interfaces.IImageService;
 import com.example.backend.repositories.AnnotationRepository;
-import com.example.backend.repositories.ImageRepository;
+import com.example.backend.services.AnnotationHistoryService;
+import com.example.backend.services.AnnotationService;
+import com.example.backend.services.DatabaseSummaryService;
+import com.example.backend.services.PipelineMetrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 
@@ -19,89 +31,98 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class AnnotationController {
     private final AnnotationRepository annotationRepository;
-    private final ImageRepository imageRepository;
+    private final AnnotationService annotationService;
+    private final AnnotationHistoryService annotationHistoryService;
+    private final IImageService imageService;
+    private final DatabaseSummaryService databaseSummaryService;
+    private final PipelineMetrics pipelineMetrics;
 
+    private static final String EMPTY_ETAG = "\"empty\"";
+
+    /**
+     * Responde com ETag derivado de id e versão. Quando o If-None-Match do cliente bate, o
+     * Spring devolve 304 sem serializar o corpo; no-cache obriga o navegador a revalidar sempre.
+     */
     @GetMapping("/{imageId}")
     public ResponseEntity<?> getAnnotationByImageId(@PathVariable Long imageId) {
-        Optional<Annotation> annotationOpt = annotationRepository.findByImageId(imageId);
+        Optional<Annotation> annotationOpt = annotationRepository.findCachedByImageId(imageId);
+        String etag = annotationOpt.map(this::etagOf).orElse(EMPTY_ETAG);
 
+        // HashMap: filePath e as datas podem ser nulos, o que Map.of não aceita
+        Map<String, Object> response = new LinkedHashMap<>();
         if (annotationOpt.isPresent()) {
             Annotation annotation = annotationOpt.get();
 
             // Criar resposta padronizada
-            Map<String, Object> response = Map.of(
-                    "id", annotation.getId(),
-                    "imageId", annotation.getImage().getId(),
-                    "annotationData", annotation.getAnnotationData(),
-                    "filePath", annotation.getFilePath(),
-                    "createdAt", annotation.getCreatedAt(),
-                    "updatedAt", annotation.getUpdatedAt()
-            );
-
-            return ResponseEntity.ok(response);
+            response.put("id", annotation.getId());
+            response.put("imageId", annotation.getImage().getId());
+            response.put("annotationData", annotation.getAnnotationData());
+            response.put("filePath", annotation.getFilePath());
+            // Também no ETag; no corpo para o frontend, que não lê cabeçalhos de resposta via CORS
+            response.put("version", annotation.getVersion());
+            response.put("createdAt", annotation.getCreatedAt());
+            response.put("updatedAt", annotation.getUpdatedAt());
         } else {
             // Retornar objeto vazio em vez de 404
-            Map<String, Object> emptyResponse = Map.of(
-                    "annotationData", Map.of("brushStrokes", java.util.Collections.emptyList()),
-                    "filePath", null,
-                    "createdAt", null,
-                    "updatedAt", null
-            );
-            return ResponseEntity.ok(emptyResponse);
+            response.put("annotationData", Map.of("brushStrokes", Collections.emptyList()));
+            response.put("filePath", null);
+            response.put("createdAt", null);
+            response.put("updatedAt", null);
         }
+
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(response);
     }
 
+    /**
+     * Merge parcial feito no banco: as chaves enviadas substituem as existentes e appendStrokes é
+     * acrescentado a brushStrokes, numa única instrução. If-Match (ETag ou número da versão)
+     * torna o save condicional; versão divergente responde 409 com a versão atual.
+     */
     @PostMapping("/{imageId}/auto-save")
     public ResponseEntity<Map<String, Object>> autoSaveAnnotation(
             @PathVariable Long imageId,
-            @RequestBody Map<String, Object> annotationData
+            @RequestBody Map<String, Object> annotationData,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
         try {
-            // 1. Busca a imagem original
-            Image image = imageRepository.findById(imageId)
-                    .orElseThrow(() -> new RuntimeException("Imagem não encontrada com ID: " + imageId));
-
-            // 2. Busca a anotação existente ou cria uma nova
-            Annotation annotation = annotationRepository.findByImageId(imageId)
-                    .orElse(new Annotation());
+            // A imagem vem do cache; valida o id e informa a base para o resumo
+            Image image = findImage(imageId);
 
-            // 3. Define os dados
-            if (annotation.getId() == null) {
-                annotation.setImage(image);
-                annotation.setCreatedAt(LocalDateTime.now());
+            // Inclui o flush e o commit, que acontecem na saída do merge transacional
+            Timer.Sample total = Timer.start();
+            Optional<AnnotationService.MergeResult> merged =
+                    annotationService.merge(imageId, annotationData, parseVersion(ifMatch));
+            total.stop(pipelineMetrics.autoSave("total"));
+            if (merged.isEmpty()) {
+                return conflict(imageId);
             }
 
-            // 4. Atualiza apenas os dados que foram enviados (merge parcial)
-            if (annotationData != null && !annotationData.isEmpty()) {
-                Map<String, Object> currentData = annotation.getAnnotationData();
-
-                if (currentData == null) {
-                    // Se não existe dados anteriores, usa os novos
-                    annotation.setAnnotationData(annotationData);
-                } else {
-                    // Faz merge dos dados (prioriza os novos)
-                    currentData.putAll(annotationData);
-                    annotation.setAnnotationData(currentData);
-                }
-            }
+            AnnotationService.MergeResult result = merged.get();
+            databaseSummaryService.annotationSaved(
+                    image.getDatabase() != null ? image.getDatabase().getId() : null, result.created());
 
-            annotation.setUpdatedAt(LocalDateTime.now());
+            log.info("✅ Auto-save realizado para imageId: {} (versão {})", imageId, result.version());
 
-            // 5. Salva no banco
-            Annotation savedAnnotation = annotationRepository.save(annotation);
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("status", "success");
+            response.put("message", "Anotação salva automaticamente");
+            response.put("savedAt", LocalDateTime.now().toString());
+            response.put("annotationId", result.annotationId());
+            response.put("version", result.version());
 
-            log.info("✅ Auto-save realizado para imageId: {}", imageId);
+            return ResponseEntity.ok()
+                    .eTag(etagOf(result.annotationId(), result.version()))
+                    .body(response);
 
-            // 6. Retorna resposta de sucesso
-            Map<String, Object> response = Map.of(
-                    "status", "success",
-                    "message", "Anotação salva automaticamente",
-                    "savedAt", LocalDateTime.now().toString(),
-                    "annotationId", savedAnnotation.getId()
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = Map.of(
+                    "status", "error",
+                    "message", e.getMessage()
             );
-
-            return ResponseEntity.ok(response);
-
+            return ResponseEntity.badRequest().body(errorResponse);
         } catch (Exception e) {
             log.error("❌ Erro no auto-save para imageId {}: {}", imageId, e.getMessage());
 
@@ -117,25 +138,32 @@ public class AnnotationController {
     @PutMapping("/{imageId}/save")
     public ResponseEntity<Map<String, Object>> saveAnnotation(
             @PathVariable Long imageId,
-            @RequestBody Map<String, Object> annotationData
+            @RequestBody Map<String, Object> annotationData,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) {
         try {
-            Image image = imageRepository.findById(imageId)
-                    .orElseThrow(() -> new RuntimeException("Imagem não encontrada com ID: " + imageId));
-
             Annotation annotation = annotationRepository.findByImageId(imageId)
                     .orElse(new Annotation());
+            boolean created = annotation.getId() == null;
 
-            if (annotation.getId() == null) {
-                annotation.setImage(image);
+            Long expectedVersion = parseVersion(ifMatch);
+            if (expectedVersion != null && !created && annotation.getVersion() != expectedVersion) {
+                return conflict(imageId);
+            }
+
+            if (created) {
+                annotation.setImage(findImage(imageId));
                 annotation.setCreatedAt(LocalDateTime.now());
             }
 
             // Substitui completamente os dados
+            Map<String, Object> previousData = created ? null : annotation.getAnnotationData();
             annotation.setAnnotationData(annotationData);
             annotation.setUpdatedAt(LocalDateTime.now());
 
             Annotation savedAnnotation = annotationRepository.save(annotation);
+            databaseSummaryService.annotationSaved(databaseIdOf(savedAnnotation), created);
+            recordHistory(savedAnnotation, previousData);
 
             log.info("💾 Salvamento manual realizado para imageId: {}", imageId);
 
@@ -143,11 +171,23 @@ public class AnnotationController {
                     "status", "success",
                     "message", "Anotação salva com sucesso",
                     "savedAt", LocalDateTime.now().toString(),
-                    "annotationId", savedAnnotation.getId()
+                    "annotationId", savedAnnotation.getId(),
+                    "version", savedAnnotation.getVersion()
             );
 
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok()
+                    .eTag(etagOf(savedAnnotation.getId(), savedAnnotation.getVersion()))
+                    .body(response);
 
+        } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+            // Outro save (ou a criação concorrente da mesma anotação) venceu entre a leitura e a escrita
+            return conflict(imageId);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = Map.of(
+                    "status", "error",
+                    "message", e.getMessage()
+            );
+            return ResponseEntity.badRequest().body(errorResponse);
         } catch (Exception e) {
             log.error("❌ Erro no salvamento manual para imageId {}: {}", imageId, e.getMessage());
 
@@ -159,4 +199,98 @@ public class AnnotationController {
             return ResponseEntity.internalServerError().body(errorResponse);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Versões guardadas no histórico, da mais recente para a mais antiga.
+     */
+    @GetMapping("/{imageId}/history")
+    public ResponseEntity<?> getHistory(@PathVariable Long imageId) {
+        return annotationRepository.findCachedByImageId(imageId)
+                .<ResponseEntity<?>>map(annotation -> ResponseEntity.ok(Map.of(
+                        "annotationId", annotation.getId(),
+                        "currentVersion", annotation.getVersion(),
+                        "versions", annotationHistoryService.listVersions(annotation.getId())
+                )))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{imageId}/history/{version}")
+    public ResponseEntity<?> getVersion(@PathVariable Long imageId, @PathVariable long version) {
+        return annotationRepository.findCachedByImageId(imageId)
+                .flatMap(annotation -> annotationHistoryService.findVersion(annotation.getId(), version))
+                .<ResponseEntity<?>>map(data -> ResponseEntity.ok(Map.of(
+                        "version", version,
+                        "annotationData", data
+                )))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Diferença entre duas versões, no formato de AnnotationDiff (set, remove, append, truncate).
+     */
+    @GetMapping("/{imageId}/history/diff")
+    public ResponseEntity<?> getDiff(@PathVariable Long imageId, @RequestParam long from, @RequestParam long to) {
+        return annotationRepository.findCachedByImageId(imageId)
+                .flatMap(annotation -> annotationHistoryService.diff(annotation.getId(), from, to))
+                .<ResponseEntity<?>>map(delta -> ResponseEntity.ok(Map.of(
+                        "from", from,
+                        "to", to,
+                        "delta", delta
+                )))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    // O save já foi confirmado; uma falha aqui só deixa um buraco, que o próximo save cobre com um snapshot
+    private void recordHistory(Annotation annotation, Map<String, Object> previousData) {
+        try {
+            annotationHistoryService.record(annotation.getId(), annotation.getVersion(), previousData, annotation.getAnnotationData());
+        } catch (Exception e) {
+            log.warn("Histórico não registrado para a anotação {}: {}", annotation.getId(), e.getMessage());
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> conflict(Long imageId) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "conflict");
+        response.put("message", "A anotação foi alterada por outro salvamento; recarregue antes de salvar.");
+        response.put("currentVersion", annotationService.currentVersion(imageId).orElse(null));
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
+    private String etagOf(Annotation annotation) {
+        return etagOf(annotation.getId(), annotation.getVersion());
+    }
+
+    private String etagOf(Long annotationId, long version) {
+        return "\"" + annotationId + "-" + version + "\"";
+    }
+
+    /**
+     * If-Match aceita o ETag devolvido pelo GET ("12-7", com ou sem aspas e W/) ou só a versão.
+     */
+    private Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        value = value.replace("\"", "");
+        try {
+            return Long.parseLong(value.substring(value.lastIndexOf('-') + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match inválido: " + ifMatch);
+        }
+    }
+
+    private Long databaseIdOf(Annotation annotation) {
+        Image image = annotation.getImage();
+        return image != null && image.getDatabase() != null ? image.getDatabase().getId() : null;
+    }
+
+    private Image findImage(Long imageId) {
+        return imageService.findImageById(imageId)
+                .orElseThrow(() -> new RuntimeException("Imagem não encontrada com ID: " + imageId));
+    }
+}
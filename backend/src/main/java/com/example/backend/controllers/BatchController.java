@@ -0,0 +1,77 @@
+package com.example.backend.controllers;
+
+import com.example.backend.entities.BatchJob;
+import com.example.backend.services.BatchSegmentationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/batch")
+@RequiredArgsConstructor
+public class BatchController {
+
+    private final BatchSegmentationService batchSegmentationService;
+
+    @PostMapping("/start")
+    public ResponseEntity<?> startBatch(@RequestParam Long databaseId,
+                                        @RequestParam(defaultValue = "false") boolean overwrite) {
+        try {
+            BatchJob job = batchSegmentationService.startBatch(databaseId, overwrite);
+            log.info("Job em lote {} criado para a base {} (sobrescrever: {})", job.getId(), databaseId, overwrite);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalArgumentException e) {
+            return errorResponse(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IllegalStateException e) {
+            return errorResponse(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<?> getBatch(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.ok(batchSegmentationService.findJob(jobId));
+        } catch (IllegalArgumentException e) {
+            return errorResponse(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @GetMapping("/findAllByDatabase")
+    public ResponseEntity<List<BatchJob>> getBatchesByDatabase(@RequestParam Long databaseId) {
+        return ResponseEntity.ok(batchSegmentationService.findJobsByDatabase(databaseId));
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<?> cancelBatch(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.ok(batchSegmentationService.cancelBatch(jobId));
+        } catch (IllegalArgumentException e) {
+            return errorResponse(HttpStatus.NOT_FOUND, e.getMessage());
+        }
+    }
+
+    @PostMapping("/{jobId}/resume")
+    public ResponseEntity<?> resumeBatch(@PathVariable Long jobId) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(batchSegmentationService.resumeBatch(jobId));
+        } catch (IllegalArgumentException e) {
+            return errorResponse(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (IllegalStateException e) {
+            return errorResponse(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> errorResponse(HttpStatus status, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", message);
+        return ResponseEntity.status(status).body(response);
+    }
+}
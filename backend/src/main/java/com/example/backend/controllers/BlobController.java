@@ -0,0 +1,74 @@
+package com.example.backend.controllers;
+
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.services.ArtifactAccessTracker;
+import com.example.backend.services.GradCamMarkerService;
+import com.example.backend.utils.BlobKeys;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serve os artefatos pelo armazenamento configurado, nas mesmas URLs que antes apontavam para
+ * os diretórios locais (/uploads, /segmented, /initial_markers).
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+public class BlobController {
+
+    private final IBlobStore blobStore;
+    private final ArtifactAccessTracker accessTracker;
+    private final GradCamMarkerService gradCamMarkerService;
+
+    @GetMapping({"/uploads/**", "/segmented/**", "/initial_markers/**"})
+    public void serve(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String key;
+        try {
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            key = BlobKeys.normalize(URLDecoder.decode(path, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+
+        if (!blobStore.exists(key) && !regenerate(key)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        accessTracker.recordAccess(key);
+
+        response.setContentType(BlobKeys.contentType(key));
+        response.setContentLengthLong(blobStore.size(key));
+        if (!key.startsWith("uploads/")) {
+            // Máscaras e marcadores são regravados com o mesmo nome a cada execução
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        }
+
+        blobStore.transferTo(key, Channels.newChannel(response.getOutputStream()));
+    }
+
+    /**
+     * Marcadores iniciais podem ter sido removidos pela evicção de disco; são refeitos na hora.
+     */
+    private boolean regenerate(String key) {
+        if (!key.startsWith(ArtifactAccessTracker.REGENERABLE_PREFIX)) {
+            return false;
+        }
+        try {
+            return gradCamMarkerService.regenerateMarkersFile(key);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Não foi possível regenerar {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -4,15 +4,20 @@ import com.example.backend.entities.Database;
 import com.example.backend.usecases.deletedatabase.DeleteDatabase;
 import com.example.backend.usecases.editdatabase.EditDatabase;
 import com.example.backend.usecases.editdatabase.EditDatabaseDTO;
+import com.example.backend.usecases.exportdatabase.ExportDatabase;
 import com.example.backend.usecases.findalldatabases.FindAllDatabases;
 import com.example.backend.usecases.findalldatabases.FindAllDatabasesDTO;
 import com.example.backend.usecases.registerdatabase.RegisterDatabase;
 import com.example.backend.usecases.registerdatabase.RegisterDatabaseDTO;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/database")
@@ -22,11 +27,17 @@ public class DatabaseController {
     private final FindAllDatabases findAllDatabases;
     private final DeleteDatabase deleteDatabase;
     private final EditDatabase editDatabase;
+    private final ExportDatabase exportDatabase;
 
     @PostMapping(value = "/register", consumes = "multipart/form-data")
-    public ResponseEntity<Database> registerDatabase(@ModelAttribute RegisterDatabaseDTO databaseDTO) {
-        Database database = registerDatabase.execute(databaseDTO.getName(), databaseDTO.getUserId(), databaseDTO.getFiles());
-        return ResponseEntity.ok(database);
+    public ResponseEntity<?> registerDatabase(@ModelAttribute RegisterDatabaseDTO databaseDTO) {
+        try {
+            Database database = registerDatabase.execute(databaseDTO.getName(), databaseDTO.getUserId(), databaseDTO.getFiles());
+            return ResponseEntity.ok(database);
+        } catch (IllegalArgumentException e) {
+            // Arquivo recusado na importação (DICOM não suportado); a mensagem traz o nome
+            return badRequest(e);
+        }
     }
 
     @GetMapping(value = "/findAll")
@@ -36,9 +47,31 @@ public class DatabaseController {
     }
 
     @PutMapping(value = "/edit", consumes = "multipart/form-data")
-    public ResponseEntity<Database> editDatabase(@ModelAttribute EditDatabaseDTO editDatabaseDTO) {
-        Database database = editDatabase.execute(editDatabaseDTO);
-        return ResponseEntity.ok(database);
+    public ResponseEntity<?> editDatabase(@ModelAttribute EditDatabaseDTO editDatabaseDTO) {
+        try {
+            Database database = editDatabase.execute(editDatabaseDTO);
+            return ResponseEntity.ok(database);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e);
+        }
+    }
+
+    /**
+     * Escreve o ZIP direto na resposta, na thread do pedido; nada é montado em memória ou em
+     * arquivo temporário.
+     */
+    @GetMapping(value = "/export/{id}")
+    public void exportDatabase(@PathVariable Long id,
+                               @RequestParam(defaultValue = "true") boolean includeImages,
+                               HttpServletResponse response) throws IOException {
+        response.setContentType("application/zip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"database_" + id + ".zip\"");
+        try {
+            exportDatabase.execute(id, includeImages, response.getOutputStream());
+        } catch (IllegalArgumentException e) {
+            response.reset();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+        }
     }
 
     @DeleteMapping(value = "/delete/{id}")
@@ -46,4 +79,11 @@ public class DatabaseController {
         deleteDatabase.execute(id);
         return ResponseEntity.noContent().build();
     }
+
+    private ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of(
+                "status", "error",
+                "message", e.getMessage()
+        ));
+    }
 }
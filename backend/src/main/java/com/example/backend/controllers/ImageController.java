@@ -1,30 +1,61 @@
 package com.example.backend.controllers;
 
+import com.example.backend.config.CacheConfig;
 import com.example.backend.entities.Image;
 import com.example.backend.entities.Segmented_Image;
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.services.ArtifactAccessTracker;
+import com.example.backend.services.ContourService;
 import com.example.backend.services.GradCamMarkerService;
+import com.example.backend.services.GrayscaleImageCache;
+import com.example.backend.services.ImageDetailsService;
+import com.example.backend.services.NavigationPrefetchService;
+import com.example.backend.services.PipelineMetrics;
+import com.example.backend.services.PythonScriptRunner;
+import com.example.backend.services.RawPixelCache;
+import com.example.backend.services.RegionGrowService;
 import com.example.backend.services.SegmentationService;
+import com.example.backend.services.SuperpixelService;
 import com.example.backend.usecases.findallimagesbydatabase.FindAllImagesByDatabase;
+import com.example.backend.usecases.findallimagesbydatabase.FindAllImagesByDatabaseDTO;
 import com.example.backend.usecases.findimagebyid.FindImageById;
+import com.example.backend.usecases.findimagedetails.FindImageDetails;
+import com.example.backend.usecases.findsegmentationcontoursbyimageid.FindSegmentationContoursByImageId;
 import com.example.backend.usecases.findsegmentationimagebyimageid.FindSegmentationImageByImageId;
+import com.example.backend.utils.MarkerLabelMap;
 import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 
 @Slf4j
 @RestController
@@ -32,9 +63,17 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class ImageController {
 
+    private static final long SEGMENT_REQUEST_MARGIN_MILLIS = 10_000;
+    private static final int MAX_DETAILS_BATCH = 500;
+
     private final FindAllImagesByDatabase findAllImagesByDatabase;
     private final FindImageById findImageById;
     private final FindSegmentationImageByImageId findSegmentationImageByImageId;
+    private final FindSegmentationContoursByImageId findSegmentationContoursByImageId;
+    private final FindImageDetails findImageDetails;
+
+    @Autowired
+    private ContourService contourService;
 
     @Autowired
     private SegmentationService segmentationService;
@@ -42,84 +81,297 @@ public class ImageController {
     @Autowired
     private GradCamMarkerService gradCamMarkerService;
 
+    @Autowired
+    private PythonScriptRunner pythonScriptRunner;
+
+    @Autowired
+    private IBlobStore blobStore;
+
+    @Autowired
+    private ArtifactAccessTracker accessTracker;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private GrayscaleImageCache grayscaleImageCache;
+
+    @Autowired
+    private RawPixelCache rawPixelCache;
+
+    @Autowired
+    private RegionGrowService regionGrowService;
+
+    @Autowired
+    private SuperpixelService superpixelService;
+
+    @Autowired
+    private NavigationPrefetchService navigationPrefetchService;
+
+    @Autowired
+    private PipelineMetrics pipelineMetrics;
+
+    @Autowired
+    @Qualifier("segmentationExecutor")
+    private TaskExecutor segmentationExecutor;
+
     @GetMapping(value = "/findAllByDatabase")
-    public ResponseEntity<List<Image>> getAllImagesByDatabase(@RequestParam Long databaseId) {
-        List<Image> images = findAllImagesByDatabase.execute(databaseId);
+    public ResponseEntity<List<FindAllImagesByDatabaseDTO>> getAllImagesByDatabase(@RequestParam Long databaseId) {
+        List<FindAllImagesByDatabaseDTO> images = findAllImagesByDatabase.execute(databaseId);
         return ResponseEntity.ok(images);
     }
 
     @GetMapping(value = "/findImageById")
     public ResponseEntity<Optional<Image>> getImageById(@RequestParam Long imageId) {
         Optional<Image> image = findImageById.execute(imageId);
+        // O editor abre a imagem por aqui; já prepara o buffer da varinha mágica e os superpixels,
+        // e as próximas imagens da base na direção da navegação
+        image.ifPresent(found -> {
+            grayscaleImageCache.warmAsync(found.getId());
+            superpixelService.warmAsync(found.getId());
+            navigationPrefetchService.opened(found);
+        });
         return ResponseEntity.ok(image);
     }
 
+    /**
+     * Varinha mágica: região 4-conectada a partir de (x, y) com valores dentro de tolerance da
+     * média em volta da semente. format=contour devolve os contornos; format=mask, a máscara da
+     * caixa da região em run-length.
+     */
+    @GetMapping("/region-grow")
+    public ResponseEntity<Map<String, Object>> regionGrow(
+            @RequestParam Long imageId,
+            @RequestParam int x,
+            @RequestParam int y,
+            @RequestParam(required = false) Integer tolerance,
+            @RequestParam(defaultValue = RegionGrowService.FORMAT_CONTOUR) String format,
+            @RequestParam(required = false) Double contourTolerance
+    ) {
+        try {
+            return ResponseEntity.ok(regionGrowService.grow(imageId, x, y, tolerance, format, contourTolerance));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Erro no crescimento de região para imageId: {}", imageId, e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Erro interno do servidor");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
+
+    /**
+     * Anotação e segmentação de várias imagens de uma vez: por lista (imageIds=1,2,3) ou por faixa
+     * da base (databaseId, afterId, limit). fields escolhe as partes: annotation, annotationData,
+     * segmentation; sem annotationData o jsonb das marcações não é lido.
+     */
+    @GetMapping("/details")
+    public ResponseEntity<Map<String, Object>> getImageDetails(
+            @RequestParam(required = false) List<Long> imageIds,
+            @RequestParam(required = false) Long databaseId,
+            @RequestParam(defaultValue = "0") Long afterId,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) Set<String> fields
+    ) {
+        Set<String> selected = fields == null || fields.isEmpty() ? ImageDetailsService.ALL_FIELDS : fields;
+        if (!ImageDetailsService.ALL_FIELDS.containsAll(selected)) {
+            return errorResponse(HttpStatus.BAD_REQUEST, "Campos válidos: " + ImageDetailsService.ALL_FIELDS);
+        }
+
+        if (imageIds != null && !imageIds.isEmpty()) {
+            if (imageIds.size() > MAX_DETAILS_BATCH) {
+                return errorResponse(HttpStatus.BAD_REQUEST, "No máximo " + MAX_DETAILS_BATCH + " imagens por pedido.");
+            }
+            return ResponseEntity.ok(findImageDetails.byIds(imageIds, selected));
+        }
+        if (databaseId == null) {
+            return errorResponse(HttpStatus.BAD_REQUEST, "Informe imageIds ou databaseId.");
+        }
+        if (limit < 1 || limit > MAX_DETAILS_BATCH) {
+            return errorResponse(HttpStatus.BAD_REQUEST, "limit deve estar entre 1 e " + MAX_DETAILS_BATCH + ".");
+        }
+        return ResponseEntity.ok(findImageDetails.byDatabase(databaseId, afterId, limit, selected));
+    }
+
     @PostMapping("/segment")
-    public ResponseEntity<Map<String, Object>> segmentImage(
+    public DeferredResult<ResponseEntity<Map<String, Object>>> segmentImage(
             @RequestParam("image") MultipartFile imageFile,
             @RequestParam("markers") MultipartFile markersFile,
-            @RequestParam("imageId") Long imageId
+            @RequestParam("imageId") Long imageId,
+            @RequestParam(value = "labels", required = false) String labels,
+            @RequestParam(value = "method", defaultValue = "watershed") String method
     ) {
-        Map<String, Object> response = new HashMap<>();
+        // Prazo do pedido um pouco maior que o do script, para o erro de timeout vir do runner
+        DeferredResult<ResponseEntity<Map<String, Object>>> deferred =
+                new DeferredResult<>(pythonScriptRunner.getTimeoutMillis() + SEGMENT_REQUEST_MARGIN_MILLIS);
+        PythonScriptRunner.ScriptJob job = pythonScriptRunner.newJob();
+        boolean superpixel = SegmentationService.METHOD_SUPERPIXEL.equalsIgnoreCase(method);
+
+        deferred.onTimeout(() -> {
+            job.cancel();
+            deferred.setErrorResult(errorResponse(HttpStatus.GATEWAY_TIMEOUT, "Tempo limite da segmentação excedido."));
+        });
+        deferred.onError(e -> {
+            // Cliente desconectou: não há quem receba o resultado
+            log.warn("Conexão encerrada durante a segmentação da imageId {}: {}", imageId, e.getMessage());
+            job.cancel();
+        });
 
+        Path imagePath;
+        Path markersPath;
+        List<MarkerLabelMap.MarkerClass> classes;
         try {
-            File uploadsDir = new File("uploads/");
-            uploadsDir.mkdirs();
+            // Entradas do script são arquivos de trabalho, apagados ao fim da segmentação
+            imagePath = Files.createTempFile("segment-", ".img");
+            markersPath = Files.createTempFile("segment-markers-", ".png");
 
-            String imagePath = Paths.get(uploadsDir.getAbsolutePath(), imageFile.getOriginalFilename()).toString();
-            String markersPath = Paths.get(uploadsDir.getAbsolutePath(), "markers_" + imageFile.getOriginalFilename()).toString();
+            Timer.Sample copy = Timer.start();
+            imageFile.transferTo(imagePath);
+            markersFile.transferTo(markersPath);
+            copy.stop(pipelineMetrics.segmentation("upload_copy", superpixel
+                    ? SegmentationService.METHOD_SUPERPIXEL : SegmentationService.METHOD_WATERSHED));
+            classes = segmentationService.parseMarkerClasses(labels);
+        } catch (IOException e) {
+            log.error("Erro ao salvar arquivos da segmentação", e);
+            deferred.setResult(errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage()));
+            return deferred;
+        } catch (IllegalArgumentException e) {
+            deferred.setResult(errorResponse(HttpStatus.BAD_REQUEST, e.getMessage()));
+            return deferred;
+        }
 
-            imageFile.transferTo(new File(imagePath));
-            markersFile.transferTo(new File(markersPath));
+        try {
+            segmentationExecutor.execute(() -> {
+                try {
+                    deferred.setResult(segment(imagePath.toString(), markersPath.toString(), imageId, classes, job,
+                            superpixel));
+                } finally {
+                    deleteQuietly(imagePath);
+                    deleteQuietly(markersPath);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            log.warn("Fila de segmentação cheia, recusando imageId {}", imageId);
+            deleteQuietly(imagePath);
+            deleteQuietly(markersPath);
+            deferred.setResult(errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Servidor ocupado, tente novamente."));
+        }
+        return deferred;
+    }
 
-            String segmentedUrl = segmentationService.runAutomaticSegmentation(imagePath, markersPath, imageId);
+    private ResponseEntity<Map<String, Object>> segment(String imagePath, String markersPath, Long imageId,
+                                                        List<MarkerLabelMap.MarkerClass> classes,
+                                                        PythonScriptRunner.ScriptJob job, boolean superpixel) {
+        try {
+            // method=superpixel propaga os marcadores no grafo de superpixels, sem o script Python
+            SegmentationService.SegmentationResult result = superpixel
+                    ? segmentationService.runSuperpixelSegmentation(imagePath, markersPath, imageId, classes)
+                    : segmentationService.runAutomaticSegmentation(imagePath, markersPath, imageId, classes, job);
 
+            Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
-            response.put("segmentedImageUrl", segmentedUrl);
+            response.put("segmentedImageUrl", result.getSegmentedUrl());
+            response.put("labelsUrl", result.getLabelsUrl());
+            response.put("labels", result.getLegend());
+            response.put("stats", result.getStats());
             return ResponseEntity.ok(response);
 
-        } catch (IOException | InterruptedException e) {
-            e.printStackTrace();
-            response.put("status", "error");
-            response.put("message", e.getMessage());
-            return ResponseEntity.internalServerError().body(response);
-        } catch (IllegalArgumentException e) {
-            response.put("status", "error");
-            response.put("message", e.getMessage());
-            return ResponseEntity.badRequest().body(response);
+        } catch (PythonScriptRunner.ScriptTimeoutException e) {
+            log.warn("Segmentação da imageId {} excedeu o tempo limite", imageId);
+            return errorResponse(HttpStatus.GATEWAY_TIMEOUT, e.getMessage());
+        } catch (CancellationException e) {
+            log.info("Segmentação da imageId {} cancelada", imageId);
+            return errorResponse(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return errorResponse(HttpStatus.SERVICE_UNAVAILABLE, "Segmentação interrompida.");
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                return errorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+            log.error("Erro na segmentação da imageId {}", imageId, e);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Não foi possível remover o arquivo temporário {}: {}", path, e.getMessage());
         }
     }
 
+    private ResponseEntity<Map<String, Object>> errorResponse(HttpStatus status, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", message);
+        return ResponseEntity.status(status).body(response);
+    }
+
+    @GetMapping("/subprocess-stats")
+    public ResponseEntity<Map<String, Object>> getSubprocessStats() {
+        return ResponseEntity.ok(pythonScriptRunner.getStats());
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        for (String name : List.of(CacheConfig.IMAGES, CacheConfig.ANNOTATIONS, CacheConfig.SEGMENTATIONS)) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache != null && cache.getNativeCache() instanceof com.github.benmanes.caffeine.cache.Cache<?, ?> caffeine) {
+                CacheStats stats = caffeine.stats();
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("size", caffeine.estimatedSize());
+                entry.put("hits", stats.hitCount());
+                entry.put("misses", stats.missCount());
+                entry.put("hitRate", stats.hitRate());
+                entry.put("evictions", stats.evictionCount());
+                response.put(name, entry);
+            }
+        }
+
+        CacheStats grayscale = grayscaleImageCache.stats();
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("hits", grayscale.hitCount());
+        entry.put("misses", grayscale.missCount());
+        entry.put("hitRate", grayscale.hitRate());
+        entry.put("evictions", grayscale.evictionCount());
+        response.put("grayscale", entry);
+
+        CacheStats raw = rawPixelCache.stats();
+        Map<String, Object> rawEntry = new LinkedHashMap<>();
+        rawEntry.put("hits", raw.hitCount());
+        rawEntry.put("misses", raw.missCount());
+        rawEntry.put("hitRate", raw.hitRate());
+        rawEntry.put("evictions", raw.evictionCount());
+        response.put("rawPixels", rawEntry);
+        return ResponseEntity.ok(response);
+    }
+
     @PostMapping("/generate-initial-markers")
     public ResponseEntity<Map<String, Object>> generateInitialMarkers(
             @RequestParam("image") MultipartFile imageFile,
             @RequestParam("imageId") Long imageId
     ) {
         Map<String, Object> response = new HashMap<>();
-        File tempFile = null;
 
         try {
-            // Criar diretório temporário
-            File uploadsDir = new File("uploads/");
-            uploadsDir.mkdirs();
-
-            // Salvar imagem temporariamente
-            String originalFilename = imageFile.getOriginalFilename();
-            String fileExtension = "";
-            if (originalFilename != null && originalFilename.contains(".")) {
-                fileExtension = originalFilename.substring(originalFilename.lastIndexOf("."));
+            // Decodifica direto do upload, sem arquivo temporário
+            BufferedImage image;
+            try (InputStream inputStream = imageFile.getInputStream()) {
+                image = ImageIO.read(inputStream);
+            }
+            if (image == null) {
+                throw new IllegalArgumentException("Formato de imagem não suportado: " + imageFile.getOriginalFilename());
             }
-
-            String imagePath = Paths.get(uploadsDir.getAbsolutePath(),
-                    "temp_" + imageId + "_" + System.currentTimeMillis() + fileExtension).toString();
-
-            tempFile = new File(imagePath);
-            imageFile.transferTo(tempFile);
-            log.info("Imagem temporária salva em: {}", imagePath);
 
             // Gerar marcadores iniciais
             GradCamMarkerService.GradCamResult result =
-                    gradCamMarkerService.generateInitialMarkers(imagePath, imageId);
+                    gradCamMarkerService.generateInitialMarkers(image, imageId);
 
             response.put("status", "success");
             response.put("markersUrl", result.getMarkersUrl());
@@ -128,7 +380,7 @@ public class ImageController {
 
             return ResponseEntity.ok(response);
 
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             log.error("Erro ao gerar marcadores iniciais", e);
             response.put("status", "error");
             response.put("message", e.getMessage());
@@ -143,32 +395,23 @@ public class ImageController {
             response.put("status", "error");
             response.put("message", "Erro interno do servidor: " + e.getMessage());
             return ResponseEntity.internalServerError().body(response);
-        } finally {
-            // Limpar arquivo temporário
-            if (tempFile != null && tempFile.exists()) {
-                boolean deleted = tempFile.delete();
-                if (deleted) {
-                    log.info("Arquivo temporário removido: {}", tempFile.getAbsolutePath());
-                } else {
-                    log.warn("Não foi possível remover arquivo temporário: {}", tempFile.getAbsolutePath());
-                }
-            }
         }
     }
 
     @GetMapping("/initial-markers/{filename}")
-    public ResponseEntity<Resource> getInitialMarkers(@PathVariable String filename) {
+    public ResponseEntity<StreamingResponseBody> getInitialMarkers(@PathVariable String filename) {
         try {
-            Path filePath = Paths.get("initial_markers").resolve(filename).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
-
-            if (resource.exists() && resource.isReadable()) {
-                return ResponseEntity.ok()
-                        .contentType(MediaType.IMAGE_PNG)
-                        .body(resource);
-            } else {
+            String key = "initial_markers/" + filename;
+            // Removido pela evicção de disco: refaz a partir da imagem original
+            if (!blobStore.exists(key) && !gradCamMarkerService.regenerateMarkersFile(key)) {
                 return ResponseEntity.notFound().build();
             }
+            accessTracker.recordAccess(key);
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .contentLength(blobStore.size(key))
+                    .body(out -> blobStore.transferTo(key, Channels.newChannel(out)));
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
@@ -186,6 +429,8 @@ public class ImageController {
                 response.put("id", segmentedImage.getId());
                 response.put("imageId", segmentedImage.getImage().getId());
                 response.put("segmentedImageUrl", segmentedImage.getFile_path());
+                response.put("labelsUrl", segmentedImage.getLabelsFilePath());
+                response.put("labels", segmentedImage.getLabelLegend());
                 response.put("createdAt", segmentedImage.getCreatedAt());
                 response.put("updatedAt", segmentedImage.getUpdatedAt());
 
@@ -205,4 +450,36 @@ public class ImageController {
             return ResponseEntity.internalServerError().body(errorResponse);
         }
     }
+
+    @GetMapping(value = "/findSegmentationContoursByImageId")
+    public ResponseEntity<?> getSegmentationContoursByImageId(
+            @RequestParam Long imageId,
+            @RequestParam(required = false) Double tolerance,
+            @RequestParam(defaultValue = "json") String format
+    ) {
+        try {
+            Optional<Map<String, Object>> contoursOpt = findSegmentationContoursByImageId.execute(imageId, tolerance);
+
+            if (contoursOpt.isEmpty()) {
+                Map<String, Object> emptyResponse = new HashMap<>();
+                emptyResponse.put("contours", List.of());
+                emptyResponse.put("exists", false);
+                return ResponseEntity.ok(emptyResponse);
+            }
+
+            if ("binary".equalsIgnoreCase(format)) {
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .body(contourService.encodeBinary(contoursOpt.get()));
+            }
+
+            return ResponseEntity.ok(contoursOpt.get());
+        } catch (Exception e) {
+            log.error("Erro ao buscar contornos para imageId: {}", imageId, e);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("error", "Erro interno do servidor");
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.internalServerError().body(errorResponse);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,119 @@
+package com.example.backend.controllers;
+
+import com.example.backend.entities.ProcessingJob;
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.services.JobQueueService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Versão enfileirada de /image/segment e /image/generate-initial-markers: o pedido só grava os
+ * arquivos e cria o job; qualquer nó com workers ativos o executa. O cliente acompanha pelo
+ * GET /jobs/{id}.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/jobs")
+@RequiredArgsConstructor
+public class JobController {
+
+    private static final String JOB_UPLOAD_DIR = "uploads/jobs/";
+
+    private final JobQueueService jobQueueService;
+    private final IBlobStore blobStore;
+
+    @PostMapping("/segment")
+    public ResponseEntity<Map<String, Object>> enqueueSegmentation(
+            @RequestParam("image") MultipartFile imageFile,
+            @RequestParam("markers") MultipartFile markersFile,
+            @RequestParam("imageId") Long imageId,
+            @RequestParam(value = "labels", required = false) String labels
+    ) {
+        try {
+            // Nomes únicos: o job roda depois do pedido e não pode ter os arquivos sobrescritos
+            String prefix = UUID.randomUUID().toString();
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("imageKey", store(imageFile, prefix + "_" + imageFile.getOriginalFilename()));
+            payload.put("markersKey", store(markersFile, "markers_" + prefix + "_" + imageFile.getOriginalFilename()));
+            payload.put("labels", labels);
+
+            ProcessingJob job = jobQueueService.enqueue(ProcessingJob.TYPE_SEGMENTATION, imageId, payload);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobResponse(job));
+        } catch (IOException e) {
+            log.error("Erro ao enfileirar segmentação", e);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    @PostMapping("/initial-markers")
+    public ResponseEntity<Map<String, Object>> enqueueInitialMarkers(
+            @RequestParam("image") MultipartFile imageFile,
+            @RequestParam("imageId") Long imageId
+    ) {
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("imageKey", store(imageFile, UUID.randomUUID() + "_" + imageFile.getOriginalFilename()));
+
+            ProcessingJob job = jobQueueService.enqueue(ProcessingJob.TYPE_INITIAL_MARKERS, imageId, payload);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(jobResponse(job));
+        } catch (IOException e) {
+            log.error("Erro ao enfileirar geração de marcadores", e);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable Long jobId) {
+        Optional<ProcessingJob> jobOpt = jobQueueService.findJob(jobId);
+        if (jobOpt.isEmpty()) {
+            return errorResponse(HttpStatus.NOT_FOUND, "Job não encontrado com ID: " + jobId);
+        }
+        return ResponseEntity.ok(jobResponse(jobOpt.get()));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(jobQueueService.getStats());
+    }
+
+    private String store(MultipartFile file, String filename) throws IOException {
+        // No armazenamento compartilhado, qualquer nó consegue ler a entrada do job
+        String key = JOB_UPLOAD_DIR + filename;
+        try (InputStream in = file.getInputStream()) {
+            blobStore.put(key, in, file.getSize(), file.getContentType());
+        }
+        return key;
+    }
+
+    private Map<String, Object> jobResponse(ProcessingJob job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", job.getId());
+        response.put("type", job.getType());
+        response.put("state", job.getState());
+        response.put("imageId", job.getImageId());
+        response.put("attempts", job.getAttempts());
+        response.put("result", job.getResult());
+        response.put("message", job.getErrorMessage());
+        response.put("createdAt", job.getCreatedAt());
+        response.put("updatedAt", job.getUpdatedAt());
+        return response;
+    }
+
+    private ResponseEntity<Map<String, Object>> errorResponse(HttpStatus status, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "error");
+        response.put("message", message);
+        return ResponseEntity.status(status).body(response);
+    }
+}
@@ -14,7 +14,8 @@ import java.util.Map;
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 @Getter
 @Setter
-@Table(name = "annotations")
+@Table(name = "annotations",
+        uniqueConstraints = @UniqueConstraint(name = "uk_annotations_image_id", columnNames = "image_id"))
 public class Annotation {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -37,6 +38,11 @@ public class Annotation {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Primitivo: linhas antigas recebem 0 pelo default e o Spring Data não as confunde com novas
+    @Version
+    @Column(name = "version", columnDefinition = "bigint default 0 not null")
+    private long version;
+
     public Annotation(Image image, String filePath) {
         this.image = image;
         this.filePath = filePath;
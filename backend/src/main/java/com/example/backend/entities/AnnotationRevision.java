@@ -0,0 +1,54 @@
+package com.example.backend.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Uma versão do histórico de uma anotação: o documento inteiro (snapshot) ou só a diferença
+ * para a versão anterior (delta, no formato de AnnotationDiff).
+ */
+@Entity
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Getter
+@Setter
+@Table(name = "annotation_revisions",
+        uniqueConstraints = @UniqueConstraint(name = "uk_annotation_revisions_version", columnNames = {"annotation_id", "version"}))
+public class AnnotationRevision {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Sem chave estrangeira: as remoções em massa apagam o histórico antes da anotação
+    @Column(name = "annotation_id", nullable = false)
+    private Long annotationId;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    @Column(name = "snapshot", nullable = false)
+    private boolean snapshot;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "data", columnDefinition = "jsonb")
+    private Map<String, Object> data;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public AnnotationRevision(Long annotationId, long version, boolean snapshot, Map<String, Object> data) {
+        this.annotationId = annotationId;
+        this.version = version;
+        this.snapshot = snapshot;
+        this.data = data;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public AnnotationRevision() {}
+}
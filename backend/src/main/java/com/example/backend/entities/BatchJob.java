@@ -0,0 +1,105 @@
+package com.example.backend.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Getter
+@Setter
+@Table(name = "batch_jobs")
+public class BatchJob {
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "database_id")
+    private Long databaseId;
+
+    @Column(name = "status")
+    private String status;
+
+    @Column(name = "total_images")
+    private int totalImages;
+
+    @Column(name = "processed_images")
+    private int processedImages;
+
+    @Column(name = "failed_images")
+    private int failedImages;
+
+    // Imagens que já tinham anotação, segmentação ou edição e foram preservadas
+    @Column(name = "skipped_images", columnDefinition = "integer default 0 not null")
+    private int skippedImages;
+
+    // Sem a flag, o lote só pré-anota imagens ainda não trabalhadas
+    @Column(name = "overwrite", columnDefinition = "boolean default false not null")
+    private boolean overwrite;
+
+    // O checkpoint passa das imagens que falharam; elas ficam aqui e são tentadas de novo no fim
+    // da execução e a cada retomada
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "failed_image_ids", columnDefinition = "jsonb")
+    private List<Long> failedImageIds = new ArrayList<>();
+
+    // Checkpoint: as imagens são processadas em ordem de id, tudo até aqui já foi gravado
+    @Column(name = "last_image_id")
+    private Long lastImageId;
+
+    // Tempo efetivo de processamento, somado entre execuções retomadas
+    @Column(name = "elapsed_millis")
+    private long elapsedMillis;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public BatchJob(Long databaseId, boolean overwrite) {
+        this.databaseId = databaseId;
+        this.overwrite = overwrite;
+        this.status = STATUS_QUEUED;
+        this.lastImageId = 0L;
+    }
+
+    public BatchJob() {
+
+    }
+
+    public double getImagesPerSecond() {
+        int handled = processedImages + failedImages;
+        return elapsedMillis > 0 ? Math.round(handled * 100_000.0 / elapsedMillis) / 100.0 : 0.0;
+    }
+
+    public boolean hasFailedImages() {
+        return failedImageIds != null && !failedImageIds.isEmpty();
+    }
+
+    public boolean isActive() {
+        return STATUS_QUEUED.equals(status) || STATUS_RUNNING.equals(status);
+    }
+}
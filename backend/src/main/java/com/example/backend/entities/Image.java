@@ -4,8 +4,11 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Entity
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
@@ -28,6 +31,37 @@ public class Image {
     @Column(name = "edited")
     private Boolean edited = false;
 
+    // Metadados lidos do cabeçalho no upload, para o cliente montar o canvas sem baixar a imagem
+    @Column(name = "width")
+    private Integer width;
+
+    @Column(name = "height")
+    private Integer height;
+
+    @Column(name = "bit_depth")
+    private Integer bitDepth;
+
+    @Column(name = "format", length = 16)
+    private String format;
+
+    @Column(name = "size_bytes")
+    private Long sizeBytes;
+
+    // SHA-256 em hexadecimal do arquivo original
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Arquivo original quando filePath é uma versão derivada (DICOM: o .dcm de 16 bits, e filePath o PNG janelado)
+    @Column(name = "source_file_path")
+    @JsonProperty("source_file_path")
+    private String sourceFilePath;
+
+    // Atributos do arquivo original (janela, rescale, modalidade...)
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "source_metadata", columnDefinition = "jsonb")
+    @JsonProperty("source_metadata")
+    private Map<String, Object> sourceMetadata;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
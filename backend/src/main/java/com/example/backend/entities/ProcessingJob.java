@@ -0,0 +1,86 @@
+package com.example.backend.entities;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Entity
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Getter
+@Setter
+@Table(name = "processing_jobs", indexes = {
+        @Index(name = "idx_processing_jobs_state_available", columnList = "state, available_at")
+})
+public class ProcessingJob {
+    public static final String TYPE_SEGMENTATION = "SEGMENTATION";
+    public static final String TYPE_INITIAL_MARKERS = "INITIAL_MARKERS";
+
+    public static final String STATE_QUEUED = "QUEUED";
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_DONE = "DONE";
+    public static final String STATE_FAILED = "FAILED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "type")
+    private String type;
+
+    @Column(name = "state")
+    private String state;
+
+    @Column(name = "image_id")
+    private Long imageId;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "payload", columnDefinition = "jsonb")
+    private Map<String, Object> payload;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "result", columnDefinition = "jsonb")
+    private Map<String, Object> result;
+
+    @Column(name = "attempts")
+    private int attempts;
+
+    @Column(name = "max_attempts")
+    private int maxAttempts;
+
+    // Dono do lease: o job só pode ser concluído por quem o reivindicou
+    @Column(name = "lease_owner")
+    private String leaseOwner;
+
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(name = "available_at")
+    private LocalDateTime availableAt;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public ProcessingJob(String type, Long imageId, Map<String, Object> payload, int maxAttempts) {
+        this.type = type;
+        this.imageId = imageId;
+        this.payload = payload;
+        this.maxAttempts = maxAttempts;
+        this.state = STATE_QUEUED;
+    }
+
+    public ProcessingJob() {
+
+    }
+}
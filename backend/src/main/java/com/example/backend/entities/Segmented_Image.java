@@ -1,11 +1,16 @@
 package com.example.backend.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
 
 @Entity
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
@@ -24,6 +29,18 @@ public class Segmented_Image {
     @Column(name = "file_path")
     private String file_path;
 
+    @Column(name = "labels_file_path")
+    private String labelsFilePath;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "label_legend", columnDefinition = "jsonb")
+    private List<Map<String, Object>> labelLegend;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "contours", columnDefinition = "jsonb")
+    @JsonIgnore
+    private Map<String, Object> contours;
+
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
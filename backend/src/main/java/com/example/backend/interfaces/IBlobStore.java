@@ -0,0 +1,58 @@
+package com.example.backend.interfaces;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento dos artefatos (uploads, máscaras segmentadas, marcadores). As chaves são os
+ * mesmos caminhos relativos já gravados no banco, por exemplo "uploads/abc.png" ou
+ * "segmented/segmented_x.png"; cada implementação decide onde os bytes ficam de fato.
+ */
+public interface IBlobStore {
+
+    void put(String key, InputStream data, long length, String contentType) throws IOException;
+
+    void put(String key, byte[] data, String contentType) throws IOException;
+
+    InputStream get(String key) throws IOException;
+
+    boolean exists(String key);
+
+    long size(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * Copia o conteúdo para o canal de saída. A implementação local usa FileChannel.transferTo,
+     * que o sistema operacional resolve sem passar pelos buffers da JVM.
+     */
+    long transferTo(String key, WritableByteChannel target) throws IOException;
+
+    /**
+     * Arquivo local com o conteúdo da chave, para ferramentas que só aceitam caminho (o script
+     * Python). No disco local é o próprio arquivo; nos demais é uma cópia temporária apagada no close.
+     */
+    LocalCopy openLocal(String key) throws IOException;
+
+    /**
+     * Lista as chaves sob um prefixo ("segmented/", "uploads/"...). O stream deve ser fechado.
+     */
+    Stream<BlobInfo> list(String prefix) throws IOException;
+
+    record BlobInfo(String key, long size, Instant lastModified) {
+    }
+
+    record LocalCopy(Path path, boolean temporary) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            if (temporary) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.backend.interfaces;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface IDatasetExportService {
+    void exportDatabase(Long databaseId, boolean includeImages, OutputStream out) throws IOException;
+}
@@ -0,0 +1,11 @@
+package com.example.backend.interfaces;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface IImageDetailsService {
+    List<Map<String, Object>> findDetails(Collection<Long> imageIds, Set<String> fields);
+    List<Long> findImageIdsByDatabase(Long databaseId, Long afterId, int limit);
+}
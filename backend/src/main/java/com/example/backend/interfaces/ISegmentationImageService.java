@@ -2,8 +2,11 @@ package com.example.backend.interfaces;
 
 import com.example.backend.entities.Segmented_Image;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.Optional;
 
 public interface ISegmentationImageService {
     Optional<Segmented_Image> findSegmentationImageByImageId(Long imageId);
+    Optional<Map<String, Object>> findSegmentationContoursByImageId(Long imageId, Double tolerance) throws IOException;
 }
@@ -1,10 +1,145 @@
 package com.example.backend.repositories;
 
+import com.example.backend.config.CacheConfig;
 import com.example.backend.entities.Annotation;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AnnotationRepository extends JpaRepository<Annotation, Integer> {
     Optional<Annotation> findByImageId(Long imageId);
+
+    /**
+     * Leitura do editor, servida do cache. Quem vai alterar a anotação usa findByImageId.
+     */
+    @Cacheable(cacheNames = CacheConfig.ANNOTATIONS, key = "#p0")
+    @Query("SELECT a FROM Annotation a WHERE a.image.id = :imageId")
+    Optional<Annotation> findCachedByImageId(@Param("imageId") Long imageId);
+
+    /**
+     * Upsert atômico do auto-save: junta as chaves enviadas às existentes (jsonb ||) e acrescenta
+     * os traços de append ao fim de brushStrokes, tudo numa instrução. Com expectedVersion, só
+     * atualiza se a versão bater; sem linha de retorno, houve conflito.
+     * Retorna [id, version, inserted, documento gravado, documento anterior, versão anterior]. O
+     * anterior vem do snapshot do início da instrução, sem travar a linha: se outro save entrou
+     * antes do upsert, a versão anterior não é version - 1.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.ANNOTATIONS, key = "#p0")
+    @Query(value = """
+            WITH previous AS (
+                SELECT CAST(annotation AS text) AS data, version FROM annotations WHERE image_id = :imageId
+            )
+            INSERT INTO annotations (image_id, annotation, created_at, updated_at, version)
+            VALUES (:imageId,
+                    CASE WHEN jsonb_array_length(CAST(:append AS jsonb)) = 0 THEN CAST(:patch AS jsonb)
+                         ELSE jsonb_set(CAST(:patch AS jsonb), '{brushStrokes}',
+                              COALESCE(CAST(:patch AS jsonb) -> 'brushStrokes', '[]'::jsonb) || CAST(:append AS jsonb))
+                    END,
+                    :now, :now, 0)
+            ON CONFLICT (image_id) DO UPDATE SET
+                annotation = CASE WHEN jsonb_array_length(CAST(:append AS jsonb)) = 0
+                                  THEN COALESCE(annotations.annotation, '{}'::jsonb) || CAST(:patch AS jsonb)
+                                  ELSE jsonb_set(COALESCE(annotations.annotation, '{}'::jsonb) || CAST(:patch AS jsonb), '{brushStrokes}',
+                                       COALESCE((COALESCE(annotations.annotation, '{}'::jsonb) || CAST(:patch AS jsonb)) -> 'brushStrokes', '[]'::jsonb)
+                                       || CAST(:append AS jsonb))
+                             END,
+                updated_at = :now,
+                version = annotations.version + 1
+            WHERE CAST(:expectedVersion AS bigint) IS NULL OR annotations.version = CAST(:expectedVersion AS bigint)
+            RETURNING id, version, (xmax = 0) AS inserted, CAST(annotation AS text),
+                      (SELECT data FROM previous), (SELECT version FROM previous)
+            """, nativeQuery = true)
+    List<Object[]> mergeAnnotationData(@Param("imageId") Long imageId,
+                                       @Param("patch") String patch,
+                                       @Param("append") String append,
+                                       @Param("expectedVersion") Long expectedVersion,
+                                       @Param("now") LocalDateTime now);
+
+    /**
+     * Escrita do lote: substitui o documento e o arquivo de marcadores só se a anotação ainda
+     * estiver na versão lida (expectedVersion) ou, com expectedVersion nulo, só se a imagem ainda
+     * não tiver anotação. Sem linha de retorno, um auto-save passou na frente.
+     * Retorna [id, version, inserted, documento anterior, versão anterior].
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.ANNOTATIONS, key = "#p0")
+    @Query(value = """
+            WITH previous AS (
+                SELECT CAST(annotation AS text) AS data, version FROM annotations WHERE image_id = :imageId
+            )
+            INSERT INTO annotations (image_id, annotation, file_path, created_at, updated_at, version)
+            VALUES (:imageId, CAST(:data AS jsonb), :filePath, :now, :now, 0)
+            ON CONFLICT (image_id) DO UPDATE SET
+                annotation = EXCLUDED.annotation,
+                file_path = EXCLUDED.file_path,
+                updated_at = EXCLUDED.updated_at,
+                version = annotations.version + 1
+            WHERE annotations.version = CAST(:expectedVersion AS bigint)
+            RETURNING id, version, (xmax = 0) AS inserted,
+                      (SELECT data FROM previous), (SELECT version FROM previous)
+            """, nativeQuery = true)
+    List<Object[]> replaceAnnotationData(@Param("imageId") Long imageId,
+                                         @Param("data") String data,
+                                         @Param("filePath") String filePath,
+                                         @Param("expectedVersion") Long expectedVersion,
+                                         @Param("now") LocalDateTime now);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.ANNOTATIONS, key = "#p0.image.id", condition = "#p0.image != null")
+    <S extends Annotation> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.ANNOTATIONS, allEntries = true)
+    <S extends Annotation> List<S> saveAll(Iterable<S> entities);
+
+    List<Annotation> findAllByImageIdIn(Collection<Long> imageIds);
+
+    /**
+     * Anotações sem o annotationData: [id, imageId, filePath, createdAt, updatedAt].
+     */
+    @Query("SELECT a.id, a.image.id, a.filePath, a.createdAt, a.updatedAt FROM Annotation a WHERE a.image.id IN :imageIds")
+    List<Object[]> findHeadersByImageIdIn(@Param("imageIds") Collection<Long> imageIds);
+
+    /**
+     * Por base: [databaseId, anotações, última atualização].
+     */
+    @Query("SELECT a.image.database.id, COUNT(a), MAX(a.updatedAt) FROM Annotation a GROUP BY a.image.database.id")
+    List<Object[]> summarizeByDatabase();
+
+    @Query("""
+            SELECT a.image.database.id, COUNT(a), MAX(a.updatedAt) FROM Annotation a
+            WHERE a.image.database.id = :databaseId GROUP BY a.image.database.id
+            """)
+    List<Object[]> summarizeByDatabaseId(@Param("databaseId") Long databaseId);
+
+    Optional<Annotation> findFirstByFilePathIn(Collection<String> filePaths);
+
+    @Query("SELECT a.filePath FROM Annotation a WHERE a.filePath IN :paths")
+    List<String> findFilePathsIn(@Param("paths") Collection<String> paths);
+
+    @Query("SELECT a.filePath FROM Annotation a WHERE a.image.database.id = :databaseId AND a.filePath IS NOT NULL")
+    List<String> findFilePathsByDatabaseId(@Param("databaseId") Long databaseId);
+
+    @Query("SELECT a.filePath FROM Annotation a WHERE a.image.id IN :imageIds AND a.filePath IS NOT NULL")
+    List<String> findFilePathsByImageIdIn(@Param("imageIds") Collection<Long> imageIds);
+
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.ANNOTATIONS, allEntries = true)
+    @Query("DELETE FROM Annotation a WHERE a.image.id IN (SELECT i.id FROM Image i WHERE i.database.id = :databaseId)")
+    int deleteAllByDatabaseIdInBulk(@Param("databaseId") Long databaseId);
+
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.ANNOTATIONS, allEntries = true)
+    @Query("DELETE FROM Annotation a WHERE a.image.id IN :imageIds")
+    int deleteAllByImageIdInBulk(@Param("imageIds") Collection<Long> imageIds);
 }
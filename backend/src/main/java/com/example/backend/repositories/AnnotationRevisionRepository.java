@@ -0,0 +1,52 @@
+package com.example.backend.repositories;
+
+import com.example.backend.entities.AnnotationRevision;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface AnnotationRevisionRepository extends JpaRepository<AnnotationRevision, Long> {
+
+    boolean existsByAnnotationIdAndVersion(Long annotationId, long version);
+
+    /**
+     * Snapshot mais recente até a versão pedida: ponto de partida para reconstruí-la.
+     */
+    Optional<AnnotationRevision> findFirstByAnnotationIdAndSnapshotTrueAndVersionLessThanEqualOrderByVersionDesc(
+            Long annotationId, long version);
+
+    List<AnnotationRevision> findAllByAnnotationIdAndVersionBetweenOrderByVersionAsc(
+            Long annotationId, long fromVersion, long toVersion);
+
+    /**
+     * Versões disponíveis sem o conteúdo: [version, snapshot, createdAt].
+     */
+    @Query("""
+            SELECT r.version, r.snapshot, r.createdAt FROM AnnotationRevision r
+            WHERE r.annotationId = :annotationId ORDER BY r.version DESC
+            """)
+    List<Object[]> findHeadersByAnnotationId(@Param("annotationId") Long annotationId);
+
+    @Modifying
+    @Query("DELETE FROM AnnotationRevision r WHERE r.annotationId = :annotationId AND r.version < :version")
+    int deleteByAnnotationIdAndVersionLessThan(@Param("annotationId") Long annotationId, @Param("version") long version);
+
+    @Modifying
+    @Query("""
+            DELETE FROM AnnotationRevision r WHERE r.annotationId IN
+                (SELECT a.id FROM Annotation a WHERE a.image.database.id = :databaseId)
+            """)
+    int deleteAllByDatabaseIdInBulk(@Param("databaseId") Long databaseId);
+
+    @Modifying
+    @Query("""
+            DELETE FROM AnnotationRevision r WHERE r.annotationId IN
+                (SELECT a.id FROM Annotation a WHERE a.image.id IN :imageIds)
+            """)
+    int deleteAllByImageIdInBulk(@Param("imageIds") Collection<Long> imageIds);
+}
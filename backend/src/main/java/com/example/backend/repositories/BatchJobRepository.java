@@ -0,0 +1,16 @@
+package com.example.backend.repositories;
+
+import com.example.backend.entities.BatchJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface BatchJobRepository extends JpaRepository<BatchJob, Long> {
+    List<BatchJob> findAllByStatusInOrderByIdAsc(Collection<String> statuses);
+
+    List<BatchJob> findAllByDatabaseIdOrderByIdDesc(Long databaseId);
+
+    Optional<BatchJob> findFirstByDatabaseIdAndStatusIn(Long databaseId, Collection<String> statuses);
+}
@@ -2,9 +2,16 @@ package com.example.backend.repositories;
 
 import com.example.backend.entities.Database;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.Optional;
 
 public interface DatabaseRepository extends JpaRepository<Database,Integer> {
     Optional<Database> findByName(String name);
+
+    @Modifying
+    @Query("DELETE FROM Database d WHERE d.id = :id")
+    int deleteByIdInBulk(@Param("id") Long id);
 }
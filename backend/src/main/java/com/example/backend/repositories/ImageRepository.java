@@ -1,11 +1,129 @@
 package com.example.backend.repositories;
 
+import com.example.backend.config.CacheConfig;
 import com.example.backend.entities.Image;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ImageRepository extends JpaRepository<Image, Long> {
     List<Image> findAllByDatabaseId(Long databaseId);
-}
 
+    List<Image> findByDatabaseIdAndIdGreaterThanOrderByIdAsc(Long databaseId, Long id, Pageable pageable);
+
+    long countByDatabaseId(Long databaseId);
+
+    @Query("SELECT i.id FROM Image i WHERE i.database.id = :databaseId AND i.id > :afterId ORDER BY i.id")
+    List<Long> findIdsByDatabaseIdAfter(@Param("databaseId") Long databaseId, @Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT i.id FROM Image i WHERE i.database.id = :databaseId AND i.id < :beforeId ORDER BY i.id DESC")
+    List<Long> findIdsByDatabaseIdBefore(@Param("databaseId") Long databaseId, @Param("beforeId") Long beforeId, Pageable pageable);
+
+    /**
+     * Por base: [databaseId, imagens, editadas, última atualização].
+     */
+    @Query("""
+            SELECT i.database.id, COUNT(i), SUM(CASE WHEN i.edited = true THEN 1 ELSE 0 END), MAX(i.updatedAt)
+            FROM Image i GROUP BY i.database.id
+            """)
+    List<Object[]> summarizeByDatabase();
+
+    @Query("""
+            SELECT i.database.id, COUNT(i), SUM(CASE WHEN i.edited = true THEN 1 ELSE 0 END), MAX(i.updatedAt)
+            FROM Image i WHERE i.database.id = :databaseId GROUP BY i.database.id
+            """)
+    List<Object[]> summarizeByDatabaseId(@Param("databaseId") Long databaseId);
+
+    @Query("SELECT i FROM Image i LEFT JOIN FETCH i.database WHERE i.id = :id")
+    Optional<Image> findWithDatabaseById(@Param("id") Long id);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.IMAGES, key = "#p0.id", condition = "#p0.id != null")
+    <S extends Image> S save(S entity);
+
+    @Override
+    @CacheEvict(cacheNames = CacheConfig.IMAGES, allEntries = true)
+    <S extends Image> List<S> saveAll(Iterable<S> entities);
+
+    @Query("SELECT i.filePath FROM Image i WHERE i.filePath IN :paths")
+    List<String> findFilePathsIn(@Param("paths") Collection<String> paths);
+
+    @Query("SELECT i.sourceFilePath FROM Image i WHERE i.sourceFilePath IN :paths")
+    List<String> findSourceFilePathsIn(@Param("paths") Collection<String> paths);
+
+    @Query("SELECT i.id FROM Image i WHERE i.id IN :ids")
+    List<Long> findIdsIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT i.id FROM Image i WHERE i.database.id = :databaseId AND i.id IN :ids")
+    List<Long> findIdsByDatabaseIdAndIdIn(@Param("databaseId") Long databaseId, @Param("ids") Collection<Long> ids);
+
+    @Query("SELECT i.id FROM Image i WHERE i.database.id = :databaseId")
+    List<Long> findIdsByDatabaseId(@Param("databaseId") Long databaseId);
+
+    @Query("SELECT i.filePath FROM Image i WHERE i.database.id = :databaseId AND i.filePath IS NOT NULL")
+    List<String> findFilePathsByDatabaseId(@Param("databaseId") Long databaseId);
+
+    @Query("SELECT i.sourceFilePath FROM Image i WHERE i.database.id = :databaseId AND i.sourceFilePath IS NOT NULL")
+    List<String> findSourceFilePathsByDatabaseId(@Param("databaseId") Long databaseId);
+
+    @Query("SELECT i.filePath FROM Image i WHERE i.id IN :ids AND i.filePath IS NOT NULL")
+    List<String> findFilePathsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT i.sourceFilePath FROM Image i WHERE i.id IN :ids AND i.sourceFilePath IS NOT NULL")
+    List<String> findSourceFilePathsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Imagens enviadas antes da extração de metadados, em ordem de id a partir do cursor.
+     */
+    @Query("SELECT i.id, i.filePath FROM Image i WHERE i.contentHash IS NULL AND i.id > :afterId ORDER BY i.id")
+    List<Object[]> findWithoutMetadataAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.IMAGES, key = "#p0")
+    @Query("""
+            UPDATE Image i SET i.width = :width, i.height = :height, i.bitDepth = :bitDepth, i.format = :format,
+                i.sizeBytes = :sizeBytes, i.contentHash = :contentHash
+            WHERE i.id = :id
+            """)
+    int updateMetadata(@Param("id") Long id, @Param("width") Integer width, @Param("height") Integer height,
+                       @Param("bitDepth") Integer bitDepth, @Param("format") String format,
+                       @Param("sizeBytes") Long sizeBytes, @Param("contentHash") String contentHash);
+
+    /**
+     * Marca a imagem como editada sem depender de um contexto de persistência aberto (a
+     * segmentação roda fora da thread da requisição).
+     */
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.IMAGES, key = "#p0")
+    @Query("UPDATE Image i SET i.edited = true WHERE i.id = :id")
+    int markEdited(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.IMAGES, allEntries = true)
+    @Query("UPDATE Image i SET i.edited = true WHERE i.id IN :ids")
+    int markEditedIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT i.id FROM Image i WHERE i.id IN :ids AND i.edited = true")
+    List<Long> findEditedIdsIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.IMAGES, allEntries = true)
+    @Query("DELETE FROM Image i WHERE i.database.id = :databaseId")
+    int deleteAllByDatabaseIdInBulk(@Param("databaseId") Long databaseId);
+
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.IMAGES, allEntries = true)
+    @Query("DELETE FROM Image i WHERE i.id IN :ids")
+    int deleteAllByIdInBulk(@Param("ids") Collection<Long> ids);
+}
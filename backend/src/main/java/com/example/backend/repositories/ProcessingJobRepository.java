@@ -0,0 +1,57 @@
+package com.example.backend.repositories;
+
+import com.example.backend.entities.ProcessingJob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ProcessingJobRepository extends JpaRepository<ProcessingJob, Long> {
+
+    /**
+     * Jobs prontos para execução: na fila e liberados, ou em execução com lease vencido (o nó
+     * que os pegou caiu). SKIP LOCKED faz cada worker pular as linhas que outro já está
+     * reivindicando, sem esperar pelo lock.
+     */
+    @Query(value = """
+            SELECT * FROM processing_jobs
+            WHERE (state = 'QUEUED' AND available_at <= :now)
+               OR (state = 'RUNNING' AND lease_expires_at < :now)
+            ORDER BY id
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<ProcessingJob> lockClaimable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM ProcessingJob j WHERE j.id = :id")
+    Optional<ProcessingJob> findByIdForUpdate(@Param("id") Long id);
+
+    @Modifying
+    @Query("""
+            UPDATE ProcessingJob j SET j.leaseExpiresAt = :expiresAt, j.updatedAt = :now
+            WHERE j.id = :id AND j.leaseOwner = :owner AND j.state = 'RUNNING'
+            """)
+    int renewLease(@Param("id") Long id, @Param("owner") String owner,
+                   @Param("expiresAt") LocalDateTime expiresAt, @Param("now") LocalDateTime now);
+
+    long countByState(String state);
+
+    /**
+     * Chaves de entrada (imageKey/markersKey) dos jobs que ainda vão usá-las.
+     */
+    @Query(value = """
+            SELECT payload ->> 'imageKey' FROM processing_jobs
+            WHERE state IN ('QUEUED', 'RUNNING') AND payload ->> 'imageKey' IS NOT NULL
+            UNION
+            SELECT payload ->> 'markersKey' FROM processing_jobs
+            WHERE state IN ('QUEUED', 'RUNNING') AND payload ->> 'markersKey' IS NOT NULL
+            """, nativeQuery = true)
+    List<String> findActiveInputKeys();
+}
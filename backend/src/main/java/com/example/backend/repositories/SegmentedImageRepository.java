@@ -1,10 +1,87 @@
 package com.example.backend.repositories;
 
+import com.example.backend.config.CacheConfig;
 import com.example.backend.entities.Segmented_Image;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface SegmentedImageRepository extends JpaRepository<Segmented_Image, Integer> {
     Optional<Segmented_Image> findByImageId(Long imageId);
+
+    // Salvar uma segmentação também marca a imagem como editada
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.SEGMENTATIONS, key = "#p0.image.id", condition = "#p0.image != null"),
+            @CacheEvict(cacheNames = CacheConfig.IMAGES, key = "#p0.image.id", condition = "#p0.image != null")
+    })
+    <S extends Segmented_Image> S save(S entity);
+
+    @Override
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheConfig.SEGMENTATIONS, allEntries = true),
+            @CacheEvict(cacheNames = CacheConfig.IMAGES, allEntries = true)
+    })
+    <S extends Segmented_Image> List<S> saveAll(Iterable<S> entities);
+
+    List<Segmented_Image> findAllByImageIdIn(Collection<Long> imageIds);
+
+    /**
+     * Metadados sem os contornos: [id, imageId, file_path, labelsFilePath, labelLegend, createdAt, updatedAt].
+     */
+    @Query("""
+            SELECT s.id, s.image.id, s.file_path, s.labelsFilePath, s.labelLegend, s.createdAt, s.updatedAt
+            FROM Segmented_Image s WHERE s.image.id IN :imageIds
+            """)
+    List<Object[]> findMetadataByImageIdIn(@Param("imageIds") Collection<Long> imageIds);
+
+    /**
+     * Por base: [databaseId, segmentações, última atualização].
+     */
+    @Query("SELECT s.image.database.id, COUNT(s), MAX(s.updatedAt) FROM Segmented_Image s GROUP BY s.image.database.id")
+    List<Object[]> summarizeByDatabase();
+
+    @Query("""
+            SELECT s.image.database.id, COUNT(s), MAX(s.updatedAt) FROM Segmented_Image s
+            WHERE s.image.database.id = :databaseId GROUP BY s.image.database.id
+            """)
+    List<Object[]> summarizeByDatabaseId(@Param("databaseId") Long databaseId);
+
+    @Query("""
+            SELECT s.file_path FROM Segmented_Image s WHERE s.file_path IN :paths
+            UNION
+            SELECT s.labelsFilePath FROM Segmented_Image s WHERE s.labelsFilePath IN :paths
+            """)
+    List<String> findFilePathsIn(@Param("paths") Collection<String> paths);
+
+    @Query("""
+            SELECT s.file_path FROM Segmented_Image s WHERE s.image.database.id = :databaseId AND s.file_path IS NOT NULL
+            UNION
+            SELECT s.labelsFilePath FROM Segmented_Image s WHERE s.image.database.id = :databaseId AND s.labelsFilePath IS NOT NULL
+            """)
+    List<String> findFilePathsByDatabaseId(@Param("databaseId") Long databaseId);
+
+    @Query("""
+            SELECT s.file_path FROM Segmented_Image s WHERE s.image.id IN :imageIds AND s.file_path IS NOT NULL
+            UNION
+            SELECT s.labelsFilePath FROM Segmented_Image s WHERE s.image.id IN :imageIds AND s.labelsFilePath IS NOT NULL
+            """)
+    List<String> findFilePathsByImageIdIn(@Param("imageIds") Collection<Long> imageIds);
+
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.SEGMENTATIONS, allEntries = true)
+    @Query("DELETE FROM Segmented_Image s WHERE s.image.id IN (SELECT i.id FROM Image i WHERE i.database.id = :databaseId)")
+    int deleteAllByDatabaseIdInBulk(@Param("databaseId") Long databaseId);
+
+    @Modifying
+    @CacheEvict(cacheNames = CacheConfig.SEGMENTATIONS, allEntries = true)
+    @Query("DELETE FROM Segmented_Image s WHERE s.image.id IN :imageIds")
+    int deleteAllByImageIdInBulk(@Param("imageIds") Collection<Long> imageIds);
 }
@@ -0,0 +1,111 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.AnnotationRevision;
+import com.example.backend.repositories.AnnotationRevisionRepository;
+import com.example.backend.utils.AnnotationDiff;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Histórico das anotações no servidor. Cada save grava um delta para a versão anterior e, a cada
+ * snapshot-interval versões, o documento inteiro; uma versão é reconstruída a partir do snapshot
+ * mais próximo. Ao gravar um snapshot, o que ficou mais de max-versions versões para trás é
+ * apagado, sempre cortando num snapshot para que as versões restantes continuem reconstruíveis.
+ */
+@Slf4j
+@Service
+public class AnnotationHistoryService {
+
+    private final AnnotationRevisionRepository revisionRepository;
+
+    @Value("${history.snapshot-interval:20}")
+    private int snapshotInterval;
+
+    @Value("${history.max-versions:200}")
+    private int maxVersions;
+
+    public AnnotationHistoryService(AnnotationRevisionRepository revisionRepository) {
+        this.revisionRepository = revisionRepository;
+    }
+
+    /**
+     * Registra a versão gravada. previous é o documento da versão anterior (null na criação).
+     * Sem a versão anterior no histórico (anotação de antes do histórico, ou registro perdido),
+     * grava um snapshot para não deixar a cadeia quebrada.
+     */
+    @Transactional
+    public void record(Long annotationId, long version, Map<String, Object> previous, Map<String, Object> current) {
+        boolean snapshot = previous == null
+                || version % snapshotInterval == 0
+                || !revisionRepository.existsByAnnotationIdAndVersion(annotationId, version - 1);
+
+        Map<String, Object> data = snapshot ? current : AnnotationDiff.between(previous, current);
+        revisionRepository.save(new AnnotationRevision(annotationId, version, snapshot, data));
+
+        if (snapshot) {
+            prune(annotationId, version);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Map<String, Object>> findVersion(Long annotationId, long version) {
+        Optional<AnnotationRevision> base = revisionRepository
+                .findFirstByAnnotationIdAndSnapshotTrueAndVersionLessThanEqualOrderByVersionDesc(annotationId, version);
+        if (base.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Map<String, Object> document = base.get().getData();
+        long expected = base.get().getVersion() + 1;
+        for (AnnotationRevision delta : revisionRepository
+                .findAllByAnnotationIdAndVersionBetweenOrderByVersionAsc(annotationId, expected, version)) {
+            if (delta.getVersion() != expected) {
+                // Buraco na cadeia: a versão pedida não pode ser reconstruída
+                return Optional.empty();
+            }
+            document = delta.isSnapshot() ? delta.getData() : AnnotationDiff.apply(document, delta.getData());
+            expected++;
+        }
+        return expected == version + 1 ? Optional.of(document) : Optional.empty();
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Map<String, Object>> diff(Long annotationId, long fromVersion, long toVersion) {
+        Optional<Map<String, Object>> from = findVersion(annotationId, fromVersion);
+        Optional<Map<String, Object>> to = findVersion(annotationId, toVersion);
+        if (from.isEmpty() || to.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(AnnotationDiff.between(from.get(), to.get()));
+    }
+
+    public List<RevisionInfo> listVersions(Long annotationId) {
+        return revisionRepository.findHeadersByAnnotationId(annotationId).stream()
+                .map(row -> new RevisionInfo(((Number) row[0]).longValue(), (Boolean) row[1], (LocalDateTime) row[2]))
+                .toList();
+    }
+
+    private void prune(Long annotationId, long version) {
+        if (version - maxVersions < 0) {
+            return;
+        }
+        revisionRepository
+                .findFirstByAnnotationIdAndSnapshotTrueAndVersionLessThanEqualOrderByVersionDesc(annotationId, version - maxVersions)
+                .ifPresent(oldest -> {
+                    int removed = revisionRepository.deleteByAnnotationIdAndVersionLessThan(annotationId, oldest.getVersion());
+                    if (removed > 0) {
+                        log.debug("Histórico da anotação {}: {} versões antigas removidas", annotationId, removed);
+                    }
+                });
+    }
+
+    public record RevisionInfo(long version, boolean snapshot, LocalDateTime createdAt) {
+    }
+}
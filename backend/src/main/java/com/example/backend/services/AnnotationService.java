@@ -0,0 +1,96 @@
+package com.example.backend.services;
+
+import com.example.backend.repositories.AnnotationRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Gravações concorrentes de anotação sem retentar documentos inteiros. O auto-save vira um único
+ * upsert no banco (merge das chaves e append de traços), então duas abas salvando ao mesmo tempo
+ * não se sobrescrevem; quem precisa garantir que parte da versão que leu manda expectedVersion.
+ * Cada versão gravada entra no histórico (AnnotationHistoryService) na mesma transação, sem trava
+ * pessimista: o upsert devolve também o documento anterior, e o delta só é gravado quando ele é
+ * exatamente a versão anterior; se outro save passou na frente, a versão vira um snapshot.
+ */
+@Service
+@RequiredArgsConstructor
+public class AnnotationService {
+
+    public static final String APPEND_STROKES = "appendStrokes";
+
+    private static final TypeReference<Map<String, Object>> DOCUMENT = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AnnotationRepository annotationRepository;
+    private final AnnotationHistoryService annotationHistoryService;
+    private final PipelineMetrics metrics;
+
+    /**
+     * Aplica o patch ao documento da imagem. A chave appendStrokes, se presente, é retirada do
+     * patch e acrescentada a brushStrokes. Vazio quando expectedVersion não bate.
+     */
+    @Transactional
+    public Optional<MergeResult> merge(Long imageId, Map<String, Object> data, Long expectedVersion) {
+        Map<String, Object> patch = new LinkedHashMap<>(data != null ? data : Map.of());
+        Object append = patch.remove(APPEND_STROKES);
+        if (append != null && !(append instanceof List<?>)) {
+            throw new IllegalArgumentException(APPEND_STROKES + " deve ser uma lista de traços.");
+        }
+
+        List<Object[]> rows;
+        try {
+            Timer.Sample upsert = Timer.start();
+            rows = annotationRepository.mergeAnnotationData(
+                    imageId,
+                    objectMapper.writeValueAsString(patch),
+                    objectMapper.writeValueAsString(append != null ? append : List.of()),
+                    expectedVersion,
+                    LocalDateTime.now());
+            upsert.stop(metrics.autoSave("upsert"));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Dados de anotação inválidos: " + e.getOriginalMessage(), e);
+        }
+
+        if (rows.isEmpty()) {
+            return Optional.empty();
+        }
+        Object[] row = rows.get(0);
+        MergeResult result = new MergeResult(((Number) row[0]).longValue(), ((Number) row[1]).longValue(), (Boolean) row[2]);
+        // Documento lido antes de um save concorrente: sem base certa para o delta, grava snapshot
+        boolean previousIsExact = row[5] != null && ((Number) row[5]).longValue() == result.version() - 1;
+        Map<String, Object> previous = previousIsExact ? parse((String) row[4]) : null;
+        Timer.Sample history = Timer.start();
+        annotationHistoryService.record(result.annotationId(), result.version(), previous, parse((String) row[3]));
+        history.stop(metrics.autoSave("history"));
+        return Optional.of(result);
+    }
+
+    public Optional<Long> currentVersion(Long imageId) {
+        return annotationRepository.findByImageId(imageId).map(annotation -> annotation.getVersion());
+    }
+
+    private Map<String, Object> parse(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, DOCUMENT);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Documento de anotação ilegível no banco", e);
+        }
+    }
+
+    public record MergeResult(Long annotationId, long version, boolean created) {
+    }
+}
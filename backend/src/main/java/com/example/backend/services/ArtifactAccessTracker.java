@@ -0,0 +1,45 @@
+package com.example.backend.services;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Último acesso dos artefatos regeneráveis, usado pela evicção LRU. O atime do sistema de
+ * arquivos costuma estar desligado (noatime/relatime) e o S3 não o tem, então o acesso é
+ * registrado aqui, na leitura; sem registro, vale a data de modificação do arquivo.
+ */
+@Component
+public class ArtifactAccessTracker {
+
+    public static final String REGENERABLE_PREFIX = "initial_markers/";
+
+    private static final int MAX_ENTRIES = 200_000;
+
+    private final Map<String, Long> lastAccess = new ConcurrentHashMap<>();
+
+    public void recordAccess(String key) {
+        if (!key.startsWith(REGENERABLE_PREFIX)) {
+            return;
+        }
+        // Acima do limite só atualiza chaves conhecidas; as demais ficam com a data de modificação
+        if (lastAccess.size() < MAX_ENTRIES || lastAccess.containsKey(key)) {
+            lastAccess.put(key, System.currentTimeMillis());
+        }
+    }
+
+    public Instant lastAccess(String key, Instant fallback) {
+        Long millis = lastAccess.get(key);
+        if (millis == null) {
+            return fallback;
+        }
+        Instant accessed = Instant.ofEpochMilli(millis);
+        return fallback != null && fallback.isAfter(accessed) ? fallback : accessed;
+    }
+
+    public void forget(String key) {
+        lastAccess.remove(key);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.backend.services;
+
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.utils.BlobKeys;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Remove os arquivos de linhas apagadas em lote. A remoção só começa depois do commit (um
+ * rollback deixaria linhas apontando para arquivos inexistentes) e roda numa thread própria,
+ * para a requisição não esperar por milhares de deletes no disco ou no S3. O que se perder
+ * aqui (queda do processo no meio) é recolhido depois pelo StorageReconciler.
+ */
+@Slf4j
+@Service
+public class ArtifactCleanupService {
+
+    private final IBlobStore blobStore;
+    private final ArtifactAccessTracker accessTracker;
+    // Deletes são só espera de disco/rede: uma thread virtual basta
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("artifact-cleanup").factory());
+
+    public ArtifactCleanupService(IBlobStore blobStore, ArtifactAccessTracker accessTracker) {
+        this.blobStore = blobStore;
+        this.accessTracker = accessTracker;
+    }
+
+    public void deleteAfterCommit(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        List<String> snapshot = List.copyOf(keys);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            executor.execute(() -> deleteAll(snapshot));
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                executor.execute(() -> deleteAll(snapshot));
+            }
+        });
+    }
+
+    private void deleteAll(List<String> keys) {
+        long start = System.currentTimeMillis();
+        int failed = 0;
+        for (String key : keys) {
+            try {
+                String normalized = BlobKeys.normalize(key);
+                blobStore.delete(normalized);
+                accessTracker.forget(normalized);
+            } catch (IOException | IllegalArgumentException e) {
+                failed++;
+                log.warn("Não foi possível remover {}: {}", key, e.getMessage());
+            }
+        }
+        log.info("{} arquivos removidos em {} ms ({} falhas)",
+                keys.size() - failed, System.currentTimeMillis() - start, failed);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,539 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.Annotation;
+import com.example.backend.entities.BatchJob;
+import com.example.backend.entities.Image;
+import com.example.backend.entities.Segmented_Image;
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.repositories.AnnotationRepository;
+import com.example.backend.repositories.BatchJobRepository;
+import com.example.backend.repositories.DatabaseRepository;
+import com.example.backend.repositories.ImageRepository;
+import com.example.backend.repositories.SegmentedImageRepository;
+import com.example.backend.utils.MarkerLabelMap;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Pré-anotação de uma base inteira: para cada imagem gera os marcadores iniciais e roda a
+ * segmentação, usando todos os núcleos. As imagens são percorridas em ordem de id, em blocos;
+ * os resultados de cada bloco e o checkpoint do job são gravados na mesma transação, de modo
+ * que um job interrompido é retomado do último bloco salvo.
+ */
+@Slf4j
+@Service
+public class BatchSegmentationService {
+
+    private static final List<String> ACTIVE_STATUSES = List.of(BatchJob.STATUS_QUEUED, BatchJob.STATUS_RUNNING);
+    private static final TypeReference<Map<String, Object>> DOCUMENT = new TypeReference<>() {};
+
+    private final BatchJobRepository batchJobRepository;
+    private final DatabaseRepository databaseRepository;
+    private final ImageRepository imageRepository;
+    private final AnnotationRepository annotationRepository;
+    private final SegmentedImageRepository segmentedImageRepository;
+    private final GradCamMarkerService gradCamMarkerService;
+    private final SegmentationService segmentationService;
+    private final PythonScriptRunner pythonScriptRunner;
+    private final IBlobStore blobStore;
+    private final RawPixelCache rawPixelCache;
+    private final DatabaseSummaryService databaseSummaryService;
+    private final AnnotationHistoryService annotationHistoryService;
+    private final ArtifactCleanupService artifactCleanupService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${batch.chunk-size:32}")
+    private int chunkSize;
+
+    // Um job por vez; o paralelismo fica dentro do bloco de imagens
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(namedThreads("batch-coordinator"));
+    private final ExecutorService workers = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), namedThreads("batch-worker"));
+
+    public BatchSegmentationService(BatchJobRepository batchJobRepository,
+                                    DatabaseRepository databaseRepository,
+                                    ImageRepository imageRepository,
+                                    AnnotationRepository annotationRepository,
+                                    SegmentedImageRepository segmentedImageRepository,
+                                    GradCamMarkerService gradCamMarkerService,
+                                    SegmentationService segmentationService,
+                                    PythonScriptRunner pythonScriptRunner,
+                                    IBlobStore blobStore,
+                                    RawPixelCache rawPixelCache,
+                                    DatabaseSummaryService databaseSummaryService,
+                                    AnnotationHistoryService annotationHistoryService,
+                                    ArtifactCleanupService artifactCleanupService,
+                                    PlatformTransactionManager transactionManager) {
+        this.batchJobRepository = batchJobRepository;
+        this.databaseRepository = databaseRepository;
+        this.imageRepository = imageRepository;
+        this.annotationRepository = annotationRepository;
+        this.segmentedImageRepository = segmentedImageRepository;
+        this.gradCamMarkerService = gradCamMarkerService;
+        this.segmentationService = segmentationService;
+        this.pythonScriptRunner = pythonScriptRunner;
+        this.blobStore = blobStore;
+        this.rawPixelCache = rawPixelCache;
+        this.databaseSummaryService = databaseSummaryService;
+        this.annotationHistoryService = annotationHistoryService;
+        this.artifactCleanupService = artifactCleanupService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Sem overwrite, imagens que já têm anotação, segmentação ou foram editadas são puladas;
+     * com overwrite, são regeradas e a anotação anterior fica no histórico de versões.
+     */
+    public BatchJob startBatch(Long databaseId, boolean overwrite) {
+        if (!databaseRepository.existsById(Math.toIntExact(databaseId))) {
+            throw new IllegalArgumentException("Database not found with id: " + databaseId);
+        }
+
+        Optional<BatchJob> activeJob = batchJobRepository.findFirstByDatabaseIdAndStatusIn(databaseId, ACTIVE_STATUSES);
+        if (activeJob.isPresent()) {
+            throw new IllegalStateException("Já existe um job em andamento para esta base (ID: " + activeJob.get().getId() + ").");
+        }
+
+        BatchJob job = new BatchJob(databaseId, overwrite);
+        job.setTotalImages((int) imageRepository.countByDatabaseId(databaseId));
+        job.setCreatedAt(LocalDateTime.now());
+        job.setUpdatedAt(LocalDateTime.now());
+        job = batchJobRepository.save(job);
+
+        submit(job.getId());
+        return job;
+    }
+
+    /**
+     * Retoma um job cancelado ou com falha a partir do checkpoint. Um job concluído só é
+     * retomado se ainda tiver imagens que falharam, que são tentadas de novo.
+     */
+    public BatchJob resumeBatch(Long jobId) {
+        BatchJob job = findJob(jobId);
+        if (job.isActive()) {
+            return job;
+        }
+        if (BatchJob.STATUS_COMPLETED.equals(job.getStatus()) && !job.hasFailedImages()) {
+            throw new IllegalStateException("Job já concluído.");
+        }
+
+        job.setStatus(BatchJob.STATUS_QUEUED);
+        job.setErrorMessage(null);
+        job.setFinishedAt(null);
+        job.setUpdatedAt(LocalDateTime.now());
+        job = batchJobRepository.save(job);
+
+        submit(job.getId());
+        return job;
+    }
+
+    /**
+     * O cancelamento é observado entre blocos; o bloco em andamento termina e é gravado.
+     */
+    public BatchJob cancelBatch(Long jobId) {
+        BatchJob job = findJob(jobId);
+        if (job.isActive()) {
+            job.setStatus(BatchJob.STATUS_CANCELLED);
+            job.setUpdatedAt(LocalDateTime.now());
+            job = batchJobRepository.save(job);
+        }
+        return job;
+    }
+
+    public BatchJob findJob(Long jobId) {
+        return batchJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job não encontrado com ID: " + jobId));
+    }
+
+    public List<BatchJob> findJobsByDatabase(Long databaseId) {
+        return batchJobRepository.findAllByDatabaseIdOrderByIdDesc(databaseId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        // Jobs que estavam na fila ou rodando quando o backend parou continuam do checkpoint
+        for (BatchJob job : batchJobRepository.findAllByStatusInOrderByIdAsc(ACTIVE_STATUSES)) {
+            log.info("Retomando job em lote {} da base {} a partir da imagem {}",
+                    job.getId(), job.getDatabaseId(), job.getLastImageId());
+            submit(job.getId());
+        }
+    }
+
+    private void submit(Long jobId) {
+        coordinator.execute(() -> {
+            try {
+                runJob(jobId);
+            } catch (Exception e) {
+                log.error("Job em lote {} falhou", jobId, e);
+                batchJobRepository.findById(jobId).ifPresent(job -> {
+                    job.setStatus(BatchJob.STATUS_FAILED);
+                    job.setErrorMessage(e.getMessage());
+                    job.setFinishedAt(LocalDateTime.now());
+                    job.setUpdatedAt(LocalDateTime.now());
+                    batchJobRepository.save(job);
+                });
+            }
+        });
+    }
+
+    private void runJob(Long jobId) throws InterruptedException {
+        BatchJob job = findJob(jobId);
+        if (!job.isActive()) {
+            return;
+        }
+
+        job.setStatus(BatchJob.STATUS_RUNNING);
+        if (job.getStartedAt() == null) {
+            job.setStartedAt(LocalDateTime.now());
+        }
+        job.setUpdatedAt(LocalDateTime.now());
+        job = batchJobRepository.save(job);
+        log.info("Job em lote {} iniciado: base {}, {} imagens", jobId, job.getDatabaseId(), job.getTotalImages());
+
+        while (true) {
+            List<Image> images = imageRepository.findByDatabaseIdAndIdGreaterThanOrderByIdAsc(
+                    job.getDatabaseId(), job.getLastImageId(), PageRequest.of(0, chunkSize));
+            if (images.isEmpty()) {
+                break;
+            }
+
+            long start = System.nanoTime();
+            List<ImageOutcome> outcomes = processChunk(images, job.isOverwrite());
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            job = saveChunk(jobId, images, outcomes, elapsedMillis, job.isOverwrite(), null);
+            log.info("Job em lote {}: {}/{} imagens ({} falhas, {} preservadas), {} imagens/s",
+                    jobId, job.getProcessedImages() + job.getFailedImages() + job.getSkippedImages(),
+                    job.getTotalImages(), job.getFailedImages(), job.getSkippedImages(), job.getImagesPerSecond());
+
+            if (!job.isActive()) {
+                log.info("Job em lote {} cancelado no checkpoint da imagem {}", jobId, job.getLastImageId());
+                return;
+            }
+        }
+
+        job = retryFailed(jobId, job);
+        if (!job.isActive()) {
+            log.info("Job em lote {} cancelado durante a nova tentativa das imagens com falha", jobId);
+            return;
+        }
+
+        job.setStatus(BatchJob.STATUS_COMPLETED);
+        job.setFinishedAt(LocalDateTime.now());
+        job.setUpdatedAt(LocalDateTime.now());
+        batchJobRepository.save(job);
+        log.info("Job em lote {} concluído: {} imagens em {} ms ({} imagens/s)",
+                jobId, job.getProcessedImages(), job.getElapsedMillis(), job.getImagesPerSecond());
+    }
+
+    /**
+     * Uma nova tentativa, em blocos, para as imagens que falharam nesta execução ou nas
+     * anteriores. As que falharem de novo continuam na lista para a próxima retomada; as que
+     * foram removidas da base saem dela.
+     */
+    private BatchJob retryFailed(Long jobId, BatchJob job) throws InterruptedException {
+        if (!job.hasFailedImages()) {
+            return job;
+        }
+        List<Long> pending = List.copyOf(job.getFailedImageIds());
+        log.info("Job em lote {}: nova tentativa para {} imagens com falha", jobId, pending.size());
+
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            List<Long> ids = pending.subList(from, Math.min(from + chunkSize, pending.size()));
+            List<Image> images = imageRepository.findAllById(ids).stream()
+                    .sorted(Comparator.comparing(Image::getId))
+                    .toList();
+
+            long start = System.nanoTime();
+            List<ImageOutcome> outcomes = images.isEmpty() ? List.of() : processChunk(images, job.isOverwrite());
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+            job = saveChunk(jobId, images, outcomes, elapsedMillis, job.isOverwrite(), ids);
+            if (!job.isActive()) {
+                return job;
+            }
+        }
+        log.info("Job em lote {}: {} imagens ainda com falha após a nova tentativa",
+                jobId, job.getFailedImageIds().size());
+        return job;
+    }
+
+    private List<ImageOutcome> processChunk(List<Image> images, boolean overwrite) throws InterruptedException {
+        List<Long> imageIds = images.stream().map(Image::getId).toList();
+        Map<Long, Annotation> annotations = annotationRepository.findAllByImageIdIn(imageIds).stream()
+                .collect(Collectors.toMap(a -> a.getImage().getId(), Function.identity(), (a, b) -> a));
+        Map<Long, Segmented_Image> segmentedImages = segmentedImageRepository.findAllByImageIdIn(imageIds).stream()
+                .collect(Collectors.toMap(s -> s.getImage().getId(), Function.identity(), (a, b) -> a));
+
+        List<Future<ImageOutcome>> futures = new ArrayList<>(images.size());
+        for (Image image : images) {
+            Annotation annotation = annotations.get(image.getId());
+            Segmented_Image segmentedImage = segmentedImages.get(image.getId());
+            boolean worked = annotation != null || segmentedImage != null || Boolean.TRUE.equals(image.getEdited());
+            if (worked && !overwrite) {
+                // Não sobrescreve o trabalho do anotador
+                futures.add(CompletableFuture.completedFuture(ImageOutcome.SKIPPED));
+                continue;
+            }
+            futures.add(workers.submit(() -> processImage(image, annotation, segmentedImage)));
+        }
+
+        List<ImageOutcome> outcomes = new ArrayList<>(images.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                outcomes.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("Falha ao processar imagem {} no lote: {}", images.get(i).getId(), cause.getMessage());
+                outcomes.add(null);
+            }
+        }
+        return outcomes;
+    }
+
+    private ImageOutcome processImage(Image image, Annotation existingAnnotation, Segmented_Image existingSegmentedImage) throws Exception {
+        // Versão e data lidas agora, conferidas de novo na transação do bloco
+        Long annotationVersion = existingAnnotation != null ? existingAnnotation.getVersion() : null;
+        LocalDateTime segmentationUpdatedAt = existingSegmentedImage != null ? existingSegmentedImage.getUpdatedAt() : null;
+        // Decodifica uma vez para o cache de pixels; o script do watershed lê o mesmo arquivo bruto
+        RawPixelCache.RawPixels raw = rawPixelCache.get(image.getId());
+        BufferedImage pixels = raw.toBufferedImage();
+
+        Annotation annotation = gradCamMarkerService.prepareInitialMarkers(pixels, image, existingAnnotation);
+        BufferedImage markers;
+        try (InputStream in = blobStore.get(annotation.getFilePath())) {
+            markers = ImageIO.read(in);
+        }
+
+        // O script Python lê o arquivo bruto local, sem baixar nem decodificar o original de novo;
+        // prepareSegmentation entrega a ele um link, que sobrevive a um despejo durante o lote
+        SegmentationService.SegmentationResult result = segmentationService.prepareSegmentation(
+                raw.path().toString(), markers, image, existingSegmentedImage,
+                MarkerLabelMap.defaultClasses(), pythonScriptRunner.newJob());
+        return new ImageOutcome(annotation, result.getSegmentedImage(), annotationVersion, segmentationUpdatedAt,
+                existingAnnotation == null, existingSegmentedImage == null);
+    }
+
+    /**
+     * Grava o bloco e o checkpoint numa transação. O que foi lido no início do bloco é conferido
+     * de novo aqui: uma imagem que ganhou segmentação ou edição nesse meio tempo, ou cuja anotação
+     * mudou (o upsert versionado não grava), fica como o anotador deixou e conta como pulada; os
+     * arquivos novos gerados para ela são removidos. Um conflito não derruba o bloco.
+     * retriedIds: na nova tentativa das falhas, os ids pedidos (o checkpoint não anda).
+     */
+    private BatchJob saveChunk(Long jobId, List<Image> images, List<ImageOutcome> outcomes, long elapsedMillis,
+                               boolean overwrite, List<Long> retriedIds) {
+        return transactionTemplate.execute(status -> {
+            List<Long> producedIds = new ArrayList<>();
+            for (int i = 0; i < images.size(); i++) {
+                if (outcomes.get(i) != null && outcomes.get(i) != ImageOutcome.SKIPPED) {
+                    producedIds.add(images.get(i).getId());
+                }
+            }
+            Set<Long> editedNow = producedIds.isEmpty() ? Set.of() : new HashSet<>(imageRepository.findEditedIdsIn(producedIds));
+            // Por imagem, o updatedAt da segmentação atual (pode ser nulo em linhas antigas)
+            Map<Long, LocalDateTime> segmentedNow = new HashMap<>();
+            if (!producedIds.isEmpty()) {
+                for (Object[] row : segmentedImageRepository.findMetadataByImageIdIn(producedIds)) {
+                    segmentedNow.put((Long) row[1], (LocalDateTime) row[6]);
+                }
+            }
+
+            List<Segmented_Image> segmentedImages = new ArrayList<>();
+            List<Long> newlyEditedIds = new ArrayList<>();
+            List<String> orphanFiles = new ArrayList<>();
+            List<Long> failedIds = new ArrayList<>();
+            int skipped = 0;
+            int newAnnotations = 0;
+            int newSegmentations = 0;
+
+            for (int i = 0; i < images.size(); i++) {
+                ImageOutcome outcome = outcomes.get(i);
+                if (outcome == null) {
+                    failedIds.add(images.get(i).getId());
+                    continue;
+                }
+                if (outcome == ImageOutcome.SKIPPED) {
+                    skipped++;
+                    continue;
+                }
+
+                Long imageId = images.get(i).getId();
+                if (changedSinceRead(imageId, outcome, overwrite, editedNow, segmentedNow)
+                        || !writeAnnotation(imageId, outcome)) {
+                    log.info("Imagem {} alterada durante o lote; o trabalho do anotador foi preservado", imageId);
+                    orphanFiles.addAll(outcome.newFiles());
+                    skipped++;
+                    continue;
+                }
+                segmentedImages.add(outcome.segmentedImage());
+                if (!editedNow.contains(imageId)) {
+                    newlyEditedIds.add(imageId);
+                }
+                newAnnotations += outcome.newAnnotation() ? 1 : 0;
+                newSegmentations += outcome.newSegmentation() ? 1 : 0;
+            }
+
+            segmentedImageRepository.saveAll(segmentedImages);
+            // Só a flag: a entidade lida no início do bloco pode estar desatualizada
+            if (!newlyEditedIds.isEmpty()) {
+                imageRepository.markEditedIn(newlyEditedIds);
+            }
+            artifactCleanupService.deleteAfterCommit(orphanFiles);
+
+            // Relê o job para enxergar um cancelamento feito durante o bloco
+            BatchJob job = findJob(jobId);
+            List<Long> stillFailed = job.getFailedImageIds() != null ? new ArrayList<>(job.getFailedImageIds()) : new ArrayList<>();
+            if (retriedIds == null) {
+                job.setLastImageId(images.get(images.size() - 1).getId());
+                job.setFailedImages(job.getFailedImages() + failedIds.size());
+            } else {
+                // Saem da lista as que deram certo, foram preservadas ou não existem mais
+                stillFailed.removeAll(retriedIds);
+                job.setFailedImages(Math.max(0, job.getFailedImages() - (retriedIds.size() - failedIds.size())));
+            }
+            stillFailed.addAll(failedIds);
+            job.setFailedImageIds(stillFailed);
+            job.setProcessedImages(job.getProcessedImages() + segmentedImages.size());
+            job.setSkippedImages(job.getSkippedImages() + skipped);
+            job.setElapsedMillis(job.getElapsedMillis() + elapsedMillis);
+            job.setUpdatedAt(LocalDateTime.now());
+            databaseSummaryService.chunkSaved(job.getDatabaseId(), newlyEditedIds.size(), newAnnotations, newSegmentations);
+            return batchJobRepository.save(job);
+        });
+    }
+
+    /**
+     * Sem overwrite, a imagem não tinha segmentação nem edição na leitura: qualquer uma das duas
+     * agora é trabalho do anotador. Com overwrite, só a segmentação lida pode ser substituída.
+     * A anotação é conferida pelo próprio upsert.
+     */
+    private static boolean changedSinceRead(Long imageId, ImageOutcome outcome, boolean overwrite,
+                                            Set<Long> editedNow, Map<Long, LocalDateTime> segmentedNow) {
+        if (!overwrite) {
+            return editedNow.contains(imageId) || segmentedNow.containsKey(imageId);
+        }
+        if (outcome.newSegmentation()) {
+            return segmentedNow.containsKey(imageId);
+        }
+        return !segmentedNow.containsKey(imageId)
+                || !Objects.equals(segmentedNow.get(imageId), outcome.segmentationUpdatedAt());
+    }
+
+    /**
+     * Grava a anotação pelo upsert versionado; false se ela mudou desde a leitura. Anotações
+     * sobrescritas ganham uma revisão no histórico.
+     */
+    private boolean writeAnnotation(Long imageId, ImageOutcome outcome) {
+        Annotation annotation = outcome.annotation();
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(annotation.getAnnotationData());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Marcadores gerados não serializáveis", e);
+        }
+
+        List<Object[]> rows = annotationRepository.replaceAnnotationData(imageId, data, annotation.getFilePath(),
+                outcome.annotationVersion(), LocalDateTime.now());
+        if (rows.isEmpty()) {
+            return false;
+        }
+
+        Object[] row = rows.get(0);
+        if (!(Boolean) row[2]) {
+            long version = ((Number) row[1]).longValue();
+            // Como no auto-save: delta só a partir da versão imediatamente anterior
+            boolean exact = row[4] != null && ((Number) row[4]).longValue() == version - 1;
+            annotationHistoryService.record(((Number) row[0]).longValue(), version,
+                    exact ? parse((String) row[3]) : null, annotation.getAnnotationData());
+        }
+        return true;
+    }
+
+    private Map<String, Object> parse(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, DOCUMENT);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Documento de anotação ilegível no banco", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Jobs interrompidos continuam RUNNING no banco e são retomados na próxima inicialização
+        coordinator.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * annotationVersion e segmentationUpdatedAt são os valores lidos antes do processamento
+     * (nulos quando a imagem ainda não tinha anotação ou segmentação).
+     */
+    private record ImageOutcome(Annotation annotation, Segmented_Image segmentedImage, Long annotationVersion,
+                                LocalDateTime segmentationUpdatedAt, boolean newAnnotation, boolean newSegmentation) {
+        static final ImageOutcome SKIPPED = new ImageOutcome(null, null, null, null, false, false);
+
+        // Arquivos com nome novo gerados para a imagem; os reaproveitados continuam em uso
+        List<String> newFiles() {
+            List<String> files = new ArrayList<>();
+            if (newAnnotation && annotation.getFilePath() != null) {
+                files.add(annotation.getFilePath());
+            }
+            if (newSegmentation) {
+                if (segmentedImage.getFile_path() != null) {
+                    files.add(segmentedImage.getFile_path());
+                }
+                if (segmentedImage.getLabelsFilePath() != null) {
+                    files.add(segmentedImage.getLabelsFilePath());
+                }
+            }
+            return files;
+        }
+    }
+}
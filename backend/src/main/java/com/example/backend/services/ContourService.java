@@ -0,0 +1,208 @@
+package com.example.backend.services;
+
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.utils.ContourTracer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContourService {
+
+    private static final byte[] BINARY_MAGIC = {'C', 'T', 'R', '1'};
+
+    private final IBlobStore blobStore;
+
+    @Value("${segmentation.contours.tolerance:1.0}")
+    private double defaultTolerance;
+
+    public double getDefaultTolerance() {
+        return defaultTolerance;
+    }
+
+    /**
+     * Extrai os contornos de uma máscara segmentada. Máscaras indexadas (PNG em tons de cinza)
+     * usam o valor do pixel como rótulo; no PNG RGBA o canal alfa vira o rótulo 1.
+     */
+    public Map<String, Object> extractContours(String maskPath, double tolerance) throws IOException {
+        BufferedImage mask;
+        try (InputStream in = blobStore.get(maskPath)) {
+            mask = ImageIO.read(in);
+        }
+        if (mask == null) {
+            throw new IOException("Formato de máscara não suportado: " + maskPath);
+        }
+        return extractContours(mask, tolerance);
+    }
+
+    /**
+     * Extrai os contornos de uma máscara PNG recebida em memória (canal de resultado do script).
+     */
+    public Map<String, Object> extractContours(byte[] maskPng, double tolerance) throws IOException {
+        BufferedImage mask = ImageIO.read(new ByteArrayInputStream(maskPng));
+        if (mask == null) {
+            throw new IOException("Formato de máscara não suportado");
+        }
+        return extractContours(mask, tolerance);
+    }
+
+    public Map<String, Object> extractContours(BufferedImage mask, double tolerance) {
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        int[] labels = toLabelMap(mask);
+
+        long start = System.nanoTime();
+        List<ContourTracer.Contour> contours = ContourTracer.trace(labels, width, height, tolerance);
+        log.info("{} contornos extraídos em {} ms", contours.size(), (System.nanoTime() - start) / 1_000_000);
+
+        return toMap(width, height, tolerance, contours);
+    }
+
+    /**
+     * Contornos de um recorte (width x height) que começa em (offsetX, offsetY) da imagem; os
+     * pontos voltam nas coordenadas da imagem inteira, que tem fullWidth x fullHeight.
+     */
+    public Map<String, Object> extractContours(int[] labels, int width, int height, int offsetX, int offsetY,
+                                               int fullWidth, int fullHeight, double tolerance) {
+        List<ContourTracer.Contour> contours = ContourTracer.trace(labels, width, height, tolerance);
+        if (offsetX != 0 || offsetY != 0) {
+            for (ContourTracer.Contour contour : contours) {
+                int[] points = contour.points();
+                for (int i = 0; i < points.length; i += 2) {
+                    points[i] += offsetX;
+                    points[i + 1] += offsetY;
+                }
+            }
+        }
+        return toMap(fullWidth, fullHeight, tolerance, contours);
+    }
+
+    private int[] toLabelMap(BufferedImage mask) {
+        int width = mask.getWidth();
+        int height = mask.getHeight();
+        int[] labels = new int[width * height];
+
+        Raster alpha = mask.getAlphaRaster();
+        if (mask.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            mask.getRaster().getSamples(0, 0, width, height, 0, labels);
+        } else if (alpha != null) {
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                alpha.getSamples(0, y, width, 1, 0, row);
+                for (int x = 0; x < width; x++) {
+                    labels[y * width + x] = row[x] > 0 ? 1 : 0;
+                }
+            }
+        } else {
+            // Máscara sem alfa: qualquer pixel não preto é objeto
+            Raster raster = mask.getRaster();
+            int[] row = new int[width];
+            for (int y = 0; y < height; y++) {
+                raster.getSamples(0, y, width, 1, 0, row);
+                for (int x = 0; x < width; x++) {
+                    labels[y * width + x] = row[x] > 0 ? 1 : 0;
+                }
+            }
+        }
+        return labels;
+    }
+
+    private Map<String, Object> toMap(int width, int height, double tolerance, List<ContourTracer.Contour> contours) {
+        List<Map<String, Object>> items = new ArrayList<>(contours.size());
+        for (ContourTracer.Contour contour : contours) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("label", contour.label());
+            item.put("hole", contour.hole());
+            item.put("area", contour.area());
+            item.put("perimeter", Math.round(contour.perimeter() * 100) / 100.0);
+            item.put("points", contour.points());
+            items.add(item);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("width", width);
+        result.put("height", height);
+        result.put("tolerance", tolerance);
+        result.put("contours", items);
+        return result;
+    }
+
+    /**
+     * Codifica os contornos em formato binário compacto:
+     * "CTR1" | width | height | tolerance (float) | quantidade de contornos, e para cada contorno
+     * label | hole (byte) | area (float) | perimeter (float) | quantidade de pontos | primeiro ponto
+     * seguido dos deltas em varint zigzag. Inteiros fixos são big-endian.
+     */
+    public byte[] encodeBinary(Map<String, Object> contourData) throws IOException {
+        List<?> contours = (List<?>) contourData.get("contours");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(BINARY_MAGIC);
+        out.writeInt(((Number) contourData.get("width")).intValue());
+        out.writeInt(((Number) contourData.get("height")).intValue());
+        out.writeFloat(((Number) contourData.get("tolerance")).floatValue());
+        out.writeInt(contours.size());
+
+        for (Object item : contours) {
+            Map<?, ?> contour = (Map<?, ?>) item;
+            int[] points = toIntArray(contour.get("points"));
+
+            out.writeInt(((Number) contour.get("label")).intValue());
+            out.writeByte(Boolean.TRUE.equals(contour.get("hole")) ? 1 : 0);
+            out.writeFloat(((Number) contour.get("area")).floatValue());
+            out.writeFloat(((Number) contour.get("perimeter")).floatValue());
+            out.writeInt(points.length / 2);
+
+            int previousX = 0;
+            int previousY = 0;
+            for (int i = 0; i < points.length; i += 2) {
+                writeVarInt(out, points[i] - previousX);
+                writeVarInt(out, points[i + 1] - previousY);
+                previousX = points[i];
+                previousY = points[i + 1];
+            }
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    public int[] toIntArray(Object points) {
+        if (points instanceof int[] array) {
+            return array;
+        }
+        // Contornos lidos do banco chegam como lista de números
+        List<?> list = (List<?>) points;
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ((Number) list.get(i)).intValue();
+        }
+        return array;
+    }
+
+    private void writeVarInt(DataOutputStream out, int value) throws IOException {
+        int zigzag = (value << 1) ^ (value >> 31);
+        while ((zigzag & ~0x7F) != 0) {
+            out.writeByte((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte(zigzag);
+    }
+}
@@ -1,32 +1,53 @@
 package com.example.backend.services;
 
+import com.example.backend.config.CacheConfig;
 import com.example.backend.entities.Database;
 import com.example.backend.entities.Image;
 import com.example.backend.interfaces.IDatabaseService;
+import com.example.backend.repositories.AnnotationRepository;
+import com.example.backend.repositories.AnnotationRevisionRepository;
 import com.example.backend.repositories.DatabaseRepository;
 import com.example.backend.repositories.ImageRepository;
+import com.example.backend.repositories.SegmentedImageRepository;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class DatabaseService implements IDatabaseService {
     private final DatabaseRepository databaseRepository;
     private final ImageRepository imageRepository;
+    private final AnnotationRepository annotationRepository;
+    private final AnnotationRevisionRepository annotationRevisionRepository;
+    private final SegmentedImageRepository segmentedImageRepository;
+    private final ArtifactCleanupService artifactCleanupService;
+    private final DatabaseSummaryService databaseSummaryService;
+    private final ImageMetadataService imageMetadataService;
+    private final RawPixelCache rawPixelCache;
+    private final GrayscaleImageCache grayscaleImageCache;
 
     private static final String UPLOAD_DIR = "uploads/";
 
+    /**
+     * Transacional: um arquivo recusado no meio do upload (DICOM não suportado) desfaz a base e as
+     * imagens já salvas; os arquivos já gravados ficam para o StorageReconciler.
+     */
     @Override
+    @Transactional
     public Database createDatabase(String name, Long userId, List<MultipartFile> imageIds) {
         if (databaseRepository.findByName(name).isPresent()) {
             throw new RuntimeException("A Database with this name already exists.");
@@ -38,24 +59,16 @@ public class DatabaseService implements IDatabaseService {
 
         database = databaseRepository.save(database);
 
-        try {
-            Files.createDirectories(Paths.get(UPLOAD_DIR));
-        } catch (IOException e) {
-            throw new RuntimeException("Could not create upload directory", e);
-        }
-
         List<Image> images = new ArrayList<>();
 
         for (MultipartFile file : imageIds) {
             try {
                 String filename = UUID.randomUUID().toString() + "_" + file.getOriginalFilename();
-                Path filePath = Paths.get(UPLOAD_DIR + filename);
-
-                Files.copy(file.getInputStream(), filePath);
 
                 Image image = new Image();
-                image.setDatabase(database);
                 image.setFilePath(UPLOAD_DIR + filename);
+                imageMetadataService.storeUpload(UPLOAD_DIR + filename, file, image);
+                image.setDatabase(database);
                 image.setEdited(false);
                 image.setCreatedAt(LocalDateTime.now());
                 image.setUpdatedAt(LocalDateTime.now());
@@ -68,6 +81,7 @@ public class DatabaseService implements IDatabaseService {
 
         imageRepository.saveAll(images);
         database.getImages().addAll(images);
+        databaseSummaryService.databaseCreated(database, images.size());
 
         return database;
     }
@@ -77,26 +91,48 @@ public class DatabaseService implements IDatabaseService {
         return databaseRepository.findAll();
     }
 
+    /**
+     * Apaga a base com DELETEs em massa (anotações, segmentações, imagens e a própria base) numa
+     * única transação, sem carregar as entidades. Os arquivos são removidos depois do commit.
+     */
     @Override
+    @Transactional
     public void deleteDatabase(Long databaseId) {
         if (!databaseRepository.existsById(Math.toIntExact(databaseId))) {
             throw new RuntimeException("Database not found with id: " + databaseId);
         }
 
-        databaseRepository.deleteById(Math.toIntExact(databaseId));
+        long start = System.currentTimeMillis();
+        List<Long> imageIds = imageRepository.findIdsByDatabaseId(databaseId);
+        List<String> files = new ArrayList<>(imageRepository.findFilePathsByDatabaseId(databaseId));
+        files.addAll(imageRepository.findSourceFilePathsByDatabaseId(databaseId));
+        files.addAll(annotationRepository.findFilePathsByDatabaseId(databaseId));
+        files.addAll(segmentedImageRepository.findFilePathsByDatabaseId(databaseId));
+
+        annotationRevisionRepository.deleteAllByDatabaseIdInBulk(databaseId);
+        annotationRepository.deleteAllByDatabaseIdInBulk(databaseId);
+        segmentedImageRepository.deleteAllByDatabaseIdInBulk(databaseId);
+        int images = imageRepository.deleteAllByDatabaseIdInBulk(databaseId);
+        databaseRepository.deleteByIdInBulk(databaseId);
+
+        artifactCleanupService.deleteAfterCommit(files);
+        evictPixelsAfterCommit(imageIds);
+        databaseSummaryService.databaseDeleted(databaseId);
+        log.info("Base {} removida: {} imagens em {} ms", databaseId, images, System.currentTimeMillis() - start);
     }
 
+    // As imagens em cache carregam a base junto; renomear a base invalida todas
     @Override
+    @Transactional
+    @CacheEvict(cacheNames = CacheConfig.IMAGES, allEntries = true)
     public Database editDatabase(Long id, String name, MultipartFile[] newFiles, Long[] removedFileIds) {
         Database database = databaseRepository.findById(Math.toIntExact(id))
                 .orElseThrow(() -> new RuntimeException("Database not found"));
 
         database.setName(name);
 
-        if (removedFileIds != null) {
-            for (Long fileId : removedFileIds) {
-                imageRepository.deleteById(fileId);
-            }
+        if (removedFileIds != null && removedFileIds.length > 0) {
+            removeImages(database.getId(), Arrays.asList(removedFileIds));
         }
 
         if (newFiles != null) {
@@ -104,13 +140,11 @@ public class DatabaseService implements IDatabaseService {
                 try {
                     String originalFilename = file.getOriginalFilename();
                     String filename = System.currentTimeMillis() + "_" + originalFilename;
-                    Path filePath = Paths.get(UPLOAD_DIR + filename);
-
-                    Files.copy(file.getInputStream(), filePath);
 
                     Image image = new Image();
+                    image.setFilePath(UPLOAD_DIR + filename);
+                    imageMetadataService.storeUpload(UPLOAD_DIR + filename, file, image);
                     image.setDatabase(database);
-                    image.setFilePath(filePath.toString().replace("\\", "/"));
                     image.setCreatedAt(LocalDateTime.now());
                     image.setUpdatedAt(LocalDateTime.now());
                     image.setEdited(false);
@@ -122,6 +156,55 @@ public class DatabaseService implements IDatabaseService {
             }
         }
 
+        databaseSummaryService.databaseChanged(database.getId());
         return databaseRepository.save(database);
     }
+
+    private void removeImages(Long databaseId, List<Long> requestedIds) {
+        // Só apaga imagens que pertencem a esta base
+        List<Long> imageIds = imageRepository.findIdsByDatabaseIdAndIdIn(databaseId, requestedIds);
+        if (imageIds.isEmpty()) {
+            return;
+        }
+
+        List<String> files = new ArrayList<>(imageRepository.findFilePathsByIdIn(imageIds));
+        files.addAll(imageRepository.findSourceFilePathsByIdIn(imageIds));
+        files.addAll(annotationRepository.findFilePathsByImageIdIn(imageIds));
+        files.addAll(segmentedImageRepository.findFilePathsByImageIdIn(imageIds));
+
+        annotationRevisionRepository.deleteAllByImageIdInBulk(imageIds);
+        annotationRepository.deleteAllByImageIdInBulk(imageIds);
+        segmentedImageRepository.deleteAllByImageIdInBulk(imageIds);
+        imageRepository.deleteAllByIdInBulk(imageIds);
+
+        artifactCleanupService.deleteAfterCommit(files);
+        evictPixelsAfterCommit(imageIds);
+    }
+
+    /**
+     * Tira as imagens apagadas dos caches de pixels (memória e arquivos .raw). Depois do commit:
+     * antes dele, uma leitura concorrente ainda encontraria a linha e recriaria o arquivo.
+     */
+    private void evictPixelsAfterCommit(List<Long> imageIds) {
+        if (imageIds.isEmpty()) {
+            return;
+        }
+
+        List<Long> snapshot = List.copyOf(imageIds);
+        Runnable evict = () -> snapshot.forEach(id -> {
+            grayscaleImageCache.invalidate(id);
+            rawPixelCache.invalidate(id);
+        });
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict.run();
+            }
+        });
+    }
 }
@@ -0,0 +1,203 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.Database;
+import com.example.backend.repositories.AnnotationRepository;
+import com.example.backend.repositories.DatabaseRepository;
+import com.example.backend.repositories.ImageRepository;
+import com.example.backend.repositories.SegmentedImageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Resumo de cada base (contagens de imagens, editadas, anotadas, segmentadas e a última
+ * atividade) mantido em memória para a tela inicial. É montado com três GROUP BY na
+ * inicialização e depois ajustado pelos caminhos de escrita, sempre após o commit. Uma
+ * reconstrução periódica corrige desvios, como escritas feitas por outra instância.
+ */
+@Slf4j
+@Service
+public class DatabaseSummaryService {
+
+    private final DatabaseRepository databaseRepository;
+    private final ImageRepository imageRepository;
+    private final AnnotationRepository annotationRepository;
+    private final SegmentedImageRepository segmentedImageRepository;
+
+    private final Map<Long, DatabaseSummary> summaries = new ConcurrentHashMap<>();
+    // Lock em vez de synchronized: a reconstrução faz JDBC e pode rodar em thread virtual
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private volatile boolean loaded;
+
+    public DatabaseSummaryService(DatabaseRepository databaseRepository,
+                                  ImageRepository imageRepository,
+                                  AnnotationRepository annotationRepository,
+                                  SegmentedImageRepository segmentedImageRepository) {
+        this.databaseRepository = databaseRepository;
+        this.imageRepository = imageRepository;
+        this.annotationRepository = annotationRepository;
+        this.segmentedImageRepository = segmentedImageRepository;
+    }
+
+    public List<DatabaseSummary> findAll() {
+        if (!loaded) {
+            rebuild();
+        }
+        return summaries.values().stream()
+                .sorted(Comparator.comparing(DatabaseSummary::id))
+                .toList();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${summary.rebuild-interval-ms:600000}",
+            fixedDelayString = "${summary.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            doRebuild();
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    private void doRebuild() {
+        long start = System.currentTimeMillis();
+        Map<Long, DatabaseSummary> rebuilt = new HashMap<>();
+        for (Database database : databaseRepository.findAll()) {
+            rebuilt.put(database.getId(), DatabaseSummary.empty(database.getId(), database.getName(), database.getUpdatedAt()));
+        }
+
+        for (Object[] row : imageRepository.summarizeByDatabase()) {
+            rebuilt.computeIfPresent((Long) row[0], (id, summary) -> summary.withImages(
+                    ((Number) row[1]).longValue(), ((Number) row[2]).longValue(), (LocalDateTime) row[3]));
+        }
+        for (Object[] row : annotationRepository.summarizeByDatabase()) {
+            rebuilt.computeIfPresent((Long) row[0], (id, summary) ->
+                    summary.withAnnotated(((Number) row[1]).longValue(), (LocalDateTime) row[2]));
+        }
+        for (Object[] row : segmentedImageRepository.summarizeByDatabase()) {
+            rebuilt.computeIfPresent((Long) row[0], (id, summary) ->
+                    summary.withSegmented(((Number) row[1]).longValue(), (LocalDateTime) row[2]));
+        }
+
+        summaries.keySet().retainAll(rebuilt.keySet());
+        summaries.putAll(rebuilt);
+        loaded = true;
+        log.info("Resumo de {} bases reconstruído em {} ms", rebuilt.size(), System.currentTimeMillis() - start);
+    }
+
+    public void databaseCreated(Database database, int images) {
+        afterCommit(() -> summaries.put(database.getId(),
+                DatabaseSummary.empty(database.getId(), database.getName(), LocalDateTime.now())
+                        .plus(images, 0, 0, 0, LocalDateTime.now())));
+    }
+
+    public void databaseDeleted(Long databaseId) {
+        afterCommit(() -> summaries.remove(databaseId));
+    }
+
+    /**
+     * Edições de base removem imagens com anotações e segmentações de estado desconhecido; a
+     * base afetada é recontada inteira, o que custa três consultas filtradas por database_id.
+     */
+    public void databaseChanged(Long databaseId) {
+        afterCommit(() -> refresh(databaseId));
+    }
+
+    public void imageEdited(Long databaseId) {
+        update(databaseId, summary -> summary.plus(0, 1, 0, 0, LocalDateTime.now()));
+    }
+
+    public void annotationSaved(Long databaseId, boolean created) {
+        update(databaseId, summary -> summary.plus(0, 0, created ? 1 : 0, 0, LocalDateTime.now()));
+    }
+
+    public void segmentationSaved(Long databaseId, boolean created) {
+        update(databaseId, summary -> summary.plus(0, 0, 0, created ? 1 : 0, LocalDateTime.now()));
+    }
+
+    public void chunkSaved(Long databaseId, int edited, int annotated, int segmented) {
+        update(databaseId, summary -> summary.plus(0, edited, annotated, segmented, LocalDateTime.now()));
+    }
+
+    private void update(Long databaseId, UnaryOperator<DatabaseSummary> change) {
+        if (databaseId == null) {
+            return;
+        }
+        afterCommit(() -> summaries.computeIfPresent(databaseId, (id, summary) -> change.apply(summary)));
+    }
+
+    private void refresh(Long databaseId) {
+        databaseRepository.findById(Math.toIntExact(databaseId)).ifPresentOrElse(database -> {
+            DatabaseSummary summary = DatabaseSummary.empty(database.getId(), database.getName(), database.getUpdatedAt());
+            for (Object[] row : imageRepository.summarizeByDatabaseId(databaseId)) {
+                summary = summary.withImages(((Number) row[1]).longValue(), ((Number) row[2]).longValue(), (LocalDateTime) row[3]);
+            }
+            for (Object[] row : annotationRepository.summarizeByDatabaseId(databaseId)) {
+                summary = summary.withAnnotated(((Number) row[1]).longValue(), (LocalDateTime) row[2]);
+            }
+            for (Object[] row : segmentedImageRepository.summarizeByDatabaseId(databaseId)) {
+                summary = summary.withSegmented(((Number) row[1]).longValue(), (LocalDateTime) row[2]);
+            }
+            summaries.put(databaseId, summary);
+        }, () -> summaries.remove(databaseId));
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    public record DatabaseSummary(Long id, String name, long imageCount, long editedCount,
+                                  long annotatedCount, long segmentedCount, LocalDateTime lastActivity) {
+
+        static DatabaseSummary empty(Long id, String name, LocalDateTime lastActivity) {
+            return new DatabaseSummary(id, name, 0, 0, 0, 0, lastActivity);
+        }
+
+        DatabaseSummary plus(long images, long edited, long annotated, long segmented, LocalDateTime activity) {
+            return new DatabaseSummary(id, name, imageCount + images, editedCount + edited,
+                    annotatedCount + annotated, segmentedCount + segmented, latest(lastActivity, activity));
+        }
+
+        DatabaseSummary withImages(long images, long edited, LocalDateTime activity) {
+            return new DatabaseSummary(id, name, images, edited, annotatedCount, segmentedCount, latest(lastActivity, activity));
+        }
+
+        DatabaseSummary withAnnotated(long annotated, LocalDateTime activity) {
+            return new DatabaseSummary(id, name, imageCount, editedCount, annotated, segmentedCount, latest(lastActivity, activity));
+        }
+
+        DatabaseSummary withSegmented(long segmented, LocalDateTime activity) {
+            return new DatabaseSummary(id, name, imageCount, editedCount, annotatedCount, segmented, latest(lastActivity, activity));
+        }
+
+        private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+            if (a == null) {
+                return b;
+            }
+            return b != null && b.isAfter(a) ? b : a;
+        }
+    }
+}
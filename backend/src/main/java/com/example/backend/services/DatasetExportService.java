@@ -0,0 +1,357 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.Annotation;
+import com.example.backend.entities.Image;
+import com.example.backend.entities.Segmented_Image;
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.interfaces.IDatasetExportService;
+import com.example.backend.repositories.AnnotationRepository;
+import com.example.backend.repositories.DatabaseRepository;
+import com.example.backend.repositories.ImageRepository;
+import com.example.backend.repositories.SegmentedImageRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exporta uma base como ZIP escrito direto na resposta:
+ *
+ * images/{id}.{ext}        originais
+ * masks/{id}.png           máscara RGBA da segmentação
+ * labels/{id}.png          máscara indexada por rótulo (quando existir)
+ * annotations/{id}.json    annotationData da anotação
+ * annotations.coco.json    polígonos dos contornos no formato COCO
+ *
+ * As imagens são percorridas por páginas de id (keyset), cada arquivo é copiado em fluxo e o
+ * COCO é gerado com JsonGenerator; a memória usada não depende do tamanho da base. Como a
+ * exportação roda na thread da requisição (open-in-view), o contexto de persistência é limpo a
+ * cada página para não acumular as entidades já escritas.
+ */
+@Slf4j
+@Service
+public class DatasetExportService implements IDatasetExportService {
+
+    private static final int PAGE_SIZE = 200;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DatabaseRepository databaseRepository;
+    private final ImageRepository imageRepository;
+    private final AnnotationRepository annotationRepository;
+    private final SegmentedImageRepository segmentedImageRepository;
+    private final ContourService contourService;
+    private final IBlobStore blobStore;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public DatasetExportService(DatabaseRepository databaseRepository,
+                                ImageRepository imageRepository,
+                                AnnotationRepository annotationRepository,
+                                SegmentedImageRepository segmentedImageRepository,
+                                ContourService contourService,
+                                IBlobStore blobStore) {
+        this.databaseRepository = databaseRepository;
+        this.imageRepository = imageRepository;
+        this.annotationRepository = annotationRepository;
+        this.segmentedImageRepository = segmentedImageRepository;
+        this.contourService = contourService;
+        this.blobStore = blobStore;
+    }
+
+    @Override
+    public void exportDatabase(Long databaseId, boolean includeImages, OutputStream out) throws IOException {
+        if (!databaseRepository.existsById(Math.toIntExact(databaseId))) {
+            throw new IllegalArgumentException("Database not found with id: " + databaseId);
+        }
+
+        long start = System.nanoTime();
+        ZipOutputStream zip = new ZipOutputStream(out);
+        OutputStream entry = new EntryStream(zip);
+        WritableByteChannel entryChannel = Channels.newChannel(entry);
+
+        int exported = 0;
+        Long lastId = 0L;
+        List<Image> page;
+        while (!(page = nextPage(databaseId, lastId)).isEmpty()) {
+            Map<Long, Segmented_Image> segmentations = segmentationsOf(page);
+            Map<Long, Annotation> annotations = annotationsOf(page);
+
+            for (Image image : page) {
+                if (includeImages) {
+                    copyBlob(zip, entryChannel, image.getFilePath(), "images/" + imageFileName(image), false);
+                }
+
+                Segmented_Image segmentation = segmentations.get(image.getId());
+                if (segmentation != null) {
+                    copyBlob(zip, entryChannel, segmentation.getFile_path(), "masks/" + image.getId() + ".png", false);
+                    if (segmentation.getLabelsFilePath() != null) {
+                        copyBlob(zip, entryChannel, segmentation.getLabelsFilePath(), "labels/" + image.getId() + ".png", false);
+                    }
+                }
+
+                Annotation annotation = annotations.get(image.getId());
+                if (annotation != null && annotation.getAnnotationData() != null) {
+                    beginEntry(zip, "annotations/" + image.getId() + ".json", true);
+                    objectMapper.writeValue(entry, annotation.getAnnotationData());
+                    zip.closeEntry();
+                }
+                exported++;
+            }
+            lastId = page.get(page.size() - 1).getId();
+            entityManager.clear();
+        }
+
+        beginEntry(zip, "annotations.coco.json", true);
+        writeCoco(databaseId, entry);
+        zip.closeEntry();
+        zip.finish();
+        out.flush();
+
+        log.info("Base {} exportada: {} imagens em {} ms", databaseId, exported, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * COCO em duas passadas pelas imagens (o array "images" e depois "annotations"); as
+     * categorias, no máximo uma por rótulo, são acumuladas e escritas por último.
+     */
+    private void writeCoco(Long databaseId, OutputStream out) throws IOException {
+        Map<Integer, String> categories = new TreeMap<>();
+
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartObject();
+
+            json.writeObjectFieldStart("info");
+            json.writeNumberField("database_id", databaseId);
+            json.writeStringField("date_created", LocalDateTime.now().toString());
+            json.writeEndObject();
+
+            json.writeArrayFieldStart("images");
+            Long lastId = 0L;
+            List<Image> page;
+            while (!(page = nextPage(databaseId, lastId)).isEmpty()) {
+                Map<Long, Segmented_Image> segmentations = segmentationsOf(page);
+                for (Image image : page) {
+                    int[] size = imageSize(image, segmentations.get(image.getId()));
+                    json.writeStartObject();
+                    json.writeNumberField("id", image.getId());
+                    json.writeStringField("file_name", "images/" + imageFileName(image));
+                    if (size != null) {
+                        json.writeNumberField("width", size[0]);
+                        json.writeNumberField("height", size[1]);
+                    }
+                    json.writeEndObject();
+                }
+                lastId = page.get(page.size() - 1).getId();
+                json.flush();
+                entityManager.clear();
+            }
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("annotations");
+            long annotationId = 1;
+            lastId = 0L;
+            while (!(page = nextPage(databaseId, lastId)).isEmpty()) {
+                Map<Long, Segmented_Image> segmentations = segmentationsOf(page);
+                for (Image image : page) {
+                    Segmented_Image segmentation = segmentations.get(image.getId());
+                    if (segmentation == null) {
+                        continue;
+                    }
+                    annotationId = writeCocoAnnotations(json, image.getId(), segmentation, categories, annotationId);
+                }
+                lastId = page.get(page.size() - 1).getId();
+                json.flush();
+                entityManager.clear();
+            }
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("categories");
+            for (Map.Entry<Integer, String> category : categories.entrySet()) {
+                json.writeStartObject();
+                json.writeNumberField("id", category.getKey());
+                json.writeStringField("name", category.getValue());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+
+            json.writeEndObject();
+        }
+    }
+
+    private long writeCocoAnnotations(JsonGenerator json, Long imageId, Segmented_Image segmentation,
+                                      Map<Integer, String> categories, long nextId) throws IOException {
+        Map<String, Object> contourData = segmentation.getContours();
+        if (contourData == null) {
+            try {
+                String source = segmentation.getLabelsFilePath() != null ? segmentation.getLabelsFilePath() : segmentation.getFile_path();
+                contourData = contourService.extractContours(source, contourService.getDefaultTolerance());
+            } catch (IOException e) {
+                log.warn("Sem contornos para a imagem {}: {}", imageId, e.getMessage());
+                return nextId;
+            }
+        }
+
+        Map<Integer, String> legend = legendNames(segmentation);
+        for (Object item : (List<?>) contourData.get("contours")) {
+            Map<?, ?> contour = (Map<?, ?>) item;
+            // COCO não representa furos em polígonos simples; exporta só os contornos externos
+            if (Boolean.TRUE.equals(contour.get("hole"))) {
+                continue;
+            }
+
+            int label = ((Number) contour.get("label")).intValue();
+            categories.putIfAbsent(label, legend.getOrDefault(label, "object_" + label));
+
+            int[] points = contourService.toIntArray(contour.get("points"));
+            int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+            for (int i = 0; i < points.length; i += 2) {
+                minX = Math.min(minX, points[i]);
+                maxX = Math.max(maxX, points[i]);
+                minY = Math.min(minY, points[i + 1]);
+                maxY = Math.max(maxY, points[i + 1]);
+            }
+
+            json.writeStartObject();
+            json.writeNumberField("id", nextId++);
+            json.writeNumberField("image_id", imageId);
+            json.writeNumberField("category_id", label);
+            json.writeArrayFieldStart("segmentation");
+            json.writeArray(points, 0, points.length);
+            json.writeEndArray();
+            json.writeNumberField("area", ((Number) contour.get("area")).doubleValue());
+            json.writeArrayFieldStart("bbox");
+            json.writeNumber(minX);
+            json.writeNumber(minY);
+            json.writeNumber(maxX - minX);
+            json.writeNumber(maxY - minY);
+            json.writeEndArray();
+            json.writeNumberField("iscrowd", 0);
+            json.writeEndObject();
+        }
+        return nextId;
+    }
+
+    private Map<Integer, String> legendNames(Segmented_Image segmentation) {
+        Map<Integer, String> names = new TreeMap<>();
+        if (segmentation.getLabelLegend() != null) {
+            for (Map<String, Object> entry : segmentation.getLabelLegend()) {
+                if (entry.get("label") instanceof Number label && entry.get("name") != null) {
+                    names.put(label.intValue(), entry.get("name").toString());
+                }
+            }
+        } else {
+            // Máscara RGBA antiga: rótulo 1 é o objeto
+            names.put(1, "object");
+        }
+        return names;
+    }
+
+    private int[] imageSize(Image image, Segmented_Image segmentation) {
+        if (segmentation != null && segmentation.getContours() != null
+                && segmentation.getContours().get("width") instanceof Number width
+                && segmentation.getContours().get("height") instanceof Number height) {
+            return new int[]{width.intValue(), height.intValue()};
+        }
+
+        // Só o cabeçalho é lido, sem decodificar os pixels
+        try (InputStream in = blobStore.get(image.getFilePath());
+             ImageInputStream imageInput = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                return new int[]{reader.getWidth(0), reader.getHeight(0)};
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            log.warn("Não foi possível ler as dimensões da imagem {}: {}", image.getId(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void copyBlob(ZipOutputStream zip, WritableByteChannel entryChannel, String key, String name,
+                          boolean compress) throws IOException {
+        if (key == null || !blobStore.exists(key)) {
+            log.warn("Arquivo ausente na exportação: {}", key);
+            return;
+        }
+        beginEntry(zip, name, compress);
+        blobStore.transferTo(key, entryChannel);
+        zip.closeEntry();
+    }
+
+    private void beginEntry(ZipOutputStream zip, String name, boolean compress) throws IOException {
+        // PNG e JPEG já são comprimidos; deflate neles só gasta CPU
+        zip.setLevel(compress ? Deflater.DEFAULT_COMPRESSION : Deflater.NO_COMPRESSION);
+        zip.putNextEntry(new ZipEntry(name));
+    }
+
+    private List<Image> nextPage(Long databaseId, Long lastId) {
+        return imageRepository.findByDatabaseIdAndIdGreaterThanOrderByIdAsc(databaseId, lastId, PageRequest.of(0, PAGE_SIZE));
+    }
+
+    private Map<Long, Segmented_Image> segmentationsOf(List<Image> page) {
+        return segmentedImageRepository.findAllByImageIdIn(page.stream().map(Image::getId).toList()).stream()
+                .collect(Collectors.toMap(s -> s.getImage().getId(), Function.identity(), (a, b) -> a));
+    }
+
+    private Map<Long, Annotation> annotationsOf(List<Image> page) {
+        return annotationRepository.findAllByImageIdIn(page.stream().map(Image::getId).toList()).stream()
+                .collect(Collectors.toMap(a -> a.getImage().getId(), Function.identity(), (a, b) -> a));
+    }
+
+    private String imageFileName(Image image) {
+        String path = image.getFilePath();
+        int dot = path != null ? path.lastIndexOf('.') : -1;
+        String extension = dot >= 0 && dot > path.lastIndexOf('/') ? path.substring(dot) : "";
+        return image.getId() + extension;
+    }
+
+    /**
+     * Repassa as escritas para a entrada atual do ZIP sem deixar que close() feche o ZIP inteiro.
+     */
+    private static class EntryStream extends FilterOutputStream {
+        EntryStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
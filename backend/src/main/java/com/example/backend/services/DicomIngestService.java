@@ -0,0 +1,182 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.Image;
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.utils.DicomReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Importação de DICOM. O arquivo original (16 bits) fica guardado como veio e, no mesmo upload,
+ * é gerada uma versão PNG de 8 bits já janelada, que passa a ser o filePath da imagem. Exibição,
+ * segmentação e os caches em tons de cinza leem só o PNG; o DICOM não é decodificado de novo.
+ */
+@Slf4j
+@Service
+public class DicomIngestService {
+
+    public static final String FORMAT = "dicom";
+    public static final String RENDITION_SUFFIX = ".png";
+
+    private final IBlobStore blobStore;
+
+    // Percentis usados quando o arquivo não traz WindowCenter/WindowWidth
+    @Value("${dicom.auto-window.low-percentile:0.5}")
+    private double lowPercentile;
+
+    @Value("${dicom.auto-window.high-percentile:99.5}")
+    private double highPercentile;
+
+    public DicomIngestService(IBlobStore blobStore) {
+        this.blobStore = blobStore;
+    }
+
+    public boolean isDicom(MultipartFile file) throws IOException {
+        if ("application/dicom".equalsIgnoreCase(file.getContentType())) {
+            return true;
+        }
+        try (InputStream in = file.getInputStream()) {
+            return DicomReader.isDicom(in);
+        }
+    }
+
+    /**
+     * Decodifica o DICOM já gravado em key, grava a versão janelada em key + ".png" e aponta a
+     * imagem para ela. O original fica em sourceFilePath.
+     */
+    public void ingest(String key, MultipartFile file, Image image) throws IOException {
+        long start = System.nanoTime();
+        DicomReader.DicomImage dicom;
+        try (InputStream in = file.getInputStream()) {
+            dicom = DicomReader.read(in);
+        }
+
+        Window window = window(dicom);
+        byte[] rendition = render(dicom, window);
+        String renditionKey = key + RENDITION_SUFFIX;
+        blobStore.put(renditionKey, rendition, "image/png");
+
+        Map<String, Object> metadata = new LinkedHashMap<>(dicom.attributes());
+        metadata.put("displayWindowCenter", window.center());
+        metadata.put("displayWindowWidth", window.width());
+        metadata.put("displayWindowSource", window.source());
+
+        image.setSourceFilePath(key);
+        image.setFilePath(renditionKey);
+        image.setWidth(dicom.width());
+        image.setHeight(dicom.height());
+        image.setBitDepth(dicom.bitsStored());
+        image.setFormat(FORMAT);
+        image.setSourceMetadata(metadata);
+
+        log.info("DICOM {} importado ({}x{}, {} bits, janela {}/{} por {}) em {} ms", key, dicom.width(), dicom.height(),
+                dicom.bitsStored(), window.center(), window.width(), window.source(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Janela em unidades de modalidade (após rescale). Usa a do arquivo quando existe; senão, os
+     * percentis do histograma, para que poucos pixels extremos não achatem o contraste.
+     */
+    private Window window(DicomReader.DicomImage dicom) {
+        Double center = dicom.windowCenter();
+        Double width = dicom.windowWidth();
+        if (center != null && width != null && width >= 1) {
+            return new Window(center, width, "file");
+        }
+
+        int[] pixels = dicom.pixels();
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int value : pixels) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        int[] histogram = new int[max - min + 1];
+        for (int value : pixels) {
+            histogram[value - min]++;
+        }
+
+        int low = percentile(histogram, pixels.length, lowPercentile) + min;
+        int high = percentile(histogram, pixels.length, highPercentile) + min;
+        if (high <= low) {
+            high = low + 1;
+        }
+        double lowValue = low * dicom.rescaleSlope() + dicom.rescaleIntercept();
+        double highValue = high * dicom.rescaleSlope() + dicom.rescaleIntercept();
+        // Inverte a fórmula linear do DICOM para que low vá a 0 e high a 255
+        double windowWidth = Math.abs(highValue - lowValue) + 1;
+        double windowCenter = Math.min(lowValue, highValue) + 0.5 + (windowWidth - 1) / 2;
+        return new Window(windowCenter, windowWidth, "histogram");
+    }
+
+    private static int percentile(int[] histogram, int total, double percent) {
+        long target = (long) Math.ceil(total * percent / 100.0);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= Math.max(1, target)) {
+                return i;
+            }
+        }
+        return histogram.length - 1;
+    }
+
+    /**
+     * Aplica rescale e janela (fórmula linear do DICOM, PS3.3 C.11.2.1.2) por uma tabela indexada
+     * pelo valor armazenado, calculada uma vez por imagem em vez de por pixel.
+     */
+    private static byte[] render(DicomReader.DicomImage dicom, Window window) throws IOException {
+        int[] pixels = dicom.pixels();
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int value : pixels) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        boolean invert = "MONOCHROME1".equals(dicom.photometric());
+        double slope = dicom.rescaleSlope();
+        double intercept = dicom.rescaleIntercept();
+        double lower = window.center() - 0.5 - (window.width() - 1) / 2;
+        double upper = window.center() - 0.5 + (window.width() - 1) / 2;
+
+        byte[] lut = new byte[max - min + 1];
+        for (int i = 0; i < lut.length; i++) {
+            double value = (min + i) * slope + intercept;
+            int gray;
+            if (value <= lower) {
+                gray = 0;
+            } else if (value > upper) {
+                gray = 255;
+            } else {
+                gray = (int) Math.round(((value - (window.center() - 0.5)) / (window.width() - 1) + 0.5) * 255);
+                gray = Math.max(0, Math.min(255, gray));
+            }
+            lut[i] = (byte) (invert ? 255 - gray : gray);
+        }
+
+        BufferedImage image = new BufferedImage(dicom.width(), dicom.height(), BufferedImage.TYPE_BYTE_GRAY);
+        byte[] target = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < pixels.length; i++) {
+            target[i] = lut[pixels[i] - min];
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(pixels.length / 2);
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private record Window(double center, double width, String source) {
+    }
+}
@@ -2,38 +2,51 @@ package com.example.backend.services;
 
 import com.example.backend.entities.Annotation;
 import com.example.backend.entities.Image;
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.interfaces.IImageService;
 import com.example.backend.repositories.AnnotationRepository;
-import com.example.backend.repositories.ImageRepository;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.backend.utils.BlobKeys;
+import com.example.backend.utils.InitialMarkerGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.*;
-import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import java.util.concurrent.ForkJoinPool;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class GradCamMarkerService {
 
-    private static final String PYTHON_PATH = "C:\\Users\\Barbara\\AppData\\Local\\Programs\\Python\\Python311\\python.exe";
-    private static final String SCRIPT_PATH = new File("python/gradcam_markers.py").getAbsolutePath();
     private static final String MARKERS_DIR = "initial_markers/";
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final InitialMarkerGenerator markerGenerator = new InitialMarkerGenerator(ForkJoinPool.commonPool());
     private final AnnotationRepository annotationRepository;
-    private final ImageRepository imageRepository;
-
-    public GradCamResult generateInitialMarkers(String imagePath, Long imageId) throws IOException, InterruptedException {
+    private final IImageService imageService;
+    private final IBlobStore blobStore;
+    private final DatabaseSummaryService databaseSummaryService;
+    private final RawPixelCache rawPixelCache;
+    // Marcadores calculados pelo prefetch antes do pedido do usuário; consumidos uma vez
+    private final Cache<Long, InitialMarkerGenerator.Result> precomputed = Caffeine.newBuilder()
+            .maximumSize(32)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    public GradCamResult generateInitialMarkers(String imagePath, Long imageId) throws IOException {
         if (imagePath == null || imagePath.isBlank()) {
             throw new IllegalArgumentException("Caminho da imagem não pode ser vazio.");
         }
@@ -44,83 +57,69 @@ public class GradCamMarkerService {
             throw new IllegalArgumentException("Arquivo de imagem não encontrado: " + imagePath);
         }
 
-        Optional<Annotation> existingAnnotation = annotationRepository.findByImageId(imageId);
+        BufferedImage image = ImageIO.read(imageFile);
+        if (image == null) {
+            throw new IllegalArgumentException("Formato de imagem não suportado: " + imagePath);
+        }
+
+        log.info("Gerando marcadores iniciais para imagem: {}", imagePath);
+        return generateInitialMarkers(image, imageId);
+    }
+
+    public GradCamResult generateInitialMarkers(BufferedImage image, Long imageId) throws IOException {
+        Image originalImage = imageService.findImageById(imageId)
+                .orElseThrow(() -> new RuntimeException("Imagem original não encontrada com ID: " + imageId));
+
+        Annotation existing = annotationRepository.findByImageId(imageId).orElse(null);
+        Annotation annotation = prepareInitialMarkers(image, originalImage, existing);
+        annotationRepository.save(annotation);
+        databaseSummaryService.annotationSaved(
+                originalImage.getDatabase() != null ? originalImage.getDatabase().getId() : null, existing == null);
+
+        // Mesmo JSON que o script Python imprimia, para manter o contrato com o frontend
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("status", "success");
+        response.put("data", annotation.getAnnotationData());
+        return new GradCamResult(annotation.getFilePath(), objectMapper.writeValueAsString(response));
+    }
 
-        // Criar diretório para marcadores iniciais
-        new File(MARKERS_DIR).mkdirs();
+    /**
+     * Gera os marcadores e grava o PNG, devolvendo a anotação preenchida mas ainda não salva,
+     * para que o chamador decida quando persistir (o pipeline em lote salva vários de uma vez).
+     */
+    public Annotation prepareInitialMarkers(BufferedImage image, Image originalImage, Annotation existingAnnotation) throws IOException {
+        Long imageId = originalImage.getId();
 
         // Gerar nome único para o arquivo de marcadores
         String outputFilename;
-        String fullOutputPath;
 
-        if (existingAnnotation.isPresent()) {
+        if (existingAnnotation != null && existingAnnotation.getFilePath() != null) {
             // Se já existe, tentamos reutilizar o nome do arquivo para não encher o disco
             // (Nota: Cuidado com cache de navegador ao reutilizar nomes)
-            String existingPath = existingAnnotation.get().getFilePath();
-            File oldFile = new File(existingPath.startsWith("/") ? existingPath.substring(1) : existingPath);
-            outputFilename = oldFile.getName();
+            outputFilename = BlobKeys.filename(existingAnnotation.getFilePath());
         } else {
             outputFilename = "markers_" + imageId + "_" + UUID.randomUUID() + ".png";
         }
 
-        // Caminho completo do sistema para passar ao Python
-        fullOutputPath = Paths.get(MARKERS_DIR, outputFilename).toString();
-
-        log.info("Gerando marcadores iniciais para imagem: {}", imagePath);
+        String fullOutputPath = MARKERS_DIR + outputFilename;
         log.info("Arquivo de saída: {}", fullOutputPath);
 
-        ProcessBuilder pb = new ProcessBuilder(
-                PYTHON_PATH,
-                SCRIPT_PATH,
-                imagePath,
-                fullOutputPath
-        );
-
-        pb.environment().put("PYTHONIOENCODING", "utf-8");
-        pb.redirectErrorStream(true);
-
-        Process process = pb.start();
-
-        // Ler saída do script Python
-        StringBuilder output = new StringBuilder();
-        String jsonResponse = null;
-
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-                log.info("[GRADCAM] {}", line);
-
-                // Tentar extrair JSON da linha
-                if (isValidJsonLine(line)) {
-                    jsonResponse = line.trim();
-                    log.info("JSON encontrado e válido: {}", jsonResponse);
-                    break; // Parar na primeira linha JSON válida
-                }
-            }
+        long start = System.nanoTime();
+        InitialMarkerGenerator.Result result = precomputed.asMap().remove(imageId);
+        if (result == null || result.width() != image.getWidth() || result.height() != image.getHeight()) {
+            result = markerGenerator.generate(image);
         }
+        log.info("Marcadores calculados em {} ms ({} objeto, {} fundo)",
+                (System.nanoTime() - start) / 1_000_000, result.objectCount(), result.backgroundCount());
 
-        int exitCode = process.waitFor();
-        log.info("Script Python finalizado com código: {}", exitCode);
-
-        if (exitCode != 0) {
-            throw new RuntimeException("Falha na execução do script Grad-CAM. Código: " + exitCode);
-        }
-
-        // Verificar se o arquivo foi gerado
-        File outputFile = new File(fullOutputPath);
-        if (!outputFile.exists()) {
-            log.error("Arquivo de marcadores não foi gerado: {}", fullOutputPath);
-            throw new RuntimeException("Arquivo de marcadores não foi gerado: " + fullOutputPath);
-        }
-
-        Image originalImage = imageRepository.findById(imageId)
-                .orElseThrow(() -> new RuntimeException("Imagem original não encontrada com ID: " + imageId));
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(result.markers(), "png", png);
+        blobStore.put(fullOutputPath, png.toByteArray(), "image/png");
 
         Annotation annotation;
 
-        if(existingAnnotation.isPresent()){
-            annotation = existingAnnotation.get();
+        if (existingAnnotation != null) {
+            annotation = existingAnnotation;
             annotation.setFilePath("/" + MARKERS_DIR + outputFilename);
             annotation.setUpdatedAt(LocalDateTime.now());
         } else {
@@ -132,103 +131,55 @@ public class GradCamMarkerService {
         }
 
         log.info("Arquivo de marcadores gerado com sucesso: {} ({} bytes)",
-                fullOutputPath, outputFile.length());
+                fullOutputPath, png.size());
 
-        // Se não encontrou JSON na linha, procurar no output completo
-        if (jsonResponse == null) {
-            jsonResponse = extractJsonFromOutput(output.toString());
-        }
+        annotation.setAnnotationData(result.toData());
+        return annotation;
+    }
 
-        // Parse da resposta JSON
-        if (jsonResponse != null && isValidJsonResponse(jsonResponse)) {
-            try {
-                JsonNode rootNode = objectMapper.readTree(jsonResponse);
-
-                if (rootNode.has("data")) {
-                    JsonNode dataNode = rootNode.get("data");
-
-                    // CONVERSÃO MÁGICA: JsonNode -> Map<String, Object>
-                    Map<String, Object> annotationMap = objectMapper.convertValue(
-                            dataNode,
-                            new TypeReference<Map<String, Object>>() {}
-                    );
-
-                    annotation.setAnnotationData(annotationMap);
-                }
-                annotationRepository.save(annotation);
-                return new GradCamResult("/initial_markers/" + outputFilename, jsonResponse);
-            } catch (Exception e) {
-                log.error("Erro ao converter JSON para Map: ", e);
-                throw new RuntimeException("Erro ao processar dados da anotação", e);
-            }
-        } else {
-            log.error("Script Grad-CAM não retornou JSON válido. Output completo: {}", output.toString());
-            // Mesmo sem JSON válido, se o arquivo foi gerado, retornar sucesso
-            if (outputFile.exists() && outputFile.length() > 0) {
-                log.warn("Retornando sucesso apesar de JSON inválido, pois arquivo foi gerado");
-                String fallbackStats = "{\"object_markers\": 0, \"background_markers\": 0, \"total_markers\": 0, \"image_size\": [0, 0], \"method\": \"fallback\"}";
-                return new GradCamResult("/initial_markers/" + outputFilename, fallbackStats);
-            } else {
-                throw new RuntimeException("Script Grad-CAM não retornou resposta válida e nenhum arquivo foi gerado.");
-            }
+    /**
+     * Calcula os marcadores iniciais da imagem sem gravar nada: o próximo pedido de marcadores
+     * para ela só grava o PNG e a anotação. Usado pelo prefetch da navegação.
+     */
+    public void precomputeInitialMarkers(Long imageId) throws IOException {
+        if (precomputed.getIfPresent(imageId) != null) {
+            return;
         }
+        BufferedImage image = rawPixelCache.get(imageId).toBufferedImage();
+        precomputed.put(imageId, markerGenerator.generate(image));
     }
 
     /**
-     * Verifica se a linha é um JSON válido
+     * Regrava o PNG de marcadores removido pela evicção de disco, a partir da imagem original.
+     * Só o arquivo é refeito: os dados da anotação podem ter sido editados depois da geração.
      */
-    private boolean isValidJsonLine(String line) {
-        if (line == null || line.trim().isEmpty()) {
+    @Transactional(readOnly = true)
+    public boolean regenerateMarkersFile(String key) throws IOException {
+        String normalized = BlobKeys.normalize(key);
+        Optional<Annotation> annotation = annotationRepository.findFirstByFilePathIn(List.of("/" + normalized, normalized));
+        if (annotation.isEmpty() || annotation.get().getImage() == null) {
             return false;
         }
 
-        String trimmed = line.trim();
-        if (!trimmed.startsWith("{") || !trimmed.endsWith("}")) {
+        Image original = annotation.get().getImage();
+        String imageKey = original.getFilePath();
+        if (imageKey == null || !blobStore.exists(imageKey)) {
             return false;
         }
 
+        BufferedImage image;
         try {
-            objectMapper.readTree(trimmed);
-            return true;
-        } catch (JsonProcessingException e) {
+            image = rawPixelCache.get(original.getId()).toBufferedImage();
+        } catch (IOException e) {
+            log.warn("Imagem {} ilegível ao regenerar marcadores: {}", imageKey, e.getMessage());
             return false;
         }
-    }
-
-    /**
-     * Verifica se a resposta JSON é válida e contém status success
-     */
-    private boolean isValidJsonResponse(String jsonResponse) {
-        try {
-            JsonNode jsonNode = objectMapper.readTree(jsonResponse);
-            return jsonNode.has("status") && "success".equals(jsonNode.get("status").asText());
-        } catch (Exception e) {
-            log.warn("JSON inválido: {}", e.getMessage());
-            return false;
-        }
-    }
-
-    /**
-     * Extrai JSON do output completo usando regex
-     */
-    private String extractJsonFromOutput(String output) {
-        try {
-            // Padrão para encontrar JSON
-            Pattern pattern = Pattern.compile("\\{.*?\\}");
-            Matcher matcher = pattern.matcher(output);
-
-            while (matcher.find()) {
-                String candidate = matcher.group();
-                if (isValidJsonResponse(candidate)) {
-                    log.info("JSON extraído via regex: {}", candidate);
-                    return candidate;
-                }
-            }
-        } catch (Exception e) {
-            log.warn("Erro ao extrair JSON via regex: {}", e.getMessage());
-        }
 
-        return null;
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(markerGenerator.generate(image).markers(), "png", png);
+        blobStore.put(normalized, png.toByteArray(), "image/png");
+        log.info("Marcadores {} regenerados a partir de {}", normalized, imageKey);
+        return true;
     }
 
     public static class GradCamResult {
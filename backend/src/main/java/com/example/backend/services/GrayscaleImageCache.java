@@ -0,0 +1,118 @@
+package com.example.backend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Versão em tons de cinza (1 byte por pixel) das imagens abertas no editor, para as ferramentas
+ * interativas que trabalham pixel a pixel. Os buffers ficam fora do heap (ByteBuffer direto, ou o
+ * próprio arquivo mapeado do RawPixelCache quando a imagem já é cinza de 8 bits) e o cache é
+ * limitado pelo total de bytes; a imagem menos usada sai primeiro. O editor dispara o
+ * carregamento ao abrir a imagem e a primeira ferramenta já encontra o buffer pronto.
+ */
+@Slf4j
+@Service
+public class GrayscaleImageCache {
+
+    private final RawPixelCache rawPixelCache;
+    private final Cache<Long, GrayscaleImage> cache;
+    private final ExecutorService warmer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "grayscale-warmer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public GrayscaleImageCache(RawPixelCache rawPixelCache,
+                               @Value("${region-grow.cache-budget-mb:256}") long budgetMb) {
+        this.rawPixelCache = rawPixelCache;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(budgetMb * 1024 * 1024)
+                .weigher((Long id, GrayscaleImage image) -> image.pixels().capacity())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Buffer da imagem, decodificado na primeira chamada. Chamadas simultâneas para a mesma
+     * imagem esperam a mesma decodificação.
+     */
+    public GrayscaleImage get(Long imageId) throws IOException {
+        try {
+            return cache.get(imageId, this::load);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void warmAsync(Long imageId) {
+        if (cache.getIfPresent(imageId) != null) {
+            return;
+        }
+        warmer.execute(() -> {
+            try {
+                get(imageId);
+            } catch (Exception e) {
+                log.debug("Pré-carregamento em tons de cinza falhou para imageId {}: {}", imageId, e.getMessage());
+            }
+        });
+    }
+
+    public void invalidate(Long imageId) {
+        cache.invalidate(imageId);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private GrayscaleImage load(Long imageId) {
+        RawPixelCache.RawPixels raw;
+        try {
+            raw = rawPixelCache.get(imageId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // Cinza de 8 bits: o próprio mapeamento do arquivo serve de buffer, sem cópia
+        if (raw.bands() == 1 && raw.bytesPerSample() == 1) {
+            return new GrayscaleImage(raw.width(), raw.height(), raw.pixels().asReadOnlyBuffer());
+        }
+
+        long start = System.nanoTime();
+        int count = raw.width() * raw.height();
+        ByteBuffer pixels = ByteBuffer.allocateDirect(count);
+        for (int i = 0; i < count; i++) {
+            pixels.put((byte) raw.grayAt(i));
+        }
+        pixels.flip();
+        log.info("Imagem {} convertida para tons de cinza ({}x{}) em {} ms",
+                imageId, raw.width(), raw.height(), (System.nanoTime() - start) / 1_000_000);
+        return new GrayscaleImage(raw.width(), raw.height(), pixels.asReadOnlyBuffer());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        warmer.shutdown();
+    }
+
+    /**
+     * pixels em ordem de linha (y * width + x), valores sem sinal: use {@code get(i) & 0xFF}.
+     */
+    public record GrayscaleImage(int width, int height, ByteBuffer pixels) {
+
+        public int valueAt(int index) {
+            return pixels.get(index) & 0xFF;
+        }
+    }
+}
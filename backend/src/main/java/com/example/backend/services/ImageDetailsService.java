@@ -0,0 +1,109 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.Annotation;
+import com.example.backend.interfaces.IImageDetailsService;
+import com.example.backend.repositories.AnnotationRepository;
+import com.example.backend.repositories.ImageRepository;
+import com.example.backend.repositories.SegmentedImageRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Anotações e segmentações de várias imagens numa única resposta, com uma consulta IN por
+ * tabela. Sem o campo annotationData a anotação vem por projeção, sem ler o jsonb; os
+ * contornos da segmentação nunca entram (têm endpoint próprio).
+ */
+@Service
+@RequiredArgsConstructor
+public class ImageDetailsService implements IImageDetailsService {
+
+    public static final String FIELD_ANNOTATION = "annotation";
+    public static final String FIELD_ANNOTATION_DATA = "annotationData";
+    public static final String FIELD_SEGMENTATION = "segmentation";
+    public static final Set<String> ALL_FIELDS = Set.of(FIELD_ANNOTATION, FIELD_ANNOTATION_DATA, FIELD_SEGMENTATION);
+
+    private final ImageRepository imageRepository;
+    private final AnnotationRepository annotationRepository;
+    private final SegmentedImageRepository segmentedImageRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> findDetails(Collection<Long> imageIds, Set<String> fields) {
+        Set<Long> ids = new LinkedHashSet<>(imageIds);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Map<String, Object>> annotations = new HashMap<>();
+        if (fields.contains(FIELD_ANNOTATION_DATA)) {
+            for (Annotation annotation : annotationRepository.findAllByImageIdIn(ids)) {
+                Map<String, Object> entry = annotationEntry(annotation.getId(), annotation.getImage().getId(),
+                        annotation.getFilePath(), annotation.getCreatedAt(), annotation.getUpdatedAt());
+                entry.put("annotationData", annotation.getAnnotationData());
+                annotations.put(annotation.getImage().getId(), entry);
+            }
+        } else if (fields.contains(FIELD_ANNOTATION)) {
+            for (Object[] row : annotationRepository.findHeadersByImageIdIn(ids)) {
+                annotations.put((Long) row[1], annotationEntry(row[0], row[1], row[2], row[3], row[4]));
+            }
+        }
+
+        Map<Long, Map<String, Object>> segmentations = new HashMap<>();
+        if (fields.contains(FIELD_SEGMENTATION)) {
+            for (Object[] row : segmentedImageRepository.findMetadataByImageIdIn(ids)) {
+                // Mesmas chaves de /image/findSegmentedImageByImageId
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("id", row[0]);
+                entry.put("imageId", row[1]);
+                entry.put("segmentedImageUrl", row[2]);
+                entry.put("labelsUrl", row[3]);
+                entry.put("labels", row[4]);
+                entry.put("createdAt", row[5]);
+                entry.put("updatedAt", row[6]);
+                segmentations.put((Long) row[1], entry);
+            }
+        }
+
+        List<Map<String, Object>> items = new ArrayList<>(ids.size());
+        for (Long imageId : ids) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("imageId", imageId);
+            if (fields.contains(FIELD_ANNOTATION) || fields.contains(FIELD_ANNOTATION_DATA)) {
+                item.put("annotation", annotations.get(imageId));
+            }
+            if (fields.contains(FIELD_SEGMENTATION)) {
+                item.put("segmentation", segmentations.get(imageId));
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    @Override
+    public List<Long> findImageIdsByDatabase(Long databaseId, Long afterId, int limit) {
+        return imageRepository.findIdsByDatabaseIdAfter(databaseId, afterId, PageRequest.of(0, limit));
+    }
+
+    private static Map<String, Object> annotationEntry(Object id, Object imageId, Object filePath,
+                                                       Object createdAt, Object updatedAt) {
+        // Mesmas chaves de /annotation/{imageId}
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("id", id);
+        entry.put("imageId", imageId);
+        entry.put("filePath", filePath);
+        entry.put("createdAt", createdAt);
+        entry.put("updatedAt", updatedAt);
+        return entry;
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.Image;
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.repositories.ImageRepository;
+import com.example.backend.utils.ImageHeaders;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Metadados das imagens (dimensões, profundidade de bits, formato, tamanho e SHA-256). No upload,
+ * o hash é calculado no mesmo fluxo que grava o arquivo e as dimensões vêm só do cabeçalho.
+ * Imagens anteriores a isso são preenchidas aos poucos por uma tarefa periódica.
+ */
+@Slf4j
+@Service
+public class ImageMetadataService {
+
+    private final IBlobStore blobStore;
+    private final ImageRepository imageRepository;
+    private final DicomIngestService dicomIngestService;
+
+    @Value("${image-metadata.backfill-batch-size:50}")
+    private int backfillBatchSize;
+
+    // Cursor da tarefa: imagens cujo arquivo não pôde ser lido não são tentadas de novo até reiniciar
+    private long backfillCursor;
+
+    public ImageMetadataService(IBlobStore blobStore, ImageRepository imageRepository, DicomIngestService dicomIngestService) {
+        this.blobStore = blobStore;
+        this.imageRepository = imageRepository;
+        this.dicomIngestService = dicomIngestService;
+    }
+
+    /**
+     * Grava o arquivo enviado em key e preenche os metadados da imagem (ainda não salva). Tamanho
+     * e hash são sempre do arquivo enviado; para DICOM, a imagem passa a apontar para a versão PNG.
+     * DICOM não suportado: o arquivo gravado é removido e sai IllegalArgumentException com o nome.
+     */
+    public void storeUpload(String key, MultipartFile file, Image image) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            blobStore.put(key, in, file.getSize(), file.getContentType());
+        }
+        image.setSizeBytes(file.getSize());
+        image.setContentHash(HexFormat.of().formatHex(digest.digest()));
+
+        if (dicomIngestService.isDicom(file)) {
+            try {
+                dicomIngestService.ingest(key, file, image);
+            } catch (IllegalArgumentException e) {
+                // DICOM que o leitor não aceita (comprimido, colorido...): não fica órfão no armazenamento
+                deleteQuietly(key);
+                deleteQuietly(key + DicomIngestService.RENDITION_SUFFIX);
+                throw new IllegalArgumentException("Arquivo DICOM não suportado (" + file.getOriginalFilename()
+                        + "): " + e.getMessage(), e);
+            }
+            return;
+        }
+
+        try (InputStream in = file.getInputStream()) {
+            readHeaders(in, key).ifPresent(info -> apply(image, info));
+        }
+    }
+
+    @Scheduled(initialDelayString = "${image-metadata.backfill-initial-delay-ms:120000}",
+            fixedDelayString = "${image-metadata.backfill-interval-ms:60000}")
+    public void backfill() {
+        List<Object[]> pending = imageRepository.findWithoutMetadataAfter(backfillCursor, PageRequest.of(0, backfillBatchSize));
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        int updated = 0;
+        for (Object[] row : pending) {
+            Long id = (Long) row[0];
+            String key = (String) row[1];
+            backfillCursor = id;
+            if (key == null || !blobStore.exists(key)) {
+                continue;
+            }
+
+            // Uma leitura só: o cabeçalho passa pelo digest e o restante é drenado para completar o hash
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(blobStore.get(key), digest)) {
+                Optional<ImageHeaders.Info> info = readHeaders(in, key);
+                in.transferTo(OutputStream.nullOutputStream());
+
+                long size = blobStore.size(key);
+                imageRepository.updateMetadata(id,
+                        info.map(ImageHeaders.Info::width).orElse(null),
+                        info.map(ImageHeaders.Info::height).orElse(null),
+                        info.map(ImageHeaders.Info::bitDepth).orElse(null),
+                        info.map(ImageHeaders.Info::format).orElse(null),
+                        size,
+                        HexFormat.of().formatHex(digest.digest()));
+                updated++;
+            } catch (IOException e) {
+                log.warn("Metadados não extraídos da imagem {}: {}", id, e.getMessage());
+            }
+        }
+        log.info("Metadados preenchidos para {} de {} imagens antigas", updated, pending.size());
+    }
+
+    private void deleteQuietly(String key) {
+        try {
+            blobStore.delete(key);
+        } catch (IOException e) {
+            log.warn("Não foi possível remover {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Optional<ImageHeaders.Info> readHeaders(InputStream in, String key) {
+        try {
+            return ImageHeaders.read(in);
+        } catch (IOException e) {
+            // Cabeçalho ilegível não impede o upload; a imagem fica sem dimensões
+            log.warn("Cabeçalho ilegível em {}: {}", key, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void apply(Image image, ImageHeaders.Info info) {
+        image.setWidth(info.width());
+        image.setHeight(info.height());
+        image.setBitDepth(info.bitDepth());
+        image.setFormat(info.format());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
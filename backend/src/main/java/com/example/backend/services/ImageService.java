@@ -1,9 +1,11 @@
 package com.example.backend.services;
 
+import com.example.backend.config.CacheConfig;
 import com.example.backend.entities.Image;
 import com.example.backend.interfaces.IImageService;
 import com.example.backend.repositories.ImageRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -19,8 +21,13 @@ public class ImageService implements IImageService {
         return imageRepository.findAllByDatabaseId(databaseId);
     }
 
+    /**
+     * Leitura do editor. A base vem junto no fetch porque a entidade é serializada fora da sessão
+     * quando sai do cache; quem altera a imagem continua usando o repositório.
+     */
     @Override
+    @Cacheable(cacheNames = CacheConfig.IMAGES, key = "#p0")
     public Optional<Image> findImageById(Long imageId) {
-        return imageRepository.findById(imageId);
+        return imageRepository.findWithDatabaseById(imageId);
     }
 }
@@ -0,0 +1,162 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.ProcessingJob;
+import com.example.backend.repositories.ProcessingJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Fila de processamento persistida na tabela processing_jobs. Qualquer nó do backend pode
+ * reivindicar jobs; o lease garante que um job abandonado por um nó que caiu volte para a fila.
+ */
+@Slf4j
+@Service
+public class JobQueueService {
+
+    private final ProcessingJobRepository processingJobRepository;
+
+    @Value("${jobs.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${jobs.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${jobs.retry-backoff-seconds:10}")
+    private long retryBackoffSeconds;
+
+    public JobQueueService(ProcessingJobRepository processingJobRepository) {
+        this.processingJobRepository = processingJobRepository;
+    }
+
+    public long getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    public ProcessingJob enqueue(String type, Long imageId, Map<String, Object> payload) {
+        ProcessingJob job = new ProcessingJob(type, imageId, payload, maxAttempts);
+        LocalDateTime now = LocalDateTime.now();
+        job.setAvailableAt(now);
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        return processingJobRepository.save(job);
+    }
+
+    public Optional<ProcessingJob> findJob(Long jobId) {
+        return processingJobRepository.findById(jobId);
+    }
+
+    /**
+     * Reivindica até {@code limit} jobs para o worker. Jobs com lease vencido que já esgotaram as
+     * tentativas são marcados como falha em vez de rodar de novo.
+     */
+    @Transactional
+    public List<ProcessingJob> claim(String workerId, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ProcessingJob> claimed = new ArrayList<>();
+
+        for (ProcessingJob job : processingJobRepository.lockClaimable(now, limit)) {
+            if (ProcessingJob.STATE_RUNNING.equals(job.getState())) {
+                log.warn("Lease do job {} venceu (dono: {}); devolvendo à fila", job.getId(), job.getLeaseOwner());
+                if (job.getAttempts() >= job.getMaxAttempts()) {
+                    job.setState(ProcessingJob.STATE_FAILED);
+                    job.setErrorMessage("Lease vencido após " + job.getAttempts() + " tentativas.");
+                    job.setLeaseOwner(null);
+                    job.setLeaseExpiresAt(null);
+                    job.setUpdatedAt(now);
+                    continue;
+                }
+            }
+
+            job.setState(ProcessingJob.STATE_RUNNING);
+            job.setLeaseOwner(workerId);
+            job.setLeaseExpiresAt(now.plusSeconds(leaseSeconds));
+            job.setAttempts(job.getAttempts() + 1);
+            job.setUpdatedAt(now);
+            claimed.add(job);
+        }
+        return claimed;
+    }
+
+    @Transactional
+    public boolean renewLease(Long jobId, String workerId) {
+        LocalDateTime now = LocalDateTime.now();
+        return processingJobRepository.renewLease(jobId, workerId, now.plusSeconds(leaseSeconds), now) > 0;
+    }
+
+    @Transactional
+    public boolean complete(Long jobId, String workerId, Map<String, Object> result) {
+        Optional<ProcessingJob> jobOpt = lockOwned(jobId, workerId);
+        if (jobOpt.isEmpty()) {
+            return false;
+        }
+
+        ProcessingJob job = jobOpt.get();
+        job.setState(ProcessingJob.STATE_DONE);
+        job.setResult(result);
+        job.setErrorMessage(null);
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+        job.setUpdatedAt(LocalDateTime.now());
+        return true;
+    }
+
+    /**
+     * Registra a falha. Erros transitórios voltam para a fila com espera crescente até o limite
+     * de tentativas; erros permanentes (entrada inválida) falham de imediato.
+     */
+    @Transactional
+    public boolean fail(Long jobId, String workerId, String errorMessage, boolean retryable) {
+        Optional<ProcessingJob> jobOpt = lockOwned(jobId, workerId);
+        if (jobOpt.isEmpty()) {
+            return false;
+        }
+
+        ProcessingJob job = jobOpt.get();
+        LocalDateTime now = LocalDateTime.now();
+        job.setErrorMessage(errorMessage);
+        job.setLeaseOwner(null);
+        job.setLeaseExpiresAt(null);
+        job.setUpdatedAt(now);
+
+        if (retryable && job.getAttempts() < job.getMaxAttempts()) {
+            job.setState(ProcessingJob.STATE_QUEUED);
+            job.setAvailableAt(now.plusSeconds(retryBackoffSeconds * job.getAttempts()));
+        } else {
+            job.setState(ProcessingJob.STATE_FAILED);
+        }
+        return true;
+    }
+
+    public long queuedCount() {
+        return processingJobRepository.countByState(ProcessingJob.STATE_QUEUED);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (String state : List.of(ProcessingJob.STATE_QUEUED, ProcessingJob.STATE_RUNNING,
+                ProcessingJob.STATE_DONE, ProcessingJob.STATE_FAILED)) {
+            stats.put(state.toLowerCase(), processingJobRepository.countByState(state));
+        }
+        return stats;
+    }
+
+    private Optional<ProcessingJob> lockOwned(Long jobId, String workerId) {
+        Optional<ProcessingJob> jobOpt = processingJobRepository.findByIdForUpdate(jobId)
+                .filter(job -> ProcessingJob.STATE_RUNNING.equals(job.getState()))
+                .filter(job -> workerId.equals(job.getLeaseOwner()));
+        if (jobOpt.isEmpty()) {
+            // Outro worker reivindicou o job depois que o lease venceu; o resultado deste é descartado
+            log.warn("Worker {} perdeu o lease do job {}", workerId, jobId);
+        }
+        return jobOpt;
+    }
+}
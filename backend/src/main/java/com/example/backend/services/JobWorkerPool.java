@@ -0,0 +1,210 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.ProcessingJob;
+import com.example.backend.interfaces.IBlobStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Workers que consomem a fila persistida. Cada thread tem identidade própria
+ * (host:pid:worker-n), então várias threads se comportam como nós independentes disputando
+ * os mesmos jobs. Enquanto um job roda, o lease é renovado periodicamente; se a renovação
+ * falhar, outro nó já assumiu o job e o script local é cancelado.
+ */
+@Slf4j
+@Service
+public class JobWorkerPool {
+
+    private final JobQueueService jobQueueService;
+    private final SegmentationService segmentationService;
+    private final GradCamMarkerService gradCamMarkerService;
+    private final PythonScriptRunner pythonScriptRunner;
+    private final IBlobStore blobStore;
+
+    @Value("${jobs.workers:0}")
+    private int workerCount;
+
+    @Value("${jobs.poll-interval-ms:1000}")
+    private long pollIntervalMillis;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean running;
+
+    public JobWorkerPool(JobQueueService jobQueueService,
+                         SegmentationService segmentationService,
+                         GradCamMarkerService gradCamMarkerService,
+                         PythonScriptRunner pythonScriptRunner,
+                         IBlobStore blobStore) {
+        this.jobQueueService = jobQueueService;
+        this.segmentationService = segmentationService;
+        this.gradCamMarkerService = gradCamMarkerService;
+        this.pythonScriptRunner = pythonScriptRunner;
+        this.blobStore = blobStore;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        int count = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        String nodeId = nodeId();
+        running = true;
+
+        for (int i = 1; i <= count; i++) {
+            String workerId = nodeId + ":worker-" + i;
+            Thread thread = new Thread(() -> workLoop(workerId), "job-" + workerId);
+            thread.setDaemon(true);
+            thread.start();
+            workers.add(thread);
+        }
+        log.info("{} workers da fila de processamento iniciados no nó {}", count, nodeId);
+    }
+
+    private void workLoop(String workerId) {
+        while (running) {
+            try {
+                List<ProcessingJob> jobs = jobQueueService.claim(workerId, 1);
+                if (jobs.isEmpty()) {
+                    Thread.sleep(pollIntervalMillis);
+                    continue;
+                }
+                for (ProcessingJob job : jobs) {
+                    process(job, workerId);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // Falha de banco ou afins: espera e tenta de novo, o lease protege o job
+                log.error("Erro no worker {}", workerId, e);
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void process(ProcessingJob job, String workerId) {
+        PythonScriptRunner.ScriptJob scriptJob = pythonScriptRunner.newJob();
+        long renewEverySeconds = Math.max(1, jobQueueService.getLeaseSeconds() / 3);
+        ScheduledFuture<?> renewal = heartbeat.scheduleAtFixedRate(() -> {
+            if (!jobQueueService.renewLease(job.getId(), workerId)) {
+                log.warn("Lease do job {} perdido pelo worker {}; cancelando execução", job.getId(), workerId);
+                scriptJob.cancel();
+            }
+        }, renewEverySeconds, renewEverySeconds, TimeUnit.SECONDS);
+
+        log.info("Worker {} executando job {} ({}, tentativa {})", workerId, job.getId(), job.getType(), job.getAttempts());
+        try {
+            Map<String, Object> result = execute(job, scriptJob);
+            if (jobQueueService.complete(job.getId(), workerId, result)) {
+                deleteInputs(job);
+            }
+        } catch (IllegalArgumentException | PythonScriptRunner.ScriptFailedException e) {
+            // Entrada inválida ou recusada pelo script: outra tentativa teria o mesmo fim
+            log.warn("Job {} falhou sem nova tentativa: {}", job.getId(), e.getMessage());
+            if (jobQueueService.fail(job.getId(), workerId, e.getMessage(), false)) {
+                deleteInputs(job);
+            }
+        } catch (InterruptedException e) {
+            // Nó desligando: o job é liberado para outro worker
+            Thread.currentThread().interrupt();
+            scriptJob.cancel();
+            jobQueueService.fail(job.getId(), workerId, "Worker interrompido.", true);
+        } catch (CancellationException e) {
+            log.info("Job {} cancelado no worker {}", job.getId(), workerId);
+        } catch (Exception e) {
+            log.error("Job {} falhou no worker {}", job.getId(), workerId, e);
+            jobQueueService.fail(job.getId(), workerId, e.getMessage(), true);
+        } finally {
+            renewal.cancel(false);
+        }
+    }
+
+    private Map<String, Object> execute(ProcessingJob job, PythonScriptRunner.ScriptJob scriptJob) throws Exception {
+        Map<String, Object> payload = job.getPayload();
+        Map<String, Object> result = new LinkedHashMap<>();
+
+        switch (job.getType()) {
+            case ProcessingJob.TYPE_SEGMENTATION -> {
+                try (IBlobStore.LocalCopy image = blobStore.openLocal((String) payload.get("imageKey"));
+                     IBlobStore.LocalCopy markers = blobStore.openLocal((String) payload.get("markersKey"))) {
+                    SegmentationService.SegmentationResult segmentation = segmentationService.runAutomaticSegmentation(
+                            image.path().toString(),
+                            markers.path().toString(),
+                            job.getImageId(),
+                            segmentationService.parseMarkerClasses((String) payload.get("labels")),
+                            scriptJob);
+                    result.put("segmentedImageUrl", segmentation.getSegmentedUrl());
+                    result.put("labelsUrl", segmentation.getLabelsUrl());
+                    result.put("labels", segmentation.getLegend());
+                    result.put("stats", segmentation.getStats());
+                }
+            }
+            case ProcessingJob.TYPE_INITIAL_MARKERS -> {
+                try (IBlobStore.LocalCopy image = blobStore.openLocal((String) payload.get("imageKey"))) {
+                    GradCamMarkerService.GradCamResult markers = gradCamMarkerService.generateInitialMarkers(
+                            image.path().toString(), job.getImageId());
+                    result.put("markersUrl", markers.getMarkersUrl());
+                    result.put("stats", markers.getStats());
+                }
+            }
+            default -> throw new IllegalArgumentException("Tipo de job desconhecido: " + job.getType());
+        }
+        return result;
+    }
+
+    private void deleteInputs(ProcessingJob job) {
+        // As entradas enviadas para a fila só servem ao job; o resultado fica nos artefatos
+        for (String field : List.of("imageKey", "markersKey")) {
+            Object key = job.getPayload() != null ? job.getPayload().get(field) : null;
+            if (key instanceof String blobKey) {
+                try {
+                    blobStore.delete(blobKey);
+                } catch (IOException e) {
+                    log.warn("Não foi possível remover a entrada {} do job {}: {}", blobKey, job.getId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private String nodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + ":" + ManagementFactory.getRuntimeMXBean().getPid();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        heartbeat.shutdownNow();
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.backend.services;
+
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.utils.BlobKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento em disco local com diretórios particionados por hash: a chave
+ * "segmented/x.png" fica em "segmented/ab/cd/x.png", onde abcd são os primeiros bytes do
+ * SHA-256 do nome. Assim nenhum diretório passa de alguns milhares de arquivos.
+ *
+ * Arquivos gravados antes do particionamento continuam no diretório plano; a leitura tenta o
+ * caminho particionado e, se não existir, o antigo.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "local", matchIfMissing = true)
+public class LocalBlobStore implements IBlobStore {
+
+    private final Path root;
+
+    public LocalBlobStore(@Value("${storage.local.root:.}") String root) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void put(String key, InputStream data, long length, String contentType) throws IOException {
+        Path target = shardedPath(key);
+        Files.createDirectories(target.getParent());
+
+        // Grava em arquivo temporário no mesmo diretório e troca de uma vez: leitores nunca veem
+        // um arquivo pela metade
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.copy(data, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        deleteLegacy(key);
+    }
+
+    @Override
+    public void put(String key, byte[] data, String contentType) throws IOException {
+        Path target = shardedPath(key);
+        Files.createDirectories(target.getParent());
+
+        Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        deleteLegacy(key);
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        return Files.newInputStream(existingPath(key));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(shardedPath(key)) || Files.exists(legacyPath(key));
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return Files.size(existingPath(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(shardedPath(key));
+        Files.deleteIfExists(legacyPath(key));
+    }
+
+    @Override
+    public long transferTo(String key, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(existingPath(key), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            // transferTo pode transferir menos que o pedido; repete até o fim do arquivo
+            while (position < size) {
+                long transferred = channel.transferTo(position, size - position, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+            return position;
+        }
+    }
+
+    @Override
+    public LocalCopy openLocal(String key) throws IOException {
+        return new LocalCopy(existingPath(key), false);
+    }
+
+    @Override
+    public Stream<BlobInfo> list(String prefix) throws IOException {
+        String normalizedPrefix = BlobKeys.normalize(prefix);
+        Path dir = resolve(normalizedPrefix);
+        if (!Files.isDirectory(dir)) {
+            return Stream.empty();
+        }
+
+        return Files.walk(dir)
+                .filter(Files::isRegularFile)
+                // Temporários de gravação em andamento começam com ponto
+                .filter(path -> !path.getFileName().toString().startsWith("."))
+                .map(path -> {
+                    try {
+                        return new BlobInfo(keyOf(path), Files.size(path), Files.getLastModifiedTime(path).toInstant());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Caminho em disco de volta para a chave: remove os dois níveis de partição quando eles
+     * correspondem ao hash do nome; arquivos no layout antigo já estão na forma da chave.
+     */
+    private String keyOf(Path path) {
+        Path relative = root.relativize(path);
+        String name = relative.getFileName().toString();
+        int count = relative.getNameCount();
+
+        if (count >= 3) {
+            String hash = sha256Hex(name);
+            if (relative.getName(count - 3).toString().equals(hash.substring(0, 2))
+                    && relative.getName(count - 2).toString().equals(hash.substring(2, 4))) {
+                Path parent = count > 3 ? relative.subpath(0, count - 3) : null;
+                return (parent != null ? parent.toString().replace('\\', '/') + "/" : "") + name;
+            }
+        }
+        return relative.toString().replace('\\', '/');
+    }
+
+    private Path existingPath(String key) throws IOException {
+        Path sharded = shardedPath(key);
+        if (Files.exists(sharded)) {
+            return sharded;
+        }
+        Path legacy = legacyPath(key);
+        if (Files.exists(legacy)) {
+            return legacy;
+        }
+        throw new NoSuchFileException(BlobKeys.normalize(key));
+    }
+
+    private void deleteLegacy(String key) {
+        // Regravar uma chave antiga migra o arquivo para o layout particionado
+        try {
+            Files.deleteIfExists(legacyPath(key));
+        } catch (IOException e) {
+            log.warn("Não foi possível remover o arquivo antigo de {}: {}", key, e.getMessage());
+        }
+    }
+
+    private Path legacyPath(String key) {
+        return resolve(BlobKeys.normalize(key));
+    }
+
+    private Path shardedPath(String key) {
+        String normalized = BlobKeys.normalize(key);
+        int slash = normalized.lastIndexOf('/');
+        String prefix = slash >= 0 ? normalized.substring(0, slash + 1) : "";
+        String name = normalized.substring(slash + 1);
+
+        String hash = sha256Hex(name);
+        return resolve(prefix + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + name);
+    }
+
+    private Path resolve(String relative) {
+        Path path = root.resolve(relative).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Chave de armazenamento fora da raiz: " + relative);
+        }
+        return path;
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.Image;
+import com.example.backend.interfaces.IImageService;
+import com.example.backend.interfaces.ISegmentationImageService;
+import com.example.backend.repositories.AnnotationRepository;
+import com.example.backend.repositories.ImageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pré-carregamento das próximas imagens da base. O anotador percorre a base em ordem; quando
+ * abre a imagem N, as imagens N+1..N+depth (ou N-1..N-depth, se estiver voltando) são aquecidas
+ * em segundo plano: entidade, anotação e segmentação nos caches do Spring, pixels no
+ * RawPixelCache e o buffer em tons de cinza. Com a fila vazia, calcula também os marcadores
+ * iniciais das imagens sem anotação, sem gravar nada.
+ * <p>
+ * Uma thread só, com a fila descartada a cada nova abertura: o trabalho pendente da posição
+ * anterior perde a vez para a posição atual.
+ */
+@Slf4j
+@Service
+public class NavigationPrefetchService {
+
+    private final ImageRepository imageRepository;
+    private final IImageService imageService;
+    private final AnnotationRepository annotationRepository;
+    private final ISegmentationImageService segmentationImageService;
+    private final RawPixelCache rawPixelCache;
+    private final GrayscaleImageCache grayscaleImageCache;
+    private final GradCamMarkerService gradCamMarkerService;
+
+    // Última imagem aberta em cada base, para saber a direção da navegação
+    private final Cache<Long, Long> lastOpened = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .expireAfterAccess(Duration.ofHours(2))
+            .build();
+    private final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+        Thread thread = new Thread(runnable, "navigation-prefetch");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    @Value("${prefetch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${prefetch.depth:3}")
+    private int depth;
+
+    @Value("${prefetch.initial-markers:true}")
+    private boolean initialMarkers;
+
+    public NavigationPrefetchService(ImageRepository imageRepository,
+                                     IImageService imageService,
+                                     AnnotationRepository annotationRepository,
+                                     ISegmentationImageService segmentationImageService,
+                                     RawPixelCache rawPixelCache,
+                                     GrayscaleImageCache grayscaleImageCache,
+                                     GradCamMarkerService gradCamMarkerService) {
+        this.imageRepository = imageRepository;
+        this.imageService = imageService;
+        this.annotationRepository = annotationRepository;
+        this.segmentationImageService = segmentationImageService;
+        this.rawPixelCache = rawPixelCache;
+        this.grayscaleImageCache = grayscaleImageCache;
+        this.gradCamMarkerService = gradCamMarkerService;
+    }
+
+    /**
+     * Registra a abertura da imagem e agenda o aquecimento das vizinhas na direção da navegação.
+     */
+    public void opened(Image image) {
+        if (!enabled || depth <= 0 || image.getDatabase() == null) {
+            return;
+        }
+        Long databaseId = image.getDatabase().getId();
+        Long imageId = image.getId();
+        Long previous = lastOpened.asMap().put(databaseId, imageId);
+        boolean backwards = previous != null && previous > imageId;
+
+        // A consulta dos ids também sai da thread da requisição
+        queue.clear();
+        executor.execute(() -> schedule(databaseId, imageId, backwards));
+    }
+
+    private void schedule(Long databaseId, Long imageId, boolean backwards) {
+        PageRequest page = PageRequest.of(0, depth);
+        List<Long> neighbours;
+        try {
+            neighbours = backwards
+                    ? imageRepository.findIdsByDatabaseIdBefore(databaseId, imageId, page)
+                    : imageRepository.findIdsByDatabaseIdAfter(databaseId, imageId, page);
+        } catch (Exception e) {
+            log.debug("Vizinhas da imagem {} não consultadas: {}", imageId, e.getMessage());
+            return;
+        }
+
+        for (Long id : neighbours) {
+            executor.execute(() -> warm(id));
+        }
+        if (initialMarkers && !neighbours.isEmpty()) {
+            executor.execute(() -> precomputeMarkers(neighbours));
+        }
+    }
+
+    private void warm(Long imageId) {
+        long start = System.nanoTime();
+        try {
+            imageService.findImageById(imageId);
+            annotationRepository.findCachedByImageId(imageId);
+            segmentationImageService.findSegmentationImageByImageId(imageId);
+            rawPixelCache.get(imageId);
+            grayscaleImageCache.get(imageId);
+            log.debug("Imagem {} pré-carregada em {} ms", imageId, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.debug("Pré-carregamento da imagem {} falhou: {}", imageId, e.getMessage());
+        }
+    }
+
+    /**
+     * Só com capacidade ociosa: para assim que chega trabalho novo na fila ou o pool do gerador
+     * de marcadores está ocupado com um pedido do usuário.
+     */
+    private void precomputeMarkers(List<Long> imageIds) {
+        for (Long imageId : imageIds) {
+            if (!queue.isEmpty() || ForkJoinPool.commonPool().getActiveThreadCount() > 0) {
+                return;
+            }
+            try {
+                if (annotationRepository.findCachedByImageId(imageId).isPresent()) {
+                    continue;
+                }
+                gradCamMarkerService.precomputeInitialMarkers(imageId);
+                log.debug("Marcadores iniciais da imagem {} pré-calculados", imageId);
+            } catch (Exception e) {
+                log.debug("Pré-cálculo de marcadores da imagem {} falhou: {}", imageId, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.backend.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+/**
+ * Timers por etapa dos pipelines de segmentação e de auto-save, com histograma publicado para
+ * que os percentis sejam calculados no Prometheus (e agregáveis entre instâncias).
+ * <p>
+ * Uso: {@code Timer.Sample sample = Timer.start(); ... sample.stop(metrics.segmentation("db_save", "watershed"));}
+ */
+@Service
+public class PipelineMetrics {
+
+    public static final String SEGMENTATION = "segmentation.stage";
+    public static final String AUTOSAVE = "annotation.autosave.stage";
+
+    private final MeterRegistry registry;
+
+    public PipelineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Etapas: upload_copy, process_spawn, python_compute, superpixel_propagate, store_output,
+     * db_save e total, com o método (watershed ou superpixel) na tag method.
+     */
+    public Timer segmentation(String stage, String method) {
+        return timer(SEGMENTATION, stage, method);
+    }
+
+    /**
+     * Etapas: upsert, history e total (inclui o flush e o commit da transação).
+     */
+    public Timer autoSave(String stage) {
+        return timer(AUTOSAVE, stage, "merge");
+    }
+
+    // O registry devolve o mesmo timer para o mesmo nome e tags; o builder só cria na primeira vez
+    private Timer timer(String name, String stage, String method) {
+        return Timer.builder(name)
+                .tag("stage", stage)
+                .tag("method", method)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
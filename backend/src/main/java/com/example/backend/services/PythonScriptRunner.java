@@ -0,0 +1,338 @@
+package com.example.backend.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executa scripts Python que respondem pelo canal de frames binários.
+ *
+ * O stdout do script carrega apenas frames [tipo: 1 byte][tamanho: int big-endian][payload];
+ * o stderr é só log. Assim o resultado (status, estatísticas e máscaras) chega pelo pipe,
+ * sem arquivo de saída intermediário e sem interpretar linhas de log.
+ *
+ * Cada execução tem prazo máximo: ao estourar, ou quando o job é cancelado, a árvore de
+ * processos inteira é destruída à força.
+ */
+@Slf4j
+@Service
+public class PythonScriptRunner {
+
+    public static final byte FRAME_STATUS = 'S';
+    public static final byte FRAME_MASK = 'M';
+    public static final byte FRAME_LABELS = 'L';
+    public static final byte FRAME_END = 'E';
+
+    private static final String PYTHON_PATH = "C:\\Users\\Barbara\\AppData\\Local\\Programs\\Python\\Python311\\python.exe";
+    private static final int MAX_FRAME_BYTES = 256 * 1024 * 1024;
+    private static final long EXIT_GRACE_MILLIS = 5_000;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PipelineMetrics metrics;
+
+    @Value("${python.timeout-seconds:120}")
+    private long timeoutSeconds;
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "python-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<ScriptJob> activeJobs = ConcurrentHashMap.newKeySet();
+    private final AtomicLong startedJobs = new AtomicLong();
+    private final AtomicLong completedJobs = new AtomicLong();
+    private final AtomicLong failedJobs = new AtomicLong();
+    private final AtomicLong timedOutJobs = new AtomicLong();
+    private final AtomicLong cancelledJobs = new AtomicLong();
+    private final AtomicLong killedProcesses = new AtomicLong();
+
+    public PythonScriptRunner(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public int getActiveCount() {
+        return activeJobs.size();
+    }
+
+    public long getTimeoutMillis() {
+        return TimeUnit.SECONDS.toMillis(timeoutSeconds);
+    }
+
+    public ScriptJob newJob() {
+        return new ScriptJob();
+    }
+
+    /**
+     * method é a tag dos timers process_spawn e python_compute (ex.: watershed).
+     */
+    public ScriptResult run(ScriptJob job, String method, String scriptPath, String... args) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(PYTHON_PATH);
+        command.add(scriptPath);
+        Collections.addAll(command, args);
+
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.environment().put("PYTHONIOENCODING", "utf-8");
+        Timer.Sample spawn = Timer.start();
+        Process process = pb.start();
+        spawn.stop(metrics.segmentation("process_spawn", method));
+
+        if (!job.attach(process)) {
+            destroyTree(process);
+            cancelledJobs.incrementAndGet();
+            throw new CancellationException("Job cancelado antes de iniciar o script.");
+        }
+
+        activeJobs.add(job);
+        startedJobs.incrementAndGet();
+        ScheduledFuture<?> deadline = watchdog.schedule(job::expire, timeoutSeconds, TimeUnit.SECONDS);
+        Thread logPump = pumpLog(process.getErrorStream());
+
+        Timer.Sample compute = Timer.start();
+        try {
+            Map<Byte, byte[]> frames;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(process.getInputStream()))) {
+                frames = readFrames(in);
+            } catch (IOException e) {
+                // Pipe fechado porque o processo foi destruído: reporta o motivo real
+                throwIfStopped(job);
+                throw e;
+            }
+
+            // O stdout já fechou; o processo tem um prazo curto para terminar
+            if (!process.waitFor(EXIT_GRACE_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("Script Python não terminou após fechar o canal de resultado; encerrando");
+                destroyTree(process);
+                process.waitFor();
+            }
+            throwIfStopped(job);
+
+            int exitCode = process.exitValue();
+            byte[] statusFrame = frames.get(FRAME_STATUS);
+            if (statusFrame == null) {
+                throw new RuntimeException("Script Python não retornou status. Código: " + exitCode);
+            }
+
+            Map<String, Object> status = objectMapper.readValue(statusFrame, new TypeReference<Map<String, Object>>() {});
+            if (!"success".equals(status.get("status"))) {
+                // O script rodou e recusou a entrada: repetir dá o mesmo resultado
+                throw new ScriptFailedException("Falha na execução do script Python: " + status.get("message") + " (código " + exitCode + ")");
+            }
+            if (exitCode != 0) {
+                throw new RuntimeException("Script Python terminou com código " + exitCode + " após reportar sucesso.");
+            }
+
+            completedJobs.incrementAndGet();
+            compute.stop(metrics.segmentation("python_compute", method));
+            return new ScriptResult(status, frames);
+        } catch (RuntimeException | IOException | InterruptedException e) {
+            if (!(e instanceof ScriptTimeoutException) && !(e instanceof CancellationException)) {
+                failedJobs.incrementAndGet();
+            }
+            if (e instanceof InterruptedException) {
+                // Thread do pedido interrompida: o processo não pode continuar órfão
+                job.cancel();
+            }
+            throw e;
+        } finally {
+            deadline.cancel(false);
+            activeJobs.remove(job);
+            if (process.isAlive()) {
+                destroyTree(process);
+            }
+            logPump.join(1_000);
+        }
+    }
+
+    private void throwIfStopped(ScriptJob job) {
+        if (job.isTimedOut()) {
+            timedOutJobs.incrementAndGet();
+            throw new ScriptTimeoutException("Script Python excedeu o tempo limite de " + timeoutSeconds + " s.");
+        }
+        if (job.isCancelled()) {
+            cancelledJobs.incrementAndGet();
+            throw new CancellationException("Job cancelado.");
+        }
+    }
+
+    private Map<Byte, byte[]> readFrames(DataInputStream in) throws IOException {
+        Map<Byte, byte[]> frames = new HashMap<>();
+        while (true) {
+            int type = in.read();
+            if (type == -1) {
+                log.warn("Canal de resultado encerrado sem frame de fim");
+                return frames;
+            }
+
+            int length = in.readInt();
+            if (length < 0 || length > MAX_FRAME_BYTES) {
+                throw new IOException("Frame inválido do script Python (tipo " + (char) type + ", " + length + " bytes)");
+            }
+
+            byte[] payload = in.readNBytes(length);
+            if (payload.length != length) {
+                throw new EOFException("Frame truncado do script Python (tipo " + (char) type + ")");
+            }
+
+            if (type == FRAME_END) {
+                return frames;
+            }
+            frames.put((byte) type, payload);
+        }
+    }
+
+    // Só espera no pipe: thread virtual, sem ocupar uma thread de plataforma por script
+    private Thread pumpLog(InputStream stderr) {
+        return Thread.ofVirtual().name("python-log").start(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(stderr, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    log.info("[PYTHON] {}", line);
+                }
+            } catch (IOException e) {
+                log.debug("Log do script Python encerrado: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Destrói o processo e todos os descendentes. Os descendentes são coletados antes de
+     * matar o pai, senão seriam adotados pelo init e ficariam fora de alcance.
+     */
+    private void destroyTree(Process process) {
+        List<ProcessHandle> descendants = process.descendants().toList();
+        descendants.forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        killedProcesses.addAndGet(1 + descendants.size());
+        log.warn("Processo Python {} destruído ({} descendentes)", process.pid(), descendants.size());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active", activeJobs.size());
+        stats.put("started", startedJobs.get());
+        stats.put("completed", completedJobs.get());
+        stats.put("failed", failedJobs.get());
+        stats.put("timedOut", timedOutJobs.get());
+        stats.put("cancelled", cancelledJobs.get());
+        stats.put("killedProcesses", killedProcesses.get());
+        stats.put("timeoutSeconds", timeoutSeconds);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Nenhum script pode sobreviver ao backend
+        for (ScriptJob job : activeJobs) {
+            job.cancel();
+        }
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * Alça de uma execução: permite cancelar o script a partir de outra thread (por exemplo,
+     * quando o cliente HTTP desconecta).
+     */
+    public class ScriptJob {
+        private Process process;
+        private boolean cancelled;
+        private boolean timedOut;
+
+        private synchronized boolean attach(Process process) {
+            if (cancelled) {
+                return false;
+            }
+            this.process = process;
+            return true;
+        }
+
+        public synchronized void cancel() {
+            if (cancelled || timedOut) {
+                return;
+            }
+            cancelled = true;
+            if (process != null && process.isAlive()) {
+                destroyTree(process);
+            }
+        }
+
+        private synchronized void expire() {
+            if (cancelled) {
+                return;
+            }
+            timedOut = true;
+            if (process != null && process.isAlive()) {
+                destroyTree(process);
+            }
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        public synchronized boolean isTimedOut() {
+            return timedOut;
+        }
+    }
+
+    public static class ScriptTimeoutException extends RuntimeException {
+        public ScriptTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * O script terminou e devolveu status de erro. Diferente de timeout, queda do processo ou
+     * frame corrompido, é uma falha permanente para a mesma entrada.
+     */
+    public static class ScriptFailedException extends RuntimeException {
+        public ScriptFailedException(String message) {
+            super(message);
+        }
+    }
+
+    public static class ScriptResult {
+        private final Map<String, Object> status;
+        private final Map<Byte, byte[]> frames;
+
+        public ScriptResult(Map<String, Object> status, Map<Byte, byte[]> frames) {
+            this.status = status;
+            this.frames = frames;
+        }
+
+        public Map<String, Object> getStatus() {
+            return status;
+        }
+
+        @SuppressWarnings("unchecked")
+        public Map<String, Object> getStats() {
+            Object stats = status.get("stats");
+            return stats instanceof Map ? (Map<String, Object>) stats : Map.of();
+        }
+
+        public byte[] getFrame(byte type) {
+            return frames.get(type);
+        }
+    }
+}
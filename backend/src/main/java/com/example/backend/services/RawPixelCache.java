@@ -0,0 +1,373 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.Image;
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.interfaces.IImageService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Pixels das imagens já decodificados, em arquivos sem compressão no disco local mapeados em
+ * memória (FileChannel.map). A primeira operação sobre uma imagem decodifica o PNG/JPEG uma vez;
+ * as seguintes (segmentação, marcadores, tons de cinza) só leem o mapeamento. O total em disco
+ * é limitado e a imagem menos usada sai primeiro. Os arquivos sobrevivem a reinícios.
+ * <p>
+ * Formato ({imageId}.raw, little endian): "RAW1", largura (u32), altura (u32), bandas (u16),
+ * bytes por amostra (u16) e depois as amostras intercaladas linha a linha. Bandas: 1 (cinza,
+ * 8 ou 16 bits), 3 (B, G, R) ou 4 (A, B, G, R), a mesma ordem do OpenCV, para que o script
+ * Python leia o arquivo com np.memmap sem decodificar nada.
+ */
+@Slf4j
+@Service
+public class RawPixelCache {
+
+    public static final String EXTENSION = ".raw";
+    private static final int MAGIC = 0x31574152; // "RAW1" em little endian
+    private static final int HEADER_SIZE = 16;
+
+    private final IImageService imageService;
+    private final IBlobStore blobStore;
+    private final Path directory;
+    private final Cache<Long, RawPixels> cache;
+
+    public RawPixelCache(IImageService imageService,
+                         IBlobStore blobStore,
+                         @Value("${raw-pixels.dir:${java.io.tmpdir}/raw-pixels}") String directory,
+                         @Value("${raw-pixels.cache-budget-mb:2048}") long budgetMb) throws IOException {
+        this.imageService = imageService;
+        this.blobStore = blobStore;
+        this.directory = Files.createDirectories(Path.of(directory));
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(budgetMb * 1024 * 1024)
+                .weigher((Long id, RawPixels raw) -> (int) Math.min(Integer.MAX_VALUE, raw.fileSize()))
+                // Síncrono, dentro do despejo: um novo load da mesma imagem não tem o arquivo apagado depois
+                .evictionListener((Long id, RawPixels raw, RemovalCause cause) -> {
+                    if (raw != null) {
+                        deleteQuietly(raw.path());
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Reconhece os arquivos deixados pela execução anterior, dos mais antigos para os mais
+     * recentes, para que entrem na conta do orçamento. Arquivos inválidos ou temporários saem.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexExisting() {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                files.add(entry);
+            }
+        } catch (IOException e) {
+            log.warn("Diretório do cache de pixels ilegível ({}): {}", directory, e.getMessage());
+            return;
+        }
+        files.sort(Comparator.comparingLong(RawPixelCache::lastModified));
+
+        int indexed = 0;
+        for (Path file : files) {
+            Long imageId = imageIdOf(file);
+            if (imageId == null) {
+                deleteQuietly(file);
+                continue;
+            }
+            try {
+                cache.put(imageId, map(file));
+                indexed++;
+            } catch (IOException | IllegalArgumentException e) {
+                deleteQuietly(file);
+            }
+        }
+        if (indexed > 0) {
+            log.info("Cache de pixels: {} imagens reaproveitadas de {}", indexed, directory);
+        }
+    }
+
+    /**
+     * Pixels da imagem, decodificados na primeira chamada. Chamadas simultâneas para a mesma
+     * imagem esperam a mesma decodificação.
+     */
+    public RawPixels get(Long imageId) throws IOException {
+        try {
+            return cache.get(imageId, this::load);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Link físico do arquivo bruto para um processo externo. O link mantém os dados no disco
+     * mesmo que a entrada seja despejada ou invalidada durante a execução; close() apaga só o
+     * link. Sem suporte a links no sistema de arquivos, o arquivo é copiado.
+     */
+    public Pinned pin(Long imageId) throws IOException {
+        Path link = directory.resolve("pin-" + UUID.randomUUID() + ".tmp");
+        for (int attempt = 1; ; attempt++) {
+            Path source = get(imageId).path();
+            try {
+                Files.createLink(link, source);
+                return new Pinned(link);
+            } catch (UnsupportedOperationException e) {
+                Files.copy(source, link);
+                return new Pinned(link);
+            } catch (NoSuchFileException e) {
+                // Despejada entre o get e o link: o próximo get decodifica de novo
+                if (attempt == 3) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a entrada e o arquivo, esteja ou não indexado (imagem apagada). Links de pin() em
+     * uso continuam válidos.
+     */
+    public void invalidate(Long imageId) {
+        cache.asMap().remove(imageId);
+        deleteQuietly(directory.resolve(imageId + EXTENSION));
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private RawPixels load(Long imageId) {
+        Path file = directory.resolve(imageId + EXTENSION);
+        try {
+            if (Files.exists(file)) {
+                try {
+                    return map(file);
+                } catch (IllegalArgumentException e) {
+                    deleteQuietly(file);
+                }
+            }
+            return decodeAndWrite(imageId, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RawPixels decodeAndWrite(Long imageId, Path file) throws IOException {
+        Image image = imageService.findImageById(imageId)
+                .orElseThrow(() -> new NoSuchElementException("Imagem não encontrada com ID: " + imageId));
+
+        long start = System.nanoTime();
+        BufferedImage decoded;
+        try (InputStream in = blobStore.get(image.getFilePath())) {
+            decoded = ImageIO.read(in);
+        }
+        if (decoded == null) {
+            throw new IOException("Formato de imagem não suportado: " + image.getFilePath());
+        }
+        BufferedImage normalized = normalize(decoded);
+
+        int width = normalized.getWidth();
+        int height = normalized.getHeight();
+        int bands = normalized.getRaster().getNumBands();
+        int bytesPerSample = normalized.getType() == BufferedImage.TYPE_USHORT_GRAY ? 2 : 1;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(width).putInt(height).putShort((short) bands).putShort((short) bytesPerSample).flip();
+
+        // normalize garante um raster compacto: o DataBuffer já está na ordem do arquivo
+        ByteBuffer body;
+        if (bytesPerSample == 2) {
+            short[] samples = ((DataBufferUShort) normalized.getRaster().getDataBuffer()).getData();
+            body = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+            body.asShortBuffer().put(samples);
+        } else {
+            body = ByteBuffer.wrap(((DataBufferByte) normalized.getRaster().getDataBuffer()).getData());
+        }
+
+        // Grava num temporário e move: outro processo nunca vê o arquivo pela metade
+        Path temp = Files.createTempFile(directory, "raw-", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (body.hasRemaining()) {
+                    channel.write(body);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            deleteQuietly(temp);
+        }
+
+        RawPixels raw = map(file);
+        log.info("Imagem {} decodificada para o cache de pixels ({}x{}, {} bandas) em {} ms",
+                imageId, width, height, bands, (System.nanoTime() - start) / 1_000_000);
+        return raw;
+    }
+
+    /**
+     * Leva a imagem a um dos layouts do arquivo. O que o ImageIO costuma devolver para PNG e JPEG
+     * (cinza, BGR, ABGR, sem recorte) já está num deles e não é copiado.
+     */
+    private static BufferedImage normalize(BufferedImage image) {
+        int type = image.getType();
+        boolean supported = type == BufferedImage.TYPE_BYTE_GRAY || type == BufferedImage.TYPE_USHORT_GRAY
+                || type == BufferedImage.TYPE_3BYTE_BGR || type == BufferedImage.TYPE_4BYTE_ABGR;
+        Raster raster = image.getRaster();
+        long samples = (long) image.getWidth() * image.getHeight() * raster.getNumBands();
+        if (supported && raster.getParent() == null && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getSize() == samples) {
+            return image;
+        }
+
+        int target = type == BufferedImage.TYPE_BYTE_GRAY || type == BufferedImage.TYPE_USHORT_GRAY ? type
+                : image.getColorModel().hasAlpha() ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR;
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), target);
+        if (target == type) {
+            converted.setData(raster);
+            return converted;
+        }
+        Graphics2D graphics = converted.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return converted;
+    }
+
+    private static RawPixels map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IllegalArgumentException("Arquivo de pixels truncado: " + file);
+            }
+            // O mapeamento continua válido depois de fechar o canal
+            ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt(0) != MAGIC) {
+                throw new IllegalArgumentException("Arquivo de pixels inválido: " + file);
+            }
+            int width = mapped.getInt(4);
+            int height = mapped.getInt(8);
+            int bands = mapped.getShort(12);
+            int bytesPerSample = mapped.getShort(14);
+            if (size != HEADER_SIZE + (long) width * height * bands * bytesPerSample) {
+                throw new IllegalArgumentException("Arquivo de pixels truncado: " + file);
+            }
+            ByteBuffer pixels = mapped.position(HEADER_SIZE).slice().order(ByteOrder.LITTLE_ENDIAN);
+            return new RawPixels(width, height, bands, bytesPerSample, pixels, file, size);
+        }
+    }
+
+    private static Long imageIdOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(EXTENSION)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Não foi possível apagar {}: {}", file, e.getMessage());
+        }
+    }
+
+    public record Pinned(Path path) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            deleteQuietly(path);
+        }
+    }
+
+    /**
+     * pixels é o mapeamento somente leitura das amostras, sem o cabeçalho.
+     */
+    public record RawPixels(int width, int height, int bands, int bytesPerSample,
+                            ByteBuffer pixels, Path path, long fileSize) {
+
+        /**
+         * Cópia para um BufferedImage do mesmo tipo que o ImageIO devolveria (cinza 8/16 bits,
+         * BGR ou ABGR): uma cópia de memória, sem decodificação.
+         */
+        public BufferedImage toBufferedImage() {
+            int type = switch (bands) {
+                case 1 -> bytesPerSample == 2 ? BufferedImage.TYPE_USHORT_GRAY : BufferedImage.TYPE_BYTE_GRAY;
+                case 3 -> BufferedImage.TYPE_3BYTE_BGR;
+                case 4 -> BufferedImage.TYPE_4BYTE_ABGR;
+                default -> throw new IllegalStateException("Número de bandas não suportado: " + bands);
+            };
+            BufferedImage image = new BufferedImage(width, height, type);
+            if (bytesPerSample == 2) {
+                short[] target = ((DataBufferUShort) image.getRaster().getDataBuffer()).getData();
+                pixels.duplicate().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(target);
+            } else {
+                byte[] target = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+                pixels.duplicate().get(target);
+            }
+            return image;
+        }
+
+        /**
+         * Luminância de 8 bits de um pixel (índice y * width + x). Em cinza de 16 bits, mantém os
+         * 8 bits mais significativos.
+         */
+        public int grayAt(int index) {
+            return switch (bands) {
+                case 1 -> bytesPerSample == 2 ? pixels.get(index * 2 + 1) & 0xFF : pixels.get(index) & 0xFF;
+                case 3 -> luma(pixels.get(index * 3 + 2), pixels.get(index * 3 + 1), pixels.get(index * 3));
+                default -> luma(pixels.get(index * 4 + 3), pixels.get(index * 4 + 2), pixels.get(index * 4 + 1));
+            };
+        }
+
+        private static int luma(byte r, byte g, byte b) {
+            return (299 * (r & 0xFF) + 587 * (g & 0xFF) + 114 * (b & 0xFF)) / 1000;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.backend.services;
+
+import com.example.backend.utils.RegionGrower;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Varinha mágica do editor: cresce uma região a partir do clique sobre o buffer em tons de cinza
+ * já carregado, sem passar pelo script Python. Responde com os contornos da região ou com a
+ * máscara em run-length, ambos restritos à caixa da região.
+ */
+@Slf4j
+@Service
+public class RegionGrowService {
+
+    public static final String FORMAT_CONTOUR = "contour";
+    public static final String FORMAT_MASK = "mask";
+
+    private final GrayscaleImageCache grayscaleImageCache;
+    private final ContourService contourService;
+
+    @Value("${region-grow.default-tolerance:12}")
+    private int defaultTolerance;
+
+    // Fração máxima da imagem que uma região pode ocupar antes de o crescimento parar
+    @Value("${region-grow.max-area-fraction:0.5}")
+    private double maxAreaFraction;
+
+    public RegionGrowService(GrayscaleImageCache grayscaleImageCache, ContourService contourService) {
+        this.grayscaleImageCache = grayscaleImageCache;
+        this.contourService = contourService;
+    }
+
+    public Map<String, Object> grow(Long imageId, int x, int y, Integer tolerance, String format,
+                                    Double contourTolerance) throws IOException {
+        GrayscaleImageCache.GrayscaleImage image = grayscaleImageCache.get(imageId);
+
+        long start = System.nanoTime();
+        int appliedTolerance = tolerance != null ? Math.max(0, Math.min(255, tolerance)) : defaultTolerance;
+        long maxArea = (long) (maxAreaFraction * image.width() * image.height());
+        RegionGrower.Region region = RegionGrower.grow(
+                image.pixels(), image.width(), image.height(), x, y, appliedTolerance, maxArea);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("imageId", imageId);
+        result.put("seed", List.of(x, y));
+        result.put("seedValue", region.seedValue());
+        result.put("tolerance", appliedTolerance);
+        result.put("area", region.area());
+        result.put("truncated", region.truncated());
+        result.put("bbox", List.of(region.minX(), region.minY(), region.width(), region.height()));
+
+        if (FORMAT_MASK.equalsIgnoreCase(format)) {
+            result.put("width", image.width());
+            result.put("height", image.height());
+            result.put("rle", region.runLengths());
+        } else {
+            double simplify = contourTolerance != null ? contourTolerance : contourService.getDefaultTolerance();
+            Map<String, Object> contours = contourService.extractContours(region.cropLabels(),
+                    region.width(), region.height(), region.minX(), region.minY(),
+                    image.width(), image.height(), simplify);
+            result.put("contourTolerance", simplify);
+            result.put("contours", contours.get("contours"));
+        }
+
+        log.debug("Região de {} pixels na imagem {} em {} ms",
+                region.area(), imageId, (System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+}
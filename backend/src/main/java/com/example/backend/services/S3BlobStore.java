@@ -0,0 +1,185 @@
+package com.example.backend.services;
+
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.utils.BlobKeys;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+/**
+ * Armazenamento em bucket compatível com S3. Com storage.s3.endpoint apontando para um
+ * serviço local (MinIO, LocalStack) e path-style ligado, roda sem conta na AWS.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3")
+public class S3BlobStore implements IBlobStore {
+
+    private final S3Client s3;
+    private final String bucket;
+
+    public S3BlobStore(@Value("${storage.s3.bucket}") String bucket,
+                       @Value("${storage.s3.region:us-east-1}") String region,
+                       @Value("${storage.s3.endpoint:}") String endpoint,
+                       @Value("${storage.s3.path-style:false}") boolean pathStyle,
+                       @Value("${storage.s3.access-key:}") String accessKey,
+                       @Value("${storage.s3.secret-key:}") String secretKey) {
+        AwsCredentialsProvider credentials = accessKey.isBlank()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+
+        S3ClientBuilder builder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .forcePathStyle(pathStyle);
+        if (!endpoint.isBlank()) {
+            builder.endpointOverride(URI.create(endpoint));
+        }
+
+        this.s3 = builder.build();
+        this.bucket = bucket;
+        log.info("Armazenamento S3 no bucket {} ({})", bucket, endpoint.isBlank() ? region : endpoint);
+    }
+
+    @Override
+    public void put(String key, InputStream data, long length, String contentType) throws IOException {
+        try {
+            s3.putObject(putRequest(key, contentType), RequestBody.fromInputStream(data, length));
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao gravar " + key + " no S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] data, String contentType) throws IOException {
+        try {
+            s3.putObject(putRequest(key, contentType), RequestBody.fromBytes(data));
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao gravar " + key + " no S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public InputStream get(String key) throws IOException {
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucket).key(BlobKeys.normalize(key)).build());
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(BlobKeys.normalize(key));
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao ler " + key + " do S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            head(key);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public long size(String key) throws IOException {
+        return head(key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            s3.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(BlobKeys.normalize(key)).build());
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao remover " + key + " do S3: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long transferTo(String key, WritableByteChannel target) throws IOException {
+        try (InputStream in = get(key)) {
+            return in.transferTo(Channels.newOutputStream(target));
+        }
+    }
+
+    @Override
+    public LocalCopy openLocal(String key) throws IOException {
+        Path temp = Files.createTempFile("blob-", "-" + BlobKeys.filename(key));
+        try (InputStream in = get(key)) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new LocalCopy(temp, true);
+    }
+
+    @Override
+    public Stream<BlobInfo> list(String prefix) throws IOException {
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(BlobKeys.normalize(prefix) + "/")
+                .build();
+        try {
+            // O paginador busca as páginas sob demanda, conforme o stream é consumido
+            return s3.listObjectsV2Paginator(request).contents().stream()
+                    .map(object -> new BlobInfo(object.key(), object.size(), object.lastModified()));
+        } catch (S3Exception e) {
+            throw new IOException("Falha ao listar " + prefix + " no S3: " + e.getMessage(), e);
+        }
+    }
+
+    private long head(String key) throws IOException {
+        try {
+            return s3.headObject(HeadObjectRequest.builder().bucket(bucket).key(BlobKeys.normalize(key)).build())
+                    .contentLength();
+        } catch (NoSuchKeyException e) {
+            throw new NoSuchFileException(BlobKeys.normalize(key));
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                throw new NoSuchFileException(BlobKeys.normalize(key));
+            }
+            throw new IOException("Falha ao consultar " + key + " no S3: " + e.getMessage(), e);
+        }
+    }
+
+    private PutObjectRequest putRequest(String key, String contentType) {
+        return PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(BlobKeys.normalize(key))
+                .contentType(contentType != null ? contentType : BlobKeys.contentType(key))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        s3.close();
+    }
+}
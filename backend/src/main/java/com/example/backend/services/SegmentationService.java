@@ -1,109 +1,462 @@
 package com.example.backend.services;
 
+import com.example.backend.config.CacheConfig;
 import com.example.backend.entities.Image;
 import com.example.backend.entities.Segmented_Image;
+import com.example.backend.interfaces.IBlobStore;
 import com.example.backend.interfaces.ISegmentationImageService;
 import com.example.backend.repositories.ImageRepository;
 import com.example.backend.repositories.SegmentedImageRepository;
+import com.example.backend.utils.BlobKeys;
+import com.example.backend.utils.MarkerLabelMap;
+import com.example.backend.utils.SuperpixelGraph;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class SegmentationService implements ISegmentationImageService {
 
-    private static final String PYTHON_PATH = "C:\\Users\\Barbara\\AppData\\Local\\Programs\\Python\\Python311\\python.exe";
+    // Valores da tag method nos timers e do campo method das estatísticas
+    public static final String METHOD_WATERSHED = "watershed";
+    public static final String METHOD_SUPERPIXEL = "superpixel";
+
     private static final String SCRIPT_PATH = new File("python/interactive_object_segmentation.py").getAbsolutePath();
     private static final String SEGMENTED_DIR = "segmented/";
+    private final ObjectMapper objectMapper = new ObjectMapper();
     private final SegmentedImageRepository segmentedImageRepository;
     private final ImageRepository imageRepository;
+    private final ContourService contourService;
+    private final PythonScriptRunner pythonScriptRunner;
+    private final IBlobStore blobStore;
+    private final DatabaseSummaryService databaseSummaryService;
+    private final SuperpixelService superpixelService;
+    private final RawPixelCache rawPixelCache;
+    private final PipelineMetrics metrics;
 
-    public String runAutomaticSegmentation(String imagePath, String markersPath, Long imageId) throws IOException, InterruptedException {
+    public SegmentationResult runAutomaticSegmentation(String imagePath, String markersPath, Long imageId) throws IOException, InterruptedException {
+        return runAutomaticSegmentation(imagePath, markersPath, imageId, MarkerLabelMap.defaultClasses());
+    }
 
-        if (imagePath == null || imagePath.isBlank()) {
-            throw new IllegalArgumentException("Caminho da imagem não pode ser vazio.");
-        }
+    /**
+     * Segmenta todas as classes de marcadores em uma única execução do watershed. A classe 0
+     * é o fundo; as demais viram os rótulos 1..N da máscara indexada.
+     */
+    public SegmentationResult runAutomaticSegmentation(String imagePath, String markersPath, Long imageId,
+                                                       List<MarkerLabelMap.MarkerClass> classes) throws IOException, InterruptedException {
+        return runAutomaticSegmentation(imagePath, markersPath, imageId, classes, pythonScriptRunner.newJob());
+    }
 
+    /**
+     * Mesma segmentação, com a alça do job exposta ao chamador para que ele possa cancelar o
+     * script (por exemplo, quando o cliente desconecta).
+     */
+    public SegmentationResult runAutomaticSegmentation(String imagePath, String markersPath, Long imageId,
+                                                       List<MarkerLabelMap.MarkerClass> classes,
+                                                       PythonScriptRunner.ScriptJob job) throws IOException, InterruptedException {
+        return segmentAndSave(markersPath, imageId, METHOD_WATERSHED, (markers, originalImage, existing) ->
+                prepareSegmentation(imagePath, markers, originalImage, existing, classes, job));
+    }
+
+    /**
+     * Segmentação sem o script: os marcadores são propagados no grafo de superpixels da imagem
+     * (pré-calculado na primeira abertura), o que custa milissegundos mesmo em radiografias
+     * grandes. O resultado tem o mesmo formato do watershed (máscara RGBA, rótulos e contornos).
+     */
+    public SegmentationResult runSuperpixelSegmentation(String imagePath, String markersPath, Long imageId,
+                                                        List<MarkerLabelMap.MarkerClass> classes) throws IOException, InterruptedException {
+        return segmentAndSave(markersPath, imageId, METHOD_SUPERPIXEL, (markers, originalImage, existing) ->
+                prepareSuperpixelSegmentation(imagePath, markers, originalImage, existing, classes));
+    }
+
+    private SegmentationResult segmentAndSave(String markersPath, Long imageId, String method,
+                                              SegmentationStep step) throws IOException, InterruptedException {
+        Timer.Sample total = Timer.start();
         if (markersPath == null || markersPath.isBlank()) {
             throw new IllegalArgumentException("Caminho da máscara não pode ser vazio.");
         }
 
+        BufferedImage markers = ImageIO.read(new File(markersPath));
+        if (markers == null) {
+            throw new IllegalArgumentException("Formato de marcadores não suportado: " + markersPath);
+        }
+
         Optional<Segmented_Image> existingSegmentedImage = segmentedImageRepository.findByImageId(imageId);
+        Image originalImage = imageRepository.findById(imageId)
+                .orElseThrow(() -> new RuntimeException("Imagem original não encontrada com ID: " + imageId));
 
-        String outputFilename;
-        if(existingSegmentedImage.isPresent()){
-            String existingFilePath = existingSegmentedImage.get().getFile_path();
-            outputFilename = new File(existingFilePath).getName();
-            System.out.println("✅ Reutilizando imagem segmentada existente: " + outputFilename);
-        } else {
-            outputFilename = "segmented_" + UUID.randomUUID() + ".png";
+        boolean wasEdited = Boolean.TRUE.equals(originalImage.getEdited());
+        SegmentationResult result = step.prepare(markers, originalImage, existingSegmentedImage.orElse(null));
+        Timer.Sample save = Timer.start();
+        segmentedImageRepository.save(result.getSegmentedImage());
+        save.stop(metrics.segmentation("db_save", method));
+
+        Long databaseId = originalImage.getDatabase() != null ? originalImage.getDatabase().getId() : null;
+        databaseSummaryService.segmentationSaved(databaseId, existingSegmentedImage.isEmpty());
+        if (!wasEdited) {
+            // A entidade está destacada aqui (executor ou worker da fila); o UPDATE grava direto
+            imageRepository.markEdited(imageId);
+            databaseSummaryService.imageEdited(databaseId);
         }
+        total.stop(metrics.segmentation("total", method));
+        return result;
+    }
 
-        String outputPath = SEGMENTED_DIR + outputFilename;
+    /**
+     * Executa a segmentação e grava as máscaras, devolvendo a entidade preenchida mas ainda não
+     * salva. O pipeline em lote usa este método para persistir vários resultados de uma vez.
+     */
+    public SegmentationResult prepareSegmentation(String imagePath, BufferedImage markers, Image originalImage,
+                                                  Segmented_Image existingSegmentedImage,
+                                                  List<MarkerLabelMap.MarkerClass> classes,
+                                                  PythonScriptRunner.ScriptJob job) throws IOException, InterruptedException {
+
+        if (imagePath == null || imagePath.isBlank()) {
+            throw new IllegalArgumentException("Caminho da imagem não pode ser vazio.");
+        }
+
+        MarkerLabelMap.Result markerLabels = classifyMarkers(markers, classes);
+
+        // Marcadores convertidos para rótulos (0 = sem marca, 1 = fundo, k + 1 = classe k);
+        // arquivo de trabalho do script, não é artefato
+        Path labelMarkersFile = Files.createTempFile("label_markers_", ".png");
+        RawPixelCache.Pinned pinned = pinScriptInput(originalImage);
+        PythonScriptRunner.ScriptResult scriptResult;
+        try {
+            ImageIO.write(markerLabels.labels(), "png", labelMarkersFile.toFile());
+            scriptResult = pythonScriptRunner.run(job, METHOD_WATERSHED, SCRIPT_PATH,
+                    pinned != null ? pinned.path().toString() : imagePath,
+                    labelMarkersFile.toString(), "--labels");
+        } finally {
+            Files.deleteIfExists(labelMarkersFile);
+            if (pinned != null) {
+                pinned.close();
+            }
+        }
 
-        new File(SEGMENTED_DIR).mkdirs();
+        byte[] maskBytes = scriptResult.getFrame(PythonScriptRunner.FRAME_MASK);
+        if (maskBytes == null) {
+            throw new RuntimeException("Script Python não retornou a máscara segmentada.");
+        }
+        byte[] labelBytes = scriptResult.getFrame(PythonScriptRunner.FRAME_LABELS);
 
-        ProcessBuilder pb = new ProcessBuilder(
-                PYTHON_PATH,
-                SCRIPT_PATH,
-                imagePath,
-                markersPath,
-                outputPath
-        );
+        return storeResult(originalImage, existingSegmentedImage, classes, markerLabels,
+                maskBytes, labelBytes, null, scriptResult.getStats(), METHOD_WATERSHED);
+    }
 
-        pb.environment().put("PYTHONIOENCODING", "utf-8");
+    /**
+     * Propagação dos marcadores no grafo de superpixels; devolve a entidade preenchida mas ainda
+     * não salva, como prepareSegmentation.
+     */
+    public SegmentationResult prepareSuperpixelSegmentation(String imagePath, BufferedImage markers, Image originalImage,
+                                                            Segmented_Image existingSegmentedImage,
+                                                            List<MarkerLabelMap.MarkerClass> classes) throws IOException {
+        if (imagePath == null || imagePath.isBlank()) {
+            throw new IllegalArgumentException("Caminho da imagem não pode ser vazio.");
+        }
 
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
+        long start = System.nanoTime();
+        MarkerLabelMap.Result markerLabels = classifyMarkers(markers, classes);
+        SuperpixelGraph graph = superpixelService.getGraph(originalImage.getId());
 
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                System.out.println("[PYTHON] " + line);
+        int width = graph.width();
+        int height = graph.height();
+        if (markers.getWidth() != width || markers.getHeight() != height) {
+            throw new IllegalArgumentException("Marcadores (" + markers.getWidth() + "x" + markers.getHeight()
+                    + ") não correspondem à imagem (" + width + "x" + height + ").");
+        }
+
+        int[] markerMap = new int[width * height];
+        markerLabels.labels().getRaster().getSamples(0, 0, width, height, 0, markerMap);
+        Timer.Sample propagate = Timer.start();
+        int[] nodeLabels = graph.propagate(graph.seedsFromMarkers(markerMap, classes.size() + 1));
+        int[] pixelLabels = graph.toPixelLabels(nodeLabels);
+        propagate.stop(metrics.segmentation("superpixel_propagate", METHOD_SUPERPIXEL));
+
+        // Mesma imagem do grafo, lida do cache de pixels em vez de decodificar o arquivo enviado
+        BufferedImage source = rawPixelCache.get(originalImage.getId()).toBufferedImage();
+        if (source.getWidth() != width || source.getHeight() != height) {
+            throw new IllegalArgumentException("Imagem enviada não corresponde à imagem original.");
+        }
+
+        // Mesmo formato do script: RGBA com alfa no objeto e mapa indexado (0 = fundo, k = classe k)
+        BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage labels = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        int[] classLabels = new int[width * height];
+        int[] row = new int[width];
+        long foreground = 0;
+        for (int y = 0; y < height; y++) {
+            source.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int label = pixelLabels[y * width + x];
+                boolean object = label >= 2;
+                row[x] = (row[x] & 0xFFFFFF) | (object ? 0xFF000000 : 0);
+                classLabels[y * width + x] = Math.max(0, label - 1);
+                if (object) {
+                    foreground++;
+                }
             }
+            mask.setRGB(0, y, width, 1, row, 0, width);
+        }
+        labels.getRaster().setSamples(0, 0, width, height, 0, classLabels);
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("method", METHOD_SUPERPIXEL);
+        stats.put("width", width);
+        stats.put("height", height);
+        stats.put("superpixels", graph.nodeCount());
+        stats.put("foreground_pixels", foreground);
+        stats.put("elapsed_ms", (System.nanoTime() - start) / 1_000_000);
+
+        Map<String, Object> contours;
+        try {
+            contours = contourService.extractContours(classLabels, width, height, 0, 0, width, height,
+                    contourService.getDefaultTolerance());
+        } catch (Exception e) {
+            contours = null;
+            log.warn("Não foi possível extrair contornos: {}", e.getMessage());
         }
 
-        int exitCode = process.waitFor();
-        if (exitCode != 0) {
-            throw new RuntimeException("Falha na execução do script Python. Código: " + exitCode);
+        return storeResult(originalImage, existingSegmentedImage, classes, markerLabels,
+                toPng(mask), toPng(labels), contours, stats, METHOD_SUPERPIXEL);
+    }
+
+    /**
+     * Entrada do script: um link para o arquivo bruto do cache de pixels da imagem original (o
+     * script lê com np.memmap, sem decodificar), que o despejo do cache não apaga enquanto o
+     * script roda. Nulo se ele não puder ser criado: o script usa o arquivo recebido.
+     */
+    private RawPixelCache.Pinned pinScriptInput(Image originalImage) {
+        if (originalImage == null || originalImage.getId() == null) {
+            return null;
         }
+        try {
+            return rawPixelCache.pin(originalImage.getId());
+        } catch (Exception e) {
+            log.warn("Cache de pixels indisponível, usando o arquivo recebido: {}", e.getMessage());
+            return null;
+        }
+    }
 
-        File outputFile = new File(outputPath);
-        if (!outputFile.exists()) {
-            throw new RuntimeException("Arquivo segmentado não foi gerado: " + outputPath);
+    private MarkerLabelMap.Result classifyMarkers(BufferedImage markers, List<MarkerLabelMap.MarkerClass> classes) {
+        MarkerLabelMap.Result markerLabels = MarkerLabelMap.classify(markers, classes);
+        if (markerLabels.pixelCounts()[0] == 0) {
+            throw new IllegalArgumentException("Nenhuma marca de background encontrada! O usuário marcou o fundo em vermelho?");
+        }
+        if (markerLabels.objectPixels() == 0) {
+            throw new IllegalArgumentException("Nenhuma marca de objeto encontrada para as classes informadas.");
         }
+        return markerLabels;
+    }
 
-        Image originalImage = imageRepository.findById(imageId)
-                .orElseThrow(() -> new RuntimeException("Imagem original não encontrada com ID: " + imageId));
+    private byte[] toPng(BufferedImage image) throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+
+    /**
+     * Grava as máscaras e preenche a entidade (nova ou existente). contours nulo: extraídos da
+     * máscara de rótulos gravada.
+     */
+    private SegmentationResult storeResult(Image originalImage, Segmented_Image existingSegmentedImage,
+                                           List<MarkerLabelMap.MarkerClass> classes, MarkerLabelMap.Result markerLabels,
+                                           byte[] maskBytes, byte[] labelBytes, Map<String, Object> contours,
+                                           Map<String, Object> stats, String method) throws IOException {
+        String outputFilename;
+        if(existingSegmentedImage != null){
+            String existingFilePath = existingSegmentedImage.getFile_path();
+            outputFilename = BlobKeys.filename(existingFilePath);
+            log.debug("Reutilizando imagem segmentada existente: {}", outputFilename);
+        } else {
+            outputFilename = "segmented_" + UUID.randomUUID() + ".png";
+        }
+
+        String outputPath = SEGMENTED_DIR + outputFilename;
+        String labelsFilename = "labels_" + outputFilename;
+        String labelsPath = SEGMENTED_DIR + labelsFilename;
+
+        Timer.Sample store = Timer.start();
+        blobStore.put(outputPath, maskBytes, "image/png");
+        if (labelBytes != null) {
+            blobStore.put(labelsPath, labelBytes, "image/png");
+        }
+        store.stop(metrics.segmentation("store_output", method));
 
         Segmented_Image segmentedImage;
 
-        if(existingSegmentedImage.isPresent()){
-            segmentedImage = existingSegmentedImage.get();
+        if(existingSegmentedImage != null){
+            segmentedImage = existingSegmentedImage;
             segmentedImage.setFile_path("segmented/" + outputFilename);
             segmentedImage.setUpdatedAt(LocalDateTime.now());
-            System.out.println("✅ Atualizando imagem segmentada existente (ID: " + segmentedImage.getId() + ")");
+            log.debug("Atualizando imagem segmentada existente (ID: {})", segmentedImage.getId());
         } else {
             segmentedImage = new Segmented_Image();
             segmentedImage.setImage(originalImage);
             segmentedImage.setFile_path("segmented/" + outputFilename);
             segmentedImage.setCreatedAt(LocalDateTime.now());
             segmentedImage.setUpdatedAt(LocalDateTime.now());
-            System.out.println("✅ Criando nova imagem segmentada");
+            log.debug("Criando nova imagem segmentada");
+        }
+
+        List<Map<String, Object>> legend = toLegend(classes, markerLabels.pixelCounts());
+        segmentedImage.setLabelsFilePath(labelBytes != null ? "segmented/" + labelsFilename : null);
+        segmentedImage.setLabelLegend(legend);
+
+        try {
+            byte[] contourSource = labelBytes != null ? labelBytes : maskBytes;
+            segmentedImage.setContours(contours != null ? contours
+                    : contourService.extractContours(contourSource, contourService.getDefaultTolerance()));
+        } catch (Exception e) {
+            // Os contornos são um formato adicional; a segmentação continua válida sem eles
+            segmentedImage.setContours(null);
+            log.warn("Não foi possível extrair contornos: {}", e.getMessage());
         }
 
         originalImage.setEdited(true);
-        segmentedImageRepository.save(segmentedImage);
-        return "/segmented/" + outputFilename;
+
+        String labelsUrl = segmentedImage.getLabelsFilePath() != null ? "/" + segmentedImage.getLabelsFilePath() : null;
+        return new SegmentationResult(segmentedImage, "/segmented/" + outputFilename, labelsUrl, legend, stats);
+    }
+
+    /**
+     * Lê a paleta de classes enviada pelo cliente: [{"name": "dente 11", "color": "#00ff00"}, ...].
+     * O fundo (vermelho) é sempre a classe 0 e não precisa ser informado.
+     */
+    public List<MarkerLabelMap.MarkerClass> parseMarkerClasses(String labelsJson) {
+        if (labelsJson == null || labelsJson.isBlank()) {
+            return MarkerLabelMap.defaultClasses();
+        }
+
+        List<Map<String, String>> entries;
+        try {
+            entries = objectMapper.readValue(labelsJson, new TypeReference<List<Map<String, String>>>() {});
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Lista de classes inválida: " + e.getMessage());
+        }
+
+        if (entries.isEmpty()) {
+            return MarkerLabelMap.defaultClasses();
+        }
+
+        List<String> names = new ArrayList<>();
+        List<String> colors = new ArrayList<>();
+        for (Map<String, String> entry : entries) {
+            names.add(entry.getOrDefault("name", "object_" + (names.size() + 1)));
+            colors.add(entry.get("color"));
+        }
+        return MarkerLabelMap.withBackground(names, colors);
+    }
+
+    private List<Map<String, Object>> toLegend(List<MarkerLabelMap.MarkerClass> classes, int[] pixelCounts) {
+        List<Map<String, Object>> legend = new ArrayList<>();
+        for (MarkerLabelMap.MarkerClass markerClass : classes) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("label", markerClass.index());
+            entry.put("name", markerClass.name());
+            entry.put("color", markerClass.hexColor());
+            entry.put("markerPixels", pixelCounts[markerClass.index()]);
+            legend.add(entry);
+        }
+        return legend;
+    }
+
+    private String contourSource(Segmented_Image segmentedImage) {
+        return segmentedImage.getLabelsFilePath() != null ? segmentedImage.getLabelsFilePath() : segmentedImage.getFile_path();
     }
 
     @Override
+    @Cacheable(cacheNames = CacheConfig.SEGMENTATIONS, key = "#p0")
     public Optional<Segmented_Image> findSegmentationImageByImageId(Long imageId) {
         return segmentedImageRepository.findByImageId(imageId);
     }
+
+    @Override
+    public Optional<Map<String, Object>> findSegmentationContoursByImageId(Long imageId, Double tolerance) throws IOException {
+        Optional<Segmented_Image> segmentedImageOpt = segmentedImageRepository.findByImageId(imageId);
+        if (segmentedImageOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Segmented_Image segmentedImage = segmentedImageOpt.get();
+        double requestedTolerance = tolerance != null ? tolerance : contourService.getDefaultTolerance();
+
+        Map<String, Object> stored = segmentedImage.getContours();
+        if (stored != null && stored.get("tolerance") instanceof Number storedTolerance
+                && storedTolerance.doubleValue() == requestedTolerance) {
+            return Optional.of(stored);
+        }
+
+        // Tolerância diferente da armazenada: extrai novamente a partir da máscara
+        Map<String, Object> contours = contourService.extractContours(contourSource(segmentedImage), requestedTolerance);
+
+        if (stored == null && requestedTolerance == contourService.getDefaultTolerance()) {
+            segmentedImage.setContours(contours);
+            segmentedImageRepository.save(segmentedImage);
+        }
+
+        return Optional.of(contours);
+    }
+
+    @FunctionalInterface
+    private interface SegmentationStep {
+        SegmentationResult prepare(BufferedImage markers, Image originalImage,
+                                   Segmented_Image existingSegmentedImage) throws IOException, InterruptedException;
+    }
+
+    public static class SegmentationResult {
+        private final Segmented_Image segmentedImage;
+        private final String segmentedUrl;
+        private final String labelsUrl;
+        private final List<Map<String, Object>> legend;
+        private final Map<String, Object> stats;
+
+        public SegmentationResult(Segmented_Image segmentedImage, String segmentedUrl, String labelsUrl,
+                                  List<Map<String, Object>> legend, Map<String, Object> stats) {
+            this.segmentedImage = segmentedImage;
+            this.segmentedUrl = segmentedUrl;
+            this.labelsUrl = labelsUrl;
+            this.legend = legend;
+            this.stats = stats;
+        }
+
+        public Segmented_Image getSegmentedImage() {
+            return segmentedImage;
+        }
+
+        public String getSegmentedUrl() {
+            return segmentedUrl;
+        }
+
+        public String getLabelsUrl() {
+            return labelsUrl;
+        }
+
+        public List<Map<String, Object>> getLegend() {
+            return legend;
+        }
+
+        public Map<String, Object> getStats() {
+            return stats;
+        }
+    }
 }
\ No newline at end of file
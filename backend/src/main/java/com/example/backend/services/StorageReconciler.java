@@ -0,0 +1,308 @@
+package com.example.backend.services;
+
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.repositories.AnnotationRepository;
+import com.example.backend.repositories.ImageRepository;
+import com.example.backend.repositories.ProcessingJobRepository;
+import com.example.backend.repositories.SegmentedImageRepository;
+import com.example.backend.utils.BlobKeys;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Limpeza periódica do armazenamento. Remove arquivos que nenhuma linha do banco referencia
+ * (imagens e segmentações apagadas, superpixels de imagens removidas, entradas de jobs já
+ * encerrados, temporários de execuções interrompidas) e, quando os marcadores iniciais passam do orçamento de disco, remove os menos
+ * acessados; eles são regenerados a partir da imagem original no próximo acesso.
+ * <p>
+ * A varredura anda em lotes pequenos, com pausa entre lotes e limite de remoções por segundo,
+ * para não disputar disco e banco com as requisições interativas.
+ */
+@Slf4j
+@Service
+public class StorageReconciler {
+
+    private static final String UPLOADS = "uploads/";
+    private static final String SEGMENTED = "segmented/";
+    private static final List<String> TEMP_PREFIXES = List.of("segment-", "label_markers_", "blob-");
+
+    private final IBlobStore blobStore;
+    private final ImageRepository imageRepository;
+    private final SegmentedImageRepository segmentedImageRepository;
+    private final AnnotationRepository annotationRepository;
+    private final ProcessingJobRepository processingJobRepository;
+    private final ArtifactAccessTracker accessTracker;
+
+    @Value("${storage.gc.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.gc.grace-minutes:60}")
+    private long graceMinutes;
+
+    @Value("${storage.gc.batch-size:200}")
+    private int batchSize;
+
+    @Value("${storage.gc.batch-pause-ms:250}")
+    private long batchPauseMillis;
+
+    @Value("${storage.gc.max-deletes-per-second:20}")
+    private int maxDeletesPerSecond;
+
+    @Value("${storage.gc.derived-budget-mb:1024}")
+    private long derivedBudgetMb;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private long nextDeleteAt;
+
+    public StorageReconciler(IBlobStore blobStore,
+                             ImageRepository imageRepository,
+                             SegmentedImageRepository segmentedImageRepository,
+                             AnnotationRepository annotationRepository,
+                             ProcessingJobRepository processingJobRepository,
+                             ArtifactAccessTracker accessTracker) {
+        this.blobStore = blobStore;
+        this.imageRepository = imageRepository;
+        this.segmentedImageRepository = segmentedImageRepository;
+        this.annotationRepository = annotationRepository;
+        this.processingJobRepository = processingJobRepository;
+        this.accessTracker = accessTracker;
+    }
+
+    @Scheduled(initialDelayString = "${storage.gc.initial-delay-ms:300000}",
+            fixedDelayString = "${storage.gc.interval-ms:3600000}")
+    public void reconcile() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        Instant cutoff = Instant.now().minus(Duration.ofMinutes(graceMinutes));
+        Map<String, Object> summary = new LinkedHashMap<>();
+        try {
+            Set<String> activeJobInputs = normalizeAll(processingJobRepository.findActiveInputKeys());
+
+            summary.put("orphanUploads", sweepOrphans(UPLOADS, cutoff, keys -> {
+                Set<String> referenced = normalizeAll(imageRepository.findFilePathsIn(variants(keys)));
+                referenced.addAll(normalizeAll(imageRepository.findSourceFilePathsIn(variants(keys))));
+                referenced.addAll(activeJobInputs);
+                return referenced;
+            }));
+            summary.put("orphanSegmented", sweepOrphans(SEGMENTED, cutoff,
+                    keys -> normalizeAll(segmentedImageRepository.findFilePathsIn(variants(keys)))));
+            summary.put("orphanMarkers", sweepOrphans(ArtifactAccessTracker.REGENERABLE_PREFIX, cutoff,
+                    keys -> normalizeAll(annotationRepository.findFilePathsIn(variants(keys)))));
+            summary.put("orphanSuperpixels", sweepOrphans(SuperpixelService.PREFIX, cutoff, this::superpixelsOfExistingImages));
+            summary.put("evictedMarkers", evictDerived());
+            summary.put("staleTempFiles", sweepTempDir(cutoff));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            summary.put("interrupted", true);
+        } catch (Exception e) {
+            log.error("Falha na limpeza do armazenamento", e);
+            summary.put("error", e.getMessage());
+        } finally {
+            summary.put("elapsedMillis", System.currentTimeMillis() - start);
+            summary.put("finishedAt", Instant.now().toString());
+            running.set(false);
+        }
+        log.info("Limpeza do armazenamento concluída: {}", summary);
+    }
+
+    /**
+     * Percorre as chaves do prefixo em lotes e apaga as que, passado o período de carência, não
+     * aparecem nas referências do banco. A carência cobre o intervalo entre gravar o arquivo e
+     * salvar a linha que aponta para ele.
+     */
+    private long sweepOrphans(String prefix, Instant cutoff,
+                              Function<Collection<String>, Set<String>> referencedIn) throws IOException, InterruptedException {
+        long deleted = 0;
+        try (Stream<IBlobStore.BlobInfo> blobs = blobStore.list(prefix)) {
+            Iterator<IBlobStore.BlobInfo> iterator = blobs.iterator();
+            List<String> batch = new ArrayList<>(batchSize);
+
+            while (iterator.hasNext()) {
+                IBlobStore.BlobInfo blob = iterator.next();
+                if (blob.lastModified().isBefore(cutoff)) {
+                    batch.add(blob.key());
+                }
+                if (batch.size() >= batchSize || (!iterator.hasNext() && !batch.isEmpty())) {
+                    Set<String> referenced = referencedIn.apply(batch);
+                    for (String key : batch) {
+                        if (!referenced.contains(key) && delete(key)) {
+                            deleted++;
+                        }
+                    }
+                    batch.clear();
+                    Thread.sleep(batchPauseMillis);
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("{} arquivos sem referência removidos de {}", deleted, prefix);
+        }
+        return deleted;
+    }
+
+    /**
+     * Evicção LRU dos marcadores iniciais acima do orçamento. Desce até 90% do limite, para que
+     * a próxima execução não volte a remover logo em seguida.
+     */
+    private long evictDerived() throws IOException, InterruptedException {
+        if (derivedBudgetMb <= 0) {
+            return 0;
+        }
+
+        long budget = derivedBudgetMb * 1024 * 1024;
+        List<IBlobStore.BlobInfo> markers;
+        try (Stream<IBlobStore.BlobInfo> blobs = blobStore.list(ArtifactAccessTracker.REGENERABLE_PREFIX)) {
+            markers = blobs.toList();
+        }
+
+        long total = markers.stream().mapToLong(IBlobStore.BlobInfo::size).sum();
+        if (total <= budget) {
+            return 0;
+        }
+
+        List<IBlobStore.BlobInfo> leastRecent = new ArrayList<>(markers);
+        leastRecent.sort(Comparator.comparing(blob -> accessTracker.lastAccess(blob.key(), blob.lastModified())));
+
+        long target = budget / 10 * 9;
+        long evicted = 0;
+        for (IBlobStore.BlobInfo blob : leastRecent) {
+            if (total <= target) {
+                break;
+            }
+            if (delete(blob.key())) {
+                total -= blob.size();
+                evicted++;
+            }
+        }
+        log.info("{} marcadores removidos para respeitar o orçamento de {} MB", evicted, derivedBudgetMb);
+        return evicted;
+    }
+
+    /**
+     * Temporários que os fluxos de segmentação apagam ao terminar; sobram quando o processo cai
+     * no meio de uma execução.
+     */
+    private long sweepTempDir(Instant cutoff) throws IOException, InterruptedException {
+        Path tempDir = Path.of(System.getProperty("java.io.tmpdir"));
+        long deleted = 0;
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(tempDir, path -> {
+            String name = path.getFileName().toString();
+            return TEMP_PREFIXES.stream().anyMatch(name::startsWith);
+        })) {
+            for (Path path : entries) {
+                if (!Files.isRegularFile(path) || !Files.getLastModifiedTime(path).toInstant().isBefore(cutoff)) {
+                    continue;
+                }
+                throttle();
+                if (Files.deleteIfExists(path)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private boolean delete(String key) throws InterruptedException {
+        throttle();
+        try {
+            blobStore.delete(key);
+            accessTracker.forget(key);
+            return true;
+        } catch (IOException e) {
+            log.warn("Não foi possível remover {}: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Espaça as remoções para no máximo max-deletes-per-second. Só a thread do agendador chama.
+     */
+    private void throttle() throws InterruptedException {
+        if (maxDeletesPerSecond <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (nextDeleteAt > now) {
+            Thread.sleep(Duration.ofNanos(nextDeleteAt - now).toMillis());
+            now = nextDeleteAt;
+        }
+        nextDeleteAt = now + 1_000_000_000L / maxDeletesPerSecond;
+    }
+
+    /**
+     * Superpixels não têm linha própria: o arquivo superpixels/{imageId}.spx vale enquanto a
+     * imagem existir.
+     */
+    private Set<String> superpixelsOfExistingImages(Collection<String> keys) {
+        Map<Long, String> byImageId = new HashMap<>();
+        for (String key : keys) {
+            String name = key.substring(SuperpixelService.PREFIX.length());
+            try {
+                byImageId.put(Long.parseLong(name.substring(0, name.indexOf('.'))), key);
+            } catch (RuntimeException ignored) {
+                // Nome fora do padrão: não pertence a nenhuma imagem
+            }
+        }
+
+        Set<String> referenced = new HashSet<>();
+        if (!byImageId.isEmpty()) {
+            for (Long id : imageRepository.findIdsIn(byImageId.keySet())) {
+                referenced.add(byImageId.get(id));
+            }
+        }
+        return referenced;
+    }
+
+    /**
+     * Formas em que a mesma chave pode estar gravada no banco ("/initial_markers/x.png",
+     * "segmented/x.png", "uploads\\x.png").
+     */
+    private static List<String> variants(Collection<String> keys) {
+        List<String> variants = new ArrayList<>(keys.size() * 4);
+        for (String key : keys) {
+            variants.add(key);
+            variants.add("/" + key);
+            variants.add("./" + key);
+            variants.add(key.replace('/', '\\'));
+        }
+        return variants;
+    }
+
+    private static Set<String> normalizeAll(Collection<String> paths) {
+        Set<String> normalized = new HashSet<>();
+        for (String path : paths) {
+            try {
+                normalized.add(BlobKeys.normalize(path));
+            } catch (IllegalArgumentException ignored) {
+                // Caminho vazio ou inválido não protege nenhum arquivo
+            }
+        }
+        return normalized;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.backend.services;
+
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.utils.Slic;
+import com.example.backend.utils.SuperpixelGraph;
+import com.example.backend.utils.Superpixels;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Superpixels de cada imagem, calculados uma vez (SLIC sobre o buffer em tons de cinza) e
+ * guardados no armazenamento em superpixels/{imageId}.spx. O grafo de adjacência é montado ao
+ * carregar e fica num cache limitado por bytes. O cálculo acontece na primeira abertura da imagem
+ * no editor, em segundo plano, para que a primeira segmentação já encontre o grafo pronto.
+ */
+@Slf4j
+@Service
+public class SuperpixelService {
+
+    public static final String PREFIX = "superpixels/";
+
+    private final IBlobStore blobStore;
+    private final GrayscaleImageCache grayscaleImageCache;
+    private final Cache<Long, SuperpixelGraph> graphs;
+    private final ExecutorService warmer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "superpixel-warmer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${superpixels.region-size:16}")
+    private int regionSize;
+
+    @Value("${superpixels.compactness:10}")
+    private double compactness;
+
+    @Value("${superpixels.iterations:5}")
+    private int iterations;
+
+    public SuperpixelService(IBlobStore blobStore,
+                             GrayscaleImageCache grayscaleImageCache,
+                             @Value("${superpixels.cache-budget-mb:256}") long budgetMb) {
+        this.blobStore = blobStore;
+        this.grayscaleImageCache = grayscaleImageCache;
+        // O peso é o mapa de rótulos (4 bytes por pixel), que domina o tamanho do grafo
+        this.graphs = Caffeine.newBuilder()
+                .maximumWeight(budgetMb * 1024 * 1024)
+                .weigher((Long id, SuperpixelGraph graph) -> graph.pixelCount() * 4)
+                .build();
+    }
+
+    public static String keyOf(Long imageId) {
+        return PREFIX + imageId + ".spx";
+    }
+
+    public SuperpixelGraph getGraph(Long imageId) throws IOException {
+        try {
+            return graphs.get(imageId, this::load);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public void warmAsync(Long imageId) {
+        if (graphs.getIfPresent(imageId) != null) {
+            return;
+        }
+        warmer.execute(() -> {
+            try {
+                getGraph(imageId);
+            } catch (Exception e) {
+                log.debug("Pré-cálculo de superpixels falhou para imageId {}: {}", imageId, e.getMessage());
+            }
+        });
+    }
+
+    private SuperpixelGraph load(Long imageId) {
+        try {
+            GrayscaleImageCache.GrayscaleImage image = grayscaleImageCache.get(imageId);
+            Superpixels superpixels = readStored(imageId, image);
+            if (superpixels == null) {
+                superpixels = compute(imageId, image);
+            }
+            return SuperpixelGraph.build(superpixels, image.pixels());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Superpixels readStored(Long imageId, GrayscaleImageCache.GrayscaleImage image) throws IOException {
+        String key = keyOf(imageId);
+        if (!blobStore.exists(key)) {
+            return null;
+        }
+        Superpixels stored;
+        try (InputStream in = blobStore.get(key)) {
+            stored = Superpixels.decode(in.readAllBytes());
+        } catch (IOException e) {
+            log.warn("Superpixels da imagem {} ilegíveis, recalculando: {}", imageId, e.getMessage());
+            return null;
+        }
+        // Arquivo de outra versão da imagem: recalcula
+        if (stored.width() != image.width() || stored.height() != image.height()) {
+            return null;
+        }
+        return stored;
+    }
+
+    private Superpixels compute(Long imageId, GrayscaleImageCache.GrayscaleImage image) throws IOException {
+        long start = System.nanoTime();
+        Superpixels superpixels = Slic.compute(image.pixels(), image.width(), image.height(),
+                regionSize, compactness, iterations);
+        byte[] encoded = superpixels.encode();
+        blobStore.put(keyOf(imageId), encoded, "application/octet-stream");
+        log.info("{} superpixels calculados para a imagem {} em {} ms ({} KB)", superpixels.count(), imageId,
+                (System.nanoTime() - start) / 1_000_000, encoded.length / 1024);
+        return superpixels;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        warmer.shutdown();
+    }
+}
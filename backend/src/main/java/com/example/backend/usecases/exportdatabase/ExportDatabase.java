@@ -0,0 +1,18 @@
+package com.example.backend.usecases.exportdatabase;
+
+import com.example.backend.interfaces.IDatasetExportService;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+@Component
+@AllArgsConstructor
+public class ExportDatabase {
+    private IDatasetExportService datasetExportService;
+
+    public void execute(Long databaseId, boolean includeImages, OutputStream out) throws IOException {
+        datasetExportService.exportDatabase(databaseId, includeImages, out);
+    }
+}
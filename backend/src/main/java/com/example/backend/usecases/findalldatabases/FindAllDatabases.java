@@ -1,36 +1,33 @@
 package com.example.backend.usecases.findalldatabases;
 
-import com.example.backend.entities.Database;
-import com.example.backend.interfaces.IDatabaseService;
+import com.example.backend.services.DatabaseSummaryService;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
 @AllArgsConstructor
 public class FindAllDatabases {
-    private final IDatabaseService databaseService;
+    private final DatabaseSummaryService databaseSummaryService;
 
     public List<FindAllDatabasesDTO> execute() {
-        List<Database> allDatabases = databaseService.findAllDatabases();
-
-        return allDatabases.stream()
+        return databaseSummaryService.findAll().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
-    private FindAllDatabasesDTO convertToDTO(Database database) {
+    private FindAllDatabasesDTO convertToDTO(DatabaseSummaryService.DatabaseSummary summary) {
         FindAllDatabasesDTO dto = new FindAllDatabasesDTO();
-        dto.setId(database.getId());
-        dto.setName(database.getName());
-
-        boolean hasEditedImages = database.getImages().stream()
-                .anyMatch(image -> Boolean.TRUE.equals(image.getEdited()));
-        dto.setEdited(hasEditedImages);
-
+        dto.setId(summary.id());
+        dto.setName(summary.name());
+        dto.setEdited(summary.editedCount() > 0);
+        dto.setImageCount(summary.imageCount());
+        dto.setEditedCount(summary.editedCount());
+        dto.setAnnotatedCount(summary.annotatedCount());
+        dto.setSegmentedCount(summary.segmentedCount());
+        dto.setLastActivity(summary.lastActivity());
         return dto;
     }
 }
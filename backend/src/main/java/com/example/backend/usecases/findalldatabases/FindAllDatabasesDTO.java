@@ -3,10 +3,17 @@ package com.example.backend.usecases.findalldatabases;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.LocalDateTime;
+
 @Getter
 @Setter
 public class FindAllDatabasesDTO {
     private Long id;
     private String name;
     private Boolean edited;
+    private Long imageCount;
+    private Long editedCount;
+    private Long annotatedCount;
+    private Long segmentedCount;
+    private LocalDateTime lastActivity;
 }
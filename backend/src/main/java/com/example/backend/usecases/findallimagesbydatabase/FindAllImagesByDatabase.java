@@ -6,13 +6,32 @@ import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Component
 @AllArgsConstructor
 public class FindAllImagesByDatabase {
     private final IImageService imageService;
 
-    public List<Image> execute (Long databaseId) {
-        return imageService.findAllImagesByDatabase(databaseId);
+    public List<FindAllImagesByDatabaseDTO> execute (Long databaseId) {
+        return imageService.findAllImagesByDatabase(databaseId).stream()
+                .map(this::convertToDTO)
+                .collect(Collectors.toList());
+    }
+
+    private FindAllImagesByDatabaseDTO convertToDTO(Image image) {
+        FindAllImagesByDatabaseDTO dto = new FindAllImagesByDatabaseDTO();
+        dto.setId(image.getId());
+        dto.setFilePath(image.getFilePath());
+        dto.setEdited(image.getEdited());
+        dto.setWidth(image.getWidth());
+        dto.setHeight(image.getHeight());
+        dto.setBitDepth(image.getBitDepth());
+        dto.setFormat(image.getFormat());
+        dto.setSizeBytes(image.getSizeBytes());
+        dto.setContentHash(image.getContentHash());
+        dto.setCreatedAt(image.getCreatedAt());
+        dto.setUpdatedAt(image.getUpdatedAt());
+        return dto;
     }
 }
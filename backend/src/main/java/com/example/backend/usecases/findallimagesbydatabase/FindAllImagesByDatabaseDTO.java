@@ -1,4 +1,26 @@
 package com.example.backend.usecases.findallimagesbydatabase;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
 public class FindAllImagesByDatabaseDTO {
+    private Long id;
+
+    @JsonProperty("file_path")
+    private String filePath;
+
+    private Boolean edited;
+    private Integer width;
+    private Integer height;
+    private Integer bitDepth;
+    private String format;
+    private Long sizeBytes;
+    private String contentHash;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
 }
@@ -0,0 +1,34 @@
+package com.example.backend.usecases.findimagedetails;
+
+import com.example.backend.interfaces.IImageDetailsService;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Component
+@AllArgsConstructor
+public class FindImageDetails {
+    private IImageDetailsService imageDetailsService;
+
+    public Map<String, Object> byIds(List<Long> imageIds, Set<String> fields) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("items", imageDetailsService.findDetails(imageIds, fields));
+        return response;
+    }
+
+    /**
+     * Faixa de imagens da base por keyset: o cliente pede a próxima página com afterId = nextAfterId.
+     */
+    public Map<String, Object> byDatabase(Long databaseId, Long afterId, int limit, Set<String> fields) {
+        List<Long> imageIds = imageDetailsService.findImageIdsByDatabase(databaseId, afterId, limit);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("items", imageDetailsService.findDetails(imageIds, fields));
+        response.put("nextAfterId", imageIds.size() == limit ? imageIds.get(imageIds.size() - 1) : null);
+        return response;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.backend.usecases.findsegmentationcontoursbyimageid;
+
+import com.example.backend.interfaces.ISegmentationImageService;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+
+@Component
+@AllArgsConstructor
+public class FindSegmentationContoursByImageId {
+    private ISegmentationImageService segmentationImageService;
+
+    public Optional<Map<String, Object>> execute(Long imageId, Double tolerance) throws IOException {
+        return segmentationImageService.findSegmentationContoursByImageId(imageId, tolerance);
+    }
+}
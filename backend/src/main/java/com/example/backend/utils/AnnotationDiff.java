@@ -0,0 +1,126 @@
+package com.example.backend.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Diferença entre dois documentos de anotação, no formato
+ * {"set": {chave: valor}, "remove": [chave], "append": {chave: [itens]}, "truncate": {chave: tamanho}}.
+ * Listas que só cresceram (um traço novo) viram append; listas que só encolheram no fim (desfazer)
+ * viram truncate. Assim um delta entre saves seguidos guarda um traço, não o documento inteiro.
+ */
+public final class AnnotationDiff {
+
+    public static final String SET = "set";
+    public static final String REMOVE = "remove";
+    public static final String APPEND = "append";
+    public static final String TRUNCATE = "truncate";
+
+    private AnnotationDiff() {
+    }
+
+    public static Map<String, Object> between(Map<String, Object> from, Map<String, Object> to) {
+        Map<String, Object> source = from != null ? from : Map.of();
+        Map<String, Object> target = to != null ? to : Map.of();
+
+        Map<String, Object> set = new LinkedHashMap<>();
+        Map<String, Object> append = new LinkedHashMap<>();
+        Map<String, Object> truncate = new LinkedHashMap<>();
+        List<String> remove = new ArrayList<>();
+
+        for (Map.Entry<String, Object> entry : target.entrySet()) {
+            String key = entry.getKey();
+            Object oldValue = source.get(key);
+            Object newValue = entry.getValue();
+            if (source.containsKey(key) && Objects.equals(oldValue, newValue)) {
+                continue;
+            }
+
+            if (oldValue instanceof List<?> oldList && newValue instanceof List<?> newList) {
+                if (newList.size() > oldList.size() && startsWith(newList, oldList)) {
+                    append.put(key, new ArrayList<>(newList.subList(oldList.size(), newList.size())));
+                    continue;
+                }
+                if (newList.size() < oldList.size() && startsWith(oldList, newList)) {
+                    truncate.put(key, newList.size());
+                    continue;
+                }
+            }
+            set.put(key, newValue);
+        }
+
+        for (String key : source.keySet()) {
+            if (!target.containsKey(key)) {
+                remove.add(key);
+            }
+        }
+
+        Map<String, Object> delta = new LinkedHashMap<>();
+        if (!set.isEmpty()) {
+            delta.put(SET, set);
+        }
+        if (!remove.isEmpty()) {
+            delta.put(REMOVE, remove);
+        }
+        if (!append.isEmpty()) {
+            delta.put(APPEND, append);
+        }
+        if (!truncate.isEmpty()) {
+            delta.put(TRUNCATE, truncate);
+        }
+        return delta;
+    }
+
+    /**
+     * Aplica o delta sobre uma cópia do documento; o original não é alterado.
+     */
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> apply(Map<String, Object> document, Map<String, Object> delta) {
+        Map<String, Object> result = new LinkedHashMap<>(document != null ? document : Map.of());
+
+        Object remove = delta.get(REMOVE);
+        if (remove instanceof List<?> keys) {
+            keys.forEach(result::remove);
+        }
+
+        Object set = delta.get(SET);
+        if (set instanceof Map<?, ?> values) {
+            result.putAll((Map<String, Object>) values);
+        }
+
+        Object append = delta.get(APPEND);
+        if (append instanceof Map<?, ?> lists) {
+            lists.forEach((key, items) -> {
+                List<Object> merged = new ArrayList<>();
+                if (result.get(key) instanceof List<?> current) {
+                    merged.addAll(current);
+                }
+                merged.addAll((List<Object>) items);
+                result.put((String) key, merged);
+            });
+        }
+
+        Object truncate = delta.get(TRUNCATE);
+        if (truncate instanceof Map<?, ?> sizes) {
+            sizes.forEach((key, size) -> {
+                if (result.get(key) instanceof List<?> current) {
+                    int length = Math.min(((Number) size).intValue(), current.size());
+                    result.put((String) key, new ArrayList<>(current.subList(0, length)));
+                }
+            });
+        }
+        return result;
+    }
+
+    private static boolean startsWith(List<?> list, List<?> prefix) {
+        for (int i = 0; i < prefix.size(); i++) {
+            if (!Objects.equals(list.get(i), prefix.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.backend.utils;
+
+import java.net.URLConnection;
+
+/**
+ * Normalização das chaves do armazenamento de artefatos. Os caminhos gravados no banco vêm em
+ * formatos variados ("/initial_markers/x.png", "uploads\\x.png", "segmented/x.png"); todos viram
+ * a mesma chave relativa com barras normais.
+ */
+public final class BlobKeys {
+
+    private BlobKeys() {
+    }
+
+    public static String normalize(String key) {
+        if (key == null || key.isBlank()) {
+            throw new IllegalArgumentException("Chave de armazenamento vazia.");
+        }
+
+        String normalized = key.replace('\\', '/');
+        while (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.startsWith("./")) {
+            normalized = normalized.substring(2);
+        }
+
+        for (String part : normalized.split("/")) {
+            if (part.equals("..") || part.isEmpty()) {
+                throw new IllegalArgumentException("Chave de armazenamento inválida: " + key);
+            }
+        }
+        return normalized;
+    }
+
+    public static String filename(String key) {
+        String normalized = normalize(key);
+        return normalized.substring(normalized.lastIndexOf('/') + 1);
+    }
+
+    public static String contentType(String key) {
+        String type = URLConnection.guessContentTypeFromName(filename(key));
+        return type != null ? type : "application/octet-stream";
+    }
+}
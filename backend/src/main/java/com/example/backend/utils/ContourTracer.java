@@ -0,0 +1,290 @@
+package com.example.backend.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Extrai contornos poligonais de um mapa de rótulos (0 = fundo, > 0 = região).
+ *
+ * Os contornos seguem as bordas dos pixels, então a área calculada pelo shoelace é exata
+ * (em pixels). Contornos externos têm área positiva e buracos, negativa. Pontos são
+ * armazenados em um vetor plano: [x0, y0, x1, y1, ...].
+ */
+public final class ContourTracer {
+
+    private static final int EAST = 0;
+    private static final int SOUTH = 1;
+    private static final int WEST = 2;
+    private static final int NORTH = 3;
+
+    private static final int[] DX = {1, 0, -1, 0};
+    private static final int[] DY = {0, 1, 0, -1};
+
+    private ContourTracer() {
+    }
+
+    public record Contour(int label, boolean hole, double area, double perimeter, int[] points) {
+    }
+
+    public static List<Contour> trace(int[] labels, int width, int height, double tolerance) {
+        if (labels.length != width * height) {
+            throw new IllegalArgumentException("Mapa de rótulos não corresponde às dimensões " + width + "x" + height);
+        }
+
+        // Bounding box de cada rótulo: [minX, minY, maxX, maxY]
+        Map<Integer, int[]> boxes = new TreeMap<>();
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int label = labels[row + x];
+                if (label <= 0) {
+                    continue;
+                }
+                int[] box = boxes.get(label);
+                if (box == null) {
+                    boxes.put(label, new int[]{x, y, x, y});
+                } else {
+                    if (x < box[0]) box[0] = x;
+                    if (x > box[2]) box[2] = x;
+                    box[3] = y;
+                }
+            }
+        }
+
+        List<Contour> contours = new ArrayList<>();
+        for (Map.Entry<Integer, int[]> entry : boxes.entrySet()) {
+            traceLabel(labels, width, height, entry.getKey(), entry.getValue(), tolerance, contours);
+        }
+        return contours;
+    }
+
+    private static void traceLabel(int[] labels, int width, int height, int label, int[] box,
+                                   double tolerance, List<Contour> contours) {
+        int minX = box[0];
+        int minY = box[1];
+        int gridWidth = box[2] - minX + 2;
+        int gridHeight = box[3] - minY + 2;
+
+        // Arestas de saída de cada vértice (bitmask por direção), sempre com a região à direita
+        byte[] out = new byte[gridWidth * gridHeight];
+        for (int y = minY; y <= box[3]; y++) {
+            for (int x = minX; x <= box[2]; x++) {
+                if (labels[y * width + x] != label) {
+                    continue;
+                }
+                int vx = x - minX;
+                int vy = y - minY;
+                if (y == 0 || labels[(y - 1) * width + x] != label) {
+                    out[vy * gridWidth + vx] |= 1 << EAST;
+                }
+                if (x == width - 1 || labels[y * width + x + 1] != label) {
+                    out[vy * gridWidth + vx + 1] |= 1 << SOUTH;
+                }
+                if (y == height - 1 || labels[(y + 1) * width + x] != label) {
+                    out[(vy + 1) * gridWidth + vx + 1] |= 1 << WEST;
+                }
+                if (x == 0 || labels[y * width + x - 1] != label) {
+                    out[(vy + 1) * gridWidth + vx] |= 1 << NORTH;
+                }
+            }
+        }
+
+        byte[] used = new byte[out.length];
+        for (int start = 0; start < out.length; start++) {
+            int pending = out[start] & ~used[start];
+            while (pending != 0) {
+                int startDir = Integer.numberOfTrailingZeros(pending);
+                int[] corners = walk(out, used, gridWidth, start, startDir, minX, minY);
+                pending = out[start] & ~used[start];
+
+                double area = signedArea(corners);
+                int[] simplified = simplify(corners, tolerance);
+                contours.add(new Contour(label, area < 0, Math.abs(area), perimeter(simplified), simplified));
+            }
+        }
+    }
+
+    /**
+     * Percorre um laço a partir da aresta (start, startDir). Em vértices ambíguos (pixels que
+     * se tocam só na diagonal) a curva à direita tem prioridade, o que mantém as regiões
+     * 4-conectadas e torna o sucessor de cada aresta único.
+     */
+    private static int[] walk(byte[] out, byte[] used, int gridWidth, int start, int startDir, int offsetX, int offsetY) {
+        IntList corners = new IntList();
+        int vertex = start;
+        int dir = startDir;
+
+        do {
+            used[vertex] |= (byte) (1 << dir);
+            int vx = vertex % gridWidth + DX[dir];
+            int vy = vertex / gridWidth + DY[dir];
+            int next = vy * gridWidth + vx;
+
+            int nextDir = nextDirection(out[next], dir);
+            if (nextDir != dir) {
+                corners.add(vx + offsetX);
+                corners.add(vy + offsetY);
+            }
+
+            vertex = next;
+            dir = nextDir;
+        } while (vertex != start || dir != startDir);
+
+        return corners.toArray();
+    }
+
+    private static int nextDirection(int edges, int incoming) {
+        int right = (incoming + 1) & 3;
+        if ((edges & (1 << right)) != 0) {
+            return right;
+        }
+        if ((edges & (1 << incoming)) != 0) {
+            return incoming;
+        }
+        int left = (incoming + 3) & 3;
+        if ((edges & (1 << left)) != 0) {
+            return left;
+        }
+        throw new IllegalStateException("Contorno aberto: vértice sem aresta de saída");
+    }
+
+    /**
+     * Simplificação Ramer-Douglas-Peucker de um polígono fechado. Polígonos que
+     * degenerariam para menos de três pontos são devolvidos inalterados.
+     */
+    public static int[] simplify(int[] points, double tolerance) {
+        int count = points.length / 2;
+        if (tolerance <= 0 || count <= 3) {
+            return points;
+        }
+
+        // Divide o laço no ponto mais distante do primeiro e simplifica as duas metades
+        int far = 0;
+        double farDistance = -1;
+        for (int i = 1; i < count; i++) {
+            double dx = points[2 * i] - points[0];
+            double dy = points[2 * i + 1] - points[1];
+            double distance = dx * dx + dy * dy;
+            if (distance > farDistance) {
+                farDistance = distance;
+                far = i;
+            }
+        }
+
+        boolean[] keep = new boolean[count + 1];
+        keep[0] = true;
+        keep[far] = true;
+        keep[count] = true;
+        markRange(points, count, 0, far, tolerance * tolerance, keep);
+        markRange(points, count, far, count, tolerance * tolerance, keep);
+
+        IntList simplified = new IntList();
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                simplified.add(points[2 * i]);
+                simplified.add(points[2 * i + 1]);
+            }
+        }
+
+        return simplified.size() < 6 ? points : simplified.toArray();
+    }
+
+    private static void markRange(int[] points, int count, int first, int last, double toleranceSquared, boolean[] keep) {
+        IntList stack = new IntList();
+        stack.add(first);
+        stack.add(last);
+
+        while (stack.size() > 0) {
+            int end = stack.pop();
+            int begin = stack.pop();
+            if (end - begin < 2) {
+                continue;
+            }
+
+            double ax = points[2 * begin];
+            double ay = points[2 * begin + 1];
+            int endIndex = end % count;
+            double bx = points[2 * endIndex];
+            double by = points[2 * endIndex + 1];
+
+            int farthest = -1;
+            double farthestDistance = toleranceSquared;
+            for (int i = begin + 1; i < end; i++) {
+                double distance = segmentDistanceSquared(points[2 * i], points[2 * i + 1], ax, ay, bx, by);
+                if (distance > farthestDistance) {
+                    farthestDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            if (farthest >= 0) {
+                keep[farthest] = true;
+                stack.add(begin);
+                stack.add(farthest);
+                stack.add(farthest);
+                stack.add(end);
+            }
+        }
+    }
+
+    private static double segmentDistanceSquared(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return cx * cx + cy * cy;
+    }
+
+    public static double signedArea(int[] points) {
+        int count = points.length / 2;
+        long twiceArea = 0;
+        for (int i = 0; i < count; i++) {
+            int j = (i + 1) % count;
+            twiceArea += (long) points[2 * i] * points[2 * j + 1] - (long) points[2 * j] * points[2 * i + 1];
+        }
+        return twiceArea / 2.0;
+    }
+
+    public static double perimeter(int[] points) {
+        int count = points.length / 2;
+        double length = 0;
+        for (int i = 0; i < count; i++) {
+            int j = (i + 1) % count;
+            length += Math.hypot(points[2 * j] - points[2 * i], points[2 * j + 1] - points[2 * i + 1]);
+        }
+        return length;
+    }
+
+    private static final class IntList {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            int[] copy = new int[size];
+            System.arraycopy(values, 0, copy, 0, size);
+            return copy;
+        }
+    }
+}
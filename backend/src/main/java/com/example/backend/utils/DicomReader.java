@@ -0,0 +1,299 @@
+package com.example.backend.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Leitor DICOM (Part 10) mínimo para imagens monocromáticas não comprimidas, em VR implícito ou
+ * explícito little endian. Lê o arquivo em sequência, guarda só os atributos de imagem e lê os
+ * pixels do primeiro quadro direto do stream, sem carregar o arquivo inteiro em memória. Sintaxes
+ * comprimidas (JPEG, JPEG 2000, RLE) e imagens coloridas são recusadas com IllegalArgumentException.
+ */
+public final class DicomReader {
+
+    public static final String IMPLICIT_VR_LITTLE_ENDIAN = "1.2.840.10008.1.2";
+    public static final String EXPLICIT_VR_LITTLE_ENDIAN = "1.2.840.10008.1.2.1";
+
+    private static final int PREAMBLE_LENGTH = 128;
+    private static final int UNDEFINED_LENGTH = 0xFFFFFFFF;
+
+    private static final int TRANSFER_SYNTAX = 0x00020010;
+    private static final int MODALITY = 0x00080060;
+    private static final int SAMPLES_PER_PIXEL = 0x00280002;
+    private static final int PHOTOMETRIC = 0x00280004;
+    private static final int NUMBER_OF_FRAMES = 0x00280008;
+    private static final int ROWS = 0x00280010;
+    private static final int COLUMNS = 0x00280011;
+    private static final int BITS_ALLOCATED = 0x00280100;
+    private static final int BITS_STORED = 0x00280101;
+    private static final int PIXEL_REPRESENTATION = 0x00280103;
+    private static final int WINDOW_CENTER = 0x00281050;
+    private static final int WINDOW_WIDTH = 0x00281051;
+    private static final int RESCALE_INTERCEPT = 0x00281052;
+    private static final int RESCALE_SLOPE = 0x00281053;
+    private static final int PIXEL_DATA = 0x7FE00010;
+
+    private static final int ITEM = 0xFFFEE000;
+    private static final int ITEM_DELIMITER = 0xFFFEE00D;
+    private static final int SEQUENCE_DELIMITER = 0xFFFEE0DD;
+
+    private static final Set<Integer> KEPT = Set.of(TRANSFER_SYNTAX, MODALITY, SAMPLES_PER_PIXEL, PHOTOMETRIC,
+            NUMBER_OF_FRAMES, ROWS, COLUMNS, BITS_ALLOCATED, BITS_STORED, PIXEL_REPRESENTATION,
+            WINDOW_CENTER, WINDOW_WIDTH, RESCALE_INTERCEPT, RESCALE_SLOPE);
+
+    // VRs explícitos com 2 bytes reservados e comprimento de 4 bytes
+    private static final Set<String> LONG_VRS = Set.of("OB", "OD", "OF", "OL", "OV", "OW", "SQ", "SV", "UC", "UN", "UR", "UT", "UV");
+
+    private DicomReader() {
+    }
+
+    /**
+     * Pixels do primeiro quadro em ordem de linha, já como valores armazenados (com sinal quando
+     * PixelRepresentation = 1), e os atributos usados para janelar e descrever a imagem.
+     */
+    public record DicomImage(int width, int height, int bitsAllocated, int bitsStored, boolean signed,
+                             String photometric, int[] pixels, Map<String, Object> attributes) {
+
+        public double rescaleSlope() {
+            return attributes.get("rescaleSlope") instanceof Number n ? n.doubleValue() : 1.0;
+        }
+
+        public double rescaleIntercept() {
+            return attributes.get("rescaleIntercept") instanceof Number n ? n.doubleValue() : 0.0;
+        }
+
+        public Double windowCenter() {
+            return attributes.get("windowCenter") instanceof Number n ? n.doubleValue() : null;
+        }
+
+        public Double windowWidth() {
+            return attributes.get("windowWidth") instanceof Number n ? n.doubleValue() : null;
+        }
+    }
+
+    /**
+     * true quando o stream começa com o preâmbulo de 128 bytes seguido de "DICM". Consome os
+     * bytes lidos.
+     */
+    public static boolean isDicom(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(PREAMBLE_LENGTH + 4);
+        return header.length == PREAMBLE_LENGTH + 4
+                && header[PREAMBLE_LENGTH] == 'D' && header[PREAMBLE_LENGTH + 1] == 'I'
+                && header[PREAMBLE_LENGTH + 2] == 'C' && header[PREAMBLE_LENGTH + 3] == 'M';
+    }
+
+    public static DicomImage read(InputStream source) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(source, 64 * 1024));
+        if (!isDicom(in)) {
+            throw new IllegalArgumentException("Arquivo não é DICOM (prefixo DICM ausente).");
+        }
+
+        Map<Integer, String> values = new LinkedHashMap<>();
+        // O grupo 0002 é sempre VR explícito little endian; o restante segue a sintaxe declarada nele
+        boolean explicit = true;
+        boolean metaDone = false;
+
+        while (true) {
+            int tag;
+            try {
+                tag = readTag(in);
+            } catch (EOFException e) {
+                throw new IllegalArgumentException("DICOM sem Pixel Data.");
+            }
+
+            if (!metaDone && (tag >>> 16) != 0x0002) {
+                metaDone = true;
+                String syntax = values.getOrDefault(TRANSFER_SYNTAX, EXPLICIT_VR_LITTLE_ENDIAN);
+                if (IMPLICIT_VR_LITTLE_ENDIAN.equals(syntax)) {
+                    explicit = false;
+                } else if (!EXPLICIT_VR_LITTLE_ENDIAN.equals(syntax)) {
+                    throw new IllegalArgumentException("Sintaxe de transferência DICOM não suportada (comprimida?): " + syntax);
+                }
+            }
+
+            String vr = explicit ? readVr(in) : null;
+            int length = explicit && !LONG_VRS.contains(vr) ? readUnsignedShortLE(in) : readIntLE(in, vr);
+
+            if (tag == PIXEL_DATA) {
+                if (length == UNDEFINED_LENGTH) {
+                    throw new IllegalArgumentException("Pixel Data encapsulado (comprimido) não é suportado.");
+                }
+                return readPixels(in, values);
+            }
+
+            if (length == UNDEFINED_LENGTH) {
+                skipUndefined(in, explicit);
+            } else if (KEPT.contains(tag)) {
+                values.put(tag, readValue(in, length, vr, tag));
+            } else {
+                skipFully(in, length);
+            }
+        }
+    }
+
+    private static DicomImage readPixels(DataInputStream in, Map<Integer, String> values) throws IOException {
+        int samples = intValue(values, SAMPLES_PER_PIXEL, 1);
+        String photometric = values.getOrDefault(PHOTOMETRIC, "MONOCHROME2").trim();
+        if (samples != 1 || !photometric.startsWith("MONOCHROME")) {
+            throw new IllegalArgumentException("Apenas DICOM monocromático é suportado (" + photometric + ").");
+        }
+
+        int height = intValue(values, ROWS, 0);
+        int width = intValue(values, COLUMNS, 0);
+        int bitsAllocated = intValue(values, BITS_ALLOCATED, 16);
+        int bitsStored = intValue(values, BITS_STORED, bitsAllocated);
+        boolean signed = intValue(values, PIXEL_REPRESENTATION, 0) == 1;
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("DICOM sem dimensões (Rows/Columns).");
+        }
+        if (bitsAllocated != 8 && bitsAllocated != 16) {
+            throw new IllegalArgumentException("BitsAllocated não suportado: " + bitsAllocated);
+        }
+
+        // Só o primeiro quadro; o resto do arquivo não é lido
+        int[] pixels = new int[width * height];
+        int mask = (1 << bitsStored) - 1;
+        int signBit = 1 << (bitsStored - 1);
+        byte[] row = new byte[width * (bitsAllocated / 8)];
+        for (int y = 0; y < height; y++) {
+            in.readFully(row);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int raw = bitsAllocated == 8
+                        ? row[x] & 0xFF
+                        : (row[2 * x] & 0xFF) | ((row[2 * x + 1] & 0xFF) << 8);
+                raw &= mask;
+                pixels[offset + x] = signed && (raw & signBit) != 0 ? raw - (1 << bitsStored) : raw;
+            }
+        }
+
+        Map<String, Object> attributes = new LinkedHashMap<>();
+        attributes.put("transferSyntax", values.getOrDefault(TRANSFER_SYNTAX, EXPLICIT_VR_LITTLE_ENDIAN));
+        putIfPresent(attributes, "modality", values.get(MODALITY));
+        attributes.put("photometric", photometric);
+        attributes.put("bitsAllocated", bitsAllocated);
+        attributes.put("bitsStored", bitsStored);
+        attributes.put("signed", signed);
+        attributes.put("frames", intValue(values, NUMBER_OF_FRAMES, 1));
+        putIfPresent(attributes, "windowCenter", firstNumber(values.get(WINDOW_CENTER)));
+        putIfPresent(attributes, "windowWidth", firstNumber(values.get(WINDOW_WIDTH)));
+        putIfPresent(attributes, "rescaleSlope", firstNumber(values.get(RESCALE_SLOPE)));
+        putIfPresent(attributes, "rescaleIntercept", firstNumber(values.get(RESCALE_INTERCEPT)));
+
+        return new DicomImage(width, height, bitsAllocated, bitsStored, signed, photometric, pixels, attributes);
+    }
+
+    /**
+     * Pula uma sequência ou item de comprimento indefinido, elemento por elemento, até o
+     * delimitador correspondente.
+     */
+    private static void skipUndefined(DataInputStream in, boolean explicit) throws IOException {
+        while (true) {
+            int tag = readTag(in);
+            if (tag == SEQUENCE_DELIMITER || tag == ITEM_DELIMITER) {
+                readIntLE(in, null);
+                return;
+            }
+            if (tag == ITEM) {
+                int itemLength = readIntLE(in, null);
+                if (itemLength == UNDEFINED_LENGTH) {
+                    skipUndefined(in, explicit);
+                } else {
+                    skipFully(in, itemLength);
+                }
+                continue;
+            }
+
+            String vr = explicit ? readVr(in) : null;
+            int length = explicit && !LONG_VRS.contains(vr) ? readUnsignedShortLE(in) : readIntLE(in, vr);
+            if (length == UNDEFINED_LENGTH) {
+                skipUndefined(in, explicit);
+            } else {
+                skipFully(in, length);
+            }
+        }
+    }
+
+    private static String readValue(DataInputStream in, int length, String vr, int tag) throws IOException {
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        // US em VR explícito, ou os atributos numéricos binários conhecidos em VR implícito
+        boolean unsignedShort = "US".equals(vr) || (vr == null && (tag & 0xFFFF0000) == 0x00280000
+                && tag != PHOTOMETRIC && tag != NUMBER_OF_FRAMES && tag != WINDOW_CENTER && tag != WINDOW_WIDTH
+                && tag != RESCALE_INTERCEPT && tag != RESCALE_SLOPE && length == 2);
+        if (unsignedShort && length >= 2) {
+            return Integer.toString((bytes[0] & 0xFF) | ((bytes[1] & 0xFF) << 8));
+        }
+        return new String(bytes, StandardCharsets.US_ASCII).replace("\0", "").trim();
+    }
+
+    private static int readTag(DataInputStream in) throws IOException {
+        int group = readUnsignedShortLE(in);
+        int element = readUnsignedShortLE(in);
+        return (group << 16) | element;
+    }
+
+    private static String readVr(DataInputStream in) throws IOException {
+        byte[] vr = new byte[2];
+        in.readFully(vr);
+        return new String(vr, StandardCharsets.US_ASCII);
+    }
+
+    private static int readUnsignedShortLE(DataInputStream in) throws IOException {
+        int low = in.readUnsignedByte();
+        int high = in.readUnsignedByte();
+        return low | (high << 8);
+    }
+
+    // Em VR explícito longo, os 2 bytes reservados vêm antes do comprimento
+    private static int readIntLE(DataInputStream in, String vr) throws IOException {
+        if (vr != null) {
+            in.readUnsignedShort();
+        }
+        return in.readUnsignedByte() | (in.readUnsignedByte() << 8) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 24);
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        long remaining = Integer.toUnsignedLong(length);
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("DICOM truncado");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static int intValue(Map<Integer, String> values, int tag, int fallback) {
+        Double number = firstNumber(values.get(tag));
+        return number != null ? number.intValue() : fallback;
+    }
+
+    // Atributos multivalorados (WindowCenter "40\400") usam o primeiro valor
+    private static Double firstNumber(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.split("\\\\")[0].trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void putIfPresent(Map<String, Object> attributes, String key, Object value) {
+        if (value != null) {
+            attributes.put(key, value);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.backend.utils;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Dimensões, profundidade de bits e formato lidos só do cabeçalho da imagem, sem decodificar os
+ * pixels: o leitor do ImageIO consome apenas os primeiros blocos do arquivo (IHDR no PNG, SOF no
+ * JPEG). O stream recebido não é fechado.
+ */
+public final class ImageHeaders {
+
+    private ImageHeaders() {
+    }
+
+    public record Info(int width, int height, Integer bitDepth, String format) {
+    }
+
+    public static Optional<Info> read(InputStream in) throws IOException {
+        ImageInputStream stream = ImageIO.createImageInputStream(in);
+        if (stream == null) {
+            return Optional.empty();
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                return Optional.empty();
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                return Optional.of(new Info(
+                        reader.getWidth(0),
+                        reader.getHeight(0),
+                        bitDepth(reader),
+                        reader.getFormatName().toLowerCase(Locale.ROOT)));
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            // Fecha só o cache do ImageIO; o stream de origem continua aberto
+            stream.close();
+        }
+    }
+
+    // Bits por amostra (16 nas radiografias em tons de cinza de 16 bits)
+    private static Integer bitDepth(ImageReader reader) throws IOException {
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+            type = types.hasNext() ? types.next() : null;
+        }
+        return type != null ? type.getSampleModel().getSampleSize(0) : null;
+    }
+}
@@ -0,0 +1,527 @@
+package com.example.backend.utils;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Gera marcadores iniciais de objeto e fundo a partir da própria imagem, sem Python.
+ *
+ * Mesmo pipeline do antigo gradcam_markers.py: cinza, filtro bilateral (d = 9, sigmas 75),
+ * Otsu invertido, abertura 3x3 com 2 iterações, transformada de distância L2, centróides
+ * das regiões de "certeza de objeto" e uma grade 8x8 de pontos de fundo. Os filtros rodam
+ * sobre buffers primitivos em faixas de linhas paralelas (fork-join).
+ */
+public final class InitialMarkerGenerator {
+
+    public static final int COLOR_OBJECT = 0x00FF00;
+    public static final int COLOR_BACKGROUND = 0xFF0000;
+
+    private static final int STRIP_ROWS = 64;
+    private static final int BILATERAL_RADIUS = 4;
+    private static final double SIGMA_COLOR = 75;
+    private static final double SIGMA_SPACE = 75;
+    private static final int MIN_OBJECT_AREA = 10;
+    private static final int MARKER_RADIUS = 5;
+    private static final int FALLBACK_MARKER_RADIUS = 10;
+    private static final int MAX_BACKGROUND_MARKERS = 12;
+    private static final int MIN_BACKGROUND_MARKERS = 4;
+    private static final float INF = 1e20f;
+
+    private final ForkJoinPool pool;
+
+    public InitialMarkerGenerator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    public record Point(int x, int y, String label) {
+    }
+
+    public record Result(int width, int height, BufferedImage markers, List<Point> points,
+                         int objectCount, int backgroundCount) {
+
+        /**
+         * Estrutura "data" devolvida pelo script Python, usada como annotationData.
+         */
+        public Map<String, Object> toData() {
+            List<Map<String, Object>> items = new ArrayList<>(points.size());
+            for (Point point : points) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("x", point.x());
+                item.put("y", point.y());
+                item.put("label", point.label());
+                item.put("type", "point");
+                items.add(item);
+            }
+
+            Map<String, Object> counts = new LinkedHashMap<>();
+            counts.put("object", objectCount);
+            counts.put("background", backgroundCount);
+
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("image_size", List.of(width, height));
+            data.put("counts", counts);
+            data.put("points", items);
+            return data;
+        }
+    }
+
+    public Result generate(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+
+        byte[] gray = toGray(image);
+        byte[] blurred = bilateral(gray, width, height);
+
+        int threshold = otsu(blurred);
+        byte[] binary = new byte[width * height];
+        for (int i = 0; i < binary.length; i++) {
+            binary[i] = (byte) ((blurred[i] & 0xFF) > threshold ? 0 : 1);
+        }
+
+        // Abertura 3x3 com 2 iterações = erosão e dilatação com janela 5x5
+        byte[] opening = dilate(erode(binary, width, height, 2), width, height, 2);
+        if (borderMean(opening, width, height) > 0.5) {
+            for (int i = 0; i < opening.length; i++) {
+                opening[i] = (byte) (1 - opening[i]);
+            }
+        }
+
+        BufferedImage markers = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        List<Point> points = new ArrayList<>();
+
+        int objectCount = placeObjectMarkers(opening, width, height, markers, points);
+        int backgroundCount = placeBackgroundMarkers(opening, width, height, markers, points);
+
+        return new Result(width, height, markers, points, objectCount, backgroundCount);
+    }
+
+    private byte[] toGray(BufferedImage image) {
+        int width = image.getWidth();
+        byte[] gray = new byte[width * image.getHeight()];
+
+        forEachStrip(image.getHeight(), (from, to) -> {
+            int[] row = new int[width];
+            for (int y = from; y < to; y++) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                for (int x = 0; x < width; x++) {
+                    int rgb = row[x];
+                    int r = (rgb >> 16) & 0xFF;
+                    int g = (rgb >> 8) & 0xFF;
+                    int b = rgb & 0xFF;
+                    // Mesmos pesos de ponto fixo do cv2.cvtColor(RGB2GRAY)
+                    gray[y * width + x] = (byte) ((r * 4899 + g * 9617 + b * 1868 + 8192) >> 14);
+                }
+            }
+        });
+        return gray;
+    }
+
+    private byte[] bilateral(byte[] src, int width, int height) {
+        int radius = BILATERAL_RADIUS;
+
+        // Deslocamentos dentro do disco de raio 4 e seus pesos espaciais
+        List<int[]> offsets = new ArrayList<>();
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                if (dx * dx + dy * dy <= radius * radius) {
+                    offsets.add(new int[]{dx, dy});
+                }
+            }
+        }
+        int count = offsets.size();
+        int[] offsetX = new int[count];
+        int[] offsetY = new int[count];
+        float[] spaceWeight = new float[count];
+        for (int k = 0; k < count; k++) {
+            offsetX[k] = offsets.get(k)[0];
+            offsetY[k] = offsets.get(k)[1];
+            double distanceSquared = offsetX[k] * offsetX[k] + offsetY[k] * offsetY[k];
+            spaceWeight[k] = (float) Math.exp(-distanceSquared / (2 * SIGMA_SPACE * SIGMA_SPACE));
+        }
+
+        float[] colorWeight = new float[256];
+        for (int d = 0; d < 256; d++) {
+            colorWeight[d] = (float) Math.exp(-(double) (d * d) / (2 * SIGMA_COLOR * SIGMA_COLOR));
+        }
+
+        int[] columns = reflectIndex(width, radius);
+        int[] rows = reflectIndex(height, radius);
+        byte[] dst = new byte[src.length];
+
+        forEachStrip(height, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                for (int x = 0; x < width; x++) {
+                    int center = src[y * width + x] & 0xFF;
+                    float sum = 0;
+                    float weights = 0;
+                    for (int k = 0; k < count; k++) {
+                        int sy = rows[y + offsetY[k] + radius];
+                        int sx = columns[x + offsetX[k] + radius];
+                        int value = src[sy * width + sx] & 0xFF;
+                        float weight = spaceWeight[k] * colorWeight[Math.abs(value - center)];
+                        sum += weight * value;
+                        weights += weight;
+                    }
+                    dst[y * width + x] = (byte) Math.round(sum / weights);
+                }
+            }
+        });
+        return dst;
+    }
+
+    /**
+     * Índices com borda refletida (BORDER_REFLECT_101 do OpenCV) para posições em [-pad, n + pad).
+     */
+    private static int[] reflectIndex(int n, int pad) {
+        int[] index = new int[n + 2 * pad];
+        for (int i = -pad; i < n + pad; i++) {
+            int j = i;
+            if (n == 1) {
+                j = 0;
+            } else {
+                while (j < 0 || j >= n) {
+                    j = j < 0 ? -j : 2 * (n - 1) - j;
+                }
+            }
+            index[i + pad] = j;
+        }
+        return index;
+    }
+
+    private static int otsu(byte[] pixels) {
+        long[] histogram = new long[256];
+        for (byte pixel : pixels) {
+            histogram[pixel & 0xFF]++;
+        }
+
+        double total = pixels.length;
+        double sumAll = 0;
+        for (int i = 0; i < 256; i++) {
+            sumAll += i * (double) histogram[i];
+        }
+
+        double sumBackground = 0;
+        double weightBackground = 0;
+        double bestVariance = -1;
+        int threshold = 0;
+        for (int t = 0; t < 256; t++) {
+            weightBackground += histogram[t];
+            if (weightBackground == 0) {
+                continue;
+            }
+            double weightForeground = total - weightBackground;
+            if (weightForeground == 0) {
+                break;
+            }
+            sumBackground += t * (double) histogram[t];
+            double meanBackground = sumBackground / weightBackground;
+            double meanForeground = (sumAll - sumBackground) / weightForeground;
+            double variance = weightBackground * weightForeground * (meanBackground - meanForeground) * (meanBackground - meanForeground);
+            if (variance > bestVariance) {
+                bestVariance = variance;
+                threshold = t;
+            }
+        }
+        return threshold;
+    }
+
+    /**
+     * Erosão binária com janela quadrada (2r + 1). Pixels fora da imagem são ignorados,
+     * como a borda padrão das operações morfológicas do OpenCV.
+     */
+    private byte[] erode(byte[] src, int width, int height, int radius) {
+        return squareFilter(src, width, height, radius, true);
+    }
+
+    private byte[] dilate(byte[] src, int width, int height, int radius) {
+        return squareFilter(src, width, height, radius, false);
+    }
+
+    private byte[] squareFilter(byte[] src, int width, int height, int radius, boolean erode) {
+        byte[] horizontal = new byte[src.length];
+        forEachStrip(height, (from, to) -> {
+            int[] prefix = new int[width + 1];
+            for (int y = from; y < to; y++) {
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    prefix[x + 1] = prefix[x] + src[row + x];
+                }
+                for (int x = 0; x < width; x++) {
+                    int lo = Math.max(0, x - radius);
+                    int hi = Math.min(width, x + radius + 1);
+                    int ones = prefix[hi] - prefix[lo];
+                    horizontal[row + x] = (byte) ((erode ? ones == hi - lo : ones > 0) ? 1 : 0);
+                }
+            }
+        });
+
+        byte[] dst = new byte[src.length];
+        forEachStrip(width, (from, to) -> {
+            int[] prefix = new int[height + 1];
+            for (int x = from; x < to; x++) {
+                for (int y = 0; y < height; y++) {
+                    prefix[y + 1] = prefix[y] + horizontal[y * width + x];
+                }
+                for (int y = 0; y < height; y++) {
+                    int lo = Math.max(0, y - radius);
+                    int hi = Math.min(height, y + radius + 1);
+                    int ones = prefix[hi] - prefix[lo];
+                    dst[y * width + x] = (byte) ((erode ? ones == hi - lo : ones > 0) ? 1 : 0);
+                }
+            }
+        });
+        return dst;
+    }
+
+    private static double borderMean(byte[] mask, int width, int height) {
+        double top = 0;
+        double bottom = 0;
+        for (int x = 0; x < width; x++) {
+            top += mask[x];
+            bottom += mask[(height - 1) * width + x];
+        }
+        double left = 0;
+        double right = 0;
+        for (int y = 0; y < height; y++) {
+            left += mask[y * width];
+            right += mask[y * width + width - 1];
+        }
+        return (top / width + bottom / width + left / height + right / height) / 4;
+    }
+
+    /**
+     * Transformada de distância euclidiana exata (Felzenszwalb-Huttenlocher): distância de
+     * cada pixel 1 até o pixel 0 mais próximo. Colunas e depois linhas, ambas em paralelo.
+     */
+    private float[] distanceTransform(byte[] mask, int width, int height) {
+        float[] squared = new float[mask.length];
+
+        forEachStrip(width, (from, to) -> {
+            float[] f = new float[height];
+            float[] d = new float[height];
+            int[] v = new int[height];
+            float[] z = new float[height + 1];
+            for (int x = from; x < to; x++) {
+                for (int y = 0; y < height; y++) {
+                    f[y] = mask[y * width + x] == 0 ? 0 : INF;
+                }
+                distance1d(f, height, d, v, z);
+                for (int y = 0; y < height; y++) {
+                    squared[y * width + x] = d[y];
+                }
+            }
+        });
+
+        float[] distance = new float[mask.length];
+        forEachStrip(height, (from, to) -> {
+            float[] f = new float[width];
+            float[] d = new float[width];
+            int[] v = new int[width];
+            float[] z = new float[width + 1];
+            for (int y = from; y < to; y++) {
+                System.arraycopy(squared, y * width, f, 0, width);
+                distance1d(f, width, d, v, z);
+                for (int x = 0; x < width; x++) {
+                    distance[y * width + x] = (float) Math.sqrt(d[x]);
+                }
+            }
+        });
+        return distance;
+    }
+
+    private static void distance1d(float[] f, int n, float[] d, int[] v, float[] z) {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -INF;
+        z[1] = INF;
+        for (int q = 1; q < n; q++) {
+            float s;
+            while (true) {
+                int p = v[k];
+                s = ((f[q] + (float) q * q) - (f[p] + (float) p * p)) / (2f * q - 2f * p);
+                if (s <= z[k] && k > 0) {
+                    k--;
+                } else {
+                    break;
+                }
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = INF;
+        }
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) {
+                k++;
+            }
+            float dq = q - v[k];
+            d[q] = dq * dq + f[v[k]];
+        }
+    }
+
+    private int placeObjectMarkers(byte[] opening, int width, int height, BufferedImage markers, List<Point> points) {
+        boolean hasBackground = false;
+        for (byte value : opening) {
+            if (value == 0) {
+                hasBackground = true;
+                break;
+            }
+        }
+        if (!hasBackground) {
+            return 0;
+        }
+
+        float[] distance = distanceTransform(opening, width, height);
+        float max = 0;
+        for (float value : distance) {
+            max = Math.max(max, value);
+        }
+        if (max == 0) {
+            return 0;
+        }
+
+        byte[] sureForeground = new byte[opening.length];
+        float threshold = 0.5f * max;
+        for (int i = 0; i < distance.length; i++) {
+            sureForeground[i] = (byte) (distance[i] > threshold ? 1 : 0);
+        }
+
+        // Componentes 8-conectados (equivalente aos contornos externos do findContours)
+        int count = 0;
+        int[] queue = new int[opening.length];
+        for (int start = 0; start < sureForeground.length; start++) {
+            if (sureForeground[start] != 1) {
+                continue;
+            }
+
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            sureForeground[start] = 2;
+            long sumX = 0;
+            long sumY = 0;
+            while (head < tail) {
+                int index = queue[head++];
+                int x = index % width;
+                int y = index / width;
+                sumX += x;
+                sumY += y;
+                for (int dy = -1; dy <= 1; dy++) {
+                    int ny = y + dy;
+                    if (ny < 0 || ny >= height) {
+                        continue;
+                    }
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = x + dx;
+                        if (nx < 0 || nx >= width) {
+                            continue;
+                        }
+                        int neighbor = ny * width + nx;
+                        if (sureForeground[neighbor] == 1) {
+                            sureForeground[neighbor] = 2;
+                            queue[tail++] = neighbor;
+                        }
+                    }
+                }
+            }
+
+            int area = tail;
+            if (area > MIN_OBJECT_AREA) {
+                int cx = (int) (sumX / area);
+                int cy = (int) (sumY / area);
+                drawCircle(markers, cx, cy, MARKER_RADIUS, COLOR_OBJECT);
+                points.add(new Point(cx, cy, "foreground"));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int placeBackgroundMarkers(byte[] opening, int width, int height, BufferedImage markers, List<Point> points) {
+        // Dilatação 3x3 com 10 iterações = janela 21x21
+        byte[] sureBackgroundArea = dilate(opening, width, height, 10);
+
+        int stepX = Math.max(1, width / 8);
+        int stepY = Math.max(1, height / 8);
+        int count = 0;
+
+        for (int y = stepY / 2; y < height && count < MAX_BACKGROUND_MARKERS; y += stepY) {
+            for (int x = stepX / 2; x < width && count < MAX_BACKGROUND_MARKERS; x += stepX) {
+                if (sureBackgroundArea[y * width + x] == 0) {
+                    drawCircle(markers, x, y, MARKER_RADIUS, COLOR_BACKGROUND);
+                    points.add(new Point(x, y, "background"));
+                    count++;
+                }
+            }
+        }
+
+        if (count < MIN_BACKGROUND_MARKERS) {
+            int[][] corners = {{20, 20}, {width - 20, 20}, {20, height - 20}, {width - 20, height - 20}};
+            for (int[] corner : corners) {
+                int x = corner[0];
+                int y = corner[1];
+                if (x < 0 || y < 0 || x >= width || y >= height) {
+                    continue;
+                }
+                if ((markers.getRGB(x, y) & 0xFFFFFF) == 0) {
+                    drawCircle(markers, x, y, FALLBACK_MARKER_RADIUS, COLOR_BACKGROUND);
+                    points.add(new Point(x, y, "background"));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static void drawCircle(BufferedImage image, int cx, int cy, int radius, int rgb) {
+        for (int dy = -radius; dy <= radius; dy++) {
+            int y = cy + dy;
+            if (y < 0 || y >= image.getHeight()) {
+                continue;
+            }
+            for (int dx = -radius; dx <= radius; dx++) {
+                int x = cx + dx;
+                if (x >= 0 && x < image.getWidth() && dx * dx + dy * dy <= radius * radius) {
+                    image.setRGB(x, y, rgb);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface StripOperation {
+        void apply(int from, int to);
+    }
+
+    private void forEachStrip(int rows, StripOperation operation) {
+        pool.invoke(new StripTask(operation, 0, rows));
+    }
+
+    private static final class StripTask extends RecursiveAction {
+        private final StripOperation operation;
+        private final int from;
+        private final int to;
+
+        StripTask(StripOperation operation, int from, int to) {
+            this.operation = operation;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= STRIP_ROWS) {
+                operation.apply(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new StripTask(operation, from, middle), new StripTask(operation, middle, to));
+        }
+    }
+}
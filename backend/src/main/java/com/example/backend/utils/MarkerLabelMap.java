@@ -0,0 +1,148 @@
+package com.example.backend.utils;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converte marcadores coloridos em um mapa de rótulos para o watershed.
+ *
+ * A classe 0 é sempre o fundo (vermelho); as classes 1..N são objetos. No mapa gerado o
+ * valor 0 significa "sem marcação" e o valor k + 1 marca a classe k, que é o formato
+ * aceito pelo script de segmentação. Cada pixel é atribuído à cor mais próxima da paleta,
+ * o que absorve o antialiasing das bordas dos traços.
+ */
+public final class MarkerLabelMap {
+
+    public static final int MAX_CLASSES = 254;
+
+    private static final int MAX_COLOR_DISTANCE_SQUARED = 120 * 120;
+
+    private MarkerLabelMap() {
+    }
+
+    public record MarkerClass(int index, String name, int rgb) {
+
+        public String hexColor() {
+            return String.format("#%06x", rgb & 0xFFFFFF);
+        }
+    }
+
+    public record Result(BufferedImage labels, int[] pixelCounts) {
+
+        public int objectPixels() {
+            int total = 0;
+            for (int i = 1; i < pixelCounts.length; i++) {
+                total += pixelCounts[i];
+            }
+            return total;
+        }
+    }
+
+    public static MarkerClass background() {
+        return new MarkerClass(0, "background", 0xFF0000);
+    }
+
+    /**
+     * Paleta padrão: fundo vermelho e um único objeto verde, equivalente ao formato antigo.
+     */
+    public static List<MarkerClass> defaultClasses() {
+        return List.of(background(), new MarkerClass(1, "object", 0x00FF00));
+    }
+
+    public static List<MarkerClass> withBackground(List<String> names, List<String> colors) {
+        if (names.size() + 1 > MAX_CLASSES) {
+            throw new IllegalArgumentException("Número máximo de classes excedido: " + MAX_CLASSES);
+        }
+
+        List<MarkerClass> classes = new ArrayList<>();
+        classes.add(background());
+        for (int i = 0; i < names.size(); i++) {
+            classes.add(new MarkerClass(i + 1, names.get(i), parseColor(colors.get(i))));
+        }
+        return classes;
+    }
+
+    /**
+     * Aceita "#rrggbb" ou "#rrggbbaa" (o canal alfa é ignorado).
+     */
+    public static int parseColor(String color) {
+        if (color == null) {
+            throw new IllegalArgumentException("Cor da classe não informada.");
+        }
+
+        String hex = color.startsWith("#") ? color.substring(1) : color;
+        if (hex.length() != 6 && hex.length() != 8) {
+            throw new IllegalArgumentException("Cor inválida: " + color);
+        }
+
+        try {
+            return Integer.parseInt(hex.substring(0, 6), 16);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Cor inválida: " + color);
+        }
+    }
+
+    public static Result classify(BufferedImage markers, List<MarkerClass> classes) {
+        int width = markers.getWidth();
+        int height = markers.getHeight();
+
+        BufferedImage labels = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = ((DataBufferByte) labels.getRaster().getDataBuffer()).getData();
+        int[] counts = new int[classes.size()];
+
+        // Mapa de rótulos já pronto (PNG em tons de cinza): usa os valores diretamente
+        if (markers.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+            byte[] in = ((DataBufferByte) markers.getRaster().getDataBuffer()).getData();
+            for (int i = 0; i < in.length; i++) {
+                int value = in[i] & 0xFF;
+                if (value > 0 && value <= classes.size()) {
+                    out[i] = (byte) value;
+                    counts[value - 1]++;
+                }
+            }
+            return new Result(labels, counts);
+        }
+
+        boolean hasAlpha = markers.getColorModel().hasAlpha();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            markers.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int argb = row[x];
+                if (hasAlpha && (argb >>> 24) == 0) {
+                    continue;
+                }
+
+                int nearest = nearestClass(argb, classes);
+                if (nearest >= 0) {
+                    out[y * width + x] = (byte) (nearest + 1);
+                    counts[nearest]++;
+                }
+            }
+        }
+
+        return new Result(labels, counts);
+    }
+
+    private static int nearestClass(int argb, List<MarkerClass> classes) {
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+
+        int best = -1;
+        int bestDistance = MAX_COLOR_DISTANCE_SQUARED;
+        for (MarkerClass markerClass : classes) {
+            int dr = r - ((markerClass.rgb() >> 16) & 0xFF);
+            int dg = g - ((markerClass.rgb() >> 8) & 0xFF);
+            int db = b - (markerClass.rgb() & 0xFF);
+            int distance = dr * dr + dg * dg + db * db;
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = markerClass.index();
+            }
+        }
+        return best;
+    }
+}
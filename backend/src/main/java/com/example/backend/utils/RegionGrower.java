@@ -0,0 +1,174 @@
+package com.example.backend.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Crescimento de região (varinha mágica) sobre uma imagem em tons de cinza de 1 byte por pixel.
+ * A partir da semente, inclui os vizinhos 4-conectados cujo valor difere da média 3x3 em volta
+ * da semente em no máximo tolerance. Preenche por linhas (scanline), empilhando só o início de
+ * cada trecho das linhas vizinhas, o que mantém a pilha pequena mesmo em regiões grandes.
+ */
+public final class RegionGrower {
+
+    private RegionGrower() {
+    }
+
+    /**
+     * Região preenchida: pixels marcados em mask (índice y * imageWidth + x) e a caixa que os
+     * contém. maxArea > 0 interrompe o crescimento ao atingir essa quantidade de pixels.
+     */
+    public record Region(int imageWidth, int imageHeight, BitSet mask, int minX, int minY, int maxX, int maxY,
+                         long area, int seedValue, boolean truncated) {
+
+        public int width() {
+            return maxX - minX + 1;
+        }
+
+        public int height() {
+            return maxY - minY + 1;
+        }
+
+        /**
+         * Recorte da caixa como mapa de rótulos (1 = região), no formato do ContourTracer.
+         */
+        public int[] cropLabels() {
+            int width = width();
+            int[] labels = new int[width * height()];
+            for (int y = minY; y <= maxY; y++) {
+                int row = y * imageWidth;
+                int out = (y - minY) * width;
+                for (int i = mask.nextSetBit(row + minX); i >= 0 && i <= row + maxX; i = mask.nextSetBit(i + 1)) {
+                    labels[out + i - row - minX] = 1;
+                }
+            }
+            return labels;
+        }
+
+        /**
+         * Run-length da caixa em ordem de linha, alternando trechos fora e dentro da região e
+         * começando por um trecho fora (que pode ter tamanho 0).
+         */
+        public int[] runLengths() {
+            int[] runs = new int[64];
+            int count = 0;
+            boolean inside = false;
+            int run = 0;
+            for (int y = minY; y <= maxY; y++) {
+                int row = y * imageWidth;
+                for (int x = minX; x <= maxX; x++) {
+                    if (mask.get(row + x) != inside) {
+                        if (count == runs.length) {
+                            runs = Arrays.copyOf(runs, runs.length * 2);
+                        }
+                        runs[count++] = run;
+                        inside = !inside;
+                        run = 0;
+                    }
+                    run++;
+                }
+            }
+            if (count == runs.length) {
+                runs = Arrays.copyOf(runs, runs.length + 1);
+            }
+            runs[count++] = run;
+            return Arrays.copyOf(runs, count);
+        }
+    }
+
+    public static Region grow(ByteBuffer pixels, int width, int height, int seedX, int seedY,
+                              int tolerance, long maxArea) {
+        if (seedX < 0 || seedY < 0 || seedX >= width || seedY >= height) {
+            throw new IllegalArgumentException("Semente fora da imagem: (" + seedX + ", " + seedY + ")");
+        }
+
+        int seedValue = seedMean(pixels, width, height, seedX, seedY);
+        int low = seedValue - tolerance;
+        int high = seedValue + tolerance;
+
+        BitSet mask = new BitSet(width * height);
+        int[] stack = new int[256];
+        int top = 0;
+        stack[top++] = seedY * width + seedX;
+
+        int minX = seedX;
+        int maxX = seedX;
+        int minY = seedY;
+        int maxY = seedY;
+        long area = 0;
+        boolean truncated = false;
+
+        while (top > 0) {
+            int start = stack[--top];
+            if (mask.get(start)) {
+                continue;
+            }
+            int y = start / width;
+            int row = y * width;
+            int left = start - row;
+            int right = left;
+
+            while (left > 0 && matches(pixels, mask, row + left - 1, low, high)) {
+                left--;
+            }
+            while (right < width - 1 && matches(pixels, mask, row + right + 1, low, high)) {
+                right++;
+            }
+
+            mask.set(row + left, row + right + 1);
+            area += right - left + 1;
+            if (left < minX) minX = left;
+            if (right > maxX) maxX = right;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+
+            if (maxArea > 0 && area >= maxArea) {
+                truncated = true;
+                break;
+            }
+
+            // Só o início de cada trecho das linhas de cima e de baixo vai para a pilha
+            for (int neighbour = y - 1; neighbour <= y + 1; neighbour += 2) {
+                if (neighbour < 0 || neighbour >= height) {
+                    continue;
+                }
+                int neighbourRow = neighbour * width;
+                boolean inRun = false;
+                for (int x = left; x <= right; x++) {
+                    boolean match = matches(pixels, mask, neighbourRow + x, low, high);
+                    if (match && !inRun) {
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[top++] = neighbourRow + x;
+                    }
+                    inRun = match;
+                }
+            }
+        }
+
+        return new Region(width, height, mask, minX, minY, maxX, maxY, area, seedValue, truncated);
+    }
+
+    private static boolean matches(ByteBuffer pixels, BitSet mask, int index, int low, int high) {
+        if (mask.get(index)) {
+            return false;
+        }
+        int value = pixels.get(index) & 0xFF;
+        return value >= low && value <= high;
+    }
+
+    // Média 3x3: um clique num pixel ruidoso não define a faixa inteira
+    private static int seedMean(ByteBuffer pixels, int width, int height, int seedX, int seedY) {
+        int sum = 0;
+        int count = 0;
+        for (int y = Math.max(0, seedY - 1); y <= Math.min(height - 1, seedY + 1); y++) {
+            for (int x = Math.max(0, seedX - 1); x <= Math.min(width - 1, seedX + 1); x++) {
+                sum += pixels.get(y * width + x) & 0xFF;
+                count++;
+            }
+        }
+        return Math.round((float) sum / count);
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.backend.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * SLIC sobre imagem em tons de cinza (1 byte por pixel). Os centros começam numa grade de passo
+ * regionSize, deslocados para o menor gradiente da vizinhança 3x3, e cada iteração só compara o
+ * pixel com os centros a até um passo de distância, o que mantém o custo linear no número de
+ * pixels. Ao final, fragmentos desconexos menores que um quarto do superpixel típico são
+ * absorvidos por um vizinho, e os rótulos são renumerados de 0 a count - 1.
+ */
+public final class Slic {
+
+    private Slic() {
+    }
+
+    /**
+     * compactness pondera a distância espacial contra a de intensidade: valores maiores dão
+     * superpixels mais regulares, menores seguem melhor as bordas.
+     */
+    public static Superpixels compute(ByteBuffer pixels, int width, int height,
+                                      int regionSize, double compactness, int iterations) {
+        int step = Math.max(2, regionSize);
+        int columns = Math.max(1, (width + step / 2) / step);
+        int rows = Math.max(1, (height + step / 2) / step);
+        int centers = columns * rows;
+
+        float[] centerX = new float[centers];
+        float[] centerY = new float[centers];
+        float[] centerValue = new float[centers];
+        seedCenters(pixels, width, height, columns, rows, centerX, centerY, centerValue);
+
+        int size = width * height;
+        int[] labels = new int[size];
+        float[] distance = new float[size];
+        float spatialWeight = (float) ((compactness / step) * (compactness / step));
+
+        double[] sumX = new double[centers];
+        double[] sumY = new double[centers];
+        double[] sumValue = new double[centers];
+        int[] counts = new int[centers];
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            Arrays.fill(distance, Float.MAX_VALUE);
+            for (int k = 0; k < centers; k++) {
+                int x0 = Math.max(0, (int) (centerX[k] - step));
+                int x1 = Math.min(width - 1, (int) (centerX[k] + step));
+                int y0 = Math.max(0, (int) (centerY[k] - step));
+                int y1 = Math.min(height - 1, (int) (centerY[k] + step));
+                for (int y = y0; y <= y1; y++) {
+                    int row = y * width;
+                    float dy = y - centerY[k];
+                    for (int x = x0; x <= x1; x++) {
+                        float dv = (pixels.get(row + x) & 0xFF) - centerValue[k];
+                        float dx = x - centerX[k];
+                        float d = dv * dv + (dx * dx + dy * dy) * spatialWeight;
+                        if (d < distance[row + x]) {
+                            distance[row + x] = d;
+                            labels[row + x] = k;
+                        }
+                    }
+                }
+            }
+
+            Arrays.fill(sumX, 0);
+            Arrays.fill(sumY, 0);
+            Arrays.fill(sumValue, 0);
+            Arrays.fill(counts, 0);
+            for (int y = 0; y < height; y++) {
+                int row = y * width;
+                for (int x = 0; x < width; x++) {
+                    int k = labels[row + x];
+                    sumX[k] += x;
+                    sumY[k] += y;
+                    sumValue[k] += pixels.get(row + x) & 0xFF;
+                    counts[k]++;
+                }
+            }
+            for (int k = 0; k < centers; k++) {
+                if (counts[k] > 0) {
+                    centerX[k] = (float) (sumX[k] / counts[k]);
+                    centerY[k] = (float) (sumY[k] / counts[k]);
+                    centerValue[k] = (float) (sumValue[k] / counts[k]);
+                }
+            }
+        }
+
+        return enforceConnectivity(labels, width, height, Math.max(1, step * step / 4));
+    }
+
+    private static void seedCenters(ByteBuffer pixels, int width, int height, int columns, int rows,
+                                    float[] centerX, float[] centerY, float[] centerValue) {
+        float stepX = (float) width / columns;
+        float stepY = (float) height / rows;
+        int k = 0;
+        for (int j = 0; j < rows; j++) {
+            for (int i = 0; i < columns; i++) {
+                int x = Math.min(width - 1, (int) (stepX * i + stepX / 2));
+                int y = Math.min(height - 1, (int) (stepY * j + stepY / 2));
+
+                // Evita começar sobre uma borda: procura o menor gradiente na vizinhança 3x3
+                int bestX = x;
+                int bestY = y;
+                int bestGradient = Integer.MAX_VALUE;
+                for (int ny = Math.max(1, y - 1); ny <= Math.min(height - 2, y + 1); ny++) {
+                    for (int nx = Math.max(1, x - 1); nx <= Math.min(width - 2, x + 1); nx++) {
+                        int gx = (pixels.get(ny * width + nx + 1) & 0xFF) - (pixels.get(ny * width + nx - 1) & 0xFF);
+                        int gy = (pixels.get((ny + 1) * width + nx) & 0xFF) - (pixels.get((ny - 1) * width + nx) & 0xFF);
+                        int gradient = gx * gx + gy * gy;
+                        if (gradient < bestGradient) {
+                            bestGradient = gradient;
+                            bestX = nx;
+                            bestY = ny;
+                        }
+                    }
+                }
+
+                centerX[k] = bestX;
+                centerY[k] = bestY;
+                centerValue[k] = pixels.get(bestY * width + bestX) & 0xFF;
+                k++;
+            }
+        }
+    }
+
+    private static Superpixels enforceConnectivity(int[] labels, int width, int height, int minSize) {
+        int size = width * height;
+        int[] relabeled = new int[size];
+        Arrays.fill(relabeled, -1);
+        int[] component = new int[size];
+
+        int next = 0;
+        for (int start = 0; start < size; start++) {
+            if (relabeled[start] >= 0) {
+                continue;
+            }
+
+            // Rótulo já atribuído de um vizinho à esquerda ou acima, para absorver fragmentos
+            int adjacent = -1;
+            int x0 = start % width;
+            if (x0 > 0 && relabeled[start - 1] >= 0) {
+                adjacent = relabeled[start - 1];
+            } else if (start >= width && relabeled[start - width] >= 0) {
+                adjacent = relabeled[start - width];
+            }
+
+            int original = labels[start];
+            relabeled[start] = next;
+            component[0] = start;
+            int length = 1;
+            for (int head = 0; head < length; head++) {
+                int index = component[head];
+                int x = index % width;
+                if (x > 0) length = visit(labels, relabeled, component, length, index - 1, original, next);
+                if (x < width - 1) length = visit(labels, relabeled, component, length, index + 1, original, next);
+                if (index >= width) length = visit(labels, relabeled, component, length, index - width, original, next);
+                if (index + width < size) length = visit(labels, relabeled, component, length, index + width, original, next);
+            }
+
+            if (length < minSize && adjacent >= 0) {
+                for (int i = 0; i < length; i++) {
+                    relabeled[component[i]] = adjacent;
+                }
+            } else {
+                next++;
+            }
+        }
+        return new Superpixels(width, height, next, relabeled);
+    }
+
+    private static int visit(int[] labels, int[] relabeled, int[] component, int length,
+                             int index, int original, int label) {
+        if (relabeled[index] < 0 && labels[index] == original) {
+            relabeled[index] = label;
+            component[length++] = index;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.backend.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Grafo de adjacência dos superpixels (vizinhança 4 entre pixels), com a intensidade média de
+ * cada nó. A propagação dos marcadores roda sobre alguns milhares de nós em vez de milhões de
+ * pixels: é uma inundação por custo minimax (watershed em grafo), em que cada nó recebe o rótulo
+ * da semente que o alcança pelo caminho cuja maior diferença de intensidade é a menor.
+ */
+public final class SuperpixelGraph {
+
+    private final Superpixels superpixels;
+    private final float[] meanValue;
+    // Adjacência em CSR: vizinhos de k em neighbours[offsets[k] .. offsets[k + 1])
+    private final int[] offsets;
+    private final int[] neighbours;
+
+    private SuperpixelGraph(Superpixels superpixels, float[] meanValue, int[] offsets, int[] neighbours) {
+        this.superpixels = superpixels;
+        this.meanValue = meanValue;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+    }
+
+    public static SuperpixelGraph build(Superpixels superpixels, ByteBuffer pixels) {
+        int width = superpixels.width();
+        int height = superpixels.height();
+        int count = superpixels.count();
+        int[] labels = superpixels.labels();
+
+        double[] sums = new double[count];
+        int[] pixelCount = new int[count];
+        // Arestas como pares ordenados (menor, maior) num long, deduplicadas depois de ordenar
+        long[] edges = new long[Math.max(16, count * 8)];
+        int edgeCount = 0;
+
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int label = labels[row + x];
+                sums[label] += pixels.get(row + x) & 0xFF;
+                pixelCount[label]++;
+
+                int right = x < width - 1 ? labels[row + x + 1] : label;
+                int below = y < height - 1 ? labels[row + width + x] : label;
+                if (right != label || below != label) {
+                    if (edgeCount + 2 > edges.length) {
+                        edges = Arrays.copyOf(edges, edges.length * 2);
+                    }
+                    if (right != label) {
+                        edges[edgeCount++] = edgeKey(label, right);
+                    }
+                    if (below != label) {
+                        edges[edgeCount++] = edgeKey(label, below);
+                    }
+                }
+            }
+        }
+
+        Arrays.sort(edges, 0, edgeCount);
+        int unique = 0;
+        for (int i = 0; i < edgeCount; i++) {
+            if (unique == 0 || edges[i] != edges[unique - 1]) {
+                edges[unique++] = edges[i];
+            }
+        }
+
+        int[] degree = new int[count + 1];
+        for (int i = 0; i < unique; i++) {
+            degree[(int) (edges[i] >>> 32)]++;
+            degree[(int) edges[i]]++;
+        }
+        int[] offsets = new int[count + 1];
+        for (int k = 0; k < count; k++) {
+            offsets[k + 1] = offsets[k] + degree[k];
+        }
+        int[] neighbours = new int[offsets[count]];
+        int[] fill = Arrays.copyOf(offsets, count);
+        for (int i = 0; i < unique; i++) {
+            int a = (int) (edges[i] >>> 32);
+            int b = (int) edges[i];
+            neighbours[fill[a]++] = b;
+            neighbours[fill[b]++] = a;
+        }
+
+        float[] meanValue = new float[count];
+        for (int k = 0; k < count; k++) {
+            meanValue[k] = pixelCount[k] > 0 ? (float) (sums[k] / pixelCount[k]) : 0;
+        }
+        return new SuperpixelGraph(superpixels, meanValue, offsets, neighbours);
+    }
+
+    public int nodeCount() {
+        return superpixels.count();
+    }
+
+    public int width() {
+        return superpixels.width();
+    }
+
+    public int height() {
+        return superpixels.height();
+    }
+
+    public int pixelCount() {
+        return superpixels.labels().length;
+    }
+
+    /**
+     * Semente de cada superpixel a partir do mapa de marcadores (0 = sem marca, k = rótulo k):
+     * vence o rótulo com mais pixels marcados dentro do superpixel. Nós sem marca ficam com 0.
+     */
+    public int[] seedsFromMarkers(int[] markers, int labelCount) {
+        int count = superpixels.count();
+        int[] labels = superpixels.labels();
+        int[] votes = new int[count * labelCount];
+        for (int i = 0; i < markers.length; i++) {
+            int marker = markers[i];
+            if (marker > 0 && marker < labelCount) {
+                votes[labels[i] * labelCount + marker]++;
+            }
+        }
+
+        int[] seeds = new int[count];
+        for (int k = 0; k < count; k++) {
+            int best = 0;
+            int bestVotes = 0;
+            for (int label = 1; label < labelCount; label++) {
+                int v = votes[k * labelCount + label];
+                if (v > bestVotes) {
+                    bestVotes = v;
+                    best = label;
+                }
+            }
+            seeds[k] = best;
+        }
+        return seeds;
+    }
+
+    /**
+     * Inunda o grafo a partir das sementes (rótulo > 0). Devolve o rótulo de cada nó; nós que
+     * nenhuma semente alcança (componente sem marcas) ficam com 0.
+     */
+    public int[] propagate(int[] seeds) {
+        int count = superpixels.count();
+        int[] result = Arrays.copyOf(seeds, count);
+        float[] cost = new float[count];
+        Arrays.fill(cost, Float.MAX_VALUE);
+
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        long order = 0;
+        for (int k = 0; k < count; k++) {
+            if (seeds[k] > 0) {
+                cost[k] = 0;
+                queue.add(new long[]{key(0, order++), k});
+            }
+        }
+
+        boolean[] done = new boolean[count];
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int node = (int) entry[1];
+            if (done[node]) {
+                continue;
+            }
+            done[node] = true;
+
+            for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+                int next = neighbours[i];
+                if (done[next]) {
+                    continue;
+                }
+                float edge = Math.abs(meanValue[node] - meanValue[next]);
+                float pathCost = Math.max(cost[node], edge);
+                if (pathCost < cost[next]) {
+                    cost[next] = pathCost;
+                    result[next] = result[node];
+                    queue.add(new long[]{key(pathCost, order++), next});
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Expande o rótulo de cada nó para os pixels: mapa de rótulos do tamanho da imagem.
+     */
+    public int[] toPixelLabels(int[] nodeLabels) {
+        int[] labels = superpixels.labels();
+        int[] pixels = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            pixels[i] = nodeLabels[labels[i]];
+        }
+        return pixels;
+    }
+
+    private static long edgeKey(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    // Custo nos bits altos e ordem de chegada nos baixos: empates saem na ordem em que entraram
+    private static long key(float cost, long order) {
+        return ((long) Float.floatToIntBits(cost) << 32) | (order & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.backend.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Sobre-segmentação de uma imagem: labels[y * width + x] é o superpixel do pixel, de 0 a
+ * count - 1.
+ * <p>
+ * Formato em disco: "SPX1" | width | height | count e, comprimido com deflate, cada linha como
+ * pares (comprimento do trecho, rótulo) em varint. Superpixels formam trechos longos em cada
+ * linha, então uma radiografia inteira ocupa poucas centenas de KB.
+ */
+public record Superpixels(int width, int height, int count, int[] labels) {
+
+    private static final byte[] MAGIC = {'S', 'P', 'X', '1'};
+
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.write(MAGIC);
+        header.writeInt(width);
+        header.writeInt(height);
+        header.writeInt(count);
+        header.flush();
+
+        Deflater compressor = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(bytes, compressor, 64 * 1024)) {
+            for (int y = 0; y < height; y++) {
+                int row = y * width;
+                int x = 0;
+                while (x < width) {
+                    int label = labels[row + x];
+                    int run = 1;
+                    while (x + run < width && labels[row + x + run] == label) {
+                        run++;
+                    }
+                    writeVarInt(deflater, run);
+                    writeVarInt(deflater, label);
+                    x += run;
+                }
+            }
+        } finally {
+            compressor.end();
+        }
+        return bytes.toByteArray();
+    }
+
+    public static Superpixels decode(byte[] data) throws IOException {
+        DataInputStream header = new DataInputStream(new ByteArrayInputStream(data));
+        byte[] magic = new byte[MAGIC.length];
+        header.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Arquivo de superpixels inválido");
+        }
+        int width = header.readInt();
+        int height = header.readInt();
+        int count = header.readInt();
+
+        int[] labels = new int[width * height];
+        int offset = MAGIC.length + 12;
+        Inflater decompressor = new Inflater();
+        try (InputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(data, offset, data.length - offset), decompressor, 64 * 1024)) {
+            int index = 0;
+            while (index < labels.length) {
+                int run = readVarInt(in);
+                int label = readVarInt(in);
+                if (run <= 0 || index + run > labels.length || label >= count) {
+                    throw new IOException("Arquivo de superpixels corrompido");
+                }
+                Arrays.fill(labels, index, index + run, label);
+                index += run;
+            }
+        } finally {
+            decompressor.end();
+        }
+        return new Superpixels(width, height, count, labels);
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Arquivo de superpixels truncado");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint inválido no arquivo de superpixels");
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.backend.services;
+
+import com.example.backend.entities.ProcessingJob;
+import com.example.backend.interfaces.IBlobStore;
+import com.example.backend.repositories.ProcessingJobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fila contra um Postgres de verdade: o SKIP LOCKED e o lease só se comportam como em produção
+ * no banco real. Os workers são os do JobWorkerPool, com o gerador de marcadores simulado.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(JobQueueService.class)
+@TestPropertySource(properties = {
+        "jobs.lease-seconds=30",
+        "jobs.max-attempts=2",
+        "jobs.retry-backoff-seconds=0"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class JobQueueServiceIntegrationTest {
+
+    @Container
+    @ServiceConnection
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Autowired
+    private JobQueueService jobQueueService;
+
+    @Autowired
+    private ProcessingJobRepository processingJobRepository;
+
+    private final GradCamMarkerService gradCamMarkerService = mock(GradCamMarkerService.class);
+    private final IBlobStore blobStore = mock(IBlobStore.class);
+    private JobWorkerPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        processingJobRepository.deleteAll();
+        when(blobStore.openLocal(anyString())).thenReturn(new IBlobStore.LocalCopy(Path.of("image.png"), false));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void everyJobIsClaimedExactlyOnceByConcurrentWorkers() throws Exception {
+        int jobCount = 60;
+        for (long imageId = 1; imageId <= jobCount; imageId++) {
+            enqueue(imageId);
+        }
+
+        Map<Long, AtomicInteger> executions = new ConcurrentHashMap<>();
+        when(gradCamMarkerService.generateInitialMarkers(anyString(), anyLong())).thenAnswer(invocation -> {
+            executions.computeIfAbsent(invocation.<Long>getArgument(1), id -> new AtomicInteger()).incrementAndGet();
+            Thread.sleep(5);
+            return new GradCamMarkerService.GradCamResult("/markers/ok.png", "{}");
+        });
+
+        startPool(6);
+        awaitState(ProcessingJob.STATE_DONE, jobCount);
+
+        assertThat(executions).hasSize(jobCount);
+        assertThat(executions.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(1));
+        assertThat(processingJobRepository.findAll())
+                .allSatisfy(job -> {
+                    assertThat(job.getState()).isEqualTo(ProcessingJob.STATE_DONE);
+                    assertThat(job.getAttempts()).isEqualTo(1);
+                    assertThat(job.getLeaseOwner()).isNull();
+                });
+    }
+
+    @Test
+    void expiredLeaseIsReclaimedAndTheOldOwnerCannotComplete() {
+        ProcessingJob job = enqueue(1L);
+
+        assertThat(jobQueueService.claim("dead-node", 1)).hasSize(1);
+        // O mesmo job não pode ser pego de novo enquanto o lease vale
+        assertThat(jobQueueService.claim("live-node", 1)).isEmpty();
+
+        expireLease(job.getId());
+        List<ProcessingJob> reclaimed = jobQueueService.claim("live-node", 1);
+
+        assertThat(reclaimed).singleElement().satisfies(claimed -> {
+            assertThat(claimed.getId()).isEqualTo(job.getId());
+            assertThat(claimed.getLeaseOwner()).isEqualTo("live-node");
+            assertThat(claimed.getAttempts()).isEqualTo(2);
+        });
+        assertThat(jobQueueService.complete(job.getId(), "dead-node", Map.of())).isFalse();
+        assertThat(jobQueueService.complete(job.getId(), "live-node", Map.of())).isTrue();
+        assertThat(reload(job.getId()).getState()).isEqualTo(ProcessingJob.STATE_DONE);
+    }
+
+    @Test
+    void expiredLeaseFailsTheJobOnceMaxAttemptsIsReached() {
+        ProcessingJob job = enqueue(1L);
+
+        jobQueueService.claim("node-a", 1);
+        expireLease(job.getId());
+        jobQueueService.claim("node-b", 1);
+        expireLease(job.getId());
+
+        assertThat(jobQueueService.claim("node-c", 1)).isEmpty();
+        ProcessingJob failed = reload(job.getId());
+        assertThat(failed.getState()).isEqualTo(ProcessingJob.STATE_FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(2);
+        assertThat(failed.getLeaseOwner()).isNull();
+    }
+
+    @Test
+    void retryableFailureIsRequeuedUntilMaxAttempts() {
+        ProcessingJob job = enqueue(1L);
+
+        jobQueueService.claim("node-a", 1);
+        assertThat(jobQueueService.fail(job.getId(), "node-a", "falha transitória", true)).isTrue();
+        assertThat(reload(job.getId()).getState()).isEqualTo(ProcessingJob.STATE_QUEUED);
+
+        assertThat(jobQueueService.claim("node-b", 1)).hasSize(1);
+        assertThat(jobQueueService.fail(job.getId(), "node-b", "falha transitória", true)).isTrue();
+
+        ProcessingJob failed = reload(job.getId());
+        assertThat(failed.getState()).isEqualTo(ProcessingJob.STATE_FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(2);
+        assertThat(jobQueueService.claim("node-c", 1)).isEmpty();
+    }
+
+    @Test
+    void scriptErrorFailsTheJobWithoutRetry() throws Exception {
+        ProcessingJob job = enqueue(1L);
+        when(gradCamMarkerService.generateInitialMarkers(anyString(), anyLong()))
+                .thenThrow(new PythonScriptRunner.ScriptFailedException("imagem sem conteúdo"));
+
+        startPool(2);
+        awaitState(ProcessingJob.STATE_FAILED, 1);
+
+        ProcessingJob failed = reload(job.getId());
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getErrorMessage()).contains("imagem sem conteúdo");
+    }
+
+    private ProcessingJob enqueue(Long imageId) {
+        return jobQueueService.enqueue(ProcessingJob.TYPE_INITIAL_MARKERS, imageId,
+                Map.of("imageKey", "jobs/image_" + imageId + ".png"));
+    }
+
+    private void startPool(int workers) {
+        pool = new JobWorkerPool(jobQueueService, mock(SegmentationService.class), gradCamMarkerService,
+                new PythonScriptRunner(new PipelineMetrics(new SimpleMeterRegistry())), blobStore);
+        ReflectionTestUtils.setField(pool, "workerCount", workers);
+        ReflectionTestUtils.setField(pool, "pollIntervalMillis", 20L);
+        pool.start();
+    }
+
+    private void expireLease(Long jobId) {
+        ProcessingJob job = reload(jobId);
+        job.setLeaseExpiresAt(LocalDateTime.now().minusSeconds(1));
+        processingJobRepository.save(job);
+    }
+
+    private ProcessingJob reload(Long jobId) {
+        return processingJobRepository.findById(jobId).orElseThrow();
+    }
+
+    private void awaitState(String state, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (processingJobRepository.countByState(state) < count) {
+            assertThat(System.currentTimeMillis()).as("jobs em " + state).isLessThan(deadline);
+            Thread.sleep(50);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnnotationDiffTest {
+
+    @Test
+    void newStrokeIsStoredAsAppend() {
+        Map<String, Object> from = document(stroke(1), stroke(2));
+        Map<String, Object> to = document(stroke(1), stroke(2), stroke(3));
+
+        Map<String, Object> delta = AnnotationDiff.between(from, to);
+
+        assertEquals(Map.of(AnnotationDiff.APPEND, Map.of("brushStrokes", List.of(stroke(3)))), delta);
+        assertEquals(to, AnnotationDiff.apply(from, delta));
+    }
+
+    @Test
+    void undoIsStoredAsTruncate() {
+        Map<String, Object> from = document(stroke(1), stroke(2), stroke(3));
+        Map<String, Object> to = document(stroke(1));
+
+        Map<String, Object> delta = AnnotationDiff.between(from, to);
+
+        assertEquals(Map.of(AnnotationDiff.TRUNCATE, Map.of("brushStrokes", 1)), delta);
+        assertEquals(to, AnnotationDiff.apply(from, delta));
+    }
+
+    @Test
+    void erasedStrokeInTheMiddleReplacesTheList() {
+        Map<String, Object> from = document(stroke(1), stroke(2), stroke(3));
+        Map<String, Object> to = document(stroke(1), stroke(3));
+
+        Map<String, Object> delta = AnnotationDiff.between(from, to);
+
+        assertEquals(Map.of(AnnotationDiff.SET, Map.of("brushStrokes", List.of(stroke(1), stroke(3)))), delta);
+        assertEquals(to, AnnotationDiff.apply(from, delta));
+    }
+
+    @Test
+    void changedAndRemovedKeysRoundTrip() {
+        Map<String, Object> from = new LinkedHashMap<>(document(stroke(1)));
+        from.put("lastAutoSave", "2025-01-01T10:00:00");
+        from.put("isFinalSave", true);
+        Map<String, Object> to = new LinkedHashMap<>(document(stroke(1)));
+        to.put("lastAutoSave", "2025-01-01T10:00:05");
+        to.put("totalStrokes", 1);
+
+        Map<String, Object> delta = AnnotationDiff.between(from, to);
+
+        assertEquals(List.of("isFinalSave"), delta.get(AnnotationDiff.REMOVE));
+        assertEquals(Map.of("lastAutoSave", "2025-01-01T10:00:05", "totalStrokes", 1), delta.get(AnnotationDiff.SET));
+        assertEquals(to, AnnotationDiff.apply(from, delta));
+    }
+
+    @Test
+    void identicalDocumentsHaveEmptyDelta() {
+        Map<String, Object> document = document(stroke(1), stroke(2));
+
+        assertTrue(AnnotationDiff.between(document, document(stroke(1), stroke(2))).isEmpty());
+    }
+
+    @Test
+    void creationFromNothingSetsEveryKey() {
+        Map<String, Object> to = document(stroke(1));
+
+        Map<String, Object> delta = AnnotationDiff.between(null, to);
+
+        assertEquals(Map.of(AnnotationDiff.SET, to), delta);
+        assertEquals(to, AnnotationDiff.apply(null, delta));
+    }
+
+    @Test
+    void applyDoesNotModifyTheDocument() {
+        Map<String, Object> from = document(stroke(1));
+        Map<String, Object> snapshot = new LinkedHashMap<>(from);
+
+        AnnotationDiff.apply(from, AnnotationDiff.between(from, document(stroke(1), stroke(2))));
+
+        assertEquals(snapshot, from);
+    }
+
+    @Test
+    void chainOfDeltasRebuildsEveryVersion() {
+        // Sequência de saves como a do editor: traços novos, desfazer, borracha e metadados
+        Random random = new Random(42);
+        List<Map<String, Object>> versions = new ArrayList<>();
+        List<Map<String, Object>> strokes = new ArrayList<>();
+        versions.add(document());
+
+        for (int version = 1; version <= 200; version++) {
+            int operation = random.nextInt(10);
+            if (operation < 6 || strokes.isEmpty()) {
+                for (int i = random.nextInt(5); i >= 0; i--) {
+                    strokes.add(stroke(random.nextInt(1_000)));
+                }
+            } else if (operation < 8) {
+                strokes = new ArrayList<>(strokes.subList(0, random.nextInt(strokes.size())));
+            } else {
+                strokes.remove(random.nextInt(strokes.size()));
+            }
+            Map<String, Object> document = new LinkedHashMap<>();
+            document.put("brushStrokes", new ArrayList<>(strokes));
+            document.put("totalStrokes", strokes.size());
+            if (random.nextBoolean()) {
+                document.put("lastAutoSave", "t" + version);
+            }
+            versions.add(document);
+        }
+
+        Map<String, Object> rebuilt = versions.get(0);
+        for (int i = 1; i < versions.size(); i++) {
+            rebuilt = AnnotationDiff.apply(rebuilt, AnnotationDiff.between(versions.get(i - 1), versions.get(i)));
+            assertEquals(versions.get(i), rebuilt, "versão " + i);
+        }
+    }
+
+    private static Map<String, Object> document(Map<?, ?>... strokes) {
+        return Map.of("brushStrokes", List.of(strokes));
+    }
+
+    private static Map<String, Object> stroke(int x) {
+        return Map.of("x", x, "y", x * 2, "size", 10, "mode", "object");
+    }
+}
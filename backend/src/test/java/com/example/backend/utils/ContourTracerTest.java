@@ -0,0 +1,131 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContourTracerTest {
+
+    @Test
+    void squareWithHoleHasOuterContourAndHole() {
+        // Quadrado 5x5 do rótulo 1 com o pixel central vazio, dentro de uma borda de fundo
+        int width = 7;
+        int height = 7;
+        int[] labels = new int[width * height];
+        for (int y = 1; y <= 5; y++) {
+            for (int x = 1; x <= 5; x++) {
+                labels[y * width + x] = 1;
+            }
+        }
+        labels[3 * width + 3] = 0;
+
+        List<ContourTracer.Contour> contours = ContourTracer.trace(labels, width, height, 0);
+
+        assertEquals(2, contours.size());
+        ContourTracer.Contour outer = contours.stream().filter(c -> !c.hole()).findFirst().orElseThrow();
+        ContourTracer.Contour hole = contours.stream().filter(ContourTracer.Contour::hole).findFirst().orElseThrow();
+
+        assertEquals(1, outer.label());
+        assertEquals(25.0, outer.area(), 1e-9);
+        assertEquals(20.0, outer.perimeter(), 1e-9);
+        assertEquals(4, outer.points().length / 2);
+        assertTrue(ContourTracer.signedArea(outer.points()) > 0);
+
+        assertEquals(1, hole.label());
+        assertEquals(1.0, hole.area(), 1e-9);
+        assertEquals(4.0, hole.perimeter(), 1e-9);
+        assertTrue(ContourTracer.signedArea(hole.points()) < 0);
+        assertEquals(24.0, outer.area() - hole.area(), 1e-9);
+    }
+
+    @Test
+    void singlePixelAtImageBorderIsAUnitSquare() {
+        List<ContourTracer.Contour> contours = ContourTracer.trace(new int[]{3}, 1, 1, 0);
+
+        assertEquals(1, contours.size());
+        ContourTracer.Contour contour = contours.get(0);
+        assertEquals(3, contour.label());
+        assertFalse(contour.hole());
+        assertEquals(1.0, contour.area(), 1e-9);
+        assertEquals(4.0, contour.perimeter(), 1e-9);
+        assertEquals(4, contour.points().length / 2);
+        for (int coordinate : contour.points()) {
+            assertTrue(coordinate == 0 || coordinate == 1);
+        }
+    }
+
+    @Test
+    void touchingLabelsShareTheBoundaryEdge() {
+        int[] labels = {
+                1, 1, 2, 2,
+                1, 1, 2, 2
+        };
+
+        List<ContourTracer.Contour> contours = ContourTracer.trace(labels, 4, 2, 0);
+
+        assertEquals(2, contours.size());
+        ContourTracer.Contour left = contours.get(0);
+        ContourTracer.Contour right = contours.get(1);
+        assertEquals(1, left.label());
+        assertEquals(2, right.label());
+        assertEquals(4.0, left.area(), 1e-9);
+        assertEquals(4.0, right.area(), 1e-9);
+        assertEquals(2, maxX(left.points()));
+        assertEquals(2, minX(right.points()));
+    }
+
+    @Test
+    void diagonalNeighboursAreSeparateRegions() {
+        int[] labels = {
+                1, 0,
+                0, 1
+        };
+
+        List<ContourTracer.Contour> contours = ContourTracer.trace(labels, 2, 2, 0);
+
+        assertEquals(2, contours.size());
+        for (ContourTracer.Contour contour : contours) {
+            assertFalse(contour.hole());
+            assertEquals(1.0, contour.area(), 1e-9);
+        }
+    }
+
+    @Test
+    void simplifyDropsCollinearPointsButKeepsTriangle() {
+        int[] square = {0, 0, 2, 0, 4, 0, 4, 4, 0, 4};
+        int[] simplified = ContourTracer.simplify(square, 0.5);
+
+        assertEquals(4, simplified.length / 2);
+        assertEquals(16.0, Math.abs(ContourTracer.signedArea(simplified)), 1e-9);
+
+        int[] triangle = {0, 0, 4, 0, 0, 4};
+        assertArrayEquals(triangle, ContourTracer.simplify(triangle, 10));
+    }
+
+    @Test
+    void rejectsLabelMapWithWrongSize() {
+        assertThrows(IllegalArgumentException.class, () -> ContourTracer.trace(new int[5], 2, 2, 0));
+    }
+
+    private static int maxX(int[] points) {
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < points.length; i += 2) {
+            max = Math.max(max, points[i]);
+        }
+        return max;
+    }
+
+    private static int minX(int[] points) {
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < points.length; i += 2) {
+            min = Math.min(min, points[i]);
+        }
+        return min;
+    }
+}
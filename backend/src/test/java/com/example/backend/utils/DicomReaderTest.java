@@ -0,0 +1,261 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Os arquivos são montados no próprio teste, elemento por elemento, nas duas sintaxes aceitas.
+ */
+class DicomReaderTest {
+
+    private static final String JPEG_BASELINE = "1.2.840.10008.1.2.4.50";
+
+    @Test
+    void readsExplicitVrSigned16BitImage() throws Exception {
+        // Valores de 12 bits com sinal, com lixo nos bits altos que devem ser descartados
+        int[] stored = {-1000, 0, 2047, -2048, 5, -1};
+        byte[] pixelData = new byte[stored.length * 2];
+        for (int i = 0; i < stored.length; i++) {
+            int raw = (stored[i] & 0x0FFF) | 0xA000;
+            pixelData[2 * i] = (byte) raw;
+            pixelData[2 * i + 1] = (byte) (raw >> 8);
+        }
+
+        byte[] file = new DicomBuilder(DicomReader.EXPLICIT_VR_LITTLE_ENDIAN)
+                .string(0x0008, 0x0060, "CS", "CT")
+                .undefinedSequence(0x0008, 0x1140)
+                .unsignedShort(0x0028, 0x0002, 1)
+                .string(0x0028, 0x0004, "CS", "MONOCHROME2")
+                .unsignedShort(0x0028, 0x0010, 2)
+                .unsignedShort(0x0028, 0x0011, 3)
+                .unsignedShort(0x0028, 0x0100, 16)
+                .unsignedShort(0x0028, 0x0101, 12)
+                .unsignedShort(0x0028, 0x0103, 1)
+                .string(0x0028, 0x1050, "DS", "40\\400")
+                .string(0x0028, 0x1051, "DS", "400\\1500")
+                .string(0x0028, 0x1052, "DS", "-1024")
+                .string(0x0028, 0x1053, "DS", "1")
+                .pixelData("OW", pixelData)
+                .build();
+
+        DicomReader.DicomImage image = DicomReader.read(new ByteArrayInputStream(file));
+
+        assertEquals(3, image.width());
+        assertEquals(2, image.height());
+        assertEquals(16, image.bitsAllocated());
+        assertEquals(12, image.bitsStored());
+        assertTrue(image.signed());
+        assertEquals("MONOCHROME2", image.photometric());
+        assertArrayEquals(stored, image.pixels());
+        assertEquals(40.0, (double) image.windowCenter());
+        assertEquals(400.0, (double) image.windowWidth());
+        assertEquals(-1024.0, image.rescaleIntercept());
+        assertEquals(1.0, image.rescaleSlope());
+        assertEquals("CT", image.attributes().get("modality"));
+        assertEquals(DicomReader.EXPLICIT_VR_LITTLE_ENDIAN, image.attributes().get("transferSyntax"));
+    }
+
+    @Test
+    void readsImplicitVr8BitImageAndOnlyTheFirstFrame() throws Exception {
+        byte[] frames = {10, 20, 30, 40, (byte) 250, (byte) 255, 1, 2};
+
+        byte[] file = new DicomBuilder(DicomReader.IMPLICIT_VR_LITTLE_ENDIAN)
+                .string(0x0008, 0x0060, "CS", "DX")
+                .undefinedSequence(0x0008, 0x1140)
+                .string(0x0028, 0x0004, "CS", "MONOCHROME1")
+                // IS em texto: não pode ser lido como inteiro binário de 2 bytes
+                .string(0x0028, 0x0008, "IS", "2")
+                .unsignedShort(0x0028, 0x0010, 2)
+                .unsignedShort(0x0028, 0x0011, 2)
+                .unsignedShort(0x0028, 0x0100, 8)
+                .unsignedShort(0x0028, 0x0101, 8)
+                .unsignedShort(0x0028, 0x0103, 0)
+                .pixelData("OB", frames)
+                .build();
+
+        DicomReader.DicomImage image = DicomReader.read(new ByteArrayInputStream(file));
+
+        assertEquals(2, image.width());
+        assertEquals(2, image.height());
+        assertFalse(image.signed());
+        assertEquals("MONOCHROME1", image.photometric());
+        assertArrayEquals(new int[]{10, 20, 30, 40}, image.pixels());
+        assertEquals(2, image.attributes().get("frames"));
+        assertEquals("DX", image.attributes().get("modality"));
+        assertNull(image.windowCenter());
+        assertEquals(1.0, image.rescaleSlope());
+        assertEquals(0.0, image.rescaleIntercept());
+    }
+
+    @Test
+    void detectsThePart10Prefix() throws Exception {
+        byte[] dicom = new DicomBuilder(DicomReader.EXPLICIT_VR_LITTLE_ENDIAN).build();
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+        assertTrue(DicomReader.isDicom(new ByteArrayInputStream(dicom)));
+        assertFalse(DicomReader.isDicom(new ByteArrayInputStream(png)));
+        assertThrows(IllegalArgumentException.class, () -> DicomReader.read(new ByteArrayInputStream(png)));
+    }
+
+    @Test
+    void rejectsCompressedTransferSyntax() {
+        byte[] file = new DicomBuilder(JPEG_BASELINE)
+                .unsignedShort(0x0028, 0x0010, 1)
+                .build();
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> DicomReader.read(new ByteArrayInputStream(file)));
+        assertTrue(error.getMessage().contains(JPEG_BASELINE));
+    }
+
+    @Test
+    void rejectsEncapsulatedPixelData() {
+        byte[] file = new DicomBuilder(DicomReader.EXPLICIT_VR_LITTLE_ENDIAN)
+                .unsignedShort(0x0028, 0x0010, 1)
+                .unsignedShort(0x0028, 0x0011, 1)
+                .undefinedPixelData()
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> DicomReader.read(new ByteArrayInputStream(file)));
+    }
+
+    @Test
+    void rejectsColourImages() {
+        byte[] file = new DicomBuilder(DicomReader.EXPLICIT_VR_LITTLE_ENDIAN)
+                .unsignedShort(0x0028, 0x0002, 3)
+                .string(0x0028, 0x0004, "CS", "RGB")
+                .unsignedShort(0x0028, 0x0010, 1)
+                .unsignedShort(0x0028, 0x0011, 1)
+                .unsignedShort(0x0028, 0x0100, 8)
+                .pixelData("OB", new byte[]{1, 2, 3, 0})
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> DicomReader.read(new ByteArrayInputStream(file)));
+    }
+
+    @Test
+    void rejectsFileWithoutPixelData() {
+        byte[] file = new DicomBuilder(DicomReader.EXPLICIT_VR_LITTLE_ENDIAN)
+                .string(0x0008, 0x0060, "CS", "CT")
+                .build();
+
+        assertThrows(IllegalArgumentException.class, () -> DicomReader.read(new ByteArrayInputStream(file)));
+    }
+
+    /**
+     * Monta um Part 10: preâmbulo, "DICM", grupo 0002 em VR explícito e o dataset na sintaxe
+     * informada (implícita ou explícita little endian).
+     */
+    private static final class DicomBuilder {
+
+        private static final Set<String> LONG_VRS = Set.of("OB", "OW", "SQ", "UN", "UT");
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final boolean explicit;
+
+        DicomBuilder(String transferSyntax) {
+            explicit = !DicomReader.IMPLICIT_VR_LITTLE_ENDIAN.equals(transferSyntax);
+            out.writeBytes(new byte[128]);
+            out.writeBytes("DICM".getBytes(StandardCharsets.US_ASCII));
+            element(true, 0x0002, 0x0010, "UI", padded(transferSyntax, (byte) 0));
+        }
+
+        DicomBuilder string(int group, int element, String vr, String value) {
+            element(explicit, group, element, vr, padded(value, (byte) ' '));
+            return this;
+        }
+
+        DicomBuilder unsignedShort(int group, int element, int value) {
+            element(explicit, group, element, "US", new byte[]{(byte) value, (byte) (value >> 8)});
+            return this;
+        }
+
+        DicomBuilder pixelData(String vr, byte[] pixels) {
+            element(explicit, 0x7FE0, 0x0010, vr, pixels);
+            return this;
+        }
+
+        DicomBuilder undefinedPixelData() {
+            header(explicit, 0x7FE0, 0x0010, "OB", 0xFFFFFFFF);
+            return this;
+        }
+
+        /**
+         * Sequência de comprimento indefinido com um item também indefinido, que o leitor
+         * precisa pular até os delimitadores.
+         */
+        DicomBuilder undefinedSequence(int group, int element) {
+            header(explicit, group, element, "SQ", 0xFFFFFFFF);
+            tag(0xFFFE, 0xE000);
+            int32(0xFFFFFFFF);
+            string(0x0008, 0x1150, "UI", "1.2.3.4");
+            tag(0xFFFE, 0xE00D);
+            int32(0);
+            tag(0xFFFE, 0xE0DD);
+            int32(0);
+            return this;
+        }
+
+        byte[] build() {
+            return out.toByteArray();
+        }
+
+        private void element(boolean explicitVr, int group, int element, String vr, byte[] value) {
+            header(explicitVr, group, element, vr, value.length);
+            out.writeBytes(value);
+        }
+
+        private void header(boolean explicitVr, int group, int element, String vr, int length) {
+            tag(group, element);
+            if (!explicitVr) {
+                int32(length);
+                return;
+            }
+            out.writeBytes(vr.getBytes(StandardCharsets.US_ASCII));
+            if (LONG_VRS.contains(vr)) {
+                int16(0);
+                int32(length);
+            } else {
+                int16(length);
+            }
+        }
+
+        private void tag(int group, int element) {
+            int16(group);
+            int16(element);
+        }
+
+        private void int16(int value) {
+            out.write(value & 0xFF);
+            out.write((value >> 8) & 0xFF);
+        }
+
+        private void int32(int value) {
+            int16(value & 0xFFFF);
+            int16(value >>> 16);
+        }
+
+        // Valores DICOM têm comprimento par
+        private static byte[] padded(String value, byte pad) {
+            byte[] bytes = value.getBytes(StandardCharsets.US_ASCII);
+            if (bytes.length % 2 == 0) {
+                return bytes;
+            }
+            byte[] even = new byte[bytes.length + 1];
+            System.arraycopy(bytes, 0, even, 0, bytes.length);
+            even[bytes.length] = pad;
+            return even;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InitialMarkerGeneratorTest {
+
+    private final InitialMarkerGenerator generator = new InitialMarkerGenerator(ForkJoinPool.commonPool());
+
+    @Test
+    void darkDiscGetsOneObjectMarkerAtItsCentre() {
+        BufferedImage image = background(200, 200, 220);
+        disc(image, 100, 100, 30, 40);
+
+        InitialMarkerGenerator.Result result = generator.generate(image);
+
+        assertEquals(1, result.objectCount());
+        InitialMarkerGenerator.Point object = points(result, "foreground").get(0);
+        assertTrue(Math.abs(object.x() - 100) <= 2 && Math.abs(object.y() - 100) <= 2, "centróide " + object);
+        assertEquals(InitialMarkerGenerator.COLOR_OBJECT, result.markers().getRGB(object.x(), object.y()) & 0xFFFFFF);
+
+        List<InitialMarkerGenerator.Point> background = points(result, "background");
+        assertEquals(result.backgroundCount(), background.size());
+        assertTrue(background.size() >= 4 && background.size() <= 12, "fundo: " + background.size());
+        for (InitialMarkerGenerator.Point point : background) {
+            assertTrue(Math.hypot(point.x() - 100, point.y() - 100) > 30, "marcador de fundo sobre o objeto: " + point);
+            assertEquals(InitialMarkerGenerator.COLOR_BACKGROUND, result.markers().getRGB(point.x(), point.y()) & 0xFFFFFF);
+        }
+    }
+
+    @Test
+    void separateDiscsGetOneMarkerEach() {
+        BufferedImage image = background(240, 160, 200);
+        disc(image, 60, 80, 25, 30);
+        disc(image, 180, 80, 25, 30);
+
+        InitialMarkerGenerator.Result result = generator.generate(image);
+
+        assertEquals(2, result.objectCount());
+        assertEquals(2, points(result, "foreground").size());
+    }
+
+    @Test
+    void uniformImageHasOnlyBackgroundMarkers() {
+        InitialMarkerGenerator.Result result = generator.generate(background(128, 128, 90));
+
+        assertEquals(0, result.objectCount());
+        assertEquals(12, result.backgroundCount());
+    }
+
+    @Test
+    void resultIsTheSameForAnyParallelism() {
+        BufferedImage image = background(300, 260, 180);
+        disc(image, 120, 140, 50, 60);
+        Random random = new Random(7);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int gray = Math.max(0, Math.min(255, (image.getRGB(x, y) & 0xFF) + random.nextInt(21) - 10));
+                image.setRGB(x, y, gray * 0x010101);
+            }
+        }
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            InitialMarkerGenerator.Result sequential = new InitialMarkerGenerator(single).generate(image);
+            InitialMarkerGenerator.Result concurrent = new InitialMarkerGenerator(parallel).generate(image);
+
+            assertEquals(sequential.points(), concurrent.points());
+            assertArrayEquals(pixels(sequential.markers()), pixels(concurrent.markers()));
+        } finally {
+            single.shutdown();
+            parallel.shutdown();
+        }
+    }
+
+    @Test
+    void toDataKeepsThePythonScriptFormat() {
+        BufferedImage image = background(200, 200, 220);
+        disc(image, 100, 100, 30, 40);
+        InitialMarkerGenerator.Result result = generator.generate(image);
+
+        Map<String, Object> data = result.toData();
+
+        assertEquals(List.of(200, 200), data.get("image_size"));
+        assertEquals(Map.of("object", result.objectCount(), "background", result.backgroundCount()), data.get("counts"));
+        List<?> items = (List<?>) data.get("points");
+        assertEquals(result.points().size(), items.size());
+        Map<?, ?> first = (Map<?, ?>) items.get(0);
+        assertEquals("point", first.get("type"));
+        assertEquals(result.points().get(0).x(), first.get("x"));
+        assertEquals(result.points().get(0).label(), first.get("label"));
+    }
+
+    private static List<InitialMarkerGenerator.Point> points(InitialMarkerGenerator.Result result, String label) {
+        return result.points().stream().filter(point -> point.label().equals(label)).toList();
+    }
+
+    private static BufferedImage background(int width, int height, int gray) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, gray * 0x010101);
+            }
+        }
+        return image;
+    }
+
+    private static void disc(BufferedImage image, int cx, int cy, int radius, int gray) {
+        for (int y = cy - radius; y <= cy + radius; y++) {
+            for (int x = cx - radius; x <= cx + radius; x++) {
+                if ((x - cx) * (x - cx) + (y - cy) * (y - cy) <= radius * radius) {
+                    image.setRGB(x, y, gray * 0x010101);
+                }
+            }
+        }
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
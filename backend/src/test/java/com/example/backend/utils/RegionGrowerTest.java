@@ -0,0 +1,134 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionGrowerTest {
+
+    @Test
+    void fillsTheSquareAroundTheSeed() {
+        byte[] pixels = image(50, 50, 20);
+        rectangle(pixels, 50, 10, 10, 29, 29, 200);
+
+        RegionGrower.Region region = RegionGrower.grow(ByteBuffer.wrap(pixels), 50, 50, 15, 20, 10, 0);
+
+        assertEquals(400, region.area());
+        assertEquals(200, region.seedValue());
+        assertEquals(10, region.minX());
+        assertEquals(10, region.minY());
+        assertEquals(29, region.maxX());
+        assertEquals(29, region.maxY());
+        assertFalse(region.truncated());
+        assertEquals(400, region.mask().cardinality());
+    }
+
+    @Test
+    void doesNotCrossDiagonalContacts() {
+        byte[] pixels = image(10, 10, 0);
+        rectangle(pixels, 10, 0, 0, 4, 4, 255);
+        rectangle(pixels, 10, 5, 5, 9, 9, 255);
+
+        RegionGrower.Region region = RegionGrower.grow(ByteBuffer.wrap(pixels), 10, 10, 2, 2, 5, 0);
+
+        assertEquals(25, region.area());
+        assertEquals(4, region.maxX());
+        assertEquals(4, region.maxY());
+    }
+
+    @Test
+    void followsConcaveShapes() {
+        // U: duas colunas ligadas pela base; o preenchimento por linhas precisa voltar para cima
+        byte[] pixels = image(9, 9, 0);
+        rectangle(pixels, 9, 1, 1, 2, 7, 100);
+        rectangle(pixels, 9, 6, 1, 7, 7, 100);
+        rectangle(pixels, 9, 1, 7, 7, 7, 100);
+
+        // Média 3x3 na borda da coluna: 6 pixels da forma e 3 de fundo
+        RegionGrower.Region region = RegionGrower.grow(ByteBuffer.wrap(pixels), 9, 9, 1, 4, 60, 0);
+
+        assertEquals(67, region.seedValue());
+        assertEquals(14 + 14 + 3, region.area());
+        assertTrue(region.mask().get(1 * 9 + 7));
+    }
+
+    @Test
+    void seedValueIsTheMeanAroundTheClick() {
+        byte[] pixels = image(5, 5, 100);
+        pixels[2 * 5 + 2] = (byte) 190;
+
+        RegionGrower.Region region = RegionGrower.grow(ByteBuffer.wrap(pixels), 5, 5, 2, 2, 10, 0);
+
+        // A faixa parte de 110, não do pixel ruidoso (190): os vizinhos em 100 entram
+        assertEquals(110, region.seedValue());
+        assertEquals(25, region.area());
+    }
+
+    @Test
+    void stopsAtMaxArea() {
+        byte[] pixels = image(100, 100, 50);
+
+        RegionGrower.Region region = RegionGrower.grow(ByteBuffer.wrap(pixels), 100, 100, 50, 50, 0, 1_000);
+
+        assertTrue(region.truncated());
+        assertTrue(region.area() >= 1_000 && region.area() < 1_100);
+    }
+
+    @Test
+    void cropLabelsAndRunLengthsDescribeTheBox() {
+        byte[] pixels = image(6, 5, 0);
+        // Bloco 3x3 com um pixel a mais no canto inferior direito: caixa x 1..4, y 1..3
+        rectangle(pixels, 6, 1, 1, 3, 3, 200);
+        pixels[3 * 6 + 4] = (byte) 200;
+
+        RegionGrower.Region region = RegionGrower.grow(ByteBuffer.wrap(pixels), 6, 5, 2, 2, 10, 0);
+
+        assertEquals(4, region.width());
+        assertEquals(3, region.height());
+        assertArrayEquals(new int[]{
+                1, 1, 1, 0,
+                1, 1, 1, 0,
+                1, 1, 1, 1
+        }, region.cropLabels());
+        // Alterna fora/dentro começando por fora (vazio aqui)
+        assertArrayEquals(new int[]{0, 3, 1, 3, 1, 4}, region.runLengths());
+        assertEquals(region.width() * region.height(), Arrays.stream(region.runLengths()).sum());
+    }
+
+    @Test
+    void largeUniformImageDoesNotOverflowTheStack() {
+        int size = 2_000;
+        RegionGrower.Region region = RegionGrower.grow(ByteBuffer.wrap(image(size, size, 10)), size, size, 0, 0, 0, 0);
+
+        assertEquals((long) size * size, region.area());
+    }
+
+    @Test
+    void rejectsSeedOutsideTheImage() {
+        ByteBuffer pixels = ByteBuffer.wrap(image(4, 4, 0));
+
+        assertThrows(IllegalArgumentException.class, () -> RegionGrower.grow(pixels, 4, 4, 4, 0, 10, 0));
+        assertThrows(IllegalArgumentException.class, () -> RegionGrower.grow(pixels, 4, 4, 0, -1, 10, 0));
+    }
+
+    private static byte[] image(int width, int height, int value) {
+        byte[] pixels = new byte[width * height];
+        Arrays.fill(pixels, (byte) value);
+        return pixels;
+    }
+
+    private static void rectangle(byte[] pixels, int width, int x0, int y0, int x1, int y1, int value) {
+        for (int y = y0; y <= y1; y++) {
+            for (int x = x0; x <= x1; x++) {
+                pixels[y * width + x] = (byte) value;
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.backend.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Slic e SuperpixelGraph juntos: a sobre-segmentação e a propagação dos marcadores sobre ela.
+ */
+class SuperpixelGraphTest {
+
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    @Test
+    void slicLabelsAreDenseConnectedAndFollowTheEdge() {
+        byte[] pixels = halves(WIDTH, HEIGHT, 40, 200);
+
+        Superpixels superpixels = Slic.compute(ByteBuffer.wrap(pixels), WIDTH, HEIGHT, 8, 10, 10);
+
+        assertTrue(superpixels.count() > 1);
+        boolean[] seen = new boolean[superpixels.count()];
+        int[] value = new int[superpixels.count()];
+        Arrays.fill(value, -1);
+        for (int i = 0; i < pixels.length; i++) {
+            int label = superpixels.labels()[i];
+            seen[label] = true;
+            // Nenhum superpixel atravessa a borda entre as metades
+            int pixel = pixels[i] & 0xFF;
+            assertTrue(value[label] == -1 || value[label] == pixel, "superpixel " + label + " cruza a borda");
+            value[label] = pixel;
+        }
+        for (int label = 0; label < seen.length; label++) {
+            assertTrue(seen[label], "rótulo " + label + " sem pixels");
+            assertEquals(1, components(superpixels, label), "superpixel " + label + " desconexo");
+        }
+    }
+
+    @Test
+    void superpixelsSurviveEncodeAndDecode() throws Exception {
+        Superpixels superpixels = Slic.compute(ByteBuffer.wrap(halves(WIDTH, HEIGHT, 40, 200)), WIDTH, HEIGHT, 8, 10, 10);
+
+        Superpixels decoded = Superpixels.decode(superpixels.encode());
+
+        assertEquals(superpixels.width(), decoded.width());
+        assertEquals(superpixels.height(), decoded.height());
+        assertEquals(superpixels.count(), decoded.count());
+        assertArrayEquals(superpixels.labels(), decoded.labels());
+    }
+
+    @Test
+    void markersPropagateToTheirSideOfTheEdge() {
+        byte[] pixels = halves(WIDTH, HEIGHT, 40, 200);
+        ByteBuffer buffer = ByteBuffer.wrap(pixels);
+        Superpixels superpixels = Slic.compute(buffer, WIDTH, HEIGHT, 8, 10, 10);
+        SuperpixelGraph graph = SuperpixelGraph.build(superpixels, buffer);
+
+        int[] markers = new int[WIDTH * HEIGHT];
+        markers[10 * WIDTH + 5] = 1;
+        markers[30 * WIDTH + 60] = 2;
+
+        int[] labels = graph.toPixelLabels(graph.propagate(graph.seedsFromMarkers(markers, 3)));
+
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                assertEquals(x < WIDTH / 2 ? 1 : 2, labels[y * WIDTH + x], "pixel (" + x + ", " + y + ")");
+            }
+        }
+    }
+
+    @Test
+    void nodeTakesTheSeedWithTheSmallestLargestStep() {
+        // Três superpixels em linha, médias 0, 100 e 110: o do meio fica com a semente da direita
+        Superpixels superpixels = new Superpixels(3, 1, 3, new int[]{0, 1, 2});
+        SuperpixelGraph graph = SuperpixelGraph.build(superpixels, ByteBuffer.wrap(new byte[]{0, 100, 110}));
+
+        assertArrayEquals(new int[]{1, 2, 2}, graph.propagate(new int[]{1, 0, 2}));
+    }
+
+    @Test
+    void seedIsTheMostMarkedLabelOfEachSuperpixel() {
+        Superpixels superpixels = new Superpixels(6, 1, 3, new int[]{0, 0, 0, 1, 1, 2});
+        SuperpixelGraph graph = SuperpixelGraph.build(superpixels, ByteBuffer.wrap(new byte[6]));
+
+        int[] seeds = graph.seedsFromMarkers(new int[]{2, 2, 1, 1, 0, 0}, 3);
+
+        assertArrayEquals(new int[]{2, 1, 0}, seeds);
+    }
+
+    @Test
+    void withoutSeedsEveryNodeStaysUnlabelled() {
+        ByteBuffer buffer = ByteBuffer.wrap(halves(WIDTH, HEIGHT, 40, 200));
+        SuperpixelGraph graph = SuperpixelGraph.build(Slic.compute(buffer, WIDTH, HEIGHT, 8, 10, 10), buffer);
+
+        int[] labels = graph.propagate(new int[graph.nodeCount()]);
+
+        assertTrue(Arrays.stream(labels).allMatch(label -> label == 0));
+    }
+
+    private static byte[] halves(int width, int height, int left, int right) {
+        byte[] pixels = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                pixels[y * width + x] = (byte) (x < width / 2 ? left : right);
+            }
+        }
+        return pixels;
+    }
+
+    private static int components(Superpixels superpixels, int label) {
+        int width = superpixels.width();
+        int height = superpixels.height();
+        int[] labels = superpixels.labels();
+        boolean[] visited = new boolean[labels.length];
+        int components = 0;
+        for (int start = 0; start < labels.length; start++) {
+            if (labels[start] != label || visited[start]) {
+                continue;
+            }
+            components++;
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(start);
+            visited[start] = true;
+            while (!queue.isEmpty()) {
+                int index = queue.poll();
+                int x = index % width;
+                int y = index / width;
+                int[][] neighbours = {{x - 1, y}, {x + 1, y}, {x, y - 1}, {x, y + 1}};
+                for (int[] n : neighbours) {
+                    if (n[0] < 0 || n[1] < 0 || n[0] >= width || n[1] >= height) {
+                        continue;
+                    }
+                    int next = n[1] * width + n[0];
+                    if (labels[next] == label && !visited[next]) {
+                        visited[next] = true;
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+}
@@ -1,5 +1,5 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpHeaders } from '@angular/common/http';
 import { Observable, tap } from 'rxjs';
 import { environment } from '../environment/environment';
 
@@ -66,10 +66,15 @@ export class ApiService {
     return this.http.get(`${environment.apiUrl}/annotation/${imageId}`);
   }
 
-  saveAnnotation(imageId: number, annotationData: any): Observable<any> {
-    return this.http.post(
+  saveAnnotation(
+    imageId: number,
+    annotationData: any,
+    version?: number | null
+  ): Observable<any> {
+    return this.http.put(
       `${environment.apiUrl}/annotation/${imageId}/save`,
-      annotationData
+      annotationData,
+      { headers: this.ifMatch(version) }
     );
   }
 
@@ -79,10 +84,22 @@ export class ApiService {
     );
   }
 
-  autoSaveAnnotation(imageId: number, annotationData: any): Observable<any> {
+  // Com version, o backend só grava se a anotação ainda estiver nessa versão (senão, 409)
+  autoSaveAnnotation(
+    imageId: number,
+    annotationData: any,
+    version?: number | null
+  ): Observable<any> {
     return this.http.post(
       `${environment.apiUrl}/annotation/${imageId}/auto-save`,
-      annotationData
+      annotationData,
+      { headers: this.ifMatch(version) }
     );
   }
+
+  private ifMatch(version?: number | null): HttpHeaders {
+    return version != null
+      ? new HttpHeaders({ 'If-Match': String(version) })
+      : new HttpHeaders();
+  }
 }
@@ -176,7 +176,12 @@ export class EditDatabase {
       next: () => this.router.navigate(['/database']),
       error: (err) => {
         console.error('Error editing database:', err);
-        this.errorMessage.set('Failed to edit database. Please try again.');
+        // 400 traz o motivo (ex.: arquivo DICOM não suportado, com o nome)
+        this.errorMessage.set(
+          err.status === 400 && err.error?.message
+            ? err.error.message
+            : 'Failed to edit database. Please try again.'
+        );
       },
     });
   }
@@ -113,6 +113,15 @@ export class Homepage implements OnInit, AfterViewInit, OnDestroy {
   private autoSaveSubscription!: Subscription;
   private isLeavingPage = false;
 
+  // Último auto-save confirmado: o array de traços, quantos já estão no banco e a versão da
+  // anotação. Traços novos vão como appendStrokes; borracha, desfazer e limpar trocam o array
+  // e viram substituição completa condicionada à versão (If-Match).
+  private savedStrokes: BrushStroke[] | null = null;
+  private savedStrokeCount = 0;
+  private annotationVersion: number | null = null;
+  private autoSaveInFlight = false;
+  private autoSavePending = false;
+
   constructor(private route: ActivatedRoute, private apiService: ApiService) {}
 
   ngOnInit() {
@@ -174,15 +183,16 @@ export class Homepage implements OnInit, AfterViewInit, OnDestroy {
   }
 
   private performFinalSave() {
-    if (this.isLeavingPage && this.brushStrokes.length > 0) {
+    if (this.isLeavingPage) {
       console.log('💾 Salvamento final antes de sair...');
-      this._saveStateToDB(); // Usa o método existente
+      this._autoSaveToDB();
     }
   }
 
   private performFinalSaveSync() {
     // Tentativa de salvamento síncrono (pode não funcionar em todos os browsers)
-    if (this.brushStrokes.length > 0) {
+    const pending = this.pendingAutoSave();
+    if (pending) {
       const xhr = new XMLHttpRequest();
       xhr.open(
         'POST',
@@ -190,12 +200,11 @@ export class Homepage implements OnInit, AfterViewInit, OnDestroy {
         false
       );
       xhr.setRequestHeader('Content-Type', 'application/json');
+      if (pending.version != null) {
+        xhr.setRequestHeader('If-Match', String(pending.version));
+      }
 
-      const stateToSave = {
-        brushStrokes: this.brushStrokes,
-        lastSave: new Date().toISOString(),
-        isFinalSave: true,
-      };
+      const stateToSave = { ...pending.payload, isFinalSave: true };
 
       try {
         xhr.send(JSON.stringify(stateToSave));
@@ -275,9 +284,14 @@ export class Homepage implements OnInit, AfterViewInit, OnDestroy {
           console.log('✅ Carregando brushStrokes do formato alternativo');
         }
 
+        // O estado do banco vira a base dos próximos auto-saves (também após um 409)
+        this.brushStrokes = brushStrokes;
+        this.savedStrokes = brushStrokes;
+        this.savedStrokeCount = brushStrokes.length;
+        this.annotationVersion = response.version ?? null;
+        this.redrawStrokes();
+
         if (brushStrokes.length > 0) {
-          this.brushStrokes = brushStrokes;
-          this.redrawStrokes();
           console.log(`✅ ${brushStrokes.length} traços carregados do banco`);
         } else {
           console.log('ℹ️ Nenhum traço salvo encontrado no banco');
@@ -352,21 +366,6 @@ export class Homepage implements OnInit, AfterViewInit, OnDestroy {
     this.dbSaveSubject.next();
   }
 
-  private _saveStateToDB() {
-    if (!this.imageId) return;
-
-    // Apenas salvamos os brushStrokes, pois é a fonte da verdade para o redraw
-    const stateToSave = {
-      brushStrokes: this.brushStrokes,
-      // Você pode adicionar mais dados aqui se precisar
-    };
-
-    this.apiService.saveAnnotation(this.imageId, stateToSave).subscribe({
-      next: () => console.log('✅ Estado salvo automaticamente no DB.'),
-      error: (err) => console.error('❌ Falha ao salvar estado no DB:', err),
-    });
-  }
-
   generateInitialMarkers() {
     if (!this.imageUrl) {
       alert('Por favor, carregue uma imagem primeiro.');
@@ -746,30 +745,92 @@ export class Homepage implements OnInit, AfterViewInit, OnDestroy {
     this.autoSaveSubject.next();
   }
 
-  private _autoSaveToDB() {
-    if (!this.imageId || this.brushStrokes.length === 0) return;
-
-    const stateToSave = {
-      brushStrokes: this.brushStrokes,
+  /**
+   * O que falta gravar desde o último auto-save confirmado. Enquanto o array é o mesmo, só
+   * houve push: manda apenas os traços novos, sem versão (o append não perde o que outra aba
+   * gravou). Um array novo é substituição e só vale se o banco ainda estiver na versão lida.
+   */
+  private pendingAutoSave(): {
+    payload: any;
+    version: number | null;
+    strokes: BrushStroke[];
+    count: number;
+  } | null {
+    if (!this.imageId) return null;
+
+    const strokes = this.brushStrokes;
+    const count = strokes.length;
+    const append = strokes === this.savedStrokes;
+    if (append && count === this.savedStrokeCount) return null;
+
+    const payload: any = {
       lastAutoSave: new Date().toISOString(),
-      totalStrokes: this.brushStrokes.length,
-      objectStrokes: this.brushStrokes.filter((s) => s.mode === 'object')
-        .length,
-      backgroundStrokes: this.brushStrokes.filter(
-        (s) => s.mode === 'background'
-      ).length,
+      totalStrokes: count,
+      objectStrokes: strokes.filter((s) => s.mode === 'object').length,
+      backgroundStrokes: strokes.filter((s) => s.mode === 'background').length,
     };
+    if (append) {
+      payload.appendStrokes = strokes.slice(this.savedStrokeCount);
+    } else {
+      payload.brushStrokes = strokes;
+    }
 
-    this.apiService.autoSaveAnnotation(this.imageId, stateToSave).subscribe({
-      next: (response) => {
-        console.log('✅ Auto-save realizado:', response);
-      },
-      error: (err) => {
-        console.error('❌ Falha no auto-save:', err);
-        // Tentar novamente após 5 segundos
-        setTimeout(() => this.triggerAutoSave(), 5000);
-      },
-    });
+    return {
+      payload,
+      version: append ? null : this.annotationVersion,
+      strokes,
+      count,
+    };
+  }
+
+  private _autoSaveToDB() {
+    if (this.autoSaveInFlight) {
+      // Um auto-save por vez: o próximo parte do que este confirmar
+      this.autoSavePending = true;
+      return;
+    }
+
+    const pending = this.pendingAutoSave();
+    if (!pending) return;
+
+    this.autoSaveInFlight = true;
+    this.apiService
+      .autoSaveAnnotation(this.imageId, pending.payload, pending.version)
+      .subscribe({
+        next: (response) => {
+          console.log('✅ Auto-save realizado:', response);
+          this.savedStrokes = pending.strokes;
+          this.savedStrokeCount = pending.count;
+          this.annotationVersion = response.version ?? this.annotationVersion;
+          this.finishAutoSave();
+        },
+        error: (err) => {
+          this.autoSaveInFlight = false;
+          this.autoSavePending = false;
+
+          if (err.status === 409) {
+            // Outra aba ou outro usuário alterou a anotação depois da nossa leitura
+            console.warn('⚠️ Conflito no auto-save, recarregando anotação:', err.error);
+            alert(
+              'A anotação foi alterada em outra aba ou por outro usuário. O estado salvo será recarregado.'
+            );
+            this.loadSavedState();
+            return;
+          }
+
+          console.error('❌ Falha no auto-save:', err);
+          // Tentar novamente após 5 segundos
+          setTimeout(() => this.triggerAutoSave(), 5000);
+        },
+      });
+  }
+
+  private finishAutoSave() {
+    this.autoSaveInFlight = false;
+    if (this.autoSavePending) {
+      this.autoSavePending = false;
+      this._autoSaveToDB();
+    }
   }
 
   redrawStrokes() {
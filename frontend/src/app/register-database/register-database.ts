@@ -110,7 +110,12 @@ export class RegisterDatabase {
       next: () => this.router.navigate(['/database']),
       error: (err) => {
         console.error('Error registering database:', err);
-        this.errorMessage.set('Failed to register database. Please try again.');
+        // 400 traz o motivo (ex.: arquivo DICOM não suportado, com o nome)
+        this.errorMessage.set(
+          err.status === 400 && err.error?.message
+            ? err.error.message
+            : 'Failed to register database. Please try again.'
+        );
       },
     });
   }